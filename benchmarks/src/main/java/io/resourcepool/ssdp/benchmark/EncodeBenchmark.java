@@ -0,0 +1,40 @@
+package io.resourcepool.ssdp.benchmark;
+
+import io.resourcepool.ssdp.client.request.SsdpDiscovery;
+import io.resourcepool.ssdp.model.DiscoveryOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.DatagramPacket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of outgoing M-SEARCH datagrams, as done on every send tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodeBenchmark {
+
+  private final DiscoveryOptions options = DiscoveryOptions.builder().build();
+
+  @Benchmark
+  public DatagramPacket searchAll() {
+    return SsdpDiscovery.getDatagram(null, options);
+  }
+
+  @Benchmark
+  public DatagramPacket searchServiceType() {
+    return SsdpDiscovery.getDatagram("urn:schemas-upnp-org:device:MediaRenderer:1", options);
+  }
+}
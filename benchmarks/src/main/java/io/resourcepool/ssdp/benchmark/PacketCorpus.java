@@ -0,0 +1,108 @@
+package io.resourcepool.ssdp.benchmark;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * A realistic set of SSDP datagrams as seen on a busy segment.
+ * Devices, service types and servers are rotated so that the corpus is not a single repeated packet.
+ */
+public final class PacketCorpus {
+
+  private static final String[] SERVICE_TYPES = {
+      "upnp:rootdevice",
+      "urn:schemas-upnp-org:device:MediaRenderer:1",
+      "urn:schemas-upnp-org:device:MediaServer:1",
+      "urn:schemas-upnp-org:service:AVTransport:1",
+      "urn:schemas-upnp-org:service:ContentDirectory:1",
+      "urn:schemas-upnp-org:service:RenderingControl:1",
+      "urn:schemas-upnp-org:device:InternetGatewayDevice:1",
+      "urn:dial-multiscreen-org:service:dial:1"
+  };
+  private static final String[] SERVERS = {
+      "Linux/3.14 UPnP/1.0 IpBridge/1.26.0",
+      "Linux/4.9 UPnP/1.1 Portable SDK for UPnP devices/1.6.25",
+      "Microsoft-Windows/10.0 UPnP/1.0 UPnP-Device-Host/1.0",
+      "Android/9 UPnP/1.0 Cling/2.0"
+  };
+  private static final String[] NOTIFICATION_SUBTYPES = {"ssdp:alive", "ssdp:alive", "ssdp:alive", "ssdp:byebye"};
+
+  private PacketCorpus() {
+  }
+
+  /**
+   * Build the unicast responses sent by devices to an M-SEARCH.
+   *
+   * @param devices the number of distinct devices
+   * @return one datagram per device
+   */
+  public static DatagramPacket[] searchResponses(int devices) {
+    DatagramPacket[] packets = new DatagramPacket[devices];
+    for (int i = 0; i < devices; i++) {
+      String st = SERVICE_TYPES[i % SERVICE_TYPES.length];
+      String message = "HTTP/1.1 200 OK\r\n"
+          + "CACHE-CONTROL: max-age=1800\r\n"
+          + "DATE: Sat, 17 Oct 2026 10:00:00 GMT\r\n"
+          + "EXT:\r\n"
+          + "LOCATION: " + location(i) + "\r\n"
+          + "SERVER: " + SERVERS[i % SERVERS.length] + "\r\n"
+          + "ST: " + st + "\r\n"
+          + "USN: " + uuid(i) + "::" + st + "\r\n"
+          + "BOOTID.UPNP.ORG: 1\r\n"
+          + "CONFIGID.UPNP.ORG: 1\r\n"
+          + "\r\n";
+      packets[i] = packet(message, i);
+    }
+    return packets;
+  }
+
+  /**
+   * Build the multicast NOTIFY datagrams sent by devices announcing themselves.
+   *
+   * @param devices the number of distinct devices
+   * @return one datagram per device
+   */
+  public static DatagramPacket[] notifications(int devices) {
+    DatagramPacket[] packets = new DatagramPacket[devices];
+    for (int i = 0; i < devices; i++) {
+      String nt = SERVICE_TYPES[i % SERVICE_TYPES.length];
+      String message = "NOTIFY * HTTP/1.1\r\n"
+          + "HOST: 239.255.255.250:1900\r\n"
+          + "CACHE-CONTROL: max-age=1800\r\n"
+          + "LOCATION: " + location(i) + "\r\n"
+          + "NT: " + nt + "\r\n"
+          + "NTS: " + NOTIFICATION_SUBTYPES[i % NOTIFICATION_SUBTYPES.length] + "\r\n"
+          + "SERVER: " + SERVERS[i % SERVERS.length] + "\r\n"
+          + "USN: " + uuid(i) + "::" + nt + "\r\n"
+          + "BOOTID.UPNP.ORG: 1\r\n"
+          + "CONFIGID.UPNP.ORG: 1\r\n"
+          + "\r\n";
+      packets[i] = packet(message, i);
+    }
+    return packets;
+  }
+
+  private static String uuid(int device) {
+    return String.format("uuid:2f402f80-da50-11e1-9b23-%012x", device);
+  }
+
+  private static String location(int device) {
+    return "http://" + address(device).getHostAddress() + ":49152/description.xml";
+  }
+
+  private static DatagramPacket packet(String message, int device) {
+    byte[] content = message.getBytes(UTF_8);
+    return new DatagramPacket(content, content.length, address(device), 1900);
+  }
+
+  private static InetAddress address(int device) {
+    try {
+      return InetAddress.getByAddress(new byte[] {(byte) 192, (byte) 168, (byte) (device >> 8), (byte) device});
+    } catch (UnknownHostException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
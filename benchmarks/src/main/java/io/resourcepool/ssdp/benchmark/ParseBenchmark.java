@@ -0,0 +1,80 @@
+package io.resourcepool.ssdp.benchmark;
+
+import io.resourcepool.ssdp.client.parser.ResponseParser;
+import io.resourcepool.ssdp.client.response.SsdpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.DatagramPacket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of incoming datagrams and conversion into model objects.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+  @Param({"256"})
+  private int devices;
+
+  private DatagramPacket[] searchResponses;
+  private DatagramPacket[] notifications;
+  private SsdpResponse[] parsedSearchResponses;
+  private SsdpResponse[] parsedNotifications;
+  private int index;
+
+  /**
+   * Build the corpus and parse it once for the model conversion benchmarks.
+   */
+  @Setup
+  public void setup() {
+    searchResponses = PacketCorpus.searchResponses(devices);
+    notifications = PacketCorpus.notifications(devices);
+    parsedSearchResponses = new SsdpResponse[devices];
+    parsedNotifications = new SsdpResponse[devices];
+    for (int i = 0; i < devices; i++) {
+      parsedSearchResponses[i] = ResponseParser.parse(searchResponses[i]);
+      parsedNotifications[i] = ResponseParser.parse(notifications[i]);
+    }
+  }
+
+  private int next() {
+    index = (index + 1) % devices;
+    return index;
+  }
+
+  @Benchmark
+  public SsdpResponse parseSearchResponse() {
+    return ResponseParser.parse(searchResponses[next()]);
+  }
+
+  @Benchmark
+  public SsdpResponse parseNotification() {
+    return ResponseParser.parse(notifications[next()]);
+  }
+
+  @Benchmark
+  public void toService(Blackhole bh) {
+    bh.consume(parsedSearchResponses[next()].toService());
+  }
+
+  @Benchmark
+  public void toServiceAnnouncement(Blackhole bh) {
+    bh.consume(parsedNotifications[next()].toServiceAnnouncement());
+  }
+}
@@ -0,0 +1,107 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.benchmark.PacketCorpus;
+import io.resourcepool.ssdp.client.metrics.DefaultSsdpMetrics;
+import io.resourcepool.ssdp.client.metrics.SsdpMetrics;
+import io.resourcepool.ssdp.client.util.ByteBufferPool;
+import io.resourcepool.ssdp.model.DiscoveryListener;
+import io.resourcepool.ssdp.model.SsdpClientOptions;
+import io.resourcepool.ssdp.model.SsdpService;
+import io.resourcepool.ssdp.model.SsdpServiceAnnouncement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full handling of an incoming datagram by the client: parse, cache lookup and listener dispatch.
+ * Lives in the impl package to reach the package-private handler without opening a socket.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+
+  @Param({"256"})
+  private int devices;
+
+  // Compares the dispatch cost without metrics and with the default ones
+  @Param({"noop", "default"})
+  private String metrics;
+
+  private final SsdpClientOptions options = SsdpClientOptions.builder().disableAutoLookup().build();
+  private final ByteBufferPool bufferPool = options.getReceiveBufferPool();
+  private SsdpClientImpl client;
+  private DatagramPacket[] searchResponses;
+  private DatagramPacket[] notifications;
+  private int index;
+
+  /**
+   * Build the corpus, register a listener for all services and warm the client cache so that notifications hit
+   * known devices.
+   */
+  @Setup
+  public void setup() {
+    client = new SsdpClientImpl("default".equals(metrics) ? new DefaultSsdpMetrics() : SsdpMetrics.NOOP);
+    client.subscribe(new Subscription(client, null, options, new DiscoveryListener() {
+      @Override
+      public void onServiceDiscovered(SsdpService service) {
+      }
+
+      @Override
+      public void onServiceAnnouncement(SsdpServiceAnnouncement announcement) {
+      }
+
+      @Override
+      public void onFailed(Exception ex) {
+      }
+    }));
+    searchResponses = PacketCorpus.searchResponses(devices);
+    notifications = PacketCorpus.notifications(devices);
+    for (DatagramPacket packet : searchResponses) {
+      client.handleIncomingPacket(packet, options);
+    }
+  }
+
+  private int next() {
+    index = (index + 1) % devices;
+    return index;
+  }
+
+  @Benchmark
+  public void handleSearchResponse() {
+    client.handleIncomingPacket(searchResponses[next()], options);
+  }
+
+  @Benchmark
+  public void handleSearchResponseFromPooledBuffer() {
+    DatagramPacket packet = searchResponses[next()];
+    ByteBuffer buffer = bufferPool.acquire();
+    try {
+      buffer.put(packet.getData(), packet.getOffset(), packet.getLength());
+      buffer.flip();
+      client.handleIncomingPacket(buffer, packet.getAddress(), options);
+    } finally {
+      bufferPool.release(buffer);
+    }
+  }
+
+  @Benchmark
+  public void handleNotification() {
+    client.handleIncomingPacket(notifications[next()], options);
+  }
+}
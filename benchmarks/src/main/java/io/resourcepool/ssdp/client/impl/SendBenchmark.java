@@ -0,0 +1,39 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.DiscoveryRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.DatagramPacket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Datagrams handed to the transport on every send tick, for a request with several service types.
+ * Compare with EncodeBenchmark, which encodes each M-SEARCH from scratch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendBenchmark {
+
+  private final CompiledDiscoveryRequest request = new CompiledDiscoveryRequest(DiscoveryRequest.builder()
+      .serviceType("urn:schemas-upnp-org:device:MediaRenderer:1")
+      .serviceType("urn:schemas-upnp-org:device:MediaServer:1")
+      .serviceType("urn:dial-multiscreen-org:service:dial:1")
+      .build());
+
+  @Benchmark
+  public DatagramPacket[] compiledDatagrams() {
+    return request.getDatagrams();
+  }
+}
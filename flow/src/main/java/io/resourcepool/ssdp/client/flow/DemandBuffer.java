@@ -0,0 +1,267 @@
+package io.resourcepool.ssdp.client.flow;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded buffer between the SsdpClient and a slow consumer, delivering items as the consumer requests them.
+ * <p>
+ * Items are offered by the receive or dispatch threads, which never wait for the consumer: once the buffer is
+ * full, items are dropped according to an {@link OverflowStrategy}. Items are delivered on an executor, one at a
+ * time and in order, never more than the consumer requested. This is the core of the reactive publishers, which
+ * follow the Reactive Streams rules.
+ *
+ * @param <T> the item type, such as SsdpService
+ */
+public final class DemandBuffer<T> {
+
+  /**
+   * The consumer of the items.
+   *
+   * @param <T> the item type
+   */
+  public interface Sink<T> {
+    void onNext(T item);
+
+    void onError(Throwable error);
+
+    void onComplete();
+  }
+
+  private final int capacity;
+  private final OverflowStrategy strategy;
+  private final Function<T, String> usnOf;
+  private final Executor executor;
+  private final Sink<T> sink;
+  // DROP_OLDEST keeps every item, other strategies keep one item per USN
+  private final ArrayDeque<T> queue;
+  private final LinkedHashMap<Object, T> byUsn;
+  private final AtomicInteger wip = new AtomicInteger();
+  private final LongAdder dropped = new LongAdder();
+  private long requested;
+  private boolean done;
+  private Throwable error;
+  private volatile boolean cancelled;
+
+  /**
+   * @param capacity the maximum number of items waiting for demand
+   * @param strategy what to do with items once the buffer is full
+   * @param usnOf    the USN of an item
+   * @param executor the executor items are delivered on
+   * @param sink     the consumer of the items
+   */
+  public DemandBuffer(int capacity, OverflowStrategy strategy, Function<T, String> usnOf, Executor executor, Sink<T> sink) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Buffer capacity must be at least one item");
+    }
+    this.capacity = capacity;
+    this.strategy = strategy;
+    this.usnOf = usnOf;
+    this.executor = executor;
+    this.sink = sink;
+    this.queue = strategy == OverflowStrategy.DROP_OLDEST ? new ArrayDeque<T>() : null;
+    this.byUsn = strategy == OverflowStrategy.DROP_OLDEST ? null : new LinkedHashMap<Object, T>();
+  }
+
+  /**
+   * Buffer an item, dropping an item if the buffer is full. Never blocks.
+   *
+   * @param item the item
+   */
+  public void offer(T item) {
+    if (cancelled) {
+      return;
+    }
+    synchronized (this) {
+      if (done) {
+        return;
+      }
+      if (queue != null) {
+        if (queue.size() == capacity) {
+          queue.poll();
+          dropped.increment();
+        }
+        queue.add(item);
+      } else {
+        String usn = usnOf.apply(item);
+        Object key = usn != null ? usn : new Object();
+        if (byUsn.containsKey(key)) {
+          if (strategy == OverflowStrategy.LATEST_PER_USN) {
+            byUsn.put(key, item);
+          }
+          dropped.increment();
+        } else {
+          if (byUsn.size() == capacity) {
+            Iterator<T> oldest = byUsn.values().iterator();
+            oldest.next();
+            oldest.remove();
+            dropped.increment();
+          }
+          byUsn.put(key, item);
+        }
+      }
+    }
+    drain();
+  }
+
+  /**
+   * Add demand. A non-positive demand fails the buffer, as Reactive Streams require.
+   *
+   * @param n the number of additional items the consumer is ready for
+   */
+  public void request(long n) {
+    synchronized (this) {
+      if (n <= 0) {
+        done = true;
+        error = new IllegalArgumentException("Demand must be positive, was " + n);
+      } else {
+        requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+      }
+    }
+    drain();
+  }
+
+  /**
+   * Complete the buffer: the consumer is completed once it has received the waiting items.
+   */
+  public void complete() {
+    synchronized (this) {
+      done = true;
+    }
+    drain();
+  }
+
+  /**
+   * Fail the buffer: the waiting items are discarded and the consumer receives the error.
+   *
+   * @param failure the error
+   */
+  public void fail(Throwable failure) {
+    synchronized (this) {
+      if (done) {
+        return;
+      }
+      done = true;
+      error = failure;
+    }
+    drain();
+  }
+
+  /**
+   * Stop delivering and discard the waiting items.
+   */
+  public void cancel() {
+    cancelled = true;
+    synchronized (this) {
+      clear();
+    }
+  }
+
+  /**
+   * @return true once the buffer has been cancelled, or has delivered its completion or error
+   */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * @return the number of items waiting for demand
+   */
+  public synchronized int size() {
+    return queue != null ? queue.size() : byUsn.size();
+  }
+
+  /**
+   * @return the number of items dropped or replaced because of the overflow strategy
+   */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Deliver on the executor, unless a delivery is already running, in which case it picks the new state up.
+   */
+  private void drain() {
+    if (wip.getAndIncrement() == 0) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          deliver();
+        }
+      });
+    }
+  }
+
+  private void deliver() {
+    int missed = 1;
+    while (true) {
+      while (!cancelled) {
+        T item;
+        Throwable failure;
+        boolean complete;
+        synchronized (this) {
+          failure = error;
+          if (failure != null) {
+            clear();
+            item = null;
+            complete = false;
+          } else {
+            item = requested > 0 ? poll() : null;
+            if (item != null && requested != Long.MAX_VALUE) {
+              requested--;
+            }
+            complete = item == null && done && size() == 0;
+          }
+        }
+        if (failure != null || complete) {
+          cancelled = true;
+          if (failure != null) {
+            sink.onError(failure);
+          } else {
+            sink.onComplete();
+          }
+          break;
+        }
+        if (item == null) {
+          break;
+        }
+        try {
+          sink.onNext(item);
+        } catch (RuntimeException e) {
+          // A consumer which throws breaks the rules: consider it gone
+          cancel();
+        }
+      }
+      missed = wip.addAndGet(-missed);
+      if (missed == 0) {
+        return;
+      }
+    }
+  }
+
+  private T poll() {
+    if (queue != null) {
+      return queue.poll();
+    }
+    Iterator<T> oldest = byUsn.values().iterator();
+    if (!oldest.hasNext()) {
+      return null;
+    }
+    T item = oldest.next();
+    oldest.remove();
+    return item;
+  }
+
+  private void clear() {
+    if (queue != null) {
+      queue.clear();
+    } else {
+      byUsn.clear();
+    }
+  }
+}
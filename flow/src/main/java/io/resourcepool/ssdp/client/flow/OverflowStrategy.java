@@ -0,0 +1,21 @@
+package io.resourcepool.ssdp.client.flow;
+
+/**
+ * What a {@link DemandBuffer} does with an item once it holds as many items as its capacity,
+ * or with an item of a device it already holds.
+ */
+public enum OverflowStrategy {
+  /**
+   * Drop the oldest item to make room for the new one.
+   */
+  DROP_OLDEST,
+  /**
+   * Drop the new item if an item with the same USN is already waiting, otherwise drop the oldest item to make room.
+   */
+  DROP_DUPLICATE_USN,
+  /**
+   * Replace the waiting item with the same USN by the new one, keeping its place in line,
+   * otherwise drop the oldest item to make room.
+   */
+  LATEST_PER_USN
+}
@@ -0,0 +1,223 @@
+package io.resourcepool.ssdp.client.flow;
+
+import io.resourcepool.ssdp.client.SsdpClient;
+import io.resourcepool.ssdp.exception.NoSerialNumberException;
+import io.resourcepool.ssdp.model.DiscoveryHandle;
+import io.resourcepool.ssdp.model.DiscoveryListener;
+import io.resourcepool.ssdp.model.DiscoveryRequest;
+import io.resourcepool.ssdp.model.SsdpClientOptions;
+import io.resourcepool.ssdp.model.SsdpService;
+import io.resourcepool.ssdp.model.SsdpServiceAnnouncement;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Flow publishers of the services and announcements found by an SsdpClient, honouring the demand of their
+ * subscribers. Shipped apart from the client, as the ssdp-client-flow artifact: Flow needs Java 9.
+ * <p>
+ * Each subscriber starts its own discovery, which stops once the subscription is cancelled. Items wait for demand
+ * in a bounded {@link DemandBuffer}: the receive thread never waits for a slow subscriber, and items are dropped
+ * according to the overflow strategy instead. Items are delivered on the given executor, the common pool
+ * by default, as with SubmissionPublisher.
+ */
+public final class SsdpPublishers {
+
+  private static final Function<SsdpService, String> SERVICE_USN = SsdpService::getSerialNumber;
+  private static final Function<SsdpServiceAnnouncement, String> ANNOUNCEMENT_USN = SsdpServiceAnnouncement::getSerialNumber;
+
+  private SsdpPublishers() {
+  }
+
+  /**
+   * @param client   the client
+   * @param request  the discovery request
+   * @param options  the ssdp client options
+   * @param capacity the maximum number of services waiting for demand, per subscriber
+   * @param strategy what to do with services once the buffer of a subscriber is full
+   * @return a publisher of the services discovered, from the cache first
+   */
+  public static Flow.Publisher<SsdpService> services(SsdpClient client, DiscoveryRequest request, SsdpClientOptions options,
+                                                     int capacity, OverflowStrategy strategy) {
+    return services(client, request, options, capacity, strategy, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param client   the client
+   * @param request  the discovery request
+   * @param options  the ssdp client options
+   * @param capacity the maximum number of services waiting for demand, per subscriber
+   * @param strategy what to do with services once the buffer of a subscriber is full
+   * @param executor the executor services are delivered on
+   * @return a publisher of the services discovered, from the cache first
+   */
+  public static Flow.Publisher<SsdpService> services(SsdpClient client, DiscoveryRequest request, SsdpClientOptions options,
+                                                     int capacity, OverflowStrategy strategy, Executor executor) {
+    return new DiscoveryPublisher<SsdpService>(client, request, options, capacity, strategy, executor, SERVICE_USN, false);
+  }
+
+  /**
+   * @param client   the client
+   * @param request  the discovery request, or null to only listen to announcements
+   * @param options  the ssdp client options
+   * @param capacity the maximum number of announcements waiting for demand, per subscriber
+   * @param strategy what to do with announcements once the buffer of a subscriber is full
+   * @return a publisher of the announcements of known services
+   */
+  public static Flow.Publisher<SsdpServiceAnnouncement> announcements(SsdpClient client, DiscoveryRequest request, SsdpClientOptions options,
+                                                                      int capacity, OverflowStrategy strategy) {
+    return announcements(client, request, options, capacity, strategy, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param client   the client
+   * @param request  the discovery request, or null to only listen to announcements
+   * @param options  the ssdp client options
+   * @param capacity the maximum number of announcements waiting for demand, per subscriber
+   * @param strategy what to do with announcements once the buffer of a subscriber is full
+   * @param executor the executor announcements are delivered on
+   * @return a publisher of the announcements of known services
+   */
+  public static Flow.Publisher<SsdpServiceAnnouncement> announcements(SsdpClient client, DiscoveryRequest request, SsdpClientOptions options,
+                                                                      int capacity, OverflowStrategy strategy, Executor executor) {
+    return new DiscoveryPublisher<SsdpServiceAnnouncement>(client, request, options, capacity, strategy, executor, ANNOUNCEMENT_USN, true);
+  }
+
+  /**
+   * Starts a discovery per subscriber, feeding a demand buffer.
+   *
+   * @param <T> SsdpService or SsdpServiceAnnouncement
+   */
+  private static final class DiscoveryPublisher<T> implements Flow.Publisher<T> {
+    private final SsdpClient client;
+    private final DiscoveryRequest request;
+    private final SsdpClientOptions options;
+    private final int capacity;
+    private final OverflowStrategy strategy;
+    private final Executor executor;
+    private final Function<T, String> usnOf;
+    private final boolean announcements;
+
+    private DiscoveryPublisher(SsdpClient client, DiscoveryRequest request, SsdpClientOptions options, int capacity,
+                               OverflowStrategy strategy, Executor executor, Function<T, String> usnOf, boolean announcements) {
+      this.client = client;
+      this.request = request;
+      this.options = options;
+      this.capacity = capacity;
+      this.strategy = strategy;
+      this.executor = executor;
+      this.usnOf = usnOf;
+      this.announcements = announcements;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+      if (subscriber == null) {
+        throw new NullPointerException("Subscriber must not be null");
+      }
+      DiscoverySubscription<T> subscription = new DiscoverySubscription<T>(subscriber, capacity, strategy, usnOf, executor, announcements);
+      subscriber.onSubscribe(subscription);
+      subscription.start(client, request, options);
+    }
+  }
+
+  /**
+   * The subscription of one subscriber: its discovery and its demand buffer.
+   *
+   * @param <T> SsdpService or SsdpServiceAnnouncement
+   */
+  private static final class DiscoverySubscription<T> implements Flow.Subscription, DiscoveryListener, DemandBuffer.Sink<T> {
+    private final Flow.Subscriber<? super T> subscriber;
+    private final DemandBuffer<T> buffer;
+    private final boolean announcements;
+    private volatile DiscoveryHandle handle;
+
+    private DiscoverySubscription(Flow.Subscriber<? super T> subscriber, int capacity, OverflowStrategy strategy,
+                                  Function<T, String> usnOf, Executor executor, boolean announcements) {
+      this.subscriber = subscriber;
+      this.buffer = new DemandBuffer<T>(capacity, strategy, usnOf, executor, this);
+      this.announcements = announcements;
+    }
+
+    private void start(SsdpClient client, DiscoveryRequest request, SsdpClientOptions options) {
+      if (buffer.isCancelled()) {
+        return;
+      }
+      handle = client.discoverServices(request, options, this);
+      // Cancelled while the discovery was starting
+      if (buffer.isCancelled()) {
+        handle.cancel();
+      }
+    }
+
+    private void stopDiscovery() {
+      DiscoveryHandle current = handle;
+      if (current != null) {
+        current.cancel();
+      }
+    }
+
+    @Override
+    public void request(long n) {
+      buffer.request(n);
+    }
+
+    @Override
+    public void cancel() {
+      buffer.cancel();
+      stopDiscovery();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onServiceDiscovered(SsdpService service) {
+      if (announcements) {
+        return;
+      }
+      offer((T) service);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onServiceAnnouncement(SsdpServiceAnnouncement announcement) {
+      if (!announcements) {
+        return;
+      }
+      offer((T) announcement);
+    }
+
+    @Override
+    public void onFailed(Exception ex) {
+      // A device without USN does not end the stream
+      if (ex instanceof NoSerialNumberException) {
+        return;
+      }
+      buffer.fail(ex);
+      stopDiscovery();
+    }
+
+    private void offer(T item) {
+      buffer.offer(item);
+      if (buffer.isCancelled()) {
+        stopDiscovery();
+      }
+    }
+
+    @Override
+    public void onNext(T item) {
+      subscriber.onNext(item);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+      subscriber.onError(error);
+    }
+
+    @Override
+    public void onComplete() {
+      subscriber.onComplete();
+    }
+  }
+}
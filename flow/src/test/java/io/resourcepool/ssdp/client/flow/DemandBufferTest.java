@@ -0,0 +1,111 @@
+package io.resourcepool.ssdp.client.flow;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Testing the demand and the overflow strategies of the buffer behind the reactive publishers
+ */
+public class DemandBufferTest {
+
+  private static final Executor DIRECT = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  // Items are "usn:version" strings
+  private static final Function<String, String> USN = new Function<String, String>() {
+    @Override
+    public String apply(String item) {
+      return item.substring(0, item.indexOf(':'));
+    }
+  };
+
+  private static final class RecordingSink implements DemandBuffer.Sink<String> {
+    private final List<String> items = new ArrayList<String>();
+    private Throwable error;
+    private boolean completed;
+
+    @Override
+    public void onNext(String item) {
+      items.add(item);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+      this.error = error;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+  }
+
+  private static DemandBuffer<String> buffer(OverflowStrategy strategy, RecordingSink sink, String... items) {
+    DemandBuffer<String> buffer = new DemandBuffer<String>(3, strategy, USN, DIRECT, sink);
+    for (String item : items) {
+      buffer.offer(item);
+    }
+    return buffer;
+  }
+
+  @Test
+  public void testDeliversOnlyWhatIsRequested() {
+    RecordingSink sink = new RecordingSink();
+    DemandBuffer<String> buffer = buffer(OverflowStrategy.DROP_OLDEST, sink, "a:1", "b:1");
+    Assert.assertTrue(sink.items.isEmpty());
+    buffer.request(1);
+    Assert.assertEquals(Arrays.asList("a:1"), sink.items);
+    buffer.request(5);
+    buffer.offer("c:1");
+    Assert.assertEquals(Arrays.asList("a:1", "b:1", "c:1"), sink.items);
+    buffer.complete();
+    Assert.assertTrue(sink.completed);
+  }
+
+  @Test
+  public void testDropOldest() {
+    RecordingSink sink = new RecordingSink();
+    DemandBuffer<String> buffer = buffer(OverflowStrategy.DROP_OLDEST, sink, "a:1", "a:2", "b:1", "c:1");
+    buffer.request(Long.MAX_VALUE);
+    Assert.assertEquals(Arrays.asList("a:2", "b:1", "c:1"), sink.items);
+    Assert.assertEquals(1, buffer.getDropped());
+  }
+
+  @Test
+  public void testDropDuplicateUsn() {
+    RecordingSink sink = new RecordingSink();
+    DemandBuffer<String> buffer = buffer(OverflowStrategy.DROP_DUPLICATE_USN, sink, "a:1", "b:1", "a:2", "c:1", "d:1");
+    buffer.request(Long.MAX_VALUE);
+    Assert.assertEquals(Arrays.asList("b:1", "c:1", "d:1"), sink.items);
+    Assert.assertEquals(2, buffer.getDropped());
+  }
+
+  @Test
+  public void testLatestPerUsn() {
+    RecordingSink sink = new RecordingSink();
+    DemandBuffer<String> buffer = buffer(OverflowStrategy.LATEST_PER_USN, sink, "a:1", "b:1", "a:2", "a:3");
+    buffer.request(Long.MAX_VALUE);
+    // a keeps its place in line, with its latest version
+    Assert.assertEquals(Arrays.asList("a:3", "b:1"), sink.items);
+  }
+
+  @Test
+  public void testInvalidDemandFails() {
+    RecordingSink sink = new RecordingSink();
+    DemandBuffer<String> buffer = buffer(OverflowStrategy.DROP_OLDEST, sink, "a:1");
+    buffer.request(0);
+    Assert.assertTrue(sink.error instanceof IllegalArgumentException);
+    Assert.assertTrue(sink.items.isEmpty());
+    Assert.assertTrue(buffer.isCancelled());
+  }
+}
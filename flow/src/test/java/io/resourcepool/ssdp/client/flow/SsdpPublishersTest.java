@@ -0,0 +1,209 @@
+package io.resourcepool.ssdp.client.flow;
+
+import io.resourcepool.ssdp.client.SsdpClient;
+import io.resourcepool.ssdp.client.parser.ResponseParser;
+import io.resourcepool.ssdp.model.BatchDiscoveryListener;
+import io.resourcepool.ssdp.model.BatchOptions;
+import io.resourcepool.ssdp.model.DiscoveryHandle;
+import io.resourcepool.ssdp.model.DiscoveryListener;
+import io.resourcepool.ssdp.model.DiscoveryRequest;
+import io.resourcepool.ssdp.model.LookupOptions;
+import io.resourcepool.ssdp.model.SsdpClientOptions;
+import io.resourcepool.ssdp.model.SsdpService;
+import io.resourcepool.ssdp.model.SsdpServiceAnnouncement;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * Testing the demand, the cancellation and the overflow strategies of the publishers
+ */
+public class SsdpPublishersTest {
+
+  private static final Executor DIRECT = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  private static final DiscoveryRequest ALL = DiscoveryRequest.builder().build();
+
+  /**
+   * A client which only records the discoveries started, so that the test plays the network.
+   */
+  private static final class StubClient extends SsdpClient {
+    private DiscoveryListener listener;
+    private boolean cancelled;
+
+    @Override
+    public DiscoveryHandle discoverServices(DiscoveryRequest req, SsdpClientOptions options, DiscoveryListener callback) {
+      this.listener = callback;
+      return new DiscoveryHandle() {
+        @Override
+        public void cancel() {
+          cancelled = true;
+        }
+
+        @Override
+        public boolean isActive() {
+          return !cancelled;
+        }
+      };
+    }
+
+    @Override
+    public DiscoveryHandle discoverServices(DiscoveryRequest req, DiscoveryListener callback) {
+      return discoverServices(req, null, callback);
+    }
+
+    @Override
+    public DiscoveryHandle discoverServices(DiscoveryRequest req, SsdpClientOptions options, BatchOptions batchOptions, BatchDiscoveryListener callback) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CompletableFuture<List<SsdpService>> lookUpServices(DiscoveryRequest req, SsdpClientOptions options, LookupOptions lookupOptions) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CompletableFuture<List<SsdpService>> lookUpServices(DiscoveryRequest req, LookupOptions lookupOptions) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void stopDiscovery() {
+      cancelled = true;
+    }
+  }
+
+  private static final class RecordingSubscriber<T> implements Flow.Subscriber<T> {
+    private final List<T> items = new ArrayList<T>();
+    private Flow.Subscription subscription;
+    private Throwable error;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(T item) {
+      items.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      this.error = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+    }
+  }
+
+  private static SsdpService service(String usn, String location) {
+    byte[] data = ("HTTP/1.1 200 OK\r\n"
+        + "CACHE-CONTROL: max-age=1800\r\n"
+        + "ST: upnp:rootdevice\r\n"
+        + "USN: " + usn + "\r\n"
+        + "LOCATION: " + location + "\r\n"
+        + "\r\n").getBytes(UTF_8);
+    return ResponseParser.parse(data, 0, data.length, InetAddress.getLoopbackAddress()).toService();
+  }
+
+  private static SsdpServiceAnnouncement announcement(String usn) {
+    byte[] data = ("NOTIFY * HTTP/1.1\r\n"
+        + "HOST: 239.255.255.250:1900\r\n"
+        + "CACHE-CONTROL: max-age=1800\r\n"
+        + "NT: upnp:rootdevice\r\n"
+        + "NTS: ssdp:alive\r\n"
+        + "USN: " + usn + "\r\n"
+        + "LOCATION: http://192.168.1.10/description.xml\r\n"
+        + "\r\n").getBytes(UTF_8);
+    return ResponseParser.parse(data, 0, data.length, InetAddress.getLoopbackAddress()).toServiceAnnouncement();
+  }
+
+  private static List<String> locations(List<SsdpService> services) {
+    List<String> locations = new ArrayList<String>();
+    for (SsdpService service : services) {
+      locations.add(service.getLocation());
+    }
+    return locations;
+  }
+
+  @Test
+  public void testDeliversOnlyWhatIsRequested() {
+    StubClient client = new StubClient();
+    RecordingSubscriber<SsdpService> subscriber = new RecordingSubscriber<SsdpService>();
+    SsdpPublishers.services(client, ALL, null, 8, OverflowStrategy.DROP_OLDEST, DIRECT).subscribe(subscriber);
+
+    client.listener.onServiceDiscovered(service("uuid:a", "http://a"));
+    client.listener.onServiceDiscovered(service("uuid:b", "http://b"));
+    Assert.assertTrue(subscriber.items.isEmpty());
+    subscriber.subscription.request(1);
+    Assert.assertEquals(Arrays.asList("http://a"), locations(subscriber.items));
+    subscriber.subscription.request(1);
+    client.listener.onServiceDiscovered(service("uuid:c", "http://c"));
+    Assert.assertEquals(Arrays.asList("http://a", "http://b"), locations(subscriber.items));
+    // Announcements are not published as services
+    client.listener.onServiceAnnouncement(announcement("uuid:a"));
+    subscriber.subscription.request(1);
+    Assert.assertEquals(Arrays.asList("http://a", "http://b", "http://c"), locations(subscriber.items));
+  }
+
+  @Test
+  public void testCancelStopsTheDiscovery() {
+    StubClient client = new StubClient();
+    RecordingSubscriber<SsdpServiceAnnouncement> subscriber = new RecordingSubscriber<SsdpServiceAnnouncement>();
+    SsdpPublishers.announcements(client, null, null, 8, OverflowStrategy.DROP_OLDEST, DIRECT).subscribe(subscriber);
+    subscriber.subscription.request(Long.MAX_VALUE);
+    client.listener.onServiceAnnouncement(announcement("uuid:a"));
+    Assert.assertEquals(1, subscriber.items.size());
+
+    subscriber.subscription.cancel();
+    Assert.assertTrue(client.cancelled);
+    client.listener.onServiceAnnouncement(announcement("uuid:b"));
+    Assert.assertEquals(1, subscriber.items.size());
+  }
+
+  @Test
+  public void testFailureEndsTheStream() {
+    StubClient client = new StubClient();
+    RecordingSubscriber<SsdpService> subscriber = new RecordingSubscriber<SsdpService>();
+    SsdpPublishers.services(client, ALL, null, 8, OverflowStrategy.DROP_OLDEST, DIRECT).subscribe(subscriber);
+    IllegalStateException failure = new IllegalStateException("No interface");
+    client.listener.onFailed(failure);
+    Assert.assertSame(failure, subscriber.error);
+    Assert.assertTrue(client.cancelled);
+  }
+
+  @Test
+  public void testOverflowStrategies() {
+    // Two services of a and one of b wait for demand in a buffer of two
+    assertOverflow(OverflowStrategy.DROP_OLDEST, "http://a2", "http://b1");
+    assertOverflow(OverflowStrategy.DROP_DUPLICATE_USN, "http://a1", "http://b1");
+    assertOverflow(OverflowStrategy.LATEST_PER_USN, "http://a2", "http://b1");
+  }
+
+  private static void assertOverflow(OverflowStrategy strategy, String... expected) {
+    StubClient client = new StubClient();
+    RecordingSubscriber<SsdpService> subscriber = new RecordingSubscriber<SsdpService>();
+    SsdpPublishers.services(client, ALL, null, 2, strategy, DIRECT).subscribe(subscriber);
+    client.listener.onServiceDiscovered(service("uuid:a", "http://a1"));
+    client.listener.onServiceDiscovered(service("uuid:a", "http://a2"));
+    client.listener.onServiceDiscovered(service("uuid:b", "http://b1"));
+    subscriber.subscription.request(Long.MAX_VALUE);
+    Assert.assertEquals(strategy.name(), Arrays.asList(expected), locations(subscriber.items));
+  }
+}
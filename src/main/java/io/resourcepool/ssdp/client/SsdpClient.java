@@ -1,9 +1,18 @@
 package io.resourcepool.ssdp.client;
 
 import io.resourcepool.ssdp.client.impl.SsdpClientImpl;
+import io.resourcepool.ssdp.client.metrics.SsdpMetrics;
+import io.resourcepool.ssdp.model.BatchDiscoveryListener;
+import io.resourcepool.ssdp.model.BatchOptions;
+import io.resourcepool.ssdp.model.DiscoveryHandle;
 import io.resourcepool.ssdp.model.DiscoveryListener;
 import io.resourcepool.ssdp.model.DiscoveryRequest;
+import io.resourcepool.ssdp.model.LookupOptions;
 import io.resourcepool.ssdp.model.SsdpClientOptions;
+import io.resourcepool.ssdp.model.SsdpService;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Loïc Ortola on 11/03/2016.
@@ -12,12 +21,15 @@ public abstract class SsdpClient {
 
   /**
    * Discover specific devices of particular ServiceType.
+   * Several discoveries can run at the same time on the same client: they share one socket, opened with the
+   * options of the first one, and each listener only receives the services matching its request.
    *
    * @param req      the discovery request
    * @param options  the ssdp client options
    * @param callback the discovery listener
+   * @return a handle to cancel this discovery
    */
-  public abstract void discoverServices(DiscoveryRequest req, SsdpClientOptions options, DiscoveryListener callback);
+  public abstract DiscoveryHandle discoverServices(DiscoveryRequest req, SsdpClientOptions options, DiscoveryListener callback);
 
 
   /**
@@ -25,11 +37,45 @@ public abstract class SsdpClient {
    *
    * @param req      the discovery request
    * @param callback the discovery listener
+   * @return a handle to cancel this discovery
+   */
+  public abstract DiscoveryHandle discoverServices(DiscoveryRequest req, DiscoveryListener callback);
+
+  /**
+   * Discover specific devices of particular ServiceType, receiving the events in batches.
+   *
+   * @param req          the discovery request
+   * @param options      the ssdp client options
+   * @param batchOptions the size and delay flushing the batches
+   * @param callback     the batch listener
+   * @return a handle to cancel this discovery
+   */
+  public abstract DiscoveryHandle discoverServices(DiscoveryRequest req, SsdpClientOptions options, BatchOptions batchOptions, BatchDiscoveryListener callback);
+
+  /**
+   * Look up the services present now, in a single bounded discovery.
+   * The future completes with the services found, cached ones first, as soon as one of the conditions of the
+   * lookup options is met, and at the latest after its timeout. The discovery then stops.
+   * Cancelling the future stops the discovery too. Dependent stages run on a thread of the client, unless async.
+   *
+   * @param req           the discovery request
+   * @param options       the ssdp client options
+   * @param lookupOptions the conditions completing the lookup
+   * @return the services found, completed exceptionally if the discovery failed
    */
-  public abstract void discoverServices(DiscoveryRequest req, DiscoveryListener callback);
+  public abstract CompletableFuture<List<SsdpService>> lookUpServices(DiscoveryRequest req, SsdpClientOptions options, LookupOptions lookupOptions);
 
   /**
-   * Stop discovery.
+   * Look up the services present now, in a single bounded discovery.
+   *
+   * @param req           the discovery request
+   * @param lookupOptions the conditions completing the lookup
+   * @return the services found, completed exceptionally if the discovery failed
+   */
+  public abstract CompletableFuture<List<SsdpService>> lookUpServices(DiscoveryRequest req, LookupOptions lookupOptions);
+
+  /**
+   * Stop all discoveries.
    */
   public abstract void stopDiscovery();
 
@@ -40,4 +86,13 @@ public abstract class SsdpClient {
     return new SsdpClientImpl();
   }
 
+  /**
+   * @param metrics the metrics the client events are reported to, such as a DefaultSsdpMetrics
+   * @return new instance of SsdpClient.
+   * @throws IllegalStateException if the metrics are a DefaultSsdpMetrics already used by another client
+   */
+  public static SsdpClient create(SsdpMetrics metrics) {
+    return new SsdpClientImpl(metrics);
+  }
+
 }
@@ -3,14 +3,21 @@ package io.resourcepool.ssdp.client;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * This holds the parameters of SSDP protocol (multicast ip and port).
+ * This holds the parameters of SSDP protocol (multicast ips and port).
  *
  * @author Loïc Ortola on 05/08/2017
  */
 public class SsdpParams {
     private static InetAddress ssdpMulticastIpv4Address;
+    private static InetAddress ssdpMulticastIpv6LinkLocalAddress;
+    private static InetAddress ssdpMulticastIpv6SiteLocalAddress;
+    private static List<InetAddress> ipv4Groups;
+    private static List<InetAddress> dualStackGroups;
     private static final int SSDP_MULTICAST_DEFAULT_PORT = 1900;
     public static final Charset UTF_8 = Charset.forName("UTF-8");
 
@@ -32,6 +39,73 @@ public class SsdpParams {
         return ssdpMulticastIpv4Address;
     }
 
+    /**
+     * @return the IPv6 link-local Ssdp Multicast Ip Address, FF02::C
+     */
+    public static InetAddress getSsdpMulticastIpv6LinkLocalAddress() {
+        if (ssdpMulticastIpv6LinkLocalAddress == null) {
+            synchronized (SsdpParams.class) {
+                if (ssdpMulticastIpv6LinkLocalAddress == null) {
+                    ssdpMulticastIpv6LinkLocalAddress = resolve("FF02::C");
+                }
+            }
+        }
+        return ssdpMulticastIpv6LinkLocalAddress;
+    }
+
+    /**
+     * @return the IPv6 site-local Ssdp Multicast Ip Address, FF05::C
+     */
+    public static InetAddress getSsdpMulticastIpv6SiteLocalAddress() {
+        if (ssdpMulticastIpv6SiteLocalAddress == null) {
+            synchronized (SsdpParams.class) {
+                if (ssdpMulticastIpv6SiteLocalAddress == null) {
+                    ssdpMulticastIpv6SiteLocalAddress = resolve("FF05::C");
+                }
+            }
+        }
+        return ssdpMulticastIpv6SiteLocalAddress;
+    }
+
+    /**
+     * The groups are returned as the same list on every call, so that it can be compared by identity.
+     *
+     * @param ipv6 whether to include the IPv6 groups
+     * @return the Ssdp Multicast Ip Addresses searched on, IPv4 first
+     */
+    public static List<InetAddress> getSsdpMulticastAddresses(boolean ipv6) {
+        synchronized (SsdpParams.class) {
+            if (ipv4Groups == null) {
+                ipv4Groups = Collections.singletonList(getSsdpMulticastAddress());
+                dualStackGroups = Collections.unmodifiableList(Arrays.asList(getSsdpMulticastAddress(),
+                        getSsdpMulticastIpv6LinkLocalAddress(), getSsdpMulticastIpv6SiteLocalAddress()));
+            }
+            return ipv6 ? dualStackGroups : ipv4Groups;
+        }
+    }
+
+    /**
+     * @param address an Ssdp Multicast Ip Address
+     * @return the address as written in the HOST header: IPv6 addresses in brackets, in their usual short form
+     */
+    public static String getSsdpMulticastHost(InetAddress address) {
+        if (address.equals(getSsdpMulticastIpv6LinkLocalAddress())) {
+            return "[FF02::C]";
+        }
+        if (address.equals(getSsdpMulticastIpv6SiteLocalAddress())) {
+            return "[FF05::C]";
+        }
+        return address.getHostAddress();
+    }
+
+    private static InetAddress resolve(String address) {
+        try {
+            return InetAddress.getByName(address);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * @return the Ssdp Port
      */
@@ -0,0 +1,129 @@
+package io.resourcepool.ssdp.client.advertiser;
+
+import io.resourcepool.ssdp.client.SsdpParams;
+import io.resourcepool.ssdp.model.AdvertisedService;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * An advertised service along with its datagrams, encoded once when the service is advertised:
+ * its ssdp:alive and ssdp:byebye NOTIFY and its search responses. Besides the response to a search for its type,
+ * a service whose USN starts with uuid: has the responses of its device to a search for that uuid: and to a
+ * search for upnp:rootdevice.
+ */
+final class Advertisement {
+
+  static final String ROOT_DEVICE = "upnp:rootdevice";
+  private static final String UUID_PREFIX = "uuid:";
+
+  private final AdvertisedService service;
+  private final String device;
+  private final byte[] alive;
+  private final byte[] byebye;
+  private final byte[] response;
+  private final byte[] deviceResponse;
+  private final byte[] rootDeviceResponse;
+
+  /**
+   * @param service the advertised service
+   */
+  Advertisement(AdvertisedService service) {
+    this.service = service;
+    this.device = deviceOf(service.getSerialNumber());
+    String host = "HOST: " + SsdpParams.getSsdpMulticastAddress().getHostAddress() + ":" + SsdpParams.getSsdpMulticastDefaultPort() + "\r\n";
+    String cacheControl = "CACHE-CONTROL: max-age=" + service.getMaxAge() + "\r\n";
+    String ids = ids(service);
+    this.alive = ("NOTIFY * HTTP/1.1\r\n"
+        + host
+        + cacheControl
+        + "LOCATION: " + service.getLocation() + "\r\n"
+        + "NT: " + service.getServiceType() + "\r\n"
+        + "NTS: ssdp:alive\r\n"
+        + "SERVER: " + service.getServer() + "\r\n"
+        + "USN: " + service.getSerialNumber() + "\r\n"
+        + ids
+        + "\r\n").getBytes(UTF_8);
+    this.byebye = ("NOTIFY * HTTP/1.1\r\n"
+        + host
+        + "NT: " + service.getServiceType() + "\r\n"
+        + "NTS: ssdp:byebye\r\n"
+        + "USN: " + service.getSerialNumber() + "\r\n"
+        + ids
+        + "\r\n").getBytes(UTF_8);
+    this.response = response(service, service.getServiceType(), service.getSerialNumber(), cacheControl, ids);
+    this.deviceResponse = device != null ? response(service, device, device, cacheControl, ids) : null;
+    this.rootDeviceResponse = device != null ? response(service, ROOT_DEVICE, device + "::" + ROOT_DEVICE, cacheControl, ids) : null;
+  }
+
+  /**
+   * @param serialNumber the USN of a service
+   * @return the uuid: part of the USN, which names the device of the service, or null if it does not start with uuid:
+   */
+  private static String deviceOf(String serialNumber) {
+    if (!serialNumber.startsWith(UUID_PREFIX)) {
+      return null;
+    }
+    int separator = serialNumber.indexOf("::");
+    return separator < 0 ? serialNumber : serialNumber.substring(0, separator);
+  }
+
+  private static byte[] response(AdvertisedService service, String searchTarget, String serialNumber, String cacheControl, String ids) {
+    return ("HTTP/1.1 200 OK\r\n"
+        + cacheControl
+        + "EXT:\r\n"
+        + "LOCATION: " + service.getLocation() + "\r\n"
+        + "SERVER: " + service.getServer() + "\r\n"
+        + "ST: " + searchTarget + "\r\n"
+        + "USN: " + serialNumber + "\r\n"
+        + ids
+        + "\r\n").getBytes(UTF_8);
+  }
+
+  private static String ids(AdvertisedService service) {
+    StringBuilder sb = new StringBuilder();
+    if (service.getBootId() != null) {
+      sb.append("BOOTID.UPNP.ORG: ").append(service.getBootId()).append("\r\n");
+    }
+    if (service.getConfigId() != null) {
+      sb.append("CONFIGID.UPNP.ORG: ").append(service.getConfigId()).append("\r\n");
+    }
+    return sb.toString();
+  }
+
+  AdvertisedService getService() {
+    return service;
+  }
+
+  byte[] getAlive() {
+    return alive;
+  }
+
+  byte[] getByebye() {
+    return byebye;
+  }
+
+  /**
+   * @return the uuid: part of the USN, or null if the USN does not start with uuid:
+   */
+  String getDevice() {
+    return device;
+  }
+
+  byte[] getResponse() {
+    return response;
+  }
+
+  /**
+   * @param searchTarget the ST of a search this advertisement matched
+   * @return the response to the search, whose ST echoes it
+   */
+  byte[] getResponse(String searchTarget) {
+    if (device != null && device.equals(searchTarget)) {
+      return deviceResponse;
+    }
+    if (ROOT_DEVICE.equals(searchTarget) && rootDeviceResponse != null) {
+      return rootDeviceResponse;
+    }
+    return response;
+  }
+}
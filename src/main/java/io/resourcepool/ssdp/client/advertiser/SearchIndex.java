@@ -0,0 +1,127 @@
+package io.resourcepool.ssdp.client.advertiser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The advertisements by USN, indexed by service type and by device so that a search only visits the advertisements
+ * it matches. A search for ssdp:all matches all of them, and a search for the uuid: of a device one advertisement
+ * of the device. A search for upnp:rootdevice matches the advertisements of that type, and one advertisement of each
+ * other device: the advertiser knows nothing of embedded devices, so each device it advertises is a root one.
+ * Not thread-safe: the advertiser guards it.
+ */
+final class SearchIndex {
+
+  static final String SSDP_ALL = "ssdp:all";
+
+  private final Map<String, Advertisement> bySerialNumber = new LinkedHashMap<String, Advertisement>();
+  private final Map<String, Map<String, Advertisement>> byServiceType = new HashMap<String, Map<String, Advertisement>>();
+  // By the uuid: part of the USN
+  private final Map<String, Map<String, Advertisement>> byDevice = new LinkedHashMap<String, Map<String, Advertisement>>();
+
+  /**
+   * Add an advertisement, replacing the one with the same USN.
+   *
+   * @param advertisement the advertisement
+   * @return the replaced advertisement, or null if there was none
+   */
+  Advertisement put(Advertisement advertisement) {
+    String usn = advertisement.getService().getSerialNumber();
+    Advertisement previous = remove(usn);
+    bySerialNumber.put(usn, advertisement);
+    add(byServiceType, advertisement.getService().getServiceType(), usn, advertisement);
+    if (advertisement.getDevice() != null) {
+      add(byDevice, advertisement.getDevice(), usn, advertisement);
+    }
+    return previous;
+  }
+
+  private static void add(Map<String, Map<String, Advertisement>> index, String key, String usn, Advertisement advertisement) {
+    Map<String, Advertisement> same = index.get(key);
+    if (same == null) {
+      same = new LinkedHashMap<String, Advertisement>();
+      index.put(key, same);
+    }
+    same.put(usn, advertisement);
+  }
+
+  /**
+   * @param serialNumber the USN
+   * @return the removed advertisement, or null if there was none
+   */
+  Advertisement remove(String serialNumber) {
+    Advertisement removed = bySerialNumber.remove(serialNumber);
+    if (removed != null) {
+      remove(byServiceType, removed.getService().getServiceType(), serialNumber);
+      if (removed.getDevice() != null) {
+        remove(byDevice, removed.getDevice(), serialNumber);
+      }
+    }
+    return removed;
+  }
+
+  private static void remove(Map<String, Map<String, Advertisement>> index, String key, String usn) {
+    Map<String, Advertisement> same = index.get(key);
+    same.remove(usn);
+    if (same.isEmpty()) {
+      index.remove(key);
+    }
+  }
+
+  /**
+   * @param serialNumber the USN
+   * @return the current advertisement of the USN, or null if there is none
+   */
+  Advertisement get(String serialNumber) {
+    return bySerialNumber.get(serialNumber);
+  }
+
+  /**
+   * @param searchTarget the ST of a search
+   * @return the advertisements the search matches, in a new list, to answer with {@link Advertisement#getResponse(String)}
+   */
+  List<Advertisement> match(String searchTarget) {
+    if (SSDP_ALL.equals(searchTarget)) {
+      return new ArrayList<Advertisement>(bySerialNumber.values());
+    }
+    Map<String, Advertisement> sameDevice = byDevice.get(searchTarget);
+    if (sameDevice != null) {
+      // All advertisements of the device give the same answer
+      return Collections.singletonList(sameDevice.values().iterator().next());
+    }
+    Map<String, Advertisement> sameType = byServiceType.get(searchTarget);
+    if (!Advertisement.ROOT_DEVICE.equals(searchTarget)) {
+      return sameType != null ? new ArrayList<Advertisement>(sameType.values()) : Collections.<Advertisement>emptyList();
+    }
+    List<Advertisement> matching = sameType != null ? new ArrayList<Advertisement>(sameType.values()) : new ArrayList<Advertisement>();
+    for (Map.Entry<String, Map<String, Advertisement>> device : byDevice.entrySet()) {
+      // Devices advertised as upnp:rootdevice already answer with that advertisement
+      if (sameType == null || !sameType.containsKey(device.getKey() + "::" + Advertisement.ROOT_DEVICE)) {
+        matching.add(device.getValue().values().iterator().next());
+      }
+    }
+    return matching;
+  }
+
+  /**
+   * @return all advertisements
+   */
+  Collection<Advertisement> all() {
+    return bySerialNumber.values();
+  }
+
+  int size() {
+    return bySerialNumber.size();
+  }
+
+  void clear() {
+    bySerialNumber.clear();
+    byServiceType.clear();
+    byDevice.clear();
+  }
+}
@@ -0,0 +1,93 @@
+package io.resourcepool.ssdp.client.advertiser;
+
+import io.resourcepool.ssdp.client.SsdpParams;
+
+import java.util.Locale;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * An M-SEARCH received by the advertiser: its ST and MX.
+ */
+final class SearchRequest {
+
+  // Devices must treat a larger MX as 5, per UPnP Device Architecture 1.1
+  static final int MAX_WAIT_SECONDS = 5;
+  private static final String MULTICAST_HOST = SsdpParams.getSsdpMulticastAddress().getHostAddress();
+
+  private final String searchTarget;
+  private final int maxWaitSeconds;
+
+  private SearchRequest(String searchTarget, int maxWaitSeconds) {
+    this.searchTarget = searchTarget;
+    this.maxWaitSeconds = maxWaitSeconds;
+  }
+
+  /**
+   * Parse a datagram as an M-SEARCH.
+   *
+   * @param data   the datagram buffer
+   * @param offset the offset of the datagram
+   * @param length the length of the datagram
+   * @return the search, or null if the datagram is not a valid ssdp:discover M-SEARCH, such as one whose HOST is the
+   * multicast group without MX
+   */
+  static SearchRequest parse(byte[] data, int offset, int length) {
+    String[] lines = new String(data, offset, length, UTF_8).split("\r\n");
+    if (lines.length == 0 || !"M-SEARCH * HTTP/1.1".equals(lines[0].trim())) {
+      return null;
+    }
+    String host = null;
+    String man = null;
+    String st = null;
+    String mx = null;
+    for (int i = 1; i < lines.length; i++) {
+      int colon = lines[i].indexOf(':');
+      if (colon <= 0) {
+        continue;
+      }
+      String name = lines[i].substring(0, colon).trim().toUpperCase(Locale.ROOT);
+      String value = lines[i].substring(colon + 1).trim();
+      if ("HOST".equals(name)) {
+        host = value;
+      } else if ("MAN".equals(name)) {
+        man = value;
+      } else if ("ST".equals(name)) {
+        st = value;
+      } else if ("MX".equals(name)) {
+        mx = value;
+      }
+    }
+    if (!"\"ssdp:discover\"".equals(man) || st == null || st.isEmpty()) {
+      return null;
+    }
+    int maxWait = 0;
+    if (mx == null) {
+      // Only unicast searches go without MX, per UPnP Device Architecture 1.1, and are answered at once
+      if (host != null && host.startsWith(MULTICAST_HOST)) {
+        return null;
+      }
+    } else {
+      try {
+        maxWait = Math.min(Integer.parseInt(mx), MAX_WAIT_SECONDS);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+      if (maxWait < 0) {
+        return null;
+      }
+    }
+    return new SearchRequest(st, maxWait);
+  }
+
+  String getSearchTarget() {
+    return searchTarget;
+  }
+
+  /**
+   * @return the MX in seconds, capped to 5, or 0 for a unicast search which has none
+   */
+  int getMaxWaitSeconds() {
+    return maxWaitSeconds;
+  }
+}
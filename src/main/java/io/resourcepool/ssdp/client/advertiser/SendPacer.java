@@ -0,0 +1,44 @@
+package io.resourcepool.ssdp.client.advertiser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket spacing the datagrams of the advertiser, so that thousands of advertised services
+ * do not flood the segment. A burst of up to a tenth of a second of datagrams is let through at once,
+ * then datagrams are spaced evenly at the maximum rate.
+ */
+final class SendPacer {
+
+  private final long intervalNanos;
+  private final long burstNanos;
+  // The time at which the bucket would be full again, as in the generic cell rate algorithm
+  private long theoreticalArrival;
+  private boolean started;
+
+  /**
+   * @param packetsPerSecond the maximum rate
+   */
+  SendPacer(int packetsPerSecond) {
+    this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / packetsPerSecond;
+    this.burstNanos = Math.max(0, packetsPerSecond / 10 - 1) * intervalNanos;
+  }
+
+  /**
+   * Take a token to send a datagram now, if any is left.
+   *
+   * @param nowNanos the current System.nanoTime()
+   * @return 0 if the datagram can be sent now, or the delay in nanoseconds before it can be
+   */
+  long tryAcquire(long nowNanos) {
+    if (!started) {
+      theoreticalArrival = nowNanos;
+      started = true;
+    }
+    long wait = theoreticalArrival - burstNanos - nowNanos;
+    if (wait > 0) {
+      return wait;
+    }
+    theoreticalArrival = Math.max(theoreticalArrival, nowNanos) + intervalNanos;
+    return 0;
+  }
+}
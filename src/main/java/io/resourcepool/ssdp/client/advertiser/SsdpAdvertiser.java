@@ -0,0 +1,579 @@
+package io.resourcepool.ssdp.client.advertiser;
+
+import io.resourcepool.ssdp.client.SsdpParams;
+import io.resourcepool.ssdp.client.util.Utils;
+import io.resourcepool.ssdp.model.AdvertisedService;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Advertises services on the SSDP multicast group, the device side of SsdpClient, for hosts proxying many devices.
+ * <p>
+ * Each advertised service is announced with ssdp:alive when advertised, then again at a random interval below half
+ * of its max-age, and with ssdp:byebye when withdrawn or when the advertiser closes. Incoming M-SEARCH requests are
+ * matched against an index of the services by type, and answered with responses encoded once per service, each
+ * after a random delay within the MX of the search. All datagrams go through a single paced queue, so that the
+ * announcements and responses of thousands of services are spread over time instead of flooding the segment.
+ * Searches for upnp:rootdevice or for the uuid: of a device are answered for the devices named by the USNs.
+ * <p>
+ * A single thread runs a Selector loop which receives the searches and sends the due datagrams.
+ */
+public class SsdpAdvertiser {
+
+  private static final int DEFAULT_MAX_SEND_RATE = 200;
+  private static final int DEFAULT_MAX_PENDING_RESPONSES = 16384;
+  // Upper bound of the random delay of a first announcement, as recommended by UPnP Device Architecture
+  private static final long INITIAL_ANNOUNCEMENT_DELAY = 100;
+  private static final int MAX_DATAGRAMS_PER_WAKEUP = 64;
+
+  private final int bindingPort;
+  private final int maxPendingResponses;
+  private final ExecutorService loopExecutor;
+  private final SendPacer pacer;
+  private final InetSocketAddress group = new InetSocketAddress(SsdpParams.getSsdpMulticastAddress(), SsdpParams.getSsdpMulticastDefaultPort());
+  // Guarded by this
+  private final SearchIndex index = new SearchIndex();
+  private final PriorityQueue<Timed> timers = new PriorityQueue<Timed>();
+  private final ArrayDeque<Outgoing> outgoing = new ArrayDeque<Outgoing>();
+  private final List<NetworkInterface> interfaces = new ArrayList<NetworkInterface>();
+  private long timerSequence;
+  private int pendingResponses;
+  private boolean started;
+  private boolean closed;
+
+  private final List<MembershipKey> memberships = new ArrayList<MembershipKey>();
+  private final ByteBuffer receiveBuffer = ByteBuffer.allocate(8192);
+  private DatagramChannel channel;
+  private Selector selector;
+  private NetworkInterface currentInterface;
+
+  private final LongAdder searchesReceived = new LongAdder();
+  private final LongAdder announcementsSent = new LongAdder();
+  private final LongAdder responsesSent = new LongAdder();
+  private final LongAdder responsesDropped = new LongAdder();
+  private final LongAdder sendFailures = new LongAdder();
+
+  private SsdpAdvertiser(Builder builder) {
+    this.bindingPort = builder.bindingPort;
+    this.maxPendingResponses = builder.maxPendingResponses;
+    this.loopExecutor = Executors.newSingleThreadExecutor(builder.threadFactory);
+    this.pacer = new SendPacer(builder.maxSendRate);
+  }
+
+  /**
+   * Bind the socket, join the SSDP multicast group and start announcing and answering.
+   * Interfaces which cannot join the group are skipped.
+   *
+   * @throws IOException if the socket could not be opened or no interface could join the group
+   */
+  public void start() throws IOException {
+    synchronized (this) {
+      if (started || closed) {
+        throw new IllegalStateException("Advertiser already started or closed");
+      }
+      started = true;
+    }
+    try {
+      channel = DatagramChannel.open(StandardProtocolFamily.INET);
+      channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      channel.bind(new InetSocketAddress(bindingPort));
+      channel.configureBlocking(false);
+      joinGroupOnAllInterfaces();
+      selector = Selector.open();
+      channel.register(selector, SelectionKey.OP_READ);
+    } catch (IOException e) {
+      release();
+      synchronized (this) {
+        closed = true;
+      }
+      loopExecutor.shutdown();
+      throw e;
+    }
+    loopExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        loop();
+      }
+    });
+    loopExecutor.shutdown();
+  }
+
+  private void joinGroupOnAllInterfaces() throws IOException {
+    List<NetworkInterface> candidates = Utils.getMulticastInterfaces();
+    if (candidates.isEmpty()) {
+      NetworkInterface defaultInterface = Utils.getDefaultMulticastInterface();
+      if (defaultInterface != null) {
+        candidates.add(defaultInterface);
+      }
+    }
+    List<NetworkInterface> joined = new ArrayList<NetworkInterface>();
+    for (NetworkInterface iface : candidates) {
+      try {
+        memberships.add(channel.join(SsdpParams.getSsdpMulticastAddress(), iface));
+        if (!joined.contains(iface)) {
+          joined.add(iface);
+        }
+      } catch (IOException e) {
+        // Announced on the other interfaces
+      }
+    }
+    if (joined.isEmpty()) {
+      throw new IOException("No interface was joined");
+    }
+    // Services advertised before the start are announced once the loop runs, on the interfaces joined
+    synchronized (this) {
+      interfaces.addAll(joined);
+    }
+  }
+
+  /**
+   * Advertise a service, or replace the advertisement of the same USN. It is announced right away and answered
+   * to searches from now on. Services may be advertised before the advertiser starts.
+   *
+   * @param service the service
+   */
+  public void advertise(AdvertisedService service) {
+    Advertisement advertisement = new Advertisement(service);
+    synchronized (this) {
+      if (closed) {
+        throw new IllegalStateException("Advertiser closed");
+      }
+      index.put(advertisement);
+      long now = System.nanoTime();
+      schedule(new Timed(now + TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextLong(INITIAL_ANNOUNCEMENT_DELAY)),
+          timerSequence++, advertisement, null, null));
+    }
+    wakeup();
+  }
+
+  /**
+   * Stop advertising a service and announce it with ssdp:byebye.
+   *
+   * @param serialNumber the USN of the service
+   * @return true if the service was advertised
+   */
+  public boolean withdraw(String serialNumber) {
+    synchronized (this) {
+      Advertisement removed = closed ? null : index.remove(serialNumber);
+      if (removed == null) {
+        return false;
+      }
+      announce(removed.getByebye(), true);
+    }
+    wakeup();
+    return true;
+  }
+
+  /**
+   * @return the number of services advertised
+   */
+  public synchronized int getAdvertisedCount() {
+    return index.size();
+  }
+
+  public long getSearchesReceived() {
+    return searchesReceived.sum();
+  }
+
+  /**
+   * @return the number of NOTIFY datagrams sent, one per service and interface
+   */
+  public long getAnnouncementsSent() {
+    return announcementsSent.sum();
+  }
+
+  public long getResponsesSent() {
+    return responsesSent.sum();
+  }
+
+  /**
+   * @return the number of responses not sent because too many were already waiting
+   */
+  public long getResponsesDropped() {
+    return responsesDropped.sum();
+  }
+
+  /**
+   * @return the number of datagrams which could not be sent, including those dropped by a full socket buffer
+   */
+  public long getSendFailures() {
+    return sendFailures.sum();
+  }
+
+  /**
+   * Announce all services with ssdp:byebye, then release the socket.
+   * This blocks until the byebye announcements have been sent, at the pace of the advertiser.
+   */
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      for (Advertisement advertisement : index.all()) {
+        announce(advertisement.getByebye(), true);
+      }
+      index.clear();
+      timers.clear();
+      pendingResponses = 0;
+      for (Outgoing pending : outgoing) {
+        // Pending announcements may be alive ones: only the byebye ones go out
+        pending.cancelled = !pending.byebye;
+      }
+      if (!started) {
+        outgoing.clear();
+        loopExecutor.shutdown();
+        return;
+      }
+    }
+    wakeup();
+    try {
+      loopExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void wakeup() {
+    Selector current = selector;
+    if (current != null) {
+      current.wakeup();
+    }
+  }
+
+  // Guarded by this
+  private void schedule(Timed timed) {
+    timers.add(timed);
+  }
+
+  // Guarded by this
+  private void announce(byte[] datagram, boolean byebye) {
+    for (NetworkInterface iface : interfaces) {
+      Outgoing announcement = new Outgoing(datagram, group, iface);
+      announcement.byebye = byebye;
+      outgoing.add(announcement);
+    }
+  }
+
+  /**
+   * The loop: send the due datagrams at the pace allowed, then receive the searches until the next send is due,
+   * and so on until closed and the last byebye announcements sent.
+   */
+  private void loop() {
+    try {
+      while (true) {
+        long waitNanos = sendDue();
+        if (waitNanos < 0) {
+          break;
+        }
+        int ready = waitNanos == Long.MAX_VALUE
+            ? selector.select()
+            : selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+        if (ready > 0) {
+          selector.selectedKeys().clear();
+          receiveSearches();
+        }
+      }
+    } catch (IOException e) {
+      // The socket cannot receive anymore: nothing is advertised from now on
+      synchronized (this) {
+        closed = true;
+      }
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * Queue the due responses and announcements, then send the queued datagrams as long as the pacer allows.
+   *
+   * @return the delay in nanoseconds until the next send, Long.MAX_VALUE if none is planned, or -1 once closed
+   * and all byebye announcements sent
+   */
+  private long sendDue() {
+    while (true) {
+      Outgoing next;
+      long now = System.nanoTime();
+      synchronized (this) {
+        Timed timed;
+        while ((timed = timers.peek()) != null && timed.deadline - now <= 0) {
+          timers.poll();
+          fire(timed, now);
+        }
+        while ((next = outgoing.peek()) != null && next.cancelled) {
+          outgoing.poll();
+        }
+        if (next == null) {
+          if (closed) {
+            return -1;
+          }
+          return timed != null ? timed.deadline - now : Long.MAX_VALUE;
+        }
+        long wait = pacer.tryAcquire(now);
+        if (wait > 0) {
+          return timed != null ? Math.min(wait, timed.deadline - now) : wait;
+        }
+        outgoing.poll();
+        if (next.iface == null) {
+          pendingResponses--;
+        }
+      }
+      send(next);
+    }
+  }
+
+  // Guarded by this
+  private void fire(Timed timed, long now) {
+    Advertisement advertisement = timed.advertisement;
+    // Withdrawn or replaced services are neither announced nor answered anymore
+    if (index.get(advertisement.getService().getSerialNumber()) != advertisement) {
+      if (timed.target != null) {
+        pendingResponses--;
+      }
+      return;
+    }
+    if (timed.target != null) {
+      // Still pending until sent
+      outgoing.add(new Outgoing(advertisement.getResponse(timed.searchTarget), timed.target, null));
+      return;
+    }
+    announce(advertisement.getAlive(), false);
+    // Announced again at a random interval below half of the max-age
+    long maxAgeMillis = TimeUnit.SECONDS.toMillis(advertisement.getService().getMaxAge());
+    long interval = ThreadLocalRandom.current().nextLong(maxAgeMillis / 3, maxAgeMillis / 2);
+    schedule(new Timed(now + TimeUnit.MILLISECONDS.toNanos(interval), timerSequence++, advertisement, null, null));
+  }
+
+  private void send(Outgoing datagram) {
+    try {
+      if (datagram.iface != null && !datagram.iface.equals(currentInterface)) {
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, datagram.iface);
+        currentInterface = datagram.iface;
+      }
+      if (channel.send(ByteBuffer.wrap(datagram.data), datagram.target) == 0) {
+        // The non-blocking channel drops the datagram when the socket buffer is full
+        sendFailures.increment();
+        return;
+      }
+      if (datagram.iface != null) {
+        announcementsSent.increment();
+      } else {
+        responsesSent.increment();
+      }
+    } catch (IOException e) {
+      sendFailures.increment();
+    }
+  }
+
+  /**
+   * Read the pending searches and plan the responses of the services they match, each at a random time within
+   * the MX of its search.
+   *
+   * @throws IOException from the DatagramChannel
+   */
+  private void receiveSearches() throws IOException {
+    for (int i = 0; i < MAX_DATAGRAMS_PER_WAKEUP; i++) {
+      receiveBuffer.clear();
+      SocketAddress origin = channel.receive(receiveBuffer);
+      if (origin == null) {
+        return;
+      }
+      SearchRequest search = SearchRequest.parse(receiveBuffer.array(), 0, receiveBuffer.position());
+      if (search == null) {
+        // Announcements of other devices and other traffic on the group
+        continue;
+      }
+      searchesReceived.increment();
+      long now = System.nanoTime();
+      long maxWaitNanos = TimeUnit.SECONDS.toNanos(search.getMaxWaitSeconds());
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        for (Advertisement advertisement : index.match(search.getSearchTarget())) {
+          if (pendingResponses >= maxPendingResponses) {
+            responsesDropped.increment();
+            continue;
+          }
+          pendingResponses++;
+          long delay = maxWaitNanos > 0 ? ThreadLocalRandom.current().nextLong(maxWaitNanos) : 0;
+          schedule(new Timed(now + delay, timerSequence++, advertisement, (InetSocketAddress) origin, search.getSearchTarget()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Leave the multicast group and close the channel and selector.
+   */
+  private void release() {
+    for (MembershipKey membership : memberships) {
+      membership.drop();
+    }
+    memberships.clear();
+    try {
+      if (selector != null) {
+        selector.close();
+      }
+    } catch (IOException e) {
+      // Fail silently
+    }
+    try {
+      if (channel != null) {
+        channel.close();
+      }
+    } catch (IOException e) {
+      // Fail silently
+    }
+  }
+
+  /**
+   * A datagram waiting for the pacer: an announcement on one interface, or a response.
+   */
+  private static final class Outgoing {
+    private final byte[] data;
+    private final InetSocketAddress target;
+    private final NetworkInterface iface;
+    private boolean byebye;
+    private boolean cancelled;
+
+    private Outgoing(byte[] data, InetSocketAddress target, NetworkInterface iface) {
+      this.data = data;
+      this.target = target;
+      this.iface = iface;
+    }
+  }
+
+  /**
+   * A response or an announcement to queue once its deadline is reached.
+   * Timers sharing a deadline fire in the order they were planned.
+   */
+  private static final class Timed implements Comparable<Timed> {
+    private final long deadline;
+    private final long sequence;
+    private final Advertisement advertisement;
+    private final InetSocketAddress target;
+    private final String searchTarget;
+
+    /**
+     * @param target       the origin of the search to answer, or null to announce the advertisement
+     * @param searchTarget the ST of the search to answer, or null to announce the advertisement
+     */
+    private Timed(long deadline, long sequence, Advertisement advertisement, InetSocketAddress target, String searchTarget) {
+      this.deadline = deadline;
+      this.sequence = sequence;
+      this.advertisement = advertisement;
+      this.target = target;
+      this.searchTarget = searchTarget;
+    }
+
+    @Override
+    public int compareTo(Timed other) {
+      long diff = deadline - other.deadline;
+      if (diff == 0) {
+        diff = sequence - other.sequence;
+      }
+      return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+    }
+  }
+
+  // BEGIN GENERATED CODE
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static final class Builder {
+    private int bindingPort = SsdpParams.getSsdpMulticastDefaultPort();
+    private int maxSendRate = DEFAULT_MAX_SEND_RATE;
+    private int maxPendingResponses = DEFAULT_MAX_PENDING_RESPONSES;
+    private ThreadFactory threadFactory = Executors.defaultThreadFactory();
+
+    private Builder() {
+    }
+
+    /**
+     * Port the searches are received on.
+     * Defaults to 1900, the SSDP port searched by control points
+     * @param bindingPort the port
+     * @return the current builder
+     */
+    public Builder bindingPort(int bindingPort) {
+      if (bindingPort < 0 || bindingPort > 65535) {
+        throw new IllegalArgumentException("Binding port must be between 0 and 65535");
+      }
+      this.bindingPort = bindingPort;
+      return this;
+    }
+
+    /**
+     * Datagrams sent per second at most, announcements and responses together. A burst of a tenth of a second
+     * of datagrams goes out at once, the next ones are spaced evenly.
+     * Defaults to 200
+     * @param maxSendRate the number of datagrams per second
+     * @return the current builder
+     */
+    public Builder maxSendRate(int maxSendRate) {
+      if (maxSendRate < 1) {
+        throw new IllegalArgumentException("Max send rate must be at least one datagram per second");
+      }
+      this.maxSendRate = maxSendRate;
+      return this;
+    }
+
+    /**
+     * Responses waiting to be sent at most: responses to searches beyond it are dropped, so that a storm of
+     * ssdp:all searches does not grow the queue without bounds.
+     * Defaults to 16 384
+     * @param maxPendingResponses the number of responses
+     * @return the current builder
+     */
+    public Builder maxPendingResponses(int maxPendingResponses) {
+      if (maxPendingResponses < 1) {
+        throw new IllegalArgumentException("Max pending responses must be at least one response");
+      }
+      this.maxPendingResponses = maxPendingResponses;
+      return this;
+    }
+
+    /**
+     * Factory of the advertiser thread.
+     * Defaults to Executors.defaultThreadFactory()
+     * @param threadFactory the thread factory
+     * @return the current builder
+     */
+    public Builder threadFactory(ThreadFactory threadFactory) {
+      if (threadFactory == null) {
+        throw new IllegalArgumentException("Thread factory must not be null");
+      }
+      this.threadFactory = threadFactory;
+      return this;
+    }
+
+    public SsdpAdvertiser build() {
+      return new SsdpAdvertiser(this);
+    }
+  }
+
+  // END GENERATED CODE
+}
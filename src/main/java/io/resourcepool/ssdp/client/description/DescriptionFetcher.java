@@ -0,0 +1,439 @@
+package io.resourcepool.ssdp.client.description;
+
+import io.resourcepool.ssdp.client.response.SsdpHeader;
+import io.resourcepool.ssdp.model.DescriptionListener;
+import io.resourcepool.ssdp.model.DeviceDescription;
+import io.resourcepool.ssdp.model.DiscoveryListener;
+import io.resourcepool.ssdp.model.SsdpService;
+import io.resourcepool.ssdp.model.SsdpServiceAnnouncement;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Fetches the device descriptions found at the LOCATION of discovered services, on behalf of all the consumers
+ * of a process, so that embedded devices are not flooded with requests.
+ * <p>
+ * Fetches run on a bounded number of threads, with a bounded number of fetches per device, over keep-alive
+ * connections. Descriptions are cached by LOCATION, CONFIGID.UPNP.ORG and BOOTID.UPNP.ORG: a device which reboots
+ * or changes its configuration is described again. Concurrent requests for the same description share one fetch,
+ * and failed fetches are not cached.
+ */
+public class DescriptionFetcher {
+
+  private static final int DEFAULT_MAX_CONCURRENT_FETCHES = 4;
+  private static final int DEFAULT_MAX_FETCHES_PER_HOST = 1;
+  private static final int DEFAULT_CACHE_SIZE = 256;
+  private static final int DEFAULT_CONNECT_TIMEOUT = 3000;
+  private static final int DEFAULT_READ_TIMEOUT = 5000;
+  private static final int DEFAULT_MAX_DESCRIPTION_SIZE = 256 * 1024;
+
+  private final ExecutorService executor;
+  private final int maxFetchesPerHost;
+  private final int connectTimeout;
+  private final int readTimeout;
+  private final int maxDescriptionSize;
+  // Access-ordered and bounded, pending fetches included so that concurrent requests share them
+  private final LinkedHashMap<String, CompletableFuture<DeviceDescription>> cache;
+  private final Map<String, Host> hosts = new HashMap<String, Host>();
+  private final LongAdder fetches = new LongAdder();
+  private final LongAdder cacheHits = new LongAdder();
+  private boolean closed;
+
+  private DescriptionFetcher(Builder builder) {
+    this.executor = Executors.newFixedThreadPool(builder.maxConcurrentFetches, builder.threadFactory);
+    this.maxFetchesPerHost = builder.maxFetchesPerHost;
+    this.connectTimeout = builder.connectTimeout;
+    this.readTimeout = builder.readTimeout;
+    this.maxDescriptionSize = builder.maxDescriptionSize;
+    final int cacheSize = builder.cacheSize;
+    this.cache = new LinkedHashMap<String, CompletableFuture<DeviceDescription>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<DeviceDescription>> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * Fetch the description of the device of a service, or get it from the cache.
+   *
+   * @param service the service
+   * @return the description, completed exceptionally with an IOException if it could not be fetched,
+   * or with the unexpected exception which interrupted the fetch
+   */
+  public CompletableFuture<DeviceDescription> fetch(SsdpService service) {
+    String location = service.getLocation();
+    URL url;
+    try {
+      if (location == null) {
+        throw new IOException("No LOCATION for " + service.getSerialNumber());
+      }
+      url = URI.create(location).toURL();
+      // A device must not make us read local files
+      if (!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol())) {
+        throw new IOException("Unsupported LOCATION " + location);
+      }
+    } catch (IOException e) {
+      return failed(e);
+    } catch (IllegalArgumentException e) {
+      // Not a URI, or a relative one
+      return failed(new IOException("Invalid LOCATION " + location, e));
+    }
+    String key = location + '\n' + header(service, SsdpHeader.CONFIGID) + '\n' + header(service, SsdpHeader.BOOTID);
+    CompletableFuture<DeviceDescription> future;
+    synchronized (this) {
+      if (closed) {
+        return failed(new IOException("Description fetcher closed"));
+      }
+      future = cache.get(key);
+      if (future != null) {
+        cacheHits.increment();
+        return future;
+      }
+      future = new CompletableFuture<DeviceDescription>();
+      cache.put(key, future);
+      submit(new Fetch(key, url, future));
+    }
+    return future;
+  }
+
+  /**
+   * @param listener the listener of the described services
+   * @return a discovery listener fetching the description of each new service before handing it over
+   */
+  public DiscoveryListener describing(final DescriptionListener listener) {
+    return new DiscoveryListener() {
+      @Override
+      public void onServiceDiscovered(final SsdpService service) {
+        fetch(service).whenComplete(new BiConsumer<DeviceDescription, Throwable>() {
+          @Override
+          public void accept(DeviceDescription description, Throwable ex) {
+            if (ex == null) {
+              listener.onServiceDescribed(service, description);
+            } else {
+              listener.onDescriptionFailed(service, unwrap(ex));
+            }
+          }
+        });
+      }
+
+      @Override
+      public void onServiceAnnouncement(SsdpServiceAnnouncement announcement) {
+        listener.onServiceAnnouncement(announcement);
+      }
+
+      @Override
+      public void onServiceExpired(SsdpService service) {
+        listener.onServiceExpired(service);
+      }
+
+      @Override
+      public void onFailed(Exception ex) {
+        listener.onFailed(ex);
+      }
+    };
+  }
+
+  /**
+   * @return the number of descriptions fetched over HTTP
+   */
+  public long getFetches() {
+    return fetches.sum();
+  }
+
+  /**
+   * @return the number of descriptions served by the cache, or by a fetch already in progress
+   */
+  public long getCacheHits() {
+    return cacheHits.sum();
+  }
+
+  /**
+   * Stop fetching. Fetches which have not started complete exceptionally, those in progress run to their end.
+   */
+  public void close() {
+    List<Fetch> waiting = new ArrayList<Fetch>();
+    synchronized (this) {
+      closed = true;
+      for (Host host : hosts.values()) {
+        waiting.addAll(host.waiting);
+      }
+      hosts.clear();
+      cache.clear();
+    }
+    // Fetches queued for a fetch thread never run either
+    for (Runnable queued : executor.shutdownNow()) {
+      waiting.add((Fetch) queued);
+    }
+    for (Fetch fetch : waiting) {
+      fetch.future.completeExceptionally(new IOException("Description fetcher closed"));
+    }
+  }
+
+  private static String header(SsdpService service, SsdpHeader header) {
+    String value = service.getOriginalResponse().getHeader(header);
+    return value != null ? value : "";
+  }
+
+  private static CompletableFuture<DeviceDescription> failed(IOException e) {
+    CompletableFuture<DeviceDescription> future = new CompletableFuture<DeviceDescription>();
+    future.completeExceptionally(e);
+    return future;
+  }
+
+  private static Exception unwrap(Throwable ex) {
+    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    return cause instanceof Exception ? (Exception) cause : new IOException(cause);
+  }
+
+  /**
+   * Run a fetch now if its device has fewer fetches in progress than allowed, or queue it. Called under the lock.
+   */
+  private void submit(Fetch fetch) {
+    String authority = fetch.url.getAuthority();
+    Host host = hosts.get(authority);
+    if (host == null) {
+      host = new Host();
+      hosts.put(authority, host);
+    }
+    if (host.active < maxFetchesPerHost) {
+      host.active++;
+      executor.execute(fetch);
+    } else {
+      host.waiting.add(fetch);
+    }
+  }
+
+  /**
+   * Run the next fetch queued for the device of a completed fetch.
+   */
+  private void done(Fetch fetch) {
+    synchronized (this) {
+      String authority = fetch.url.getAuthority();
+      Host host = hosts.get(authority);
+      if (closed || host == null) {
+        return;
+      }
+      Fetch next = host.waiting.poll();
+      if (next != null) {
+        executor.execute(next);
+      } else if (--host.active == 0) {
+        hosts.remove(authority);
+      }
+    }
+  }
+
+  private byte[] download(URL url) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setConnectTimeout(connectTimeout);
+    connection.setReadTimeout(readTimeout);
+    connection.setRequestProperty("Accept", "text/xml, application/xml");
+    int status = connection.getResponseCode();
+    if (status != HttpURLConnection.HTTP_OK) {
+      InputStream error = connection.getErrorStream();
+      if (error != null) {
+        // Reading the error body lets the connection be kept alive
+        readAll(error, maxDescriptionSize, connection);
+      }
+      throw new IOException("HTTP " + status + " fetching " + url);
+    }
+    return readAll(connection.getInputStream(), maxDescriptionSize, connection);
+  }
+
+  /**
+   * Read a stream to its end, so that its keep-alive connection goes back to the pool once closed.
+   */
+  private static byte[] readAll(InputStream in, int maxSize, HttpURLConnection connection) throws IOException {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+      byte[] chunk = new byte[4096];
+      int read;
+      while ((read = in.read(chunk)) != -1) {
+        if (out.size() + read > maxSize) {
+          // Not worth draining
+          connection.disconnect();
+          throw new IOException("Description larger than " + maxSize + " bytes at " + connection.getURL());
+        }
+        out.write(chunk, 0, read);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * The fetches in progress and waiting for a device.
+   */
+  private static final class Host {
+    private int active;
+    private final ArrayDeque<Fetch> waiting = new ArrayDeque<Fetch>();
+  }
+
+  private final class Fetch implements Runnable {
+    private final String key;
+    private final URL url;
+    private final CompletableFuture<DeviceDescription> future;
+
+    private Fetch(String key, URL url, CompletableFuture<DeviceDescription> future) {
+      this.key = key;
+      this.url = url;
+      this.future = future;
+    }
+
+    @Override
+    public void run() {
+      DeviceDescription description = null;
+      Exception failure = null;
+      try {
+        fetches.increment();
+        description = DescriptionParser.parse(url.toString(), download(url));
+      } catch (IOException e) {
+        failure = e;
+      } catch (RuntimeException e) {
+        // Such as a connection refusing the URL: the future must complete, and the next fetch try again
+        failure = e;
+      } finally {
+        done(this);
+      }
+      if (failure != null) {
+        synchronized (DescriptionFetcher.this) {
+          cache.remove(key, future);
+        }
+        future.completeExceptionally(failure);
+      } else {
+        future.complete(description);
+      }
+    }
+  }
+
+  // BEGIN GENERATED CODE
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static final class Builder {
+    private int maxConcurrentFetches = DEFAULT_MAX_CONCURRENT_FETCHES;
+    private int maxFetchesPerHost = DEFAULT_MAX_FETCHES_PER_HOST;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private int readTimeout = DEFAULT_READ_TIMEOUT;
+    private int maxDescriptionSize = DEFAULT_MAX_DESCRIPTION_SIZE;
+    private ThreadFactory threadFactory = Executors.defaultThreadFactory();
+
+    private Builder() {
+    }
+
+    /**
+     * Number of descriptions fetched at the same time, over all devices.
+     * Defaults to 4
+     * @param maxConcurrentFetches the number of fetch threads
+     * @return the current builder
+     */
+    public Builder maxConcurrentFetches(int maxConcurrentFetches) {
+      if (maxConcurrentFetches < 1) {
+        throw new IllegalArgumentException("Max concurrent fetches must be at least one fetch");
+      }
+      this.maxConcurrentFetches = maxConcurrentFetches;
+      return this;
+    }
+
+    /**
+     * Number of descriptions fetched at the same time from a single device, identified by the host and port of
+     * its LOCATION. Embedded devices often serve one connection at a time.
+     * Defaults to 1
+     * @param maxFetchesPerHost the number of fetches per device
+     * @return the current builder
+     */
+    public Builder maxFetchesPerHost(int maxFetchesPerHost) {
+      if (maxFetchesPerHost < 1) {
+        throw new IllegalArgumentException("Max fetches per host must be at least one fetch");
+      }
+      this.maxFetchesPerHost = maxFetchesPerHost;
+      return this;
+    }
+
+    /**
+     * Number of descriptions cached, the least recently requested being evicted first.
+     * Defaults to 256
+     * @param cacheSize the number of descriptions
+     * @return the current builder
+     */
+    public Builder cacheSize(int cacheSize) {
+      if (cacheSize < 1) {
+        throw new IllegalArgumentException("Cache size must be at least one description");
+      }
+      this.cacheSize = cacheSize;
+      return this;
+    }
+
+    /**
+     * Connect and read timeouts in milliseconds.
+     * Defaults to 3 000 ms to connect and 5 000 ms to read
+     * @param connectTimeout the connect timeout in ms
+     * @param readTimeout    the read timeout in ms
+     * @return the current builder
+     */
+    public Builder timeouts(int connectTimeout, int readTimeout) {
+      if (connectTimeout < 1 || readTimeout < 1) {
+        throw new IllegalArgumentException("Timeouts must be at least one millisecond");
+      }
+      this.connectTimeout = connectTimeout;
+      this.readTimeout = readTimeout;
+      return this;
+    }
+
+    /**
+     * Size in bytes above which a description is refused.
+     * Defaults to 256 KB
+     * @param maxDescriptionSize the maximum size in bytes
+     * @return the current builder
+     */
+    public Builder maxDescriptionSize(int maxDescriptionSize) {
+      if (maxDescriptionSize < 1) {
+        throw new IllegalArgumentException("Max description size must be at least one byte");
+      }
+      this.maxDescriptionSize = maxDescriptionSize;
+      return this;
+    }
+
+    /**
+     * Factory of the fetch threads.
+     * Defaults to Executors.defaultThreadFactory()
+     * @param threadFactory the thread factory
+     * @return the current builder
+     */
+    public Builder threadFactory(ThreadFactory threadFactory) {
+      if (threadFactory == null) {
+        throw new IllegalArgumentException("Thread factory must not be null");
+      }
+      this.threadFactory = threadFactory;
+      return this;
+    }
+
+    public DescriptionFetcher build() {
+      return new DescriptionFetcher(this);
+    }
+  }
+
+  // END GENERATED CODE
+}
@@ -0,0 +1,75 @@
+package io.resourcepool.ssdp.client.description;
+
+import io.resourcepool.ssdp.model.DeviceDescription;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * Reads the root device of a UPnP device description.
+ * Descriptions come from any device of the network: DTDs and external entities are refused.
+ */
+final class DescriptionParser {
+
+  private DescriptionParser() {
+  }
+
+  /**
+   * @param location the URL the description was fetched from
+   * @param data     the description document
+   * @return the description
+   * @throws IOException if the document is not a device description
+   */
+  static DeviceDescription parse(String location, byte[] data) throws IOException {
+    Document document;
+    try {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+      factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+      factory.setXIncludeAware(false);
+      factory.setExpandEntityReferences(false);
+      DocumentBuilder builder = factory.newDocumentBuilder();
+      builder.setErrorHandler(null);
+      document = builder.parse(new ByteArrayInputStream(data));
+    } catch (ParserConfigurationException e) {
+      throw new IOException("No XML parser available", e);
+    } catch (SAXException e) {
+      throw new IOException("Invalid device description at " + location, e);
+    }
+    Element root = document.getDocumentElement();
+    Element device = child(root, "device");
+    if (device == null) {
+      throw new IOException("No device in the description at " + location);
+    }
+    return new DeviceDescription(location, new String(data, UTF_8), text(root, "URLBase"),
+        text(device, "deviceType"), text(device, "friendlyName"), text(device, "manufacturer"),
+        text(device, "modelName"), text(device, "modelNumber"), text(device, "serialNumber"),
+        text(device, "UDN"), text(device, "presentationURL"));
+  }
+
+  // Only direct children: embedded devices have the same elements
+  private static Element child(Element parent, String name) {
+    for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+      if (node.getNodeType() == Node.ELEMENT_NODE && name.equals(node.getLocalName())) {
+        return (Element) node;
+      }
+    }
+    return null;
+  }
+
+  private static String text(Element parent, String name) {
+    Element element = child(parent, name);
+    return element != null ? element.getTextContent().trim() : null;
+  }
+}
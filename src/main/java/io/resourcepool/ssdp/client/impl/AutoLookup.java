@@ -0,0 +1,105 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.DiscoveryRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The service types looked up because unknown services announced themselves.
+ * <p>
+ * Each service type is searched with a single request, however many unknown services announce it.
+ * An entry lives until no unknown service has announced its type for a TTL, and the number of entries is capped:
+ * the least recently announced type makes room for a new one.
+ */
+class AutoLookup {
+
+  private final int maxServiceTypes;
+  private final long ttlNanos;
+  // Access-ordered, so that the first entry is the least recently announced one
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+  /**
+   * @param maxServiceTypes the maximum number of service types looked up at the same time
+   * @param ttlNanos        the time a service type is looked up after its last unknown announcement
+   */
+  AutoLookup(int maxServiceTypes, long ttlNanos) {
+    this.maxServiceTypes = maxServiceTypes;
+    this.ttlNanos = ttlNanos;
+  }
+
+  /**
+   * Look a service type up, or extend its lookup if it is already looked up.
+   *
+   * @param serviceType the announced service type
+   * @param nowNanos    the current System.nanoTime()
+   * @return the request to send right away if the service type is new, null otherwise
+   */
+  synchronized CompiledDiscoveryRequest register(String serviceType, long nowNanos) {
+    Entry entry = entries.get(serviceType);
+    if (entry != null) {
+      entry.deadline = nowNanos + ttlNanos;
+      return null;
+    }
+    if (entries.size() >= maxServiceTypes) {
+      Iterator<Entry> eldest = entries.values().iterator();
+      eldest.next();
+      eldest.remove();
+    }
+    CompiledDiscoveryRequest request = new CompiledDiscoveryRequest(DiscoveryRequest.builder().serviceType(serviceType).build());
+    entries.put(serviceType, new Entry(request, nowNanos + ttlNanos));
+    return request;
+  }
+
+  /**
+   * Forget the expired service types.
+   *
+   * @param nowNanos the current System.nanoTime()
+   * @return the requests of the service types still looked up
+   */
+  synchronized List<CompiledDiscoveryRequest> active(long nowNanos) {
+    if (entries.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<CompiledDiscoveryRequest> active = new ArrayList<CompiledDiscoveryRequest>(entries.size());
+    for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+      Entry entry = it.next();
+      if (nowNanos - entry.deadline >= 0) {
+        it.remove();
+      } else {
+        active.add(entry.request);
+      }
+    }
+    return active;
+  }
+
+  /**
+   * @return the service types currently looked up
+   */
+  synchronized Set<String> getServiceTypes() {
+    return new LinkedHashSet<String>(entries.keySet());
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  synchronized void clear() {
+    entries.clear();
+  }
+
+  private static final class Entry {
+    private final CompiledDiscoveryRequest request;
+    private long deadline;
+
+    private Entry(CompiledDiscoveryRequest request, long deadline) {
+      this.request = request;
+      this.deadline = deadline;
+    }
+  }
+}
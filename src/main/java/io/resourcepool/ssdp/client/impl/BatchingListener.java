@@ -0,0 +1,182 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.BatchDiscoveryListener;
+import io.resourcepool.ssdp.model.BatchOptions;
+import io.resourcepool.ssdp.model.DiscoveryHandle;
+import io.resourcepool.ssdp.model.SsdpService;
+import io.resourcepool.ssdp.model.SsdpServiceAnnouncement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The listener of a discovery coalescing its events into batches for a BatchDiscoveryListener.
+ * A batch is flushed on the thread adding its last event once full, or on the transport timer once its first
+ * event has waited for the maximum delay, and on the thread stopping the discovery for what is left then.
+ * Flushes are serialized, so that batches are delivered in order
+ * even when the client uses several dispatch threads.
+ */
+class BatchingListener implements StoppableListener {
+
+  private final BatchDiscoveryListener listener;
+  private final int maxSize;
+  private final long maxDelay;
+  // Held while a batch is delivered, so that the next one waits for it
+  private final Object deliveryLock = new Object();
+  private List<SsdpService> discovered = new ArrayList<SsdpService>();
+  private List<SsdpServiceAnnouncement> announcements = new ArrayList<SsdpServiceAnnouncement>();
+  private List<SsdpService> expired = new ArrayList<SsdpService>();
+  private int size;
+  private boolean flushPlanned;
+  private DiscoveryHandle handle;
+  private SsdpTransport transport;
+
+  /**
+   * @param listener     the batch listener
+   * @param batchOptions the batch options
+   */
+  BatchingListener(BatchDiscoveryListener listener, BatchOptions batchOptions) {
+    this.listener = listener;
+    this.maxSize = batchOptions.getMaxSize();
+    this.maxDelay = batchOptions.getMaxDelay();
+  }
+
+  /**
+   * Bind the listener to its discovery, once started, so that batches are flushed on the transport timer.
+   * Events replayed from the cache may already be waiting: without a transport to time their flush,
+   * they are delivered right away.
+   *
+   * @param handle    the handle of the discovery
+   * @param transport the transport of the client, or null if it could not be opened
+   */
+  void start(DiscoveryHandle handle, SsdpTransport transport) {
+    synchronized (this) {
+      this.handle = handle;
+      this.transport = transport;
+      if (size > 0) {
+        planFlush();
+      }
+    }
+    if (transport == null) {
+      flush();
+    }
+  }
+
+  /**
+   * Deliver what is left as the discovery stops, since its timer will not flush it anymore.
+   */
+  @Override
+  public void stop() {
+    flush();
+  }
+
+  @Override
+  public void onServiceDiscovered(SsdpService service) {
+    boolean full;
+    synchronized (this) {
+      discovered.add(service);
+      full = added();
+    }
+    if (full) {
+      flush();
+    }
+  }
+
+  @Override
+  public void onServiceAnnouncement(SsdpServiceAnnouncement announcement) {
+    boolean full;
+    synchronized (this) {
+      announcements.add(announcement);
+      full = added();
+    }
+    if (full) {
+      flush();
+    }
+  }
+
+  @Override
+  public void onServiceExpired(SsdpService service) {
+    boolean full;
+    synchronized (this) {
+      expired.add(service);
+      full = added();
+    }
+    if (full) {
+      flush();
+    }
+  }
+
+  @Override
+  public void onFailed(Exception ex) {
+    listener.onFailed(ex);
+  }
+
+  @Override
+  public void onFailedAndIgnored(Exception ex) {
+    listener.onFailedAndIgnored(ex);
+  }
+
+  /**
+   * Count an event added to the pending batches, planning their flush if it is the first one.
+   *
+   * @return true if the batches are full
+   */
+  private boolean added() {
+    size++;
+    if (size == 1) {
+      planFlush();
+    }
+    return size >= maxSize;
+  }
+
+  private void planFlush() {
+    if (flushPlanned || transport == null) {
+      return;
+    }
+    flushPlanned = true;
+    transport.schedule(new Runnable() {
+      @Override
+      public void run() {
+        synchronized (BatchingListener.this) {
+          flushPlanned = false;
+        }
+        // A discovery cancelled in the meantime does not call its listener anymore
+        if (handle.isActive()) {
+          flush();
+        }
+      }
+    }, maxDelay);
+  }
+
+  /**
+   * Deliver the pending batches, if any.
+   */
+  void flush() {
+    synchronized (deliveryLock) {
+      List<SsdpService> discoveredBatch;
+      List<SsdpServiceAnnouncement> announcementBatch;
+      List<SsdpService> expiredBatch;
+      synchronized (this) {
+        if (size == 0) {
+          return;
+        }
+        discoveredBatch = discovered;
+        announcementBatch = announcements;
+        expiredBatch = expired;
+        discovered = new ArrayList<SsdpService>();
+        announcements = new ArrayList<SsdpServiceAnnouncement>();
+        expired = new ArrayList<SsdpService>();
+        size = 0;
+      }
+      if (!discoveredBatch.isEmpty()) {
+        listener.onServicesDiscovered(discoveredBatch);
+      }
+      if (!announcementBatch.isEmpty()) {
+        listener.onServiceAnnouncements(announcementBatch);
+      }
+      if (!expiredBatch.isEmpty()) {
+        listener.onServicesExpired(expiredBatch);
+      }
+    }
+  }
+}
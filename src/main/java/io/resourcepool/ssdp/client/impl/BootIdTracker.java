@@ -0,0 +1,131 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.SsdpService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The BOOTID.UPNP.ORG and CONFIGID.UPNP.ORG last seen for each cached service, to tell a refresh from a reboot
+ * or a new configuration.
+ * <p>
+ * A device increases its BOOTID when it reboots, and its CONFIGID when its description changes. A device about to
+ * change its BOOTID without rebooting (such as a multi-homed device whose interfaces change) announces the next one
+ * with ssdp:update first, which rolls the BOOTID forward. UPnP 1.0 devices send neither header and are only tracked
+ * as known services.
+ */
+class BootIdTracker {
+
+  static final long NONE = -1;
+
+  enum Change {
+    /**
+     * The service was not tracked.
+     */
+    NEW,
+    /**
+     * Same boot and configuration.
+     */
+    UNCHANGED,
+    /**
+     * The device rebooted since the service was last seen.
+     */
+    REBOOTED,
+    /**
+     * The description of the device changed since the service was last seen.
+     */
+    RECONFIGURED
+  }
+
+  // USN to the ids last seen, and the cached instance which reported them
+  private final Map<String, Known> ids = new HashMap<String, Known>();
+
+  /**
+   * Track a response or an ssdp:alive of a service.
+   *
+   * @param service  the service just cached
+   * @param bootId   the BOOTID.UPNP.ORG header, or NONE
+   * @param configId the CONFIGID.UPNP.ORG header, or NONE
+   * @return how the service changed since it was last seen
+   */
+  synchronized Change onAlive(SsdpService service, long bootId, long configId) {
+    Known known = ids.get(service.getSerialNumber());
+    if (known == null) {
+      ids.put(service.getSerialNumber(), new Known(service, bootId, configId));
+      return Change.NEW;
+    }
+    known.owner = service;
+    return known.update(bootId, configId);
+  }
+
+  /**
+   * Track an ssdp:update of a service: the next BOOTID is not a reboot.
+   *
+   * @param serialNumber the USN of the service
+   * @param nextBootId   the NEXTBOOTID.UPNP.ORG header, or NONE
+   * @param configId     the CONFIGID.UPNP.ORG header, or NONE
+   * @return how the service changed since it was last seen, RECONFIGURED at most
+   */
+  synchronized Change onUpdate(String serialNumber, long nextBootId, long configId) {
+    Known known = ids.get(serialNumber);
+    if (known == null) {
+      return Change.NEW;
+    }
+    if (nextBootId != NONE) {
+      known.bootId = nextBootId;
+    }
+    return known.update(NONE, configId);
+  }
+
+  /**
+   * Stop tracking a service which left or expired, unless a newer instance of it was tracked in the meantime.
+   *
+   * @param service the service removed from the cache
+   */
+  synchronized void remove(SsdpService service) {
+    Known known = ids.get(service.getSerialNumber());
+    if (known != null && known.owner == service) {
+      ids.remove(service.getSerialNumber());
+    }
+  }
+
+  synchronized int size() {
+    return ids.size();
+  }
+
+  /**
+   * The BOOTID and CONFIGID last seen for a USN, NONE when the device does not send them.
+   */
+  private static final class Known {
+    private SsdpService owner;
+    private long bootId;
+    private long configId;
+
+    private Known(SsdpService owner, long bootId, long configId) {
+      this.owner = owner;
+      this.bootId = bootId;
+      this.configId = configId;
+    }
+
+    /**
+     * @param bootId   the BOOTID just seen, or NONE
+     * @param configId the CONFIGID just seen, or NONE
+     * @return how the ids changed
+     */
+    private Change update(long bootId, long configId) {
+      Change change = Change.UNCHANGED;
+      if (bootId != NONE && this.bootId != NONE && bootId != this.bootId) {
+        change = Change.REBOOTED;
+      } else if (configId != NONE && this.configId != NONE && configId != this.configId) {
+        change = Change.RECONFIGURED;
+      }
+      if (bootId != NONE) {
+        this.bootId = bootId;
+      }
+      if (configId != NONE) {
+        this.configId = configId;
+      }
+      return change;
+    }
+  }
+}
@@ -0,0 +1,310 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.client.response.SsdpResponse;
+import io.resourcepool.ssdp.model.SsdpService;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * A snapshot of the cached services in a memory-mapped file, so that a restarted client starts warm.
+ * <p>
+ * The file is a header followed by fixed-size slots, one per service. The header takes a whole slot, so that slots
+ * are aligned and never straddle a page. A service is written to its slot when it is first cached or when its
+ * persisted headers or address change; a refresh only rewrites its expiration in place. A slot is marked as used
+ * once written, and carries the CRC of its payload, so that a slot torn by a crash is read as free.
+ * Services larger than a slot are not persisted. Only services with an expiration are persisted, as the snapshot
+ * must expire on its own.
+ * <p>
+ * The file is locked while mapped: two clients sharing a snapshot file would overwrite each other's slots.
+ */
+class CacheSnapshot {
+
+  private static final int MAGIC = 0x53534450;
+  private static final int VERSION = 2;
+  static final int SLOT_SIZE = 1024;
+  private static final int FILE_HEADER_SIZE = SLOT_SIZE;
+  // A slot starts with its state, the length of its payload, the expiration of its service and the CRC of its payload
+  private static final int SLOT_HEADER_SIZE = 20;
+  private static final int FREE = 0;
+  private static final int USED = 1;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final int capacity;
+  private final BitSet used = new BitSet();
+  private final Map<String, Entry> entries = new HashMap<String, Entry>();
+  private final ByteBuffer scratch = ByteBuffer.allocate(SLOT_SIZE - SLOT_HEADER_SIZE);
+  private final CRC32 crc = new CRC32();
+
+  private CacheSnapshot(FileChannel channel, MappedByteBuffer buffer, int capacity) {
+    this.channel = channel;
+    this.buffer = buffer;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Lock and map the snapshot file, creating it if needed. A file of another format or capacity is cleared.
+   *
+   * @param file     the snapshot file
+   * @param capacity the number of slots
+   * @return the snapshot
+   * @throws IOException if the file could not be opened or mapped, or is locked by another client
+   */
+  static CacheSnapshot open(File file, int capacity) throws IOException {
+    FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+    try {
+      FileLock lock;
+      try {
+        lock = channel.tryLock();
+      } catch (OverlappingFileLockException e) {
+        // Locked by another client of this JVM
+        lock = null;
+      }
+      if (lock == null) {
+        throw new IOException("Snapshot file " + file + " is used by another client");
+      }
+      long size = FILE_HEADER_SIZE + (long) capacity * SLOT_SIZE;
+      boolean compatible = channel.size() == size;
+      if (channel.size() > size) {
+        channel.truncate(size);
+      }
+      // Mapping a shorter file extends it
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      if (!compatible || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+          || buffer.getInt(8) != SLOT_SIZE || buffer.getInt(12) != capacity) {
+        for (int slot = 0; slot < capacity; slot++) {
+          buffer.putInt(offset(slot), FREE);
+        }
+        buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, SLOT_SIZE).putInt(12, capacity);
+      }
+      return new CacheSnapshot(channel, buffer, capacity);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static int offset(int slot) {
+    return FILE_HEADER_SIZE + slot * SLOT_SIZE;
+  }
+
+  /**
+   * Read the persisted services, freeing the slots of those which expired or cannot be read.
+   *
+   * @param nowMillis the current time in milliseconds since epoch
+   * @return the services which have not expired
+   */
+  synchronized List<SsdpService> load(long nowMillis) {
+    used.clear();
+    entries.clear();
+    List<SsdpService> services = new ArrayList<SsdpService>();
+    for (int slot = 0; slot < capacity; slot++) {
+      int offset = offset(slot);
+      if (buffer.getInt(offset) != USED) {
+        continue;
+      }
+      long expiry = buffer.getLong(offset + 8);
+      SsdpService service = expiry > nowMillis && intact(offset) ? read(offset, expiry) : null;
+      if (service == null || service.getSerialNumber() == null || entries.containsKey(service.getSerialNumber())) {
+        buffer.putInt(offset, FREE);
+        continue;
+      }
+      used.set(slot);
+      entries.put(service.getSerialNumber(), new Entry(slot, service, service.getOriginalResponse().getHeaders()));
+      services.add(service);
+    }
+    return services;
+  }
+
+  /**
+   * @param offset the offset of a used slot
+   * @return true if the payload of the slot matches its CRC
+   */
+  private boolean intact(int offset) {
+    int length = buffer.getInt(offset + 4);
+    if (length < 0 || length > SLOT_SIZE - SLOT_HEADER_SIZE) {
+      return false;
+    }
+    ByteBuffer payload = buffer.duplicate();
+    payload.limit(offset + SLOT_HEADER_SIZE + length).position(offset + SLOT_HEADER_SIZE);
+    crc.reset();
+    crc.update(payload);
+    return (int) crc.getValue() == buffer.getInt(offset + 16);
+  }
+
+  private SsdpService read(int offset, long expiry) {
+    int length = buffer.getInt(offset + 4);
+    ByteBuffer payload = buffer.duplicate();
+    payload.limit(offset + SLOT_HEADER_SIZE + length).position(offset + SLOT_HEADER_SIZE);
+    try {
+      byte[] address = new byte[payload.get()];
+      payload.get(address);
+      Map<String, String> headers = new HashMap<String, String>();
+      for (int count = payload.getShort(); count > 0; count--) {
+        headers.put(readString(payload), readString(payload));
+      }
+      InetAddress originAddress = address.length > 0 ? InetAddress.getByAddress(address) : null;
+      return new SsdpResponse(SsdpResponse.Type.DISCOVERY_RESPONSE, headers, null, expiry, originAddress).toService();
+    } catch (IOException e) {
+      return null;
+    } catch (RuntimeException e) {
+      // Lengths running past the payload or negative ones, of a slot which could not be read back
+      return null;
+    }
+  }
+
+  private static String readString(ByteBuffer payload) {
+    byte[] bytes = new byte[payload.getShort()];
+    payload.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * Persist a service just cached or refreshed.
+   *
+   * @param service the cached service
+   */
+  synchronized void put(SsdpService service) {
+    String usn = service.getSerialNumber();
+    long expiry = service.getOriginalResponse().getExpiry();
+    if (expiry <= 0) {
+      remove(usn);
+      return;
+    }
+    Entry entry = entries.get(usn);
+    Map<String, String> headers = service.getOriginalResponse().getHeaders();
+    if (entry != null && entry.headers.equals(headers) && equal(entry.remoteIp, service.getRemoteIp())) {
+      entry.owner = service;
+      buffer.putLong(offset(entry.slot) + 8, expiry);
+      return;
+    }
+    int slot = entry != null ? entry.slot : used.nextClearBit(0);
+    if (slot >= capacity || !encode(service, headers)) {
+      remove(usn);
+      return;
+    }
+    crc.reset();
+    crc.update(scratch.duplicate());
+    int offset = offset(slot);
+    buffer.putInt(offset, FREE);
+    ByteBuffer target = buffer.duplicate();
+    target.position(offset + SLOT_HEADER_SIZE);
+    target.put(scratch);
+    buffer.putInt(offset + 4, scratch.limit());
+    buffer.putLong(offset + 8, expiry);
+    buffer.putInt(offset + 16, (int) crc.getValue());
+    buffer.putInt(offset, USED);
+    used.set(slot);
+    entries.put(usn, new Entry(slot, service, headers));
+  }
+
+  /**
+   * Encode a service into the scratch buffer, flipped for reading.
+   *
+   * @param service the service
+   * @param headers the headers of its response
+   * @return false if the service does not fit in a slot
+   */
+  private boolean encode(SsdpService service, Map<String, String> headers) {
+    scratch.clear();
+    try {
+      byte[] address = service.getRemoteIp() != null ? service.getRemoteIp().getAddress() : new byte[0];
+      scratch.put((byte) address.length).put(address);
+      scratch.putShort((short) headers.size());
+      for (Map.Entry<String, String> header : headers.entrySet()) {
+        writeString(header.getKey());
+        writeString(header.getValue());
+      }
+    } catch (BufferOverflowException e) {
+      return false;
+    }
+    scratch.flip();
+    return true;
+  }
+
+  private void writeString(String value) {
+    byte[] bytes = value.getBytes(UTF_8);
+    scratch.putShort((short) bytes.length).put(bytes);
+  }
+
+  private static boolean equal(Object a, Object b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  /**
+   * Forget a service which expired or was evicted.
+   *
+   * @param serialNumber the USN of the service
+   */
+  synchronized void remove(String serialNumber) {
+    Entry entry = entries.remove(serialNumber);
+    if (entry != null) {
+      buffer.putInt(offset(entry.slot), FREE);
+      used.clear(entry.slot);
+    }
+  }
+
+  /**
+   * Forget a service removed from the cache, unless a newer instance of it was persisted in the meantime.
+   *
+   * @param service the service
+   */
+  synchronized void remove(SsdpService service) {
+    Entry entry = entries.get(service.getSerialNumber());
+    if (entry != null && entry.owner == service) {
+      remove(service.getSerialNumber());
+    }
+  }
+
+  /**
+   * @return the number of services persisted
+   */
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Write the snapshot to disk and release the file and its lock.
+   */
+  synchronized void close() {
+    try {
+      buffer.force();
+      channel.close();
+    } catch (IOException e) {
+      // The snapshot is only a warm start, the next start will be colder
+    }
+  }
+
+  private static final class Entry {
+    private final int slot;
+    // What was encoded in the slot
+    private final Map<String, String> headers;
+    private final InetAddress remoteIp;
+    // The cached instance last persisted in the slot
+    private SsdpService owner;
+
+    private Entry(int slot, SsdpService owner, Map<String, String> headers) {
+      this.slot = slot;
+      this.headers = headers;
+      this.remoteIp = owner.getRemoteIp();
+      this.owner = owner;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.client.SsdpParams;
+import io.resourcepool.ssdp.client.request.SsdpDiscovery;
+import io.resourcepool.ssdp.model.DiscoveryOptions;
+import io.resourcepool.ssdp.model.DiscoveryRequest;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A registered DiscoveryRequest along with its M-SEARCH datagrams.
+ * Datagrams are encoded once, when the request is registered, and reused on every send tick.
+ * They are only encoded again if the request is given other DiscoveryOptions, or is sent to other groups.
+ */
+class CompiledDiscoveryRequest {
+
+  private final DiscoveryRequest request;
+  private DiscoveryOptions compiledOptions;
+  private List<InetAddress> compiledGroups;
+  private DatagramPacket[] datagrams;
+
+  /**
+   * @param request the discovery request
+   */
+  CompiledDiscoveryRequest(DiscoveryRequest request) {
+    this.request = request;
+    compile(SsdpParams.getSsdpMulticastAddresses(false));
+  }
+
+  DiscoveryRequest getRequest() {
+    return request;
+  }
+
+  /**
+   * @return one M-SEARCH datagram per service type, or a single ssdp:all one if the request has none, to the IPv4 group
+   */
+  DatagramPacket[] getDatagrams() {
+    return getDatagrams(SsdpParams.getSsdpMulticastAddresses(false));
+  }
+
+  /**
+   * @param groups the SSDP multicast groups searched on, as returned by SsdpParams#getSsdpMulticastAddresses
+   * @return one M-SEARCH datagram per service type and group, or a single ssdp:all one per group if the request has none
+   */
+  DatagramPacket[] getDatagrams(List<InetAddress> groups) {
+    if (request.getDiscoveryOptions() != compiledOptions || groups != compiledGroups) {
+      compile(groups);
+    }
+    return datagrams;
+  }
+
+  private void compile(List<InetAddress> groups) {
+    DiscoveryOptions options = request.getDiscoveryOptions();
+    List<String> serviceTypes = request.getServiceTypes();
+    if (serviceTypes == null || serviceTypes.isEmpty()) {
+      serviceTypes = Collections.singletonList(null);
+    }
+    DatagramPacket[] compiled = new DatagramPacket[serviceTypes.size() * groups.size()];
+    int i = 0;
+    for (InetAddress group : groups) {
+      for (String serviceType : serviceTypes) {
+        compiled[i++] = SsdpDiscovery.getDatagram(serviceType, options, group);
+      }
+    }
+    this.datagrams = compiled;
+    this.compiledOptions = options;
+    this.compiledGroups = groups;
+  }
+}
@@ -0,0 +1,662 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.client.SsdpParams;
+import io.resourcepool.ssdp.client.util.ByteBufferPool;
+import io.resourcepool.ssdp.client.util.Utils;
+import io.resourcepool.ssdp.model.SsdpClientOptions;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking transport based on a DatagramChannel.
+ * A single thread runs a Selector loop which receives datagrams, runs the timed tasks when they are due,
+ * and releases the channel once the transport is closed.
+ * <p>
+ * With per-interface channels, searches are sent through one channel per joined interface, bound to the address
+ * of the interface and configured for it once. Search responses come back to the channel the search was sent
+ * from, which tells the interface they were received on. Announcements still arrive on the shared multicast
+ * channel, and are attributed to the interface whose subnet holds their origin address.
+ * <p>
+ * With IPv6, a second channel joins the link-local and site-local SSDP groups on the IPv6 interfaces. It is polled
+ * by the same Selector, so both families are received, sent and handed over to the client by the same loop.
+ * Java cannot set IPV6_V6ONLY, so this channel is dual-stack and bound to the same port as the IPv4 one. IPv4
+ * datagrams are handled from the IPv4 channel only: Linux hands IPv4 datagrams, unicast or multicast, to the IPv4
+ * socket. Platforms which also deliver IPv4 multicast datagrams to the dual-stack socket deliver them to the IPv4
+ * socket as well, so the IPv6 channel drops them.
+ */
+class DatagramChannelTransport implements SsdpTransport {
+
+  // Upper bound of datagrams read per wakeup, so that sends stay on time during announcement storms
+  private static final int MAX_DATAGRAMS_PER_WAKEUP = 64;
+
+  private final SsdpClientImpl client;
+  private ExecutorService loopExecutor;
+  private final List<MembershipKey> memberships = new ArrayList<MembershipKey>();
+  private final List<InterfaceChannel> interfaceChannels = new ArrayList<InterfaceChannel>();
+  private final List<MembershipKey> ipv6Memberships = new ArrayList<MembershipKey>();
+  private final List<NetworkInterface> ipv6Interfaces = new ArrayList<NetworkInterface>();
+  private final PriorityQueue<TimedTask> timers = new PriorityQueue<TimedTask>();
+  private long timerSequence;
+
+  private SsdpClientOptions options;
+  private ByteBufferPool bufferPool;
+  // Outgoing datagrams are copied into this buffer, which is only used by the loop thread
+  private ByteBuffer sendBuffer = ByteBuffer.allocateDirect(1024);
+  private InetSocketAddress lastTarget;
+  private DatagramChannel channel;
+  private DatagramChannel ipv6Channel;
+  private List<InetAddress> groups = SsdpParams.getSsdpMulticastAddresses(false);
+  private Selector selector;
+  private NetworkInterface currentInterface;
+  private NetworkInterface currentIpv6Interface;
+  private volatile Thread loopThread;
+  private volatile boolean started;
+  private volatile boolean closed;
+
+  /**
+   * @param client the client handling incoming datagrams
+   */
+  DatagramChannelTransport(SsdpClientImpl client) {
+    this.client = client;
+  }
+
+  @Override
+  public void open(SsdpClientOptions options) throws IOException {
+    this.options = options;
+    this.loopExecutor = Executors.newSingleThreadExecutor(options.getThreadFactory());
+    this.bufferPool = options.getReceiveBufferPool();
+    this.channel = DatagramChannel.open(StandardProtocolFamily.INET);
+    this.channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+    this.channel.bind(new InetSocketAddress(options.getBindingPort()));
+    this.channel.configureBlocking(false);
+    joinGroupOnAllInterfaces(options.getIgnoreInterfaceDiscoveryErrors());
+    this.selector = Selector.open();
+    this.channel.register(selector, SelectionKey.OP_READ);
+    if (options.getUsePerInterfaceChannels()) {
+      openInterfaceChannels(options.getIgnoreInterfaceDiscoveryErrors());
+    }
+    if (options.getUseIpv6()) {
+      openIpv6Channel(options.getIgnoreInterfaceDiscoveryErrors());
+    }
+  }
+
+  @Override
+  public void start() {
+    started = true;
+    loopExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        loopThread = Thread.currentThread();
+        loop();
+      }
+    });
+    loopExecutor.shutdown();
+  }
+
+  @Override
+  public void schedule(Runnable task, long delay) {
+    if (closed) {
+      return;
+    }
+    synchronized (timers) {
+      timers.add(new TimedTask(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay), timerSequence++, task));
+    }
+    if (Thread.currentThread() != loopThread && selector != null) {
+      selector.wakeup();
+    }
+  }
+
+  /**
+   * The event loop: run the due timed tasks, then receive until the next one is due, and so on until closed.
+   */
+  private void loop() {
+    try {
+      while (!closed) {
+        long timeout = runDueTasks();
+        if (closed) {
+          break;
+        }
+        int ready = timeout > 0 ? selector.select(timeout) : selector.select();
+        if (ready > 0) {
+          for (SelectionKey key : selector.selectedKeys()) {
+            InterfaceChannel interfaceChannel = (InterfaceChannel) key.attachment();
+            receiveAvailable((DatagramChannel) key.channel(), interfaceChannel != null ? interfaceChannel.iface : null);
+          }
+          selector.selectedKeys().clear();
+        }
+      }
+    } catch (IOException e) {
+      if (!closed) {
+        client.onFailed(e);
+      }
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * Run all timed tasks which are due.
+   *
+   * @return the delay in milliseconds until the next timed task, or 0 if there is none
+   */
+  private long runDueTasks() {
+    while (!closed) {
+      TimedTask due;
+      synchronized (timers) {
+        TimedTask next = timers.peek();
+        if (next == null) {
+          return 0;
+        }
+        long remaining = next.deadline - System.nanoTime();
+        if (remaining > 0) {
+          return Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining));
+        }
+        due = timers.poll();
+      }
+      try {
+        due.task.run();
+      } catch (RuntimeException e) {
+        client.onFailed(e);
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Read the pending datagrams of a channel into pooled buffers and hand them over to the client.
+   *
+   * @param source the channel to read from
+   * @param iface  the interface the channel is bound to, or null for the shared multicast channels
+   * @throws IOException from the DatagramChannel
+   */
+  private void receiveAvailable(DatagramChannel source, NetworkInterface iface) throws IOException {
+    for (int i = 0; i < MAX_DATAGRAMS_PER_WAKEUP && !closed; i++) {
+      ByteBuffer buffer = bufferPool.acquire();
+      SocketAddress origin;
+      try {
+        origin = source.receive(buffer);
+      } catch (IOException e) {
+        bufferPool.release(buffer);
+        throw e;
+      }
+      if (origin == null) {
+        bufferPool.release(buffer);
+        return;
+      }
+      InetAddress originAddress = ((InetSocketAddress) origin).getAddress();
+      if (source == ipv6Channel && originAddress instanceof Inet4Address) {
+        // The IPv6 channel is dual-stack: IPv4 datagrams reaching it are also received by the IPv4 channel
+        bufferPool.release(buffer);
+        continue;
+      }
+      buffer.flip();
+      client.receive(buffer, originAddress, iface != null ? iface : interfaceOf(originAddress), bufferPool, options);
+    }
+  }
+
+  /**
+   * @param address the origin of a datagram received on a shared multicast channel
+   * @return the interface the datagram was received on, or null if unknown
+   */
+  NetworkInterface interfaceOf(InetAddress address) {
+    // A link-local IPv6 origin tells its interface by its scope
+    if (address instanceof Inet6Address && ((Inet6Address) address).getScopedInterface() != null) {
+      return ((Inet6Address) address).getScopedInterface();
+    }
+    InterfaceChannel subnet = channelFor(address);
+    return subnet != null ? subnet.iface : null;
+  }
+
+  /**
+   * @param address a unicast address
+   * @return the interface channel whose subnet holds the address, or null if none does
+   */
+  private InterfaceChannel channelFor(InetAddress address) {
+    for (InterfaceChannel interfaceChannel : interfaceChannels) {
+      if (interfaceChannel.holds(address)) {
+        return interfaceChannel;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Send the datagram packet on all joined interfaces.
+   * The outgoing interface is only reconfigured when it differs from the one used for the previous send.
+   * With per-interface channels, the datagram is sent through each of them, and a failure on one interface
+   * is only thrown once the datagram has been sent on the others. Datagrams to an IPv6 group are sent
+   * through the IPv6 channel on each IPv6 interface, the same way.
+   *
+   * @param packet the datagram to send
+   * @throws IOException from the DatagramChannel
+   */
+  @Override
+  public void send(DatagramPacket packet) throws IOException {
+    if (sendBuffer.capacity() < packet.getLength()) {
+      sendBuffer = ByteBuffer.allocateDirect(packet.getLength());
+    }
+    sendBuffer.clear();
+    sendBuffer.put(packet.getData(), packet.getOffset(), packet.getLength());
+    sendBuffer.flip();
+    InetSocketAddress target = lastTarget;
+    if (target == null || target.getAddress() != packet.getAddress() || target.getPort() != packet.getPort()) {
+      target = new InetSocketAddress(packet.getAddress(), packet.getPort());
+      lastTarget = target;
+    }
+    if (packet.getAddress() instanceof Inet6Address) {
+      sendIpv6(target);
+      return;
+    }
+    if (!interfaceChannels.isEmpty()) {
+      IOException failure = null;
+      for (InterfaceChannel interfaceChannel : interfaceChannels) {
+        try {
+          sendOrFail(interfaceChannel.channel, sendBuffer, target);
+        } catch (IOException e) {
+          client.getMetrics().onSendFailed(interfaceChannel.iface);
+          if (failure == null) {
+            failure = e;
+          }
+        }
+        sendBuffer.rewind();
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return;
+    }
+    for (MembershipKey membership : memberships) {
+      NetworkInterface iface = membership.networkInterface();
+      try {
+        if (!iface.equals(currentInterface)) {
+          channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, iface);
+          currentInterface = iface;
+        }
+        sendOrFail(channel, sendBuffer, target);
+      } catch (IOException e) {
+        client.getMetrics().onSendFailed(iface);
+        throw e;
+      }
+      sendBuffer.rewind();
+    }
+  }
+
+  /**
+   * Send the content of the send buffer to an IPv6 group on each IPv6 interface.
+   *
+   * @param target the IPv6 group
+   * @throws IOException from the DatagramChannel, once the datagram has been sent on the other interfaces
+   */
+  private void sendIpv6(InetSocketAddress target) throws IOException {
+    if (ipv6Channel == null) {
+      throw new IOException("IPv6 is not enabled on this transport");
+    }
+    IOException failure = null;
+    for (NetworkInterface iface : ipv6Interfaces) {
+      try {
+        if (!iface.equals(currentIpv6Interface)) {
+          ipv6Channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, iface);
+          currentIpv6Interface = iface;
+        }
+        sendOrFail(ipv6Channel, sendBuffer, target);
+      } catch (IOException e) {
+        client.getMetrics().onSendFailed(iface);
+        if (failure == null) {
+          failure = e;
+        }
+      }
+      sendBuffer.rewind();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Send the datagram packet to a unicast address, through the interface channel of its subnet if any,
+   * so that the answer tells the interface it was received on.
+   *
+   * @param packet the datagram to send
+   * @throws IOException from the DatagramChannel
+   */
+  @Override
+  public void sendTo(DatagramPacket packet) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(packet.getData(), packet.getOffset(), packet.getLength());
+    if (packet.getAddress() instanceof Inet6Address) {
+      if (ipv6Channel == null) {
+        throw new IOException("IPv6 is not enabled on this transport");
+      }
+      try {
+        sendOrFail(ipv6Channel, buffer, new InetSocketAddress(packet.getAddress(), packet.getPort()));
+      } catch (IOException e) {
+        client.getMetrics().onSendFailed(null);
+        throw e;
+      }
+      return;
+    }
+    InterfaceChannel interfaceChannel = channelFor(packet.getAddress());
+    try {
+      sendOrFail(interfaceChannel != null ? interfaceChannel.channel : channel, buffer, new InetSocketAddress(packet.getAddress(), packet.getPort()));
+    } catch (IOException e) {
+      client.getMetrics().onSendFailed(interfaceChannel != null ? interfaceChannel.iface : null);
+      throw e;
+    }
+  }
+
+  /**
+   * Send a datagram through a non-blocking channel.
+   * A full socket buffer makes the channel drop the datagram instead of blocking: this is reported as a send
+   * failure, so that the datagram is neither counted as sent nor lost without a trace.
+   *
+   * @param source   the channel
+   * @param datagram the datagram, between position and limit
+   * @param target   the destination
+   * @throws IOException from the DatagramChannel, or if the datagram was dropped
+   */
+  static void sendOrFail(DatagramChannel source, ByteBuffer datagram, SocketAddress target) throws IOException {
+    if (source.send(datagram, target) == 0) {
+      throw new IOException("Socket send buffer full, datagram to " + target + " dropped");
+    }
+  }
+
+  @Override
+  public List<InetAddress> getGroups() {
+    return groups;
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public void close() {
+    this.closed = true;
+    if (!started) {
+      release();
+      return;
+    }
+    // The loop releases the channel itself once woken up
+    if (selector != null) {
+      selector.wakeup();
+    }
+  }
+
+  /**
+   * Joins the SSDP multicast group on all interfaces.
+   * <p>
+   * Falls back to the default multicast interface if no viable interface was found
+   *
+   * @param ignoreErrors whether to ignore group join errors or not
+   * @throws IOException from the DatagramChannel
+   */
+  private void joinGroupOnAllInterfaces(Boolean ignoreErrors) throws IOException {
+    List<NetworkInterface> interfaces = Utils.getMulticastInterfaces();
+    if (interfaces.isEmpty()) {
+      NetworkInterface defaultInterface = Utils.getDefaultMulticastInterface();
+      if (defaultInterface != null) {
+        interfaces.add(defaultInterface);
+      }
+    }
+    for (NetworkInterface iface : interfaces) {
+      try {
+        MembershipKey membership = channel.join(SsdpParams.getSsdpMulticastAddress(), iface);
+        if (!memberships.contains(membership)) {
+          memberships.add(membership);
+        }
+      } catch (IOException e) {
+        if (!ignoreErrors) {
+          throw e;
+        } else {
+          client.onFailedAndIgnored(e);
+        }
+      }
+    }
+    if (memberships.isEmpty()) {
+      throw new IOException("No interface was joined");
+    }
+  }
+
+  /**
+   * Open one channel per joined interface, bound to its IPv4 address and sending through it.
+   *
+   * @param ignoreErrors whether to ignore the interfaces whose channel could not be opened
+   * @throws IOException from the DatagramChannel
+   */
+  private void openInterfaceChannels(Boolean ignoreErrors) throws IOException {
+    for (MembershipKey membership : memberships) {
+      NetworkInterface iface = membership.networkInterface();
+      InetAddress address = null;
+      for (InetAddress candidate : Collections.list(iface.getInetAddresses())) {
+        if (candidate instanceof Inet4Address) {
+          address = candidate;
+          break;
+        }
+      }
+      if (address == null) {
+        continue;
+      }
+      try {
+        openInterfaceChannel(iface, address);
+      } catch (IOException e) {
+        if (!ignoreErrors) {
+          throw e;
+        } else {
+          client.onFailedAndIgnored(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Open the channel of one interface, bound to one of its IPv4 addresses, and poll it once the selector is open.
+   *
+   * @param iface   the interface
+   * @param address the IPv4 address of the interface
+   * @return the channel
+   * @throws IOException from the DatagramChannel, in which case it is closed
+   */
+  DatagramChannel openInterfaceChannel(NetworkInterface iface, InetAddress address) throws IOException {
+    DatagramChannel interfaceChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+    try {
+      interfaceChannel.bind(new InetSocketAddress(address, 0));
+      interfaceChannel.setOption(StandardSocketOptions.IP_MULTICAST_IF, iface);
+      interfaceChannel.configureBlocking(false);
+      InterfaceChannel entry = new InterfaceChannel(iface, interfaceChannel);
+      if (selector != null) {
+        interfaceChannel.register(selector, SelectionKey.OP_READ, entry);
+      }
+      interfaceChannels.add(entry);
+      return interfaceChannel;
+    } catch (IOException e) {
+      interfaceChannel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Open the IPv6 channel, bound to the same port as the IPv4 one, and join the link-local and site-local
+   * SSDP groups on all IPv6 interfaces. Searches are then also sent to both groups.
+   * The channel stays dual-stack, see the class documentation for how IPv4 datagrams are split.
+   *
+   * @param ignoreErrors whether to ignore group join errors, and to go on with IPv4 only if no IPv6 interface was joined
+   * @throws IOException from the DatagramChannel
+   */
+  private void openIpv6Channel(Boolean ignoreErrors) throws IOException {
+    DatagramChannel candidate = DatagramChannel.open(StandardProtocolFamily.INET6);
+    try {
+      candidate.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      candidate.bind(new InetSocketAddress(options.getBindingPort()));
+      candidate.configureBlocking(false);
+      InetAddress[] ipv6Groups = {SsdpParams.getSsdpMulticastIpv6LinkLocalAddress(), SsdpParams.getSsdpMulticastIpv6SiteLocalAddress()};
+      for (NetworkInterface iface : Utils.getIpv6MulticastInterfaces()) {
+        for (InetAddress group : ipv6Groups) {
+          try {
+            ipv6Memberships.add(candidate.join(group, iface));
+            if (!ipv6Interfaces.contains(iface)) {
+              ipv6Interfaces.add(iface);
+            }
+          } catch (IOException e) {
+            if (!ignoreErrors) {
+              throw e;
+            }
+            client.onFailedAndIgnored(e);
+          }
+        }
+      }
+      if (ipv6Memberships.isEmpty()) {
+        throw new IOException("No interface was joined for IPv6");
+      }
+      candidate.register(selector, SelectionKey.OP_READ);
+    } catch (IOException e) {
+      ipv6Memberships.clear();
+      ipv6Interfaces.clear();
+      candidate.close();
+      if (!ignoreErrors) {
+        throw e;
+      }
+      client.onFailedAndIgnored(e);
+      return;
+    }
+    this.ipv6Channel = candidate;
+    this.groups = SsdpParams.getSsdpMulticastAddresses(true);
+  }
+
+  /**
+   * Leave the multicast groups and close the channels and selector.
+   */
+  private void release() {
+    for (MembershipKey membership : memberships) {
+      membership.drop();
+    }
+    memberships.clear();
+    for (MembershipKey membership : ipv6Memberships) {
+      membership.drop();
+    }
+    ipv6Memberships.clear();
+    try {
+      if (ipv6Channel != null) {
+        ipv6Channel.close();
+      }
+    } catch (IOException e) {
+      // Fail silently
+    }
+    for (InterfaceChannel interfaceChannel : interfaceChannels) {
+      try {
+        interfaceChannel.channel.close();
+      } catch (IOException e) {
+        // Fail silently
+      }
+    }
+    interfaceChannels.clear();
+    synchronized (timers) {
+      timers.clear();
+    }
+    try {
+      if (selector != null) {
+        selector.close();
+      }
+    } catch (IOException e) {
+      // Fail silently
+    }
+    try {
+      if (channel != null) {
+        channel.close();
+      }
+    } catch (IOException e) {
+      // Fail silently
+    }
+  }
+
+  /**
+   * A channel bound to the address of one interface, along with the subnets of the interface.
+   */
+  private static final class InterfaceChannel {
+    private final NetworkInterface iface;
+    private final DatagramChannel channel;
+    private final List<InterfaceAddress> addresses;
+
+    private InterfaceChannel(NetworkInterface iface, DatagramChannel channel) {
+      this.iface = iface;
+      this.channel = channel;
+      this.addresses = new ArrayList<InterfaceAddress>(iface.getInterfaceAddresses());
+    }
+
+    /**
+     * @param address a unicast address
+     * @return true if the address belongs to a subnet of the interface
+     */
+    private boolean holds(InetAddress address) {
+      byte[] target = address.getAddress();
+      for (InterfaceAddress interfaceAddress : addresses) {
+        byte[] local = interfaceAddress.getAddress().getAddress();
+        if (local.length == target.length && samePrefix(local, target, interfaceAddress.getNetworkPrefixLength())) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static boolean samePrefix(byte[] a, byte[] b, int prefixLength) {
+      int bytes = prefixLength / 8;
+      for (int i = 0; i < bytes; i++) {
+        if (a[i] != b[i]) {
+          return false;
+        }
+      }
+      int bits = prefixLength % 8;
+      if (bits == 0) {
+        return true;
+      }
+      int mask = 0xFF << (8 - bits);
+      return (a[bytes] & mask) == (b[bytes] & mask);
+    }
+  }
+
+  /**
+   * A task to run on the loop once its deadline is reached.
+   * Tasks sharing a deadline run in the order they were scheduled.
+   */
+  private static final class TimedTask implements Comparable<TimedTask> {
+    private final long deadline;
+    private final long sequence;
+    private final Runnable task;
+
+    private TimedTask(long deadline, long sequence, Runnable task) {
+      this.deadline = deadline;
+      this.sequence = sequence;
+      this.task = task;
+    }
+
+    @Override
+    public int compareTo(TimedTask other) {
+      long diff = deadline - other.deadline;
+      if (diff == 0) {
+        diff = sequence - other.sequence;
+      }
+      return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+    }
+  }
+}
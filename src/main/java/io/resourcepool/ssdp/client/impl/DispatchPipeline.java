@@ -0,0 +1,172 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.client.util.ByteBufferPool;
+import io.resourcepool.ssdp.model.SsdpClientOptions;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parses and dispatches received datagrams on several worker threads.
+ * <p>
+ * The receive thread only hands the buffers over: each datagram is routed to a worker by a hash of its source
+ * address, so that all the datagrams of a given device are handled in order by the same worker.
+ * Each worker consumes a bounded lock-free queue. When a queue is full the datagram is dropped rather than
+ * blocking the receive thread, as SSDP senders repeat themselves anyway.
+ */
+class DispatchPipeline {
+
+  private final SsdpClientImpl client;
+  private final SsdpClientOptions options;
+  private final Worker[] workers;
+  private final ExecutorService workerExecutor;
+  private final LongAdder dropped = new LongAdder();
+  private volatile boolean closed;
+
+  /**
+   * @param client  the client handling the datagrams
+   * @param options the ssdp client options, giving the number of workers and the capacity of their queues
+   */
+  DispatchPipeline(SsdpClientImpl client, SsdpClientOptions options) {
+    this.client = client;
+    this.options = options;
+    this.workers = new Worker[options.getDispatchThreads()];
+    this.workerExecutor = Executors.newFixedThreadPool(workers.length, options.getThreadFactory());
+    for (int i = 0; i < workers.length; i++) {
+      workers[i] = new Worker(options.getDispatchQueueCapacity());
+      workerExecutor.execute(workers[i]);
+    }
+    workerExecutor.shutdown();
+  }
+
+  /**
+   * Hand a received datagram over to its worker.
+   * The buffer is given back to its pool once handled, or right away if it is dropped.
+   *
+   * @param buffer        the received datagram, between position and limit
+   * @param originAddress the address the datagram was received from
+   * @param iface         the interface the datagram was received on, or null if unknown
+   * @param pool          the pool the buffer was borrowed from
+   */
+  void dispatch(ByteBuffer buffer, InetAddress originAddress, NetworkInterface iface, ByteBufferPool pool) {
+    if (closed) {
+      pool.release(buffer);
+      return;
+    }
+    Worker worker = workers[workerIndex(originAddress)];
+    if (!worker.queue.offer(new Datagram(buffer, originAddress, iface, pool))) {
+      dropped.increment();
+      client.getMetrics().onPacketDropped();
+      pool.release(buffer);
+      return;
+    }
+    worker.signal();
+  }
+
+  private int workerIndex(InetAddress originAddress) {
+    int hash = originAddress != null ? originAddress.hashCode() : 0;
+    hash ^= hash >>> 16;
+    return (hash & Integer.MAX_VALUE) % workers.length;
+  }
+
+  /**
+   * @return the number of datagrams waiting in the queue of each worker
+   */
+  int[] getQueueDepths() {
+    int[] depths = new int[workers.length];
+    for (int i = 0; i < workers.length; i++) {
+      depths[i] = workers[i].queue.size();
+    }
+    return depths;
+  }
+
+  /**
+   * @return the number of datagrams dropped because the queue of their worker was full
+   */
+  long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Stop the workers. Queued datagrams are discarded.
+   */
+  void close() {
+    this.closed = true;
+    for (Worker worker : workers) {
+      worker.signal();
+    }
+  }
+
+  /**
+   * A worker thread consuming its own queue.
+   */
+  private final class Worker implements Runnable {
+    private final DispatchQueue<Datagram> queue;
+    private volatile Thread thread;
+    private volatile boolean parked;
+
+    private Worker(int capacity) {
+      this.queue = new DispatchQueue<Datagram>(capacity);
+    }
+
+    @Override
+    public void run() {
+      thread = Thread.currentThread();
+      while (!closed) {
+        Datagram datagram = queue.poll();
+        if (datagram == null) {
+          parked = true;
+          // Check again once the flag is visible, so that a concurrent offer cannot be missed
+          if (queue.isEmpty() && !closed) {
+            LockSupport.park(this);
+          }
+          parked = false;
+          continue;
+        }
+        handle(datagram);
+      }
+      for (Datagram datagram = queue.poll(); datagram != null; datagram = queue.poll()) {
+        datagram.pool.release(datagram.buffer);
+      }
+    }
+
+    private void handle(Datagram datagram) {
+      try {
+        client.handleIncomingPacket(datagram.buffer, datagram.originAddress, datagram.iface, options);
+      } catch (RuntimeException e) {
+        client.onFailed(e);
+      } finally {
+        datagram.pool.release(datagram.buffer);
+      }
+    }
+
+    private void signal() {
+      Thread current = thread;
+      if (parked && current != null) {
+        LockSupport.unpark(current);
+      }
+    }
+  }
+
+  /**
+   * A received datagram waiting to be handled.
+   */
+  private static final class Datagram {
+    private final ByteBuffer buffer;
+    private final InetAddress originAddress;
+    private final NetworkInterface iface;
+    private final ByteBufferPool pool;
+
+    private Datagram(ByteBuffer buffer, InetAddress originAddress, NetworkInterface iface, ByteBufferPool pool) {
+      this.buffer = buffer;
+      this.originAddress = originAddress;
+      this.iface = iface;
+      this.pool = pool;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package io.resourcepool.ssdp.client.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded lock-free queue with many producers and a single consumer, backed by a ring of slots.
+ * <p>
+ * Each slot carries a sequence number telling producers and the consumer whose turn it is:
+ * producers claim a slot with a single CAS on the tail, the consumer never contends with anyone,
+ * and nothing is allocated once the queue has been created.
+ *
+ * @param <E> the element type
+ */
+class DispatchQueue<E> {
+
+  private final Object[] elements;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  // Next position to produce, claimed by producers
+  private final AtomicLong tail = new AtomicLong();
+  // Next position to consume, only written by the consumer
+  private volatile long head;
+
+  /**
+   * @param capacity the maximum number of queued elements, rounded up to a power of two
+   */
+  DispatchQueue(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    this.elements = new Object[size];
+    this.sequences = new AtomicLongArray(size);
+    this.mask = size - 1;
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Enqueue an element, unless the queue is full.
+   * May be called by any thread.
+   *
+   * @param element the element
+   * @return false if the queue is full
+   */
+  boolean offer(E element) {
+    long position = tail.get();
+    while (true) {
+      int index = (int) (position & mask);
+      long diff = sequences.get(index) - position;
+      if (diff == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements[index] = element;
+          // Publish the element to the consumer, with a full fence so that a parked consumer is seen afterwards
+          sequences.set(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (diff < 0) {
+        // The consumer has not freed this slot yet
+        return false;
+      } else {
+        // Another producer claimed this slot
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Dequeue the oldest element.
+   * Must only be called by the consumer thread.
+   *
+   * @return the element, or null if the queue is empty
+   */
+  @SuppressWarnings("unchecked")
+  E poll() {
+    long position = head;
+    int index = (int) (position & mask);
+    if (sequences.get(index) != position + 1) {
+      return null;
+    }
+    E element = (E) elements[index];
+    elements[index] = null;
+    // Hand the slot back to producers for the next round
+    sequences.lazySet(index, position + elements.length);
+    head = position + 1;
+    return element;
+  }
+
+  /**
+   * @return true if no element is ready to be consumed
+   */
+  boolean isEmpty() {
+    long position = head;
+    return sequences.get((int) (position & mask)) != position + 1;
+  }
+
+  /**
+   * @return an estimate of the number of queued elements
+   */
+  int size() {
+    long size = tail.get() - head;
+    return (int) Math.max(0, Math.min(size, elements.length));
+  }
+
+  int capacity() {
+    return elements.length;
+  }
+}
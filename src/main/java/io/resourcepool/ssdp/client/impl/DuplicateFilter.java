@@ -0,0 +1,155 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.client.response.SsdpHeader;
+import io.resourcepool.ssdp.client.response.SsdpResponse;
+
+import java.util.Arrays;
+
+/**
+ * Recognizes the copies of a response or announcement received within a time window.
+ * <p>
+ * Devices answer each M-SEARCH several times over MX seconds, and send each NOTIFY two or three times.
+ * Messages are identified by a 64-bit fingerprint of their type, USN, NTS, LOCATION and BOOTID.UPNP.ORG,
+ * kept in two open-addressing tables of longs: the current generation and the previous one.
+ * The generations roll over every window, so that a fingerprint is remembered for one to two windows
+ * without any per-entry timestamp or timer.
+ */
+class DuplicateFilter {
+
+  private static final int INITIAL_CAPACITY = 256;
+  private static final long EMPTY = 0;
+
+  private final long windowNanos;
+  private long[] current = new long[INITIAL_CAPACITY];
+  private long[] previous = new long[INITIAL_CAPACITY];
+  private int currentSize;
+  private int previousSize;
+  private long generationStart;
+
+  /**
+   * @param windowNanos the suppression window in nanoseconds
+   * @param nowNanos    the current System.nanoTime()
+   */
+  DuplicateFilter(long windowNanos, long nowNanos) {
+    this.windowNanos = windowNanos;
+    this.generationStart = nowNanos;
+  }
+
+  /**
+   * Remember a message, and tell whether it has already been seen within the window.
+   *
+   * @param response the parsed message
+   * @param nowNanos the current System.nanoTime()
+   * @return true if the message is a duplicate
+   */
+  synchronized boolean isDuplicate(SsdpResponse response, long nowNanos) {
+    rollOver(nowNanos);
+    long fingerprint = fingerprint(response);
+    if (contains(previous, fingerprint) || contains(current, fingerprint)) {
+      return true;
+    }
+    if ((currentSize + 1) * 2 > current.length) {
+      current = rehash(current, current.length * 2);
+    }
+    insert(current, fingerprint);
+    currentSize++;
+    return false;
+  }
+
+  /**
+   * @return the number of fingerprints remembered
+   */
+  synchronized int size() {
+    return currentSize + previousSize;
+  }
+
+  private void rollOver(long nowNanos) {
+    long elapsed = nowNanos - generationStart;
+    if (elapsed < windowNanos) {
+      return;
+    }
+    long[] recycled = previous;
+    if (elapsed < 2 * windowNanos) {
+      previous = current;
+      previousSize = currentSize;
+    } else {
+      // The current generation is older than a whole window too: forget it
+      Arrays.fill(current, EMPTY);
+      previous = current;
+      previousSize = 0;
+    }
+    Arrays.fill(recycled, EMPTY);
+    current = recycled;
+    currentSize = 0;
+    generationStart = nowNanos;
+  }
+
+  private static boolean contains(long[] table, long fingerprint) {
+    int mask = table.length - 1;
+    for (int i = mix(fingerprint) & mask; ; i = (i + 1) & mask) {
+      long entry = table[i];
+      if (entry == fingerprint) {
+        return true;
+      }
+      if (entry == EMPTY) {
+        return false;
+      }
+    }
+  }
+
+  private static void insert(long[] table, long fingerprint) {
+    int mask = table.length - 1;
+    int i = mix(fingerprint) & mask;
+    while (table[i] != EMPTY) {
+      i = (i + 1) & mask;
+    }
+    table[i] = fingerprint;
+  }
+
+  private static long[] rehash(long[] table, int capacity) {
+    long[] grown = new long[capacity];
+    for (long entry : table) {
+      if (entry != EMPTY) {
+        insert(grown, entry);
+      }
+    }
+    return grown;
+  }
+
+  private static int mix(long fingerprint) {
+    return (int) (fingerprint ^ (fingerprint >>> 32));
+  }
+
+  /**
+   * @param response the parsed message
+   * @return a non-zero 64-bit hash of the fields identifying the message
+   */
+  static long fingerprint(SsdpResponse response) {
+    long hash = 0xcbf29ce484222325L;
+    hash = hash(hash, response.getType().name());
+    hash = hash(hash, response.getHeader(SsdpHeader.USN));
+    hash = hash(hash, response.getHeader(SsdpHeader.NTS));
+    hash = hash(hash, response.getHeader(SsdpHeader.LOCATION));
+    hash = hash(hash, response.getHeader(SsdpHeader.BOOTID));
+    // Final avalanche, so that both halves are used by the table index
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    return hash == EMPTY ? 1 : hash;
+  }
+
+  /**
+   * FNV-1a over the characters of a field, followed by a separator so that fields cannot shift into each other.
+   */
+  private static long hash(long hash, String value) {
+    if (value != null) {
+      for (int i = 0; i < value.length(); i++) {
+        hash ^= value.charAt(i);
+        hash *= 0x100000001b3L;
+      }
+    }
+    hash ^= 0xff;
+    hash *= 0x100000001b3L;
+    return hash;
+  }
+}
@@ -0,0 +1,210 @@
+package io.resourcepool.ssdp.client.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A hashed timer wheel tracking the expiration of cached entries.
+ * <p>
+ * Scheduling, rescheduling and cancelling an entry are O(1): each slot of the wheel is an intrusive
+ * doubly-linked list, and entries spanning more than one revolution carry a number of remaining rounds.
+ * Deadlines are expressed on the System.nanoTime() scale.
+ * <p>
+ * Entries found expired are queued, and at most maxExpirationsPerTick of them are handed out per tick,
+ * so that a mass expiration is spread over the following ticks instead of firing all callbacks at once.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+class ExpiryWheel<K, V> {
+
+  private final long tickNanos;
+  private final int mask;
+  private final int maxExpirationsPerTick;
+  private final Node<K, V>[] wheel;
+  private final Map<K, Node<K, V>> nodes = new HashMap<K, Node<K, V>>();
+  // Expired entries which have not been handed out yet
+  private final Node<K, V> overdue = new Node<K, V>(null, null);
+  private final long startNanos;
+  private int overdueCount;
+  private long currentTick;
+
+  /**
+   * @param tickNanos             the duration of a tick in nanoseconds
+   * @param wheelSize             the number of slots, rounded up to a power of two
+   * @param maxExpirationsPerTick the maximum number of expired entries handed out per tick
+   * @param startNanos            the System.nanoTime() of tick 0
+   */
+  @SuppressWarnings("unchecked")
+  ExpiryWheel(long tickNanos, int wheelSize, int maxExpirationsPerTick, long startNanos) {
+    int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+    this.tickNanos = tickNanos;
+    this.mask = size - 1;
+    this.maxExpirationsPerTick = maxExpirationsPerTick;
+    this.wheel = new Node[size];
+    for (int i = 0; i < size; i++) {
+      wheel[i] = new Node<K, V>(null, null);
+    }
+    this.startNanos = startNanos;
+  }
+
+  /**
+   * Schedule the expiration of an entry, replacing any previous schedule for the same key.
+   *
+   * @param key           the entry key
+   * @param value         the entry value
+   * @param deadlineNanos the expiration on the System.nanoTime() scale
+   */
+  synchronized void schedule(K key, V value, long deadlineNanos) {
+    Node<K, V> node = nodes.get(key);
+    if (node == null) {
+      node = new Node<K, V>(key, value);
+      nodes.put(key, node);
+    } else {
+      unlink(node);
+      node.value = value;
+    }
+    long elapsed = deadlineNanos - startNanos;
+    long tick = elapsed <= 0 ? 0 : (elapsed + tickNanos - 1) / tickNanos;
+    tick = Math.max(tick, currentTick);
+    node.remainingRounds = (tick - currentTick) / wheel.length;
+    node.linkBefore(wheel[(int) (tick & mask)]);
+  }
+
+  /**
+   * Stop tracking an entry.
+   *
+   * @param key the entry key
+   */
+  synchronized void cancel(K key) {
+    Node<K, V> node = nodes.remove(key);
+    if (node != null) {
+      unlink(node);
+    }
+  }
+
+  /**
+   * Stop tracking an entry, unless it was rescheduled with another value in the meantime.
+   *
+   * @param key   the entry key
+   * @param value the value the entry was scheduled with
+   */
+  synchronized void cancel(K key, V value) {
+    Node<K, V> node = nodes.get(key);
+    if (node != null && node.value == value) {
+      nodes.remove(key);
+      unlink(node);
+    }
+  }
+
+  /**
+   * Process all ticks elapsed until now and hand out the expired entries.
+   *
+   * @param nowNanos the current System.nanoTime()
+   * @return the expired entries, at most maxExpirationsPerTick per elapsed tick
+   */
+  synchronized List<V> advance(long nowNanos) {
+    int budget = 0;
+    while (nowNanos - (startNanos + currentTick * tickNanos) >= 0) {
+      Node<K, V> head = wheel[(int) (currentTick & mask)];
+      Node<K, V> node = head.next;
+      while (node != head) {
+        Node<K, V> next = node.next;
+        if (node.remainingRounds <= 0) {
+          node.unlink();
+          node.remainingRounds = -1;
+          node.linkBefore(overdue);
+          overdueCount++;
+        } else {
+          node.remainingRounds--;
+        }
+        node = next;
+      }
+      currentTick++;
+      budget += maxExpirationsPerTick;
+    }
+    if (overdue.next == overdue) {
+      return Collections.emptyList();
+    }
+    List<V> expired = new ArrayList<V>();
+    while (budget > 0 && overdue.next != overdue) {
+      Node<K, V> node = overdue.next;
+      unlink(node);
+      nodes.remove(node.key);
+      expired.add(node.value);
+      budget--;
+    }
+    return expired;
+  }
+
+  /**
+   * @return the number of entries tracked, including the expired ones not handed out yet
+   */
+  synchronized int size() {
+    return nodes.size();
+  }
+
+  /**
+   * @return the number of expired entries waiting to be handed out
+   */
+  synchronized int overdue() {
+    return overdueCount;
+  }
+
+  /**
+   * Forget all entries.
+   */
+  synchronized void clear() {
+    for (Node<K, V> node : nodes.values()) {
+      node.unlink();
+    }
+    nodes.clear();
+    overdueCount = 0;
+  }
+
+  /**
+   * Remove a node from the list it belongs to, keeping track of the overdue ones.
+   *
+   * @param node the node
+   */
+  private void unlink(Node<K, V> node) {
+    if (node.remainingRounds < 0) {
+      overdueCount--;
+    }
+    node.unlink();
+  }
+
+  /**
+   * An entry of the wheel, also used as the sentinel of each slot list.
+   */
+  private static final class Node<K, V> {
+    private final K key;
+    private V value;
+    // Remaining revolutions before expiry, or -1 once in the overdue list
+    private long remainingRounds;
+    private Node<K, V> prev = this;
+    private Node<K, V> next = this;
+
+    private Node(K key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    private void linkBefore(Node<K, V> sentinel) {
+      this.prev = sentinel.prev;
+      this.next = sentinel;
+      sentinel.prev.next = this;
+      sentinel.prev = this;
+    }
+
+    private void unlink() {
+      prev.next = next;
+      next.prev = prev;
+      prev = this;
+      next = this;
+    }
+  }
+}
@@ -0,0 +1,221 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.client.SsdpParams;
+import io.resourcepool.ssdp.client.util.ByteBufferPool;
+import io.resourcepool.ssdp.client.util.Utils;
+import io.resourcepool.ssdp.model.SsdpClientOptions;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking transport based on a MulticastSocket.
+ * One thread is blocked receiving datagrams into pooled buffers while another one runs the timed tasks.
+ */
+class MulticastSocketTransport implements SsdpTransport {
+
+  private final SsdpClientImpl client;
+  private ScheduledExecutorService sendExecutor;
+  private ExecutorService receiveExecutor;
+
+  private SsdpClientOptions options;
+  private ByteBufferPool bufferPool;
+  private MulticastSocket clientSocket;
+  private List<NetworkInterface> interfaces;
+  private volatile boolean closed;
+
+  /**
+   * @param client the client handling incoming datagrams
+   */
+  MulticastSocketTransport(SsdpClientImpl client) {
+    this.client = client;
+  }
+
+  @Override
+  public void open(SsdpClientOptions options) throws IOException {
+    this.options = options;
+    this.sendExecutor = Executors.newScheduledThreadPool(1, options.getThreadFactory());
+    this.receiveExecutor = Executors.newSingleThreadExecutor(options.getThreadFactory());
+    // DatagramPacket needs a heap array: the options only allow direct pools with the non-blocking transport
+    this.bufferPool = options.getReceiveBufferPool();
+    this.clientSocket = new MulticastSocket(options.getBindingPort());
+    this.clientSocket.setReuseAddress(true);
+    interfaces = Utils.getMulticastInterfaces();
+    joinGroupOnAllInterfaces(SsdpParams.getSsdpMulticastAddress(), options.getIgnoreInterfaceDiscoveryErrors());
+  }
+
+  @Override
+  public void start() {
+    // Receive all incoming datagrams and handle them on-the-fly
+    receiveExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        DatagramPacket packet = new DatagramPacket(new byte[0], 0);
+        try {
+          while (!closed) {
+            ByteBuffer buffer = bufferPool.acquire();
+            try {
+              packet.setData(buffer.array(), buffer.arrayOffset(), buffer.capacity());
+              clientSocket.receive(packet);
+            } catch (IOException e) {
+              bufferPool.release(buffer);
+              throw e;
+            }
+            buffer.limit(packet.getLength());
+            // The client gives the buffer back to the pool once handled
+            client.receive(buffer, packet.getAddress(), null, bufferPool, options);
+          }
+        } catch (IOException e) {
+          if (clientSocket.isClosed() && closed) {
+            // This could happen when closing socket. In that case, this is not an issue.
+            return;
+          }
+          client.onFailed(e);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void schedule(Runnable task, long delay) {
+    try {
+      sendExecutor.schedule(task, delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // The transport has been closed
+    }
+  }
+
+  /**
+   * Send the datagram packet on all interfaces.
+   * <p>
+   * Falls back to the default send() if the interfaces list is not populated
+   *
+   * @param packet the datagram to send
+   * @throws IOException from the MulticastSocket
+   */
+  @Override
+  public void send(DatagramPacket packet) throws IOException {
+    if (interfaces != null && interfaces.size() > 0) {
+      for (NetworkInterface iface : interfaces) {
+        try {
+          clientSocket.setNetworkInterface(iface);
+          clientSocket.send(packet);
+        } catch (IOException e) {
+          client.getMetrics().onSendFailed(iface);
+          throw e;
+        }
+      }
+    } else {
+      try {
+        clientSocket.send(packet);
+      } catch (IOException e) {
+        client.getMetrics().onSendFailed(null);
+        throw e;
+      }
+    }
+  }
+
+  @Override
+  public void sendTo(DatagramPacket packet) throws IOException {
+    try {
+      clientSocket.send(packet);
+    } catch (IOException e) {
+      client.getMetrics().onSendFailed(null);
+      throw e;
+    }
+  }
+
+  @Override
+  public List<InetAddress> getGroups() {
+    return SsdpParams.getSsdpMulticastAddresses(false);
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public void close() {
+    this.closed = true;
+    this.receiveExecutor.shutdownNow();
+    this.sendExecutor.shutdownNow();
+    if (this.clientSocket == null) {
+      return;
+    }
+    try {
+      leaveGroupOnAllInterfaces(SsdpParams.getSsdpMulticastAddress());
+    } catch (IOException e) {
+      // Fail silently
+    } finally {
+      this.clientSocket.close();
+    }
+    this.interfaces = null;
+  }
+
+  /**
+   * Joins the given multicast group on all interfaces.
+   * <p>
+   * Falls back to the default joinGroup() if the interfaces list is not populated
+   *
+   * @param address      the multicast group address
+   * @param ignoreErrors whether to ignore group join errors or not
+   * @throws IOException from the MulticastSocket
+   */
+  private void joinGroupOnAllInterfaces(InetAddress address, Boolean ignoreErrors) throws IOException {
+    if (interfaces != null && interfaces.size() > 0) {
+      InetSocketAddress socketAddress = new InetSocketAddress(address, 65535); // the port number does not matter here. it is ignored
+      List<NetworkInterface> newInterfaces = new ArrayList<>();
+      for (NetworkInterface iface : interfaces) {
+        try {
+          this.clientSocket.joinGroup(socketAddress, iface);
+          newInterfaces.add(iface);
+        } catch (IOException e) {
+          if (!ignoreErrors) {
+            throw e;
+          } else {
+            client.onFailedAndIgnored(e);
+          }
+        }
+      }
+      interfaces = newInterfaces;
+      if (interfaces.isEmpty()) {
+        throw new IOException("No interface was joined");
+      }
+    } else {
+      this.clientSocket.joinGroup(address);
+    }
+  }
+
+  /**
+   * Leaves the multicast group on all interfaces.
+   * <p>
+   * Falls back to the default leaveGroup() if the interfaces list is not populated
+   *
+   * @param address the multicast group address
+   * @throws IOException from the MulticastSocket
+   */
+  private void leaveGroupOnAllInterfaces(InetAddress address) throws IOException {
+    if (interfaces != null && interfaces.size() > 0) {
+      InetSocketAddress socketAddress = new InetSocketAddress(address, 65535); // the port number does not matter here. it is ignored
+
+      for (NetworkInterface iface : interfaces) {
+        this.clientSocket.leaveGroup(socketAddress, iface);
+      }
+    } else {
+      this.clientSocket.leaveGroup(address);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.SsdpService;
+
+import java.util.List;
+
+/**
+ * Plans the refresh of cached services before they expire.
+ * <p>
+ * A cached service is first probed with a unicast search sent to its address, lead time before its expiry.
+ * If it has not answered halfway between the probe and its expiry, it falls back to a multicast search.
+ * Services whose lifetime is shorter than twice the lead time are probed halfway through it.
+ * Both steps are tracked by expiry wheels, so that a mass of probes is spread over several ticks.
+ */
+class RefreshScheduler {
+
+  private final long leadNanos;
+  private final ExpiryWheel<String, SsdpService> probes;
+  private final ExpiryWheel<String, SsdpService> fallbacks;
+
+  /**
+   * @param leadNanos        the time before expiry at which a service is probed
+   * @param tickNanos        the duration of a tick in nanoseconds
+   * @param wheelSize        the number of slots of the wheels
+   * @param maxProbesPerTick the maximum number of probes or fallbacks handed out per tick
+   * @param startNanos       the System.nanoTime() of tick 0
+   */
+  RefreshScheduler(long leadNanos, long tickNanos, int wheelSize, int maxProbesPerTick, long startNanos) {
+    this.leadNanos = leadNanos;
+    this.probes = new ExpiryWheel<String, SsdpService>(tickNanos, wheelSize, maxProbesPerTick, startNanos);
+    this.fallbacks = new ExpiryWheel<String, SsdpService>(tickNanos, wheelSize, maxProbesPerTick, startNanos);
+  }
+
+  /**
+   * Plan the probe of a service just cached, replacing whatever was planned for its previous instance.
+   *
+   * @param service     the cached service
+   * @param expiryNanos the expiration of the service on the System.nanoTime() scale
+   * @param nowNanos    the current System.nanoTime()
+   */
+  void schedule(SsdpService service, long expiryNanos, long nowNanos) {
+    fallbacks.cancel(service.getSerialNumber());
+    probes.schedule(service.getSerialNumber(), service, expiryNanos - Math.min(leadNanos, (expiryNanos - nowNanos) / 2));
+  }
+
+  /**
+   * Probe a service on the next tick, such as one restored from a snapshot which has to be confirmed.
+   *
+   * @param service  the cached service
+   * @param nowNanos the current System.nanoTime()
+   */
+  void probeNow(SsdpService service, long nowNanos) {
+    fallbacks.cancel(service.getSerialNumber());
+    probes.schedule(service.getSerialNumber(), service, nowNanos);
+  }
+
+  /**
+   * Stop refreshing a service.
+   *
+   * @param serialNumber the USN of the service
+   */
+  void cancel(String serialNumber) {
+    probes.cancel(serialNumber);
+    fallbacks.cancel(serialNumber);
+  }
+
+  /**
+   * Stop refreshing a service removed from the cache, unless a newer instance of it was planned in the meantime.
+   *
+   * @param service the service
+   */
+  void cancel(SsdpService service) {
+    probes.cancel(service.getSerialNumber(), service);
+    fallbacks.cancel(service.getSerialNumber(), service);
+  }
+
+  /**
+   * Hand out the services to probe, and plan their fallback.
+   *
+   * @param nowNanos the current System.nanoTime()
+   * @return the services to send a unicast search to
+   */
+  List<SsdpService> dueProbes(long nowNanos) {
+    List<SsdpService> due = probes.advance(nowNanos);
+    for (SsdpService service : due) {
+      long expiryNanos = service.getOriginalResponse().getExpiryNanoTime();
+      fallbacks.schedule(service.getSerialNumber(), service, nowNanos + Math.max(0, (expiryNanos - nowNanos) / 2));
+    }
+    return due;
+  }
+
+  /**
+   * @param nowNanos the current System.nanoTime()
+   * @return the probed services to search by multicast, unless they answered in the meantime
+   */
+  List<SsdpService> dueFallbacks(long nowNanos) {
+    return fallbacks.advance(nowNanos);
+  }
+
+  /**
+   * @return the number of services with a probe or a fallback planned
+   */
+  int size() {
+    return probes.size() + fallbacks.size();
+  }
+}
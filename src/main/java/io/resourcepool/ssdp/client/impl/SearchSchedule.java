@@ -0,0 +1,106 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.DiscoveryOptions;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The schedule of the search requests of a discovery.
+ * <p>
+ * A discovery first sends a burst of requests, since a single M-SEARCH is easily lost. It then sends one request
+ * per interval, and doubles the interval up to a ceiling after each request that turned up no change, as the cache
+ * is stable. A new device or an expired service brings the interval back to its floor, and every delay is jittered
+ * so that several clients started together do not search in lockstep.
+ */
+class SearchSchedule {
+
+  private static final int BACKOFF_FACTOR = 2;
+
+  private final int burst;
+  private final long burstInterval;
+  private final long minInterval;
+  private final long maxInterval;
+  private final double jitter;
+
+  private int sent;
+  private long interval;
+  private boolean changed;
+  private long nextSendNanos;
+  // Bumped when the pending request is brought forward, so that the one scheduled earlier is skipped
+  private int generation;
+
+  /**
+   * @param options the discovery options
+   */
+  SearchSchedule(DiscoveryOptions options) {
+    this.burst = options.getInitialBurst();
+    this.burstInterval = options.getBurstInterval();
+    this.minInterval = options.getIntervalBetweenRequests();
+    this.maxInterval = Math.max(minInterval, options.getMaxIntervalBetweenRequests());
+    this.jitter = options.getJitter();
+    this.interval = minInterval;
+  }
+
+  /**
+   * Record a request sent.
+   *
+   * @param nowNanos the current System.nanoTime()
+   * @return the delay in milliseconds before the next request
+   */
+  synchronized long next(long nowNanos) {
+    sent++;
+    long delay;
+    if (sent < burst) {
+      delay = burstInterval;
+    } else {
+      if (sent == burst || changed) {
+        interval = minInterval;
+      } else {
+        interval = Math.min(interval * BACKOFF_FACTOR, maxInterval);
+      }
+      delay = interval;
+    }
+    changed = false;
+    return plan(delay, nowNanos);
+  }
+
+  /**
+   * Record a new device or an expired service. If the schedule had backed off, bring the next request forward.
+   *
+   * @param nowNanos the current System.nanoTime()
+   * @return the delay in milliseconds before the next request if it has been brought forward, -1 otherwise
+   */
+  synchronized long onChange(long nowNanos) {
+    changed = true;
+    if (sent < burst || interval <= minInterval || nextSendNanos - nowNanos <= TimeUnit.MILLISECONDS.toNanos(minInterval)) {
+      return -1;
+    }
+    interval = minInterval;
+    generation++;
+    return plan(minInterval, nowNanos);
+  }
+
+  /**
+   * @return the generation a request is scheduled with
+   */
+  synchronized int getGeneration() {
+    return generation;
+  }
+
+  /**
+   * @return the current interval between requests in milliseconds, once the initial burst is sent
+   */
+  synchronized long getInterval() {
+    return interval;
+  }
+
+  private long plan(long delay, long nowNanos) {
+    if (jitter > 0) {
+      double spread = delay * jitter;
+      delay = Math.max(1, Math.round(delay - spread + 2 * spread * ThreadLocalRandom.current().nextDouble()));
+    }
+    nextSendNanos = nowNanos + TimeUnit.MILLISECONDS.toNanos(delay);
+    return delay;
+  }
+}
@@ -0,0 +1,159 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.exception.NoSerialNumberException;
+import io.resourcepool.ssdp.model.DiscoveryHandle;
+import io.resourcepool.ssdp.model.LookupOptions;
+import io.resourcepool.ssdp.model.SsdpService;
+import io.resourcepool.ssdp.model.SsdpServiceAnnouncement;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * A one-shot lookup: the listener of a discovery collecting the services found, by USN, until one of the
+ * conditions of its options is met. The future then completes with the services found so far and the discovery
+ * is cancelled. Cancelling the future cancels the discovery too.
+ */
+class ServiceLookup implements StoppableListener {
+
+  private final CompletableFuture<List<SsdpService>> future = new CompletableFuture<List<SsdpService>>();
+  private final LinkedHashMap<String, SsdpService> services = new LinkedHashMap<String, SsdpService>();
+  private final long deadline;
+  private final long quietNanos;
+  private final int maxResults;
+  private final String serialNumber;
+  private long lastNewService;
+
+  /**
+   * @param options  the lookup options
+   * @param nowNanos the current System.nanoTime()
+   */
+  ServiceLookup(LookupOptions options, long nowNanos) {
+    this.deadline = nowNanos + TimeUnit.MILLISECONDS.toNanos(options.getTimeout());
+    this.quietNanos = options.getQuietPeriod() != null ? TimeUnit.MILLISECONDS.toNanos(options.getQuietPeriod()) : -1;
+    this.maxResults = options.getMaxResults() != null ? options.getMaxResults() : Integer.MAX_VALUE;
+    this.serialNumber = options.getSerialNumber();
+    this.lastNewService = nowNanos;
+  }
+
+  CompletableFuture<List<SsdpService>> getFuture() {
+    return future;
+  }
+
+  /**
+   * Bind the lookup to its discovery, once started, and check its timers on the transport until it completes.
+   * The lookup may already be complete, from the services replayed from the cache.
+   *
+   * @param handle    the handle of the discovery
+   * @param transport the transport of the client, or null if it could not be opened
+   */
+  void start(final DiscoveryHandle handle, SsdpTransport transport) {
+    future.whenComplete(new BiConsumer<List<SsdpService>, Throwable>() {
+      @Override
+      public void accept(List<SsdpService> services, Throwable ex) {
+        handle.cancel();
+      }
+    });
+    if (transport != null) {
+      scheduleCheck(transport, check(System.nanoTime()));
+    }
+  }
+
+  private void scheduleCheck(final SsdpTransport transport, long delayNanos) {
+    if (delayNanos < 0) {
+      return;
+    }
+    // Round up, the check would otherwise fire slightly early and be planned again
+    transport.schedule(new Runnable() {
+      @Override
+      public void run() {
+        scheduleCheck(transport, check(System.nanoTime()));
+      }
+    }, TimeUnit.NANOSECONDS.toMillis(delayNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+  }
+
+  /**
+   * Complete the lookup if its timeout or its quiet period has passed.
+   *
+   * @param nowNanos the current System.nanoTime()
+   * @return the delay in nanoseconds before the next check, or -1 if the lookup is complete
+   */
+  long check(long nowNanos) {
+    List<SsdpService> result;
+    synchronized (this) {
+      if (future.isDone()) {
+        return -1;
+      }
+      long untilDeadline = deadline - nowNanos;
+      long untilQuiet = quietNanos >= 0 ? lastNewService + quietNanos - nowNanos : Long.MAX_VALUE;
+      if (untilDeadline > 0 && untilQuiet > 0) {
+        return Math.min(untilDeadline, untilQuiet);
+      }
+      result = snapshot();
+    }
+    future.complete(result);
+    return -1;
+  }
+
+  /**
+   * Complete the lookup with the services found so far, because its discovery stopped.
+   */
+  @Override
+  public void stop() {
+    List<SsdpService> result;
+    synchronized (this) {
+      result = snapshot();
+    }
+    future.complete(result);
+  }
+
+  @Override
+  public void onServiceDiscovered(SsdpService service) {
+    onServiceDiscovered(service, System.nanoTime());
+  }
+
+  /**
+   * @param service  the service found
+   * @param nowNanos the current System.nanoTime()
+   */
+  void onServiceDiscovered(SsdpService service, long nowNanos) {
+    List<SsdpService> result;
+    synchronized (this) {
+      if (future.isDone()) {
+        return;
+      }
+      String usn = service.getSerialNumber();
+      // Later responses replace earlier ones, but only a new USN restarts the quiet period
+      if (services.put(usn, service) == null) {
+        lastNewService = nowNanos;
+      }
+      if (services.size() < maxResults && (serialNumber == null || !serialNumber.equals(usn))) {
+        return;
+      }
+      result = snapshot();
+    }
+    future.complete(result);
+  }
+
+  @Override
+  public void onServiceAnnouncement(SsdpServiceAnnouncement announcement) {
+  }
+
+  @Override
+  public void onFailed(Exception ex) {
+    // A device without USN does not fail the lookup
+    if (ex instanceof NoSerialNumberException) {
+      return;
+    }
+    future.completeExceptionally(ex);
+  }
+
+  // The future is completed outside of the lock: its dependent stages run on the completing thread
+  private List<SsdpService> snapshot() {
+    return new ArrayList<SsdpService>(services.values());
+  }
+}
@@ -2,32 +2,37 @@ package io.resourcepool.ssdp.client.impl;
 
 import io.resourcepool.ssdp.client.SsdpClient;
 import io.resourcepool.ssdp.client.SsdpParams;
-import io.resourcepool.ssdp.client.util.Utils;
+import io.resourcepool.ssdp.client.metrics.SsdpMetrics;
 import io.resourcepool.ssdp.client.request.SsdpDiscovery;
+import io.resourcepool.ssdp.client.response.SsdpHeader;
 import io.resourcepool.ssdp.client.response.SsdpResponse;
 import io.resourcepool.ssdp.exception.NoSerialNumberException;
 import io.resourcepool.ssdp.model.*;
 import io.resourcepool.ssdp.client.parser.ResponseParser;
+import io.resourcepool.ssdp.client.util.ByteBufferPool;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
-import java.net.MulticastSocket;
 import java.net.NetworkInterface;
-import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * The SsdpClient handles all multicast SSDP content.
  * One can send search requests or just listen to the incoming events related to cached services.
+ * <p>
+ * Several discoveries can be active at the same time: they share the same socket, every incoming datagram is
+ * parsed once and routed to the listeners of the discoveries interested in its service type.
  *
  * @author Loïc Ortola on 05/08/2017
  */
@@ -35,117 +40,418 @@ public class SsdpClientImpl extends SsdpClient {
 
     // Interval in ms between subsequent discovery requests
     public static final long DEFAULT_INTERVAL_BETWEEN_REQUESTS = 10000;
-    private static final DiscoveryListener NOOP_LISTENER = new DiscoveryListener() {
-        @Override
-        public void onServiceDiscovered(SsdpService service) {
+    // Expiry wheel: 250ms ticks, 512 slots (about 2 minutes per revolution), at most 64 expirations per tick
+    private static final long EXPIRY_TICK = 250;
+    private static final int EXPIRY_WHEEL_SIZE = 512;
+    private static final int MAX_EXPIRATIONS_PER_TICK = 64;
+    // Options of the unicast and multicast searches refreshing cached services
+    private static final DiscoveryOptions REFRESH_OPTIONS = DiscoveryOptions.builder().build();
 
-        }
-
-        @Override
-        public void onServiceAnnouncement(SsdpServiceAnnouncement announcement) {
+    // Stateful attributes
+    private final SubscriptionIndex subscriptions = new SubscriptionIndex();
+    private Map<String, SsdpService> cache = new ConcurrentHashMap<String, SsdpService>();
+    private final BootIdTracker bootIds = new BootIdTracker();
+    private final ExpiryWheel<String, SsdpService> expiryWheel = new ExpiryWheel<String, SsdpService>(
+        TimeUnit.MILLISECONDS.toNanos(EXPIRY_TICK), EXPIRY_WHEEL_SIZE, MAX_EXPIRATIONS_PER_TICK, System.nanoTime());
+    private SsdpClientOptions clientOptions;
+    private volatile SsdpTransport transport;
+    private volatile DispatchPipeline pipeline;
+    private volatile DuplicateFilter duplicateFilter;
+    private volatile AutoLookup autoLookup;
+    private volatile RefreshScheduler refreshScheduler;
+    private volatile CacheSnapshot snapshot;
+    private final SsdpMetrics metrics;
 
-        }
+    public SsdpClientImpl() {
+        this(SsdpMetrics.NOOP);
+    }
 
-        @Override
-        public void onFailed(Exception ex) {
+    /**
+     * @param metrics the metrics the client events are reported to
+     */
+    public SsdpClientImpl(SsdpMetrics metrics) {
+        this.metrics = metrics;
+        metrics.registerGauge("cacheSize", new SsdpMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                return cache.size();
+            }
+        });
+        metrics.registerGauge("expiryWheelSize", new SsdpMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                return expiryWheel.size();
+            }
+        });
+        metrics.registerGauge("subscriptions", new SsdpMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                return subscriptions.all().size();
+            }
+        });
+        metrics.registerGauge("autoLookupServiceTypes", new SsdpMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                AutoLookup current = autoLookup;
+                return current != null ? current.size() : 0;
+            }
+        });
+        metrics.registerGauge("plannedRefreshes", new SsdpMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                RefreshScheduler current = refreshScheduler;
+                return current != null ? current.size() : 0;
+            }
+        });
+        metrics.registerGauge("persistedServices", new SsdpMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                CacheSnapshot current = snapshot;
+                return current != null ? current.size() : 0;
+            }
+        });
+        metrics.registerGauge("dispatchQueueDepth", new SsdpMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                long depth = 0;
+                for (int queueDepth : getDispatchQueueDepths()) {
+                    depth += queueDepth;
+                }
+                return depth;
+            }
+        });
+    }
 
+    /**
+     * Start a discovery.
+     * The first discovery opens the socket with the given options. Later ones share that socket: their
+     * options only drive the discovery itself (cache usage and error reporting), not the transport.
+     */
+    @Override
+    public synchronized DiscoveryHandle discoverServices(DiscoveryRequest req, SsdpClientOptions options, DiscoveryListener callback) {
+        Subscription subscription = new Subscription(this, req, options, callback);
+        subscribe(subscription);
+        if (transport == null && !open(options)) {
+            unsubscribe(subscription);
+            return subscription;
         }
-    };
+        // Send UDP Discover Request Datagrams on the schedule of the discovery
+        if (subscription.getRequest() != null) {
+            scheduleSearch(transport, subscription, subscription.getSchedule().getGeneration(), 0);
+        }
+        return subscription;
+    }
 
-    private enum State {
-        ACTIVE, IDLE, STOPPING
+    @Override
+    public DiscoveryHandle discoverServices(DiscoveryRequest req, final DiscoveryListener callback) {
+        return discoverServices(req, SsdpClientOptions.builder().build(), callback);
     }
 
-    private ScheduledExecutorService sendExecutor = Executors.newScheduledThreadPool(1);
-    private ExecutorService receiveExecutor = Executors.newSingleThreadExecutor();
+    /**
+     * Start a discovery whose events are coalesced into batches, flushed on the transport timer it opened.
+     */
+    @Override
+    public synchronized DiscoveryHandle discoverServices(DiscoveryRequest req, SsdpClientOptions options, BatchOptions batchOptions, BatchDiscoveryListener callback) {
+        BatchingListener batching = new BatchingListener(callback, batchOptions);
+        DiscoveryHandle handle = discoverServices(req, options, batching);
+        batching.start(handle, handle.isActive() ? transport : null);
+        return handle;
+    }
 
-    // Stateful attributes
-    private List<DiscoveryRequest> requests;
-    private DiscoveryListener callback = NOOP_LISTENER;
-    private State state;
-    private Map<String, SsdpService> cache = new ConcurrentHashMap<String, SsdpService>();
-    private MulticastSocket clientSocket;
-    private List<NetworkInterface> interfaces;
+    /**
+     * Start a discovery completing a future, then stopping, as soon as one of the conditions of the lookup is met.
+     * Synchronized with the discoveries, so that the lookup checks its timers on the transport its discovery opened.
+     */
+    @Override
+    public synchronized CompletableFuture<List<SsdpService>> lookUpServices(DiscoveryRequest req, SsdpClientOptions options, LookupOptions lookupOptions) {
+        ServiceLookup lookup = new ServiceLookup(lookupOptions, System.nanoTime());
+        DiscoveryHandle handle = discoverServices(req, options, lookup);
+        lookup.start(handle, handle.isActive() ? transport : null);
+        return lookup.getFuture();
+    }
+
+    @Override
+    public CompletableFuture<List<SsdpService>> lookUpServices(DiscoveryRequest req, LookupOptions lookupOptions) {
+        return lookUpServices(req, SsdpClientOptions.builder().build(), lookupOptions);
+    }
 
     /**
-     * Reset all stateful attributes.
+     * Register a subscription and replay the cached services it is interested in.
+     * Does not touch the transport, so that the dispatch path can be benchmarked without a socket.
      *
-     * @param req      the new discovery request
-     * @param callback the callback
+     * @param subscription the subscription
      */
-    private void reset(DiscoveryRequest req, DiscoveryListener callback) {
-        this.state = State.ACTIVE;
-        this.callback = callback;
-        this.requests = Collections.synchronizedList(new ArrayList<>());
-        if (req != null) {
-            requests.add(req);
-        }
+    void subscribe(Subscription subscription) {
+        subscriptions.add(subscription);
         // Lazily Remove expired entries
         for (Map.Entry<String, SsdpService> e : this.cache.entrySet()) {
             if (e.getValue().isExpired()) {
-                this.cache.remove(e.getKey());
-            } else {
+                if (this.cache.remove(e.getKey(), e.getValue())) {
+                    forget(e.getValue());
+                }
+            } else if (subscription.matches(e.getValue().getServiceType())) {
                 // Notify entry which is non expired
-                callback.onServiceDiscovered(e.getValue());
+                notifyServiceDiscovered(subscription, e.getValue());
             }
         }
     }
 
-    @Override
-    public void discoverServices(DiscoveryRequest req, SsdpClientOptions options, DiscoveryListener callback) {
-        if (State.ACTIVE.equals(state)) {
-            callback.onFailed(new IllegalStateException("Another discovery is in progress. Stop the first discovery before starting a new one."));
-            return;
+    /**
+     * Cancel a subscription. The transport is closed once the last subscription is cancelled.
+     * The listener is stopped last, out of the lock unless the caller holds it, as while a discovery starts.
+     *
+     * @param subscription the subscription
+     */
+    void unsubscribe(Subscription subscription) {
+        StoppableListener stopped;
+        synchronized (this) {
+            stopped = subscription.deactivate();
+            if (!subscriptions.remove(subscription)) {
+                // Already stopped by stopDiscovery
+                return;
+            }
+            if (subscriptions.isEmpty()) {
+                close();
+            }
         }
-        // Reset attributes
-        reset(req, callback);
-        // Open and bind client socket to send / receive datagrams
-        openAndBindSocket(options);
+        // Stopping runs user callbacks, which must not hold the lock of the client
+        if (stopped != null) {
+            stopped.stop();
+        }
+    }
 
-        // Send UDP Discover Request Datagrams at a fixed rate
-        sendExecutor.scheduleAtFixedRate(new Runnable() {
+    /**
+     * Open and bind the transport, then start receiving, evicting expired services and sending auto lookups.
+     *
+     * @param options the ssdp client options
+     * @return true if the transport has been opened
+     */
+    private boolean open(final SsdpClientOptions options) {
+        // Open and bind client socket to send / receive datagrams
+        SsdpTransport newTransport = options.getUseNonBlockingTransport() ? new DatagramChannelTransport(this) : new MulticastSocketTransport(this);
+        try {
+            newTransport.open(options);
+        } catch (IOException e) {
+            newTransport.close();
+            onFailed(e);
+            return false;
+        }
+        this.clientOptions = options;
+        this.transport = newTransport;
+        this.autoLookup = new AutoLookup(options.getAutoLookupLimit(), TimeUnit.MILLISECONDS.toNanos(options.getAutoLookupTtl()));
+        if (options.getDuplicateSuppressionWindow() > 0) {
+            this.duplicateFilter = new DuplicateFilter(TimeUnit.MILLISECONDS.toNanos(options.getDuplicateSuppressionWindow()), System.nanoTime());
+        }
+        if (options.getRefreshLeadTime() > 0) {
+            this.refreshScheduler = new RefreshScheduler(TimeUnit.MILLISECONDS.toNanos(options.getRefreshLeadTime()),
+                TimeUnit.MILLISECONDS.toNanos(EXPIRY_TICK), EXPIRY_WHEEL_SIZE, MAX_EXPIRATIONS_PER_TICK, System.nanoTime());
+        }
+        if (options.getPersistentCacheFile() != null) {
+            restoreSnapshot(options);
+        }
+        if (options.getDispatchThreads() > 0) {
+            this.pipeline = new DispatchPipeline(this, options);
+        }
+        // Receive all incoming datagrams, evict expired services and look unknown announcers up
+        newTransport.start();
+        scheduleRepeatedly(newTransport, new Runnable() {
             @Override
             public void run() {
-                sendDiscoveryRequest(options);
+                expireServices();
+                refreshServices();
             }
-        }, 0, req.getDiscoveryOptions().getIntervalBetweenRequests(), TimeUnit.MILLISECONDS);
+        }, EXPIRY_TICK);
+        scheduleRepeatedly(newTransport, new Runnable() {
+            @Override
+            public void run() {
+                sendAutoLookupRequests();
+            }
+        }, DEFAULT_INTERVAL_BETWEEN_REQUESTS);
+        return true;
+    }
+
+    /**
+     * Map the snapshot file, cache the services it holds which have not expired, and report them to the discoveries
+     * right away. Live responses then replace them, and they are probed by unicast first if cached services are
+     * refreshed before expiry. The services cached before a restart of the transport are persisted again.
+     *
+     * @param options the ssdp client options
+     */
+    private void restoreSnapshot(SsdpClientOptions options) {
+        CacheSnapshot restored;
+        try {
+            restored = CacheSnapshot.open(options.getPersistentCacheFile(), options.getPersistentCacheCapacity());
+        } catch (IOException e) {
+            // A cold start does not prevent the discovery
+            onFailedAndIgnored(e);
+            return;
+        }
+        long now = System.nanoTime();
+        RefreshScheduler refresh = refreshScheduler;
+        for (SsdpService service : restored.load(System.currentTimeMillis())) {
+            if (cache.putIfAbsent(service.getSerialNumber(), service) != null) {
+                continue;
+            }
+            track(service);
+            expiryWheel.schedule(service.getSerialNumber(), service, service.getOriginalResponse().getExpiryNanoTime());
+            if (refresh != null) {
+                refresh.probeNow(service, now);
+            }
+            for (Subscription subscription : subscriptions.route(service.getServiceType())) {
+                notifyServiceDiscovered(subscription, service);
+            }
+        }
+        for (SsdpService service : cache.values()) {
+            if (!service.isExpired()) {
+                restored.put(service);
+            }
+        }
+        this.snapshot = restored;
+    }
 
-        // Receive all incoming datagrams and handle them on-the-fly
-        receiveExecutor.execute(new Runnable() {
+    /**
+     * Run a task on the transport timer right away, then again after each period until the transport is closed.
+     *
+     * @param transport the transport
+     * @param task      the task
+     * @param period    the delay in milliseconds between the end of a run and the start of the next one
+     */
+    private static void scheduleRepeatedly(final SsdpTransport transport, final Runnable task, final long period) {
+        transport.schedule(new Runnable() {
             @Override
             public void run() {
                 try {
-                    while (State.ACTIVE.equals(state)) {
-                        byte[] buffer = new byte[8192];
-                        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                        clientSocket.receive(packet);
-                        handleIncomingPacket(packet, options);
+                    task.run();
+                } finally {
+                    if (!transport.isClosed()) {
+                        transport.schedule(this, period);
                     }
-                } catch (IOException e) {
-                    if (clientSocket.isClosed() && !State.ACTIVE.equals(state)) {
-                        // This could happen when closing socket. In that case, this is not an issue.
-                        return;
+                }
+            }
+        }, 0);
+    }
+
+    /**
+     * Send the search requests of a discovery, each one planning the next, until the transport is closed,
+     * the subscription is cancelled or a request scheduled later brings this one forward.
+     *
+     * @param transport    the transport
+     * @param subscription the subscription
+     * @param generation   the generation of the schedule this request belongs to
+     * @param delay        the delay in milliseconds before the request
+     */
+    private void scheduleSearch(final SsdpTransport transport, final Subscription subscription, final int generation, long delay) {
+        transport.schedule(new Runnable() {
+            @Override
+            public void run() {
+                SearchSchedule schedule = subscription.getSchedule();
+                if (!subscription.isActive() || schedule.getGeneration() != generation) {
+                    return;
+                }
+                try {
+                    sendDiscoveryRequest(subscription.getRequest(), subscription);
+                } finally {
+                    if (!transport.isClosed()) {
+                        scheduleSearch(transport, subscription, generation, schedule.next(System.nanoTime()));
                     }
-                    callback.onFailed(e);
                 }
             }
-        });
+        }, delay);
     }
 
-    @Override
-    public void discoverServices(DiscoveryRequest req, final DiscoveryListener callback) {
-        discoverServices(req, SsdpClientOptions.builder().build(), callback);
+    /**
+     * Bring the searches of backed-off discoveries forward, as a device appeared or a service expired.
+     *
+     * @param matching the subscriptions interested in the service type which changed
+     */
+    private void onServiceChange(List<Subscription> matching) {
+        SsdpTransport currentTransport = transport;
+        if (currentTransport == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (Subscription subscription : matching) {
+            SearchSchedule schedule = subscription.getSchedule();
+            if (schedule == null) {
+                continue;
+            }
+            long delay = schedule.onChange(now);
+            if (delay >= 0) {
+                scheduleSearch(currentTransport, subscription, schedule.getGeneration(), delay);
+            }
+        }
+    }
+
+    /**
+     * Take over a datagram received by the transport: handle it right away, or hand it over to the dispatch
+     * pipeline if the client uses several dispatch threads.
+     *
+     * @param buffer        the received datagram, between position and limit
+     * @param originAddress the address the datagram was received from
+     * @param iface         the interface the datagram was received on, or null if unknown
+     * @param pool          the pool the buffer is given back to once handled
+     */
+    void receive(ByteBuffer buffer, InetAddress originAddress, NetworkInterface iface, ByteBufferPool pool, SsdpClientOptions options) {
+        DispatchPipeline current = pipeline;
+        if (current != null) {
+            current.dispatch(buffer, originAddress, iface, pool);
+            return;
+        }
+        try {
+            handleIncomingPacket(buffer, originAddress, iface, options);
+        } finally {
+            pool.release(buffer);
+        }
     }
 
     /**
      * Thid handler handles incoming SSDP packets.
+     * Package-private so that the dispatch path can be benchmarked without a socket.
      *
      * @param packet the received datagram
      */
-    private void handleIncomingPacket(DatagramPacket packet, SsdpClientOptions options) {
-        SsdpResponse response = ResponseParser.parse(packet);
+    void handleIncomingPacket(DatagramPacket packet, SsdpClientOptions options) {
+        metrics.onPacketReceived(packet.getLength());
+        handleIncomingResponse(ResponseParser.parse(packet), options);
+    }
+
+    /**
+     * Thid handler handles incoming SSDP packets read into a buffer.
+     *
+     * @param buffer        the received datagram, between position and limit
+     * @param originAddress the address the datagram was received from
+     */
+    void handleIncomingPacket(ByteBuffer buffer, InetAddress originAddress, SsdpClientOptions options) {
+        handleIncomingPacket(buffer, originAddress, null, options);
+    }
+
+    /**
+     * Thid handler handles incoming SSDP packets read into a buffer.
+     *
+     * @param buffer        the received datagram, between position and limit
+     * @param originAddress the address the datagram was received from
+     * @param iface         the interface the datagram was received on, or null if unknown
+     */
+    void handleIncomingPacket(ByteBuffer buffer, InetAddress originAddress, NetworkInterface iface, SsdpClientOptions options) {
+        metrics.onPacketReceived(buffer.remaining());
+        handleIncomingResponse(ResponseParser.parse(buffer, originAddress, iface), options);
+    }
+
+    /**
+     * Dispatch a parsed SSDP response.
+     *
+     * @param response the parsed response, or null if the datagram was not understood
+     */
+    private void handleIncomingResponse(SsdpResponse response, SsdpClientOptions options) {
         if (response == null) {
             // Unknown to protocol
+            metrics.onPacketRejected();
+            return;
+        }
+        DuplicateFilter filter = duplicateFilter;
+        if (filter != null && filter.isDuplicate(response, System.nanoTime())) {
+            // Copy of a recent response or announcement
+            metrics.onDuplicateSuppressed();
             return;
         }
         if (response.getType().equals(SsdpResponse.Type.DISCOVERY_RESPONSE)) {
@@ -156,61 +462,87 @@ public class SsdpClientImpl extends SsdpClient {
     }
 
     /**
-     * Send discovery Multicast request.
+     * Send the M-SEARCH datagrams of a discovery request.
      *
-     * @param options
+     * @param request      the compiled discovery request
+     * @param subscription the subscription failures are reported to, or null to report them to all
      */
-    private void sendDiscoveryRequest(SsdpClientOptions options) {
+    private void sendDiscoveryRequest(CompiledDiscoveryRequest request, Subscription subscription) {
+        SsdpTransport current = transport;
+        if (current == null) {
+            return;
+        }
+        SsdpClientOptions options = subscription != null ? subscription.getOptions() : clientOptions;
         try {
-            if (requests.isEmpty()) {
-                // Do nothing if no request has been set
-                return;
-            }
-            for (DiscoveryRequest req : requests) {
-                try {
-                    if (req.getServiceTypes() == null || req.getServiceTypes().isEmpty()) {
-                        sendOnAllInterfaces(SsdpDiscovery.getDatagram(null, req.getDiscoveryOptions()));
-                    } else {
-                        for (String st : req.getServiceTypes()) {
-                            sendOnAllInterfaces(SsdpDiscovery.getDatagram(st, req.getDiscoveryOptions()));
-                        }
-                    }
-                } catch (IOException e) {
-                    if (options.getIgnoreInterfaceDiscoveryErrors()) {
-                        callback.onFailedAndIgnored(e);
-                        return;
-                    }
-                    throw e;
-                }
-
+            for (DatagramPacket datagram : request.getDatagrams(current.getGroups())) {
+                current.send(datagram);
+                metrics.onPacketSent(datagram.getLength());
             }
         } catch (IOException e) {
-            if (clientSocket.isClosed() && !State.ACTIVE.equals(state)) {
+            if (current.isClosed()) {
                 // This could happen when closing socket. In that case, this is not an issue.
                 return;
             }
-            callback.onFailed(e);
+            if (options.getIgnoreInterfaceDiscoveryErrors()) {
+                onFailedAndIgnored(subscription, e);
+                return;
+            }
+            onFailed(subscription, e);
         } catch (Exception e) {
-            callback.onFailed(e);
+            onFailed(subscription, e);
         }
     }
 
     /**
-     * Open MulticastSocket and bind to Ssdp port.
+     * Send the discovery requests registered for unknown announcers.
+     */
+    private void sendAutoLookupRequests() {
+        AutoLookup current = autoLookup;
+        if (current == null) {
+            return;
+        }
+        for (CompiledDiscoveryRequest request : current.active(System.nanoTime())) {
+            sendDiscoveryRequest(request, null);
+        }
+    }
+
+    /**
+     * Look up the service type of an unknown service, unless a discovery already searches for it.
+     * The first announcement of a service type triggers a search right away.
      *
-     * @param options
+     * @param serviceType the announced service type
+     * @param matching    the subscriptions interested in the service type
      */
-    private void openAndBindSocket(SsdpClientOptions options) {
-        try {
-            this.clientSocket = new MulticastSocket(options.getBindingPort());
-            this.clientSocket.setReuseAddress(true);
-            interfaces = Utils.getMulticastInterfaces();
-            joinGroupOnAllInterfaces(SsdpParams.getSsdpMulticastAddress(), options.getIgnoreInterfaceDiscoveryErrors());
-        } catch (IOException e) {
-            callback.onFailed(e);
+    private void lookUp(String serviceType, List<Subscription> matching) {
+        AutoLookup current = autoLookup;
+        SsdpTransport currentTransport = transport;
+        if (current == null || currentTransport == null || serviceType == null) {
+            return;
+        }
+        for (Subscription subscription : matching) {
+            if (subscription.searches(serviceType)) {
+                return;
+            }
+        }
+        final CompiledDiscoveryRequest request = current.register(serviceType, System.nanoTime());
+        if (request != null) {
+            currentTransport.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    sendDiscoveryRequest(request, null);
+                }
+            }, 0);
         }
     }
 
+    /**
+     * @return the service types currently looked up because unknown services announced them
+     */
+    public Set<String> getAutoLookupServiceTypes() {
+        AutoLookup current = autoLookup;
+        return current != null ? current.getServiceTypes() : Collections.<String>emptySet();
+    }
+
     /**
      * Handle presence announcement Datagrams.
      *
@@ -218,16 +550,125 @@ public class SsdpClientImpl extends SsdpClient {
      */
     private void handlePresenceAnnouncement(SsdpResponse response, SsdpClientOptions options) {
         SsdpServiceAnnouncement ssdpServiceAnnouncement = response.toServiceAnnouncement();
+        List<Subscription> matching = subscriptions.route(ssdpServiceAnnouncement.getServiceType());
         if (ssdpServiceAnnouncement.getSerialNumber() == null) {
-            callback.onFailed(new NoSerialNumberException(response));
+            metrics.onNoSerialNumber();
+            for (Subscription subscription : matching) {
+                subscription.getListener().onFailed(new NoSerialNumberException(response));
+            }
+            return;
+        }
+        SsdpService cached = cache.get(ssdpServiceAnnouncement.getSerialNumber());
+        if (cached != null) {
+            updateCache(cached, ssdpServiceAnnouncement, response, matching);
+            for (Subscription subscription : matching) {
+                notifyServiceAnnouncement(subscription, ssdpServiceAnnouncement);
+            }
+        } else if (options.getLookupAllIncomingAnnouncements() && !matching.isEmpty()
+                && ssdpServiceAnnouncement.getStatus() != SsdpServiceAnnouncement.Status.BYEBYE) {
+            onServiceChange(matching);
+            lookUp(ssdpServiceAnnouncement.getServiceType(), matching);
+        }
+    }
+
+    /**
+     * Apply the announcement of a cached service to the cache, before it is forwarded.
+     * An ssdp:byebye evicts the service, an ssdp:alive refreshes it, and an ssdp:update rolls its BOOTID forward.
+     * A service whose device rebooted or changed its description is reported as discovered again.
+     *
+     * @param cached       the cached service
+     * @param announcement the announcement
+     * @param response     the incoming announcement
+     * @param matching     the subscriptions interested in the service type
+     */
+    private void updateCache(SsdpService cached, SsdpServiceAnnouncement announcement, SsdpResponse response, List<Subscription> matching) {
+        BootIdTracker.Change change;
+        SsdpService current = cached;
+        if (announcement.getStatus() == SsdpServiceAnnouncement.Status.BYEBYE) {
+            // The device is leaving: stop routing to it now rather than at its expiry
+            if (cache.remove(cached.getSerialNumber(), cached)) {
+                forget(cached);
+                metrics.onServiceRemoved();
+                onServiceChange(matching);
+            }
+            return;
+        } else if (announcement.getStatus() == SsdpServiceAnnouncement.Status.UPDATE) {
+            change = bootIds.onUpdate(cached.getSerialNumber(),
+                response.getHeaderView().getLong(SsdpHeader.NEXTBOOTID, BootIdTracker.NONE),
+                response.getHeaderView().getLong(SsdpHeader.CONFIGID, BootIdTracker.NONE));
+        } else if (announcement.getStatus() == SsdpServiceAnnouncement.Status.ALIVE && response.getExpiry() > 0) {
+            current = new SsdpService(announcement);
+            cacheService(current, response);
+            change = track(current);
+        } else {
             return;
         }
-        if (cache.containsKey(ssdpServiceAnnouncement.getSerialNumber())) {
-            callback.onServiceAnnouncement(ssdpServiceAnnouncement);
-        } else if (options.getLookupAllIncomingAnnouncements()) {
-          if (requests != null) {
-            requests.add(DiscoveryRequest.builder().serviceType(ssdpServiceAnnouncement.getServiceType()).build());
-          }
+        if (change == BootIdTracker.Change.REBOOTED || change == BootIdTracker.Change.RECONFIGURED) {
+            metrics.onServiceRenewed();
+            for (Subscription subscription : matching) {
+                notifyServiceDiscovered(subscription, current);
+            }
+        }
+    }
+
+    /**
+     * Cache a service found by a response or refreshed by an ssdp:alive, then plan its expiry and refresh.
+     *
+     * @param service  the service
+     * @param response the response or announcement of the service
+     * @return the service previously cached with the same USN, or null
+     */
+    private SsdpService cacheService(SsdpService service, SsdpResponse response) {
+        // Cached services should not retain the whole datagram
+        response.compact();
+        SsdpService previous = cache.put(service.getSerialNumber(), service);
+        CacheSnapshot persisted = snapshot;
+        if (persisted != null) {
+            persisted.put(service);
+        }
+        RefreshScheduler refresh = refreshScheduler;
+        if (response.getExpiry() > 0) {
+            expiryWheel.schedule(service.getSerialNumber(), service, response.getExpiryNanoTime());
+            if (refresh != null) {
+                refresh.schedule(service, response.getExpiryNanoTime(), System.nanoTime());
+            }
+        } else {
+            expiryWheel.cancel(service.getSerialNumber());
+            if (refresh != null) {
+                refresh.cancel(service.getSerialNumber());
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * @param service the cached service
+     * @return how its boot and configuration changed since it was last seen
+     */
+    private BootIdTracker.Change track(SsdpService service) {
+        SsdpResponse response = service.getOriginalResponse();
+        return bootIds.onAlive(service,
+            response.getHeaderView().getLong(SsdpHeader.BOOTID, BootIdTracker.NONE),
+            response.getHeaderView().getLong(SsdpHeader.CONFIGID, BootIdTracker.NONE));
+    }
+
+    /**
+     * Stop tracking a service removed from the cache.
+     * A newer instance of the same USN may have been cached since the removal: only what still belongs
+     * to the removed instance is forgotten.
+     *
+     * @param service the removed service
+     */
+    private void forget(SsdpService service) {
+        expiryWheel.cancel(service.getSerialNumber(), service);
+        bootIds.remove(service);
+        CacheSnapshot persisted = snapshot;
+        if (persisted != null) {
+            persisted.remove(service);
+        }
+        RefreshScheduler refresh = refreshScheduler;
+        if (refresh != null) {
+            refresh.cancel(service);
         }
     }
 
@@ -238,107 +679,249 @@ public class SsdpClientImpl extends SsdpClient {
      */
     private void handleDiscoveryResponse(SsdpResponse response, SsdpClientOptions options) {
         SsdpService ssdpService = response.toService();
+        List<Subscription> matching = subscriptions.route(ssdpService.getServiceType());
         if (ssdpService.getSerialNumber() == null) {
-            callback.onFailed(new NoSerialNumberException(response));
+            metrics.onNoSerialNumber();
+            for (Subscription subscription : matching) {
+                subscription.getListener().onFailed(new NoSerialNumberException(response));
+            }
             return;
         }
-        // If our program disabled cache, onServiceDiscovered will always be triggered
-        if (!options.getUseCache() || !cache.containsKey(ssdpService.getSerialNumber())) {
-            callback.onServiceDiscovered(ssdpService);
+        SsdpService previous = cacheService(ssdpService, response);
+        BootIdTracker.Change change = track(ssdpService);
+        // A device which rebooted or changed its description is discovered again
+        boolean renewed = change == BootIdTracker.Change.REBOOTED || change == BootIdTracker.Change.RECONFIGURED;
+        if (previous == null) {
+            metrics.onCacheMiss();
+            onServiceChange(matching);
+        } else {
+            metrics.onCacheHit();
+            if (renewed) {
+                metrics.onServiceRenewed();
+            }
+        }
+        for (Subscription subscription : matching) {
+            // If our program disabled cache, onServiceDiscovered will always be triggered
+            if (previous == null || renewed || !subscription.getOptions().getUseCache()) {
+                notifyServiceDiscovered(subscription, ssdpService);
+            }
         }
-        cache.put(ssdpService.getSerialNumber(), ssdpService);
     }
 
     /**
-     * Send the datagram packet on all interfaces.
-     * <p>
-     * Falls back to the default send() if the interfaces list is not populated
-     *
-     * @param packet the datagram to send
-     * @throws IOException from the MulticastSocket
+     * Evict the services whose expiry has been reached and notify the listeners.
+     * Mass expirations are spread over several ticks by the expiry wheel.
      */
-    private void sendOnAllInterfaces(DatagramPacket packet) throws IOException {
-        if (interfaces != null && interfaces.size() > 0) {
-            for (NetworkInterface iface : interfaces) {
-                clientSocket.setNetworkInterface(iface);
-                clientSocket.send(packet);
+    private void expireServices() {
+        for (SsdpService service : expiryWheel.advance(System.nanoTime())) {
+            // The entry may have been refreshed in the meantime
+            if (cache.get(service.getSerialNumber()) == service && cache.remove(service.getSerialNumber(), service)) {
+                metrics.onServiceExpired();
+                forget(service);
+                List<Subscription> matching = subscriptions.route(service.getServiceType());
+                for (Subscription subscription : matching) {
+                    notifyServiceExpired(subscription, service);
+                }
+                onServiceChange(matching);
             }
-        } else {
-            clientSocket.send(packet);
         }
     }
 
     /**
-     * Joins the given multicast group on all interfaces.
-     * <p>
-     * Falls back to the default joinGroup() if the interfaces list is not populated
-     *
-     * @param address      the multicast group address
-     * @param ignoreErrors whether to ignore group join errors or not
-     * @throws IOException from the MulticastSocket
-     */
-    private void joinGroupOnAllInterfaces(InetAddress address, Boolean ignoreErrors) throws IOException {
-        if (interfaces != null && interfaces.size() > 0) {
-            InetSocketAddress socketAddress = new InetSocketAddress(address, 65535); // the port number does not matter here. it is ignored
-            List<NetworkInterface> newInterfaces = new ArrayList<>();
-            for (NetworkInterface iface : interfaces) {
-                try {
-                    this.clientSocket.joinGroup(socketAddress, iface);
-                    newInterfaces.add(iface);
-                } catch (IOException e) {
-                    if (!ignoreErrors) {
-                        throw e;
-                    } else {
-                        callback.onFailedAndIgnored(e);
-                    }
+     * Search the cached services about to expire by unicast, and by multicast those which did not answer.
+     * Services still cached as the same instance have not been refreshed by a response in the meantime.
+     */
+    private void refreshServices() {
+        RefreshScheduler refresh = refreshScheduler;
+        SsdpTransport current = transport;
+        if (refresh == null || current == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        List<SsdpService> probes = refresh.dueProbes(now);
+        if (!probes.isEmpty()) {
+            // Services of the same device and type are refreshed by a single search
+            Set<String> probed = new HashSet<String>();
+            for (SsdpService service : probes) {
+                if (cache.get(service.getSerialNumber()) != service || service.getRemoteIp() == null
+                        || !probed.add(service.getRemoteIp().getHostAddress() + ' ' + service.getServiceType())) {
+                    continue;
                 }
+                int port = (int) service.getOriginalResponse().getHeaderView().getLong(SsdpHeader.SEARCHPORT, SsdpParams.getSsdpMulticastDefaultPort());
+                metrics.onRefreshProbeSent();
+                sendRefresh(current, SsdpDiscovery.getUnicastDatagram(service.getServiceType(), service.getRemoteIp(), port, REFRESH_OPTIONS), true);
             }
-            interfaces = newInterfaces;
-            if (interfaces.isEmpty()) {
-                throw new IOException("No interface was joined");
+        }
+        List<SsdpService> fallbacks = refresh.dueFallbacks(now);
+        if (!fallbacks.isEmpty()) {
+            // Devices of the same type which did not answer are searched by a single multicast search
+            Set<String> serviceTypes = new LinkedHashSet<String>();
+            for (SsdpService service : fallbacks) {
+                if (cache.get(service.getSerialNumber()) == service) {
+                    metrics.onRefreshFallback();
+                    serviceTypes.add(service.getServiceType());
+                }
+            }
+            for (String serviceType : serviceTypes) {
+                for (InetAddress group : current.getGroups()) {
+                    sendRefresh(current, SsdpDiscovery.getDatagram(serviceType, REFRESH_OPTIONS, group), false);
+                }
             }
-        } else {
-            this.clientSocket.joinGroup(address);
         }
     }
 
     /**
-     * Leaves the multicast group on all interfaces.
-     * <p>
-     * Falls back to the default leaveGroup() if the interfaces list is not populated
+     * Send a refresh search. A failed unicast search is only reported as ignored, as the multicast fallback follows.
      *
-     * @param address the multicast group address
-     * @throws IOException from the MulticastSocket
+     * @param current  the transport
+     * @param datagram the search
+     * @param unicast  true to send the search once to its unicast address, false to send it on all interfaces
      */
-    private void leaveGroupOnAllInterfaces(InetAddress address) throws IOException {
-        if (interfaces != null && interfaces.size() > 0) {
-            InetSocketAddress socketAddress = new InetSocketAddress(address, 65535); // the port number does not matter here. it is ignored
-
-            for (NetworkInterface iface : interfaces) {
-                this.clientSocket.leaveGroup(socketAddress, iface);
+    private void sendRefresh(SsdpTransport current, DatagramPacket datagram, boolean unicast) {
+        try {
+            if (unicast) {
+                current.sendTo(datagram);
+            } else {
+                current.send(datagram);
             }
-        } else {
-            this.clientSocket.leaveGroup(address);
+            metrics.onPacketSent(datagram.getLength());
+        } catch (IOException e) {
+            if (current.isClosed()) {
+                return;
+            }
+            if (unicast || clientOptions.getIgnoreInterfaceDiscoveryErrors()) {
+                onFailedAndIgnored(e);
+                return;
+            }
+            onFailed(e);
         }
     }
 
-    @Override
-    public void stopDiscovery() {
-        this.state = State.STOPPING;
-        this.receiveExecutor.shutdownNow();
-        this.sendExecutor.shutdownNow();
-        this.callback = NOOP_LISTENER;
+    private void notifyServiceDiscovered(Subscription subscription, SsdpService service) {
+        long start = System.nanoTime();
         try {
-            leaveGroupOnAllInterfaces(SsdpParams.getSsdpMulticastAddress());
-        } catch (IOException e) {
-            // Fail silently
+            subscription.getListener().onServiceDiscovered(service);
         } finally {
-            if (this.clientSocket != null) {
-                this.clientSocket.close();
+            metrics.onCallbackCompleted(System.nanoTime() - start);
+        }
+    }
+
+    private void notifyServiceAnnouncement(Subscription subscription, SsdpServiceAnnouncement announcement) {
+        long start = System.nanoTime();
+        try {
+            subscription.getListener().onServiceAnnouncement(announcement);
+        } finally {
+            metrics.onCallbackCompleted(System.nanoTime() - start);
+        }
+    }
+
+    private void notifyServiceExpired(Subscription subscription, SsdpService service) {
+        long start = System.nanoTime();
+        try {
+            subscription.getListener().onServiceExpired(service);
+        } finally {
+            metrics.onCallbackCompleted(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return the metrics the client events are reported to
+     */
+    SsdpMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Report a failure to all the listeners.
+     *
+     * @param ex the exception raised
+     */
+    void onFailed(Exception ex) {
+        onFailed(null, ex);
+    }
+
+    /**
+     * Report a failure which has been voluntarily ignored to all the listeners.
+     *
+     * @param ex the exception raised
+     */
+    void onFailedAndIgnored(Exception ex) {
+        onFailedAndIgnored(null, ex);
+    }
+
+    private void onFailed(Subscription subscription, Exception ex) {
+        if (subscription != null) {
+            subscription.getListener().onFailed(ex);
+            return;
+        }
+        for (Subscription s : subscriptions.all()) {
+            s.getListener().onFailed(ex);
+        }
+    }
+
+    private void onFailedAndIgnored(Subscription subscription, Exception ex) {
+        if (subscription != null) {
+            subscription.getListener().onFailedAndIgnored(ex);
+            return;
+        }
+        for (Subscription s : subscriptions.all()) {
+            s.getListener().onFailedAndIgnored(ex);
+        }
+    }
+
+    /**
+     * @return the number of datagrams waiting for each dispatch thread, empty if datagrams are handled on the
+     * receive thread
+     */
+    public int[] getDispatchQueueDepths() {
+        DispatchPipeline current = pipeline;
+        return current != null ? current.getQueueDepths() : new int[0];
+    }
+
+    /**
+     * @return the number of datagrams dropped because the queue of their dispatch thread was full
+     */
+    public long getDroppedDatagrams() {
+        DispatchPipeline current = pipeline;
+        return current != null ? current.getDropped() : 0;
+    }
+
+    /**
+     * Close the transport, the dispatch pipeline and the snapshot, and forget the auto lookups, planned refreshes
+     * and recent messages.
+     */
+    private void close() {
+        if (this.transport != null) {
+            this.transport.close();
+            this.transport = null;
+        }
+        if (this.pipeline != null) {
+            this.pipeline.close();
+            this.pipeline = null;
+        }
+        this.duplicateFilter = null;
+        this.autoLookup = null;
+        this.refreshScheduler = null;
+        if (this.snapshot != null) {
+            this.snapshot.close();
+            this.snapshot = null;
+        }
+    }
+
+    @Override
+    public void stopDiscovery() {
+        List<StoppableListener> stopped = new ArrayList<StoppableListener>();
+        synchronized (this) {
+            for (Subscription subscription : subscriptions.clear()) {
+                StoppableListener listener = subscription.deactivate();
+                if (listener != null) {
+                    stopped.add(listener);
+                }
             }
+            close();
+        }
+        for (StoppableListener listener : stopped) {
+            listener.stop();
         }
-        this.requests = null;
-        this.interfaces = null;
-        this.state = State.IDLE;
     }
 }
@@ -0,0 +1,69 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.SsdpClientOptions;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.util.List;
+
+/**
+ * The network side of the SsdpClient.
+ * A transport binds the SSDP socket, joins the multicast group, hands every incoming datagram
+ * to the client, and provides the timer the client runs its sends and housekeeping on.
+ */
+interface SsdpTransport {
+
+  /**
+   * Open and bind the socket, then join the SSDP multicast group.
+   *
+   * @param options the ssdp client options
+   * @throws IOException if the socket could not be opened or the group could not be joined
+   */
+  void open(SsdpClientOptions options) throws IOException;
+
+  /**
+   * Start receiving datagrams.
+   */
+  void start();
+
+  /**
+   * Run a task once after the given delay, on the thread of the transport dedicated to timed tasks.
+   * Tasks scheduled after the transport has been closed are silently dropped.
+   *
+   * @param task  the task
+   * @param delay the delay in milliseconds
+   */
+  void schedule(Runnable task, long delay);
+
+  /**
+   * Send the datagram packet on all joined interfaces.
+   *
+   * @param packet the datagram to send
+   * @throws IOException from the underlying socket
+   */
+  void send(DatagramPacket packet) throws IOException;
+
+  /**
+   * Send the datagram packet to a unicast address, once: the routing table picks the interface.
+   *
+   * @param packet the datagram to send
+   * @throws IOException from the underlying socket
+   */
+  void sendTo(DatagramPacket packet) throws IOException;
+
+  /**
+   * @return the SSDP multicast groups joined, as returned by SsdpParams#getSsdpMulticastAddresses
+   */
+  List<InetAddress> getGroups();
+
+  /**
+   * @return true if the transport has been closed
+   */
+  boolean isClosed();
+
+  /**
+   * Stop all activity, leave the multicast group and release the socket.
+   */
+  void close();
+}
@@ -0,0 +1,15 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.DiscoveryListener;
+
+/**
+ * A listener of the client itself with work left to do once its discovery stops, such as delivering what it
+ * holds back. The client stops it after releasing its lock, since that work reaches the listeners of the user.
+ */
+interface StoppableListener extends DiscoveryListener {
+
+  /**
+   * Called once, when the discovery of the listener stops.
+   */
+  void stop();
+}
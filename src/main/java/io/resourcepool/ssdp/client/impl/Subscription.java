@@ -0,0 +1,119 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.DiscoveryHandle;
+import io.resourcepool.ssdp.model.DiscoveryListener;
+import io.resourcepool.ssdp.model.DiscoveryRequest;
+import io.resourcepool.ssdp.model.SsdpClientOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An active discovery of the SsdpClient: a request, the listener of its results and its options.
+ * A subscription without any service type (or with ssdp:all) receives every response and announcement.
+ */
+class Subscription implements DiscoveryHandle {
+
+  static final String SSDP_ALL = "ssdp:all";
+
+  private final SsdpClientImpl client;
+  private final CompiledDiscoveryRequest request;
+  private final DiscoveryListener listener;
+  private final SsdpClientOptions options;
+  private final List<String> serviceTypes;
+  private final SearchSchedule schedule;
+  private volatile boolean active = true;
+
+  /**
+   * @param client   the client the subscription belongs to
+   * @param request  the discovery request, or null to only listen to announcements
+   * @param options  the ssdp client options
+   * @param listener the discovery listener
+   */
+  Subscription(SsdpClientImpl client, DiscoveryRequest request, SsdpClientOptions options, DiscoveryListener listener) {
+    this.client = client;
+    this.request = request != null ? new CompiledDiscoveryRequest(request) : null;
+    this.listener = listener;
+    this.options = options;
+    this.serviceTypes = request != null ? serviceTypesOf(request) : Collections.<String>emptyList();
+    this.schedule = request != null ? new SearchSchedule(request.getDiscoveryOptions()) : null;
+  }
+
+  private static List<String> serviceTypesOf(DiscoveryRequest request) {
+    List<String> serviceTypes = request.getServiceTypes();
+    if (serviceTypes == null || serviceTypes.contains(SSDP_ALL)) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(new ArrayList<String>(serviceTypes));
+  }
+
+  /**
+   * @return the compiled discovery request, or null if this subscription only listens to announcements
+   */
+  CompiledDiscoveryRequest getRequest() {
+    return request;
+  }
+
+  /**
+   * @return the schedule of the search requests, or null if this subscription only listens to announcements
+   */
+  SearchSchedule getSchedule() {
+    return schedule;
+  }
+
+  DiscoveryListener getListener() {
+    return listener;
+  }
+
+  SsdpClientOptions getOptions() {
+    return options;
+  }
+
+  /**
+   * @return the service types this subscription is interested in, or an empty list for all of them
+   */
+  List<String> getServiceTypes() {
+    return serviceTypes;
+  }
+
+  boolean isWildcard() {
+    return serviceTypes.isEmpty();
+  }
+
+  /**
+   * @param serviceType the ST or NT of a response or announcement
+   * @return true if this subscription is interested in the service type
+   */
+  boolean matches(String serviceType) {
+    return isWildcard() || serviceTypes.contains(serviceType);
+  }
+
+  /**
+   * @param serviceType the ST or NT of an announcement
+   * @return true if this subscription sends search requests covering the service type
+   */
+  boolean searches(String serviceType) {
+    return request != null && matches(serviceType);
+  }
+
+  /**
+   * Mark the subscription as cancelled. Called under the lock of the client.
+   *
+   * @return the listener to stop once the lock is released, or null if it has nothing left to do
+   */
+  StoppableListener deactivate() {
+    this.active = false;
+    return listener instanceof StoppableListener ? (StoppableListener) listener : null;
+  }
+
+  @Override
+  public void cancel() {
+    client.unsubscribe(this);
+  }
+
+  @Override
+  public boolean isActive() {
+    return active;
+  }
+}
@@ -0,0 +1,116 @@
+package io.resourcepool.ssdp.client.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes incoming responses and announcements to the interested subscriptions.
+ * <p>
+ * Subscriptions change rarely while packets arrive constantly: every change rebuilds an immutable routing table,
+ * mapping each subscribed ST/NT to its subscriptions (wildcard ones included), which readers use without locking.
+ */
+class SubscriptionIndex {
+
+  private final List<Subscription> subscriptions = new ArrayList<Subscription>();
+  private volatile Routes routes = new Routes(Collections.<String, List<Subscription>>emptyMap(),
+      Collections.<Subscription>emptyList(), Collections.<Subscription>emptyList());
+
+  /**
+   * @param subscription the subscription to add
+   */
+  synchronized void add(Subscription subscription) {
+    subscriptions.add(subscription);
+    rebuild();
+  }
+
+  /**
+   * @param subscription the subscription to remove
+   * @return true if the subscription was present
+   */
+  synchronized boolean remove(Subscription subscription) {
+    boolean removed = subscriptions.remove(subscription);
+    if (removed) {
+      rebuild();
+    }
+    return removed;
+  }
+
+  /**
+   * Remove all subscriptions.
+   *
+   * @return the removed subscriptions
+   */
+  synchronized List<Subscription> clear() {
+    List<Subscription> removed = new ArrayList<Subscription>(subscriptions);
+    subscriptions.clear();
+    rebuild();
+    return removed;
+  }
+
+  /**
+   * @param serviceType the ST or NT of a response or announcement, may be null
+   * @return the subscriptions interested in the service type, in subscription order
+   */
+  List<Subscription> route(String serviceType) {
+    Routes current = routes;
+    if (serviceType == null) {
+      return current.wildcards;
+    }
+    List<Subscription> matching = current.byServiceType.get(serviceType);
+    return matching != null ? matching : current.wildcards;
+  }
+
+  /**
+   * @return all subscriptions, in subscription order
+   */
+  List<Subscription> all() {
+    return routes.all;
+  }
+
+  boolean isEmpty() {
+    return routes.all.isEmpty();
+  }
+
+  private void rebuild() {
+    Map<String, List<Subscription>> byServiceType = new HashMap<String, List<Subscription>>();
+    List<Subscription> wildcards = new ArrayList<Subscription>();
+    for (Subscription subscription : subscriptions) {
+      if (subscription.isWildcard()) {
+        wildcards.add(subscription);
+      } else {
+        for (String serviceType : subscription.getServiceTypes()) {
+          byServiceType.put(serviceType, null);
+        }
+      }
+    }
+    for (Map.Entry<String, List<Subscription>> e : byServiceType.entrySet()) {
+      List<Subscription> matching = new ArrayList<Subscription>();
+      for (Subscription subscription : subscriptions) {
+        if (subscription.matches(e.getKey())) {
+          matching.add(subscription);
+        }
+      }
+      e.setValue(Collections.unmodifiableList(matching));
+    }
+    this.routes = new Routes(byServiceType, Collections.unmodifiableList(wildcards),
+        Collections.unmodifiableList(new ArrayList<Subscription>(subscriptions)));
+  }
+
+  /**
+   * An immutable routing table.
+   */
+  private static final class Routes {
+    private final Map<String, List<Subscription>> byServiceType;
+    private final List<Subscription> wildcards;
+    private final List<Subscription> all;
+
+    private Routes(Map<String, List<Subscription>> byServiceType, List<Subscription> wildcards, List<Subscription> all) {
+      this.byServiceType = byServiceType;
+      this.wildcards = wildcards;
+      this.all = all;
+    }
+  }
+}
@@ -0,0 +1,348 @@
+package io.resourcepool.ssdp.client.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.net.NetworkInterface;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Dependency-free metrics, cheap enough to be left on in production.
+ * <p>
+ * Counters are LongAdders, so that concurrent receive, send and dispatch threads do not contend on them,
+ * and callback latencies go to a {@link LatencyHistogram}. Metrics can be read directly or through JMX,
+ * once registered with {@link #registerMBean(String)}.
+ * <p>
+ * An instance reports on a single client: the gauges of a second client would replace those of the first one,
+ * so creating a second client with the same instance fails.
+ */
+public class DefaultSsdpMetrics implements SsdpMetrics, SsdpMetricsMXBean {
+
+  private static final String DEFAULT_INTERFACE = "default";
+
+  private final LongAdder packetsReceived = new LongAdder();
+  private final LongAdder bytesReceived = new LongAdder();
+  private final LongAdder packetsRejected = new LongAdder();
+  private final LongAdder packetsDropped = new LongAdder();
+  private final LongAdder duplicatesSuppressed = new LongAdder();
+  private final LongAdder noSerialNumberErrors = new LongAdder();
+  private final LongAdder cacheHits = new LongAdder();
+  private final LongAdder cacheMisses = new LongAdder();
+  private final LongAdder servicesExpired = new LongAdder();
+  private final LongAdder servicesRemoved = new LongAdder();
+  private final LongAdder servicesRenewed = new LongAdder();
+  private final LongAdder refreshProbesSent = new LongAdder();
+  private final LongAdder refreshFallbacks = new LongAdder();
+  private final LongAdder packetsSent = new LongAdder();
+  private final LongAdder bytesSent = new LongAdder();
+  private final LongAdder sendFailures = new LongAdder();
+  private final Map<String, LongAdder> sendFailuresByInterface = new ConcurrentHashMap<String, LongAdder>();
+  private final LatencyHistogram callbackLatency = new LatencyHistogram();
+  private final Map<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+  private ObjectName objectName;
+
+  @Override
+  public void onPacketReceived(int bytes) {
+    packetsReceived.increment();
+    bytesReceived.add(bytes);
+  }
+
+  @Override
+  public void onPacketRejected() {
+    packetsRejected.increment();
+  }
+
+  @Override
+  public void onPacketDropped() {
+    packetsDropped.increment();
+  }
+
+  @Override
+  public void onDuplicateSuppressed() {
+    duplicatesSuppressed.increment();
+  }
+
+  @Override
+  public void onNoSerialNumber() {
+    noSerialNumberErrors.increment();
+  }
+
+  @Override
+  public void onCacheHit() {
+    cacheHits.increment();
+  }
+
+  @Override
+  public void onCacheMiss() {
+    cacheMisses.increment();
+  }
+
+  @Override
+  public void onServiceExpired() {
+    servicesExpired.increment();
+  }
+
+  @Override
+  public void onServiceRemoved() {
+    servicesRemoved.increment();
+  }
+
+  @Override
+  public void onServiceRenewed() {
+    servicesRenewed.increment();
+  }
+
+  @Override
+  public void onRefreshProbeSent() {
+    refreshProbesSent.increment();
+  }
+
+  @Override
+  public void onRefreshFallback() {
+    refreshFallbacks.increment();
+  }
+
+  @Override
+  public void onPacketSent(int bytes) {
+    packetsSent.increment();
+    bytesSent.add(bytes);
+  }
+
+  @Override
+  public void onSendFailed(NetworkInterface networkInterface) {
+    sendFailures.increment();
+    String name = networkInterface != null ? networkInterface.getName() : DEFAULT_INTERFACE;
+    LongAdder failures = sendFailuresByInterface.get(name);
+    if (failures == null) {
+      LongAdder created = new LongAdder();
+      failures = sendFailuresByInterface.putIfAbsent(name, created);
+      if (failures == null) {
+        failures = created;
+      }
+    }
+    failures.increment();
+  }
+
+  @Override
+  public void onCallbackCompleted(long nanos) {
+    callbackLatency.record(nanos);
+  }
+
+  /**
+   * @throws IllegalStateException if a gauge of this name is already registered, by another client of these metrics
+   */
+  @Override
+  public void registerGauge(String name, Gauge gauge) {
+    if (gauges.putIfAbsent(name, gauge) != null) {
+      throw new IllegalStateException("Gauge " + name + " already registered: metrics are not shared between clients");
+    }
+  }
+
+  @Override
+  public long getPacketsReceived() {
+    return packetsReceived.sum();
+  }
+
+  @Override
+  public long getBytesReceived() {
+    return bytesReceived.sum();
+  }
+
+  @Override
+  public long getPacketsRejected() {
+    return packetsRejected.sum();
+  }
+
+  @Override
+  public long getPacketsDropped() {
+    return packetsDropped.sum();
+  }
+
+  @Override
+  public long getDuplicatesSuppressed() {
+    return duplicatesSuppressed.sum();
+  }
+
+  @Override
+  public long getNoSerialNumberErrors() {
+    return noSerialNumberErrors.sum();
+  }
+
+  @Override
+  public long getCacheHits() {
+    return cacheHits.sum();
+  }
+
+  @Override
+  public long getCacheMisses() {
+    return cacheMisses.sum();
+  }
+
+  @Override
+  public double getCacheHitRatio() {
+    long hits = cacheHits.sum();
+    long total = hits + cacheMisses.sum();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  @Override
+  public long getServicesExpired() {
+    return servicesExpired.sum();
+  }
+
+  @Override
+  public long getServicesRemoved() {
+    return servicesRemoved.sum();
+  }
+
+  @Override
+  public long getServicesRenewed() {
+    return servicesRenewed.sum();
+  }
+
+  @Override
+  public long getRefreshProbesSent() {
+    return refreshProbesSent.sum();
+  }
+
+  @Override
+  public long getRefreshFallbacks() {
+    return refreshFallbacks.sum();
+  }
+
+  @Override
+  public long getPacketsSent() {
+    return packetsSent.sum();
+  }
+
+  @Override
+  public long getBytesSent() {
+    return bytesSent.sum();
+  }
+
+  @Override
+  public long getSendFailures() {
+    return sendFailures.sum();
+  }
+
+  @Override
+  public Map<String, Long> getSendFailuresByInterface() {
+    Map<String, Long> failures = new TreeMap<String, Long>();
+    for (Map.Entry<String, LongAdder> e : sendFailuresByInterface.entrySet()) {
+      failures.put(e.getKey(), e.getValue().sum());
+    }
+    return failures;
+  }
+
+  @Override
+  public long getCallbacks() {
+    return callbackLatency.getCount();
+  }
+
+  @Override
+  public long getCallbackLatencyMean() {
+    return callbackLatency.getMean();
+  }
+
+  @Override
+  public long getCallbackLatencyP50() {
+    return callbackLatency.getPercentile(50);
+  }
+
+  @Override
+  public long getCallbackLatencyP99() {
+    return callbackLatency.getPercentile(99);
+  }
+
+  @Override
+  public long getCallbackLatencyMax() {
+    return callbackLatency.getMax();
+  }
+
+  public LatencyHistogram getCallbackLatency() {
+    return callbackLatency;
+  }
+
+  @Override
+  public Map<String, Long> getGauges() {
+    Map<String, Long> values = new TreeMap<String, Long>();
+    for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+      values.put(e.getKey(), e.getValue().getValue());
+    }
+    return values;
+  }
+
+  @Override
+  public void reset() {
+    packetsReceived.reset();
+    bytesReceived.reset();
+    packetsRejected.reset();
+    packetsDropped.reset();
+    duplicatesSuppressed.reset();
+    noSerialNumberErrors.reset();
+    cacheHits.reset();
+    cacheMisses.reset();
+    servicesExpired.reset();
+    servicesRemoved.reset();
+    servicesRenewed.reset();
+    refreshProbesSent.reset();
+    refreshFallbacks.reset();
+    packetsSent.reset();
+    bytesSent.reset();
+    sendFailures.reset();
+    sendFailuresByInterface.clear();
+    callbackLatency.reset();
+  }
+
+  /**
+   * Register these metrics in the platform MBean server, as io.resourcepool.ssdp:type=SsdpClient,name=[name].
+   *
+   * @param name the name distinguishing this client from others
+   * @return the name the MBean has been registered under
+   * @throws JMException if the MBean could not be registered, for instance if the name is already taken
+   */
+  public synchronized ObjectName registerMBean(String name) throws JMException {
+    ObjectName newName = new ObjectName("io.resourcepool.ssdp:type=SsdpClient,name=" + ObjectName.quote(name));
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    server.registerMBean(this, newName);
+    this.objectName = newName;
+    return newName;
+  }
+
+  /**
+   * Remove these metrics from the platform MBean server, if they were registered.
+   *
+   * @throws JMException if the MBean could not be unregistered
+   */
+  public synchronized void unregisterMBean() throws JMException {
+    if (objectName != null) {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      objectName = null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "DefaultSsdpMetrics{"
+        + "packetsReceived=" + getPacketsReceived()
+        + ", packetsRejected=" + getPacketsRejected()
+        + ", packetsDropped=" + getPacketsDropped()
+        + ", duplicatesSuppressed=" + getDuplicatesSuppressed()
+        + ", noSerialNumberErrors=" + getNoSerialNumberErrors()
+        + ", cacheHitRatio=" + getCacheHitRatio()
+        + ", servicesExpired=" + getServicesExpired()
+        + ", servicesRemoved=" + getServicesRemoved()
+        + ", servicesRenewed=" + getServicesRenewed()
+        + ", refreshProbesSent=" + getRefreshProbesSent()
+        + ", refreshFallbacks=" + getRefreshFallbacks()
+        + ", packetsSent=" + getPacketsSent()
+        + ", sendFailures=" + getSendFailures()
+        + ", callbackLatencyP99=" + getCallbackLatencyP99()
+        + ", gauges=" + getGauges()
+        + '}';
+  }
+}
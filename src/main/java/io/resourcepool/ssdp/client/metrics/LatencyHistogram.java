@@ -0,0 +1,105 @@
+package io.resourcepool.ssdp.client.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * A lock-free histogram of durations in nanoseconds.
+ * <p>
+ * Durations are counted in power-of-two buckets, so that recording is a leading-zero count and a striped
+ * increment. Percentiles are approximated by the upper bound of their bucket: at worst twice the actual value.
+ */
+public class LatencyHistogram {
+
+  private static final int BUCKETS = 64;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(new LongBinaryOperator() {
+    @Override
+    public long applyAsLong(long left, long right) {
+      return Math.max(left, right);
+    }
+  }, 0);
+
+  public LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * @param nanos the duration to record
+   */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    // Bucket i counts the durations of i significant bits, from 2^(i-1) to 2^i - 1
+    buckets[BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * @return the mean duration in nanoseconds, 0 if nothing was recorded
+   */
+  public long getMean() {
+    long n = count.sum();
+    return n == 0 ? 0 : sum.sum() / n;
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * @param percentile the percentile, between 0 and 100
+   * @return an upper bound of the given percentile in nanoseconds, 0 if nothing was recorded
+   */
+  public long getPercentile(double percentile) {
+    long[] counts = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets[i].sum();
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= Math.max(1, rank)) {
+        return Math.min(upperBound(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * @param bucket the bucket index
+   * @return the largest duration counted in the bucket
+   */
+  private static long upperBound(int bucket) {
+    return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+  }
+
+  /**
+   * Forget all recorded durations.
+   */
+  public void reset() {
+    for (LongAdder bucket : buckets) {
+      bucket.reset();
+    }
+    count.reset();
+    sum.reset();
+    max.reset();
+  }
+}
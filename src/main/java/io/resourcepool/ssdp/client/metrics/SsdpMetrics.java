@@ -0,0 +1,137 @@
+package io.resourcepool.ssdp.client.metrics;
+
+import java.net.NetworkInterface;
+
+/**
+ * Receives the events of an SsdpClient, to feed a metrics system.
+ * <p>
+ * Methods are called on the receive, send and dispatch paths, possibly from several threads at once:
+ * implementations must be thread-safe, must not block and should be cheap.
+ * All methods do nothing by default, so that implementations only override what they record.
+ *
+ * @see DefaultSsdpMetrics
+ */
+public interface SsdpMetrics {
+
+  /**
+   * Metrics which record nothing.
+   */
+  SsdpMetrics NOOP = new SsdpMetrics() {
+  };
+
+  /**
+   * A datagram has been received.
+   *
+   * @param bytes the datagram length
+   */
+  default void onPacketReceived(int bytes) {
+  }
+
+  /**
+   * A received datagram was neither a search response nor an announcement.
+   */
+  default void onPacketRejected() {
+  }
+
+  /**
+   * A received datagram has been dropped before being handled, because its dispatch queue was full.
+   */
+  default void onPacketDropped() {
+  }
+
+  /**
+   * A received datagram has been dropped as a copy of a recent response or announcement.
+   */
+  default void onDuplicateSuppressed() {
+  }
+
+  /**
+   * A search response or an announcement did not have any USN.
+   */
+  default void onNoSerialNumber() {
+  }
+
+  /**
+   * A search response matched a service already in the cache.
+   */
+  default void onCacheHit() {
+  }
+
+  /**
+   * A search response added a new service to the cache.
+   */
+  default void onCacheMiss() {
+  }
+
+  /**
+   * A cached service has expired.
+   */
+  default void onServiceExpired() {
+  }
+
+  /**
+   * A cached service has been evicted by its ssdp:byebye.
+   */
+  default void onServiceRemoved() {
+  }
+
+  /**
+   * A cached service has been reported as discovered again, as its device rebooted or changed its description.
+   */
+  default void onServiceRenewed() {
+  }
+
+  /**
+   * A unicast search has been sent to a cached service about to expire.
+   */
+  default void onRefreshProbeSent() {
+  }
+
+  /**
+   * A cached service did not answer its unicast search, and is searched by multicast instead.
+   */
+  default void onRefreshFallback() {
+  }
+
+  /**
+   * A datagram has been sent on all interfaces.
+   *
+   * @param bytes the datagram length
+   */
+  default void onPacketSent(int bytes) {
+  }
+
+  /**
+   * Sending a datagram failed on an interface.
+   *
+   * @param networkInterface the interface, or null when sending on the default interface
+   */
+  default void onSendFailed(NetworkInterface networkInterface) {
+  }
+
+  /**
+   * A listener method returned.
+   *
+   * @param nanos the time spent in the listener
+   */
+  default void onCallbackCompleted(long nanos) {
+  }
+
+  /**
+   * Expose a value sampled on demand, such as the cache size.
+   * Called once per gauge, when the client is created: an implementation shared between clients gets the same
+   * names from each of them, and must tell them apart or reject the later ones.
+   *
+   * @param name  the gauge name
+   * @param gauge the current value of the gauge
+   */
+  default void registerGauge(String name, Gauge gauge) {
+  }
+
+  /**
+   * A value sampled on demand.
+   */
+  interface Gauge {
+    long getValue();
+  }
+}
@@ -0,0 +1,73 @@
+package io.resourcepool.ssdp.client.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics recorded by {@link DefaultSsdpMetrics}.
+ * Counters are totals since the client was created: rates are left to the monitoring system.
+ * Latencies are in nanoseconds.
+ */
+public interface SsdpMetricsMXBean {
+
+  long getPacketsReceived();
+
+  long getBytesReceived();
+
+  long getPacketsRejected();
+
+  long getPacketsDropped();
+
+  long getDuplicatesSuppressed();
+
+  long getNoSerialNumberErrors();
+
+  long getCacheHits();
+
+  long getCacheMisses();
+
+  /**
+   * @return the share of search responses matching an already cached service, between 0 and 1
+   */
+  double getCacheHitRatio();
+
+  long getServicesExpired();
+
+  long getServicesRemoved();
+
+  long getServicesRenewed();
+
+  long getRefreshProbesSent();
+
+  long getRefreshFallbacks();
+
+  long getPacketsSent();
+
+  long getBytesSent();
+
+  long getSendFailures();
+
+  /**
+   * @return the send failures per interface name
+   */
+  Map<String, Long> getSendFailuresByInterface();
+
+  long getCallbacks();
+
+  long getCallbackLatencyMean();
+
+  long getCallbackLatencyP50();
+
+  long getCallbackLatencyP99();
+
+  long getCallbackLatencyMax();
+
+  /**
+   * @return the current value of each gauge, such as the cache size
+   */
+  Map<String, Long> getGauges();
+
+  /**
+   * Reset all counters and histograms. Gauges are left untouched.
+   */
+  void reset();
+}
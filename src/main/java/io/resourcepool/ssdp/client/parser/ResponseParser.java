@@ -1,60 +1,151 @@
 package io.resourcepool.ssdp.client.parser;
 
+import io.resourcepool.ssdp.client.response.SsdpHeader;
+import io.resourcepool.ssdp.client.response.SsdpHeaders;
 import io.resourcepool.ssdp.client.response.SsdpResponse;
 
 import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Locale;
 
 import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
 
 /**
  * @author Loïc Ortola on 11/03/2016.
  *         This class parses a DatagramPacket into a valid SsdpResponse
+ *         <p>
+ *         Parsing is done in a single pass over the packet bytes: no intermediate copy of the header block,
+ *         no regex, and known header names are matched case-insensitively against the well-known headers.
+ *         Header values are not decoded here: the response keeps their offsets in its copy of the packet and
+ *         decodes them when they are first read. parseInPlace skips the copy for callers which own the bytes.
  */
 public class ResponseParser {
 
-  private static final Pattern CACHE_CONTROL_PATTERN = Pattern.compile("max-age[ ]*=[ ]*([0-9]+).*");
-  // Date format for expires headers
-  private static final SimpleDateFormat DATE_HEADER_FORMAT = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz");
-  // Patterns
-  private static final Pattern SEARCH_REQUEST_LINE_PATTERN = Pattern.compile("^HTTP/1\\.1 [0-9]+ .*");
-  private static final Pattern SERVICE_ANNOUNCEMENT_LINE_PATTERN = Pattern.compile("NOTIFY \\* HTTP/1\\.1");
-  private static final Pattern HEADER_PATTERN = Pattern.compile("(.*?):(.*)$");
+  // Date format for expires headers, per thread as SimpleDateFormat is not thread-safe
+  private static final ThreadLocal<SimpleDateFormat> DATE_HEADER_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+    @Override
+    protected SimpleDateFormat initialValue() {
+      return new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+    }
+  };
+  // Request lines
+  private static final byte[] HTTP_1_1 = ascii("HTTP/1.1 ");
+  private static final byte[] NOTIFY_LINE = ascii("NOTIFY * HTTP/1.1");
+  private static final byte[] MAX_AGE = ascii("max-age");
+  // Headers we expect to see in almost every packet, with their names in bytes
+  private static final SsdpHeader[] KNOWN_HEADERS = SsdpHeader.values();
+  private static final byte[][] KNOWN_HEADER_BYTES = new byte[KNOWN_HEADERS.length][];
   // CRLF
-  private static final byte[] CRLF = "\r\n".getBytes(UTF_8);
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+
+  static {
+    for (int i = 0; i < KNOWN_HEADERS.length; i++) {
+      KNOWN_HEADER_BYTES[i] = ascii(KNOWN_HEADERS[i].getHeaderName());
+    }
+  }
 
   /**
    * Parse incoming Datagram into SsdpResponse.
+   * The datagram is copied out of the packet once, so that the packet can be reused to receive the next one.
    *
    * @param packet the incoming datagram.
    * @return the parsed SsdpResponse if it worked, null otherwise
    */
   public static SsdpResponse parse(DatagramPacket packet) {
+    return parse(packet.getData(), packet.getOffset(), packet.getLength(), packet.getAddress(), null, true);
+  }
 
-    Map<String, String> headers = new HashMap<String, String>();
-    byte[] body = null;
-    SsdpResponse.Type type = null;
+  /**
+   * Parse the remaining bytes of a buffer into SsdpResponse.
+   * The position of the buffer is left untouched.
+   * As receive buffers are usually reused, the datagram is copied out of the buffer once, and the response
+   * decodes its headers and body from that copy.
+   *
+   * @param buffer        the buffer holding the datagram between its position and limit
+   * @param originAddress the address the datagram was received from
+   * @return the parsed SsdpResponse if it worked, null otherwise
+   */
+  public static SsdpResponse parse(ByteBuffer buffer, InetAddress originAddress) {
+    return parse(buffer, originAddress, null);
+  }
+
+  /**
+   * Parse the remaining bytes of a buffer into SsdpResponse.
+   * The position of the buffer is left untouched.
+   *
+   * @param buffer           the buffer holding the datagram between its position and limit
+   * @param originAddress    the address the datagram was received from
+   * @param networkInterface the interface the datagram was received on, or null if unknown
+   * @return the parsed SsdpResponse if it worked, null otherwise
+   */
+  public static SsdpResponse parse(ByteBuffer buffer, InetAddress originAddress, NetworkInterface networkInterface) {
+    if (buffer.hasArray()) {
+      return parse(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), originAddress, networkInterface, true);
+    }
+    // Already a copy of the direct buffer
+    byte[] data = new byte[buffer.remaining()];
+    buffer.duplicate().get(data);
+    return parse(data, 0, data.length, originAddress, networkInterface, false);
+  }
+
+  /**
+   * Parse a raw datagram payload into SsdpResponse.
+   * The payload is copied once, so that data can be reused to receive the next datagram.
+   *
+   * @param data          the datagram payload
+   * @param offset        the offset of the payload in data
+   * @param length        the length of the payload
+   * @param originAddress the address the datagram was received from
+   * @return the parsed SsdpResponse if it worked, null otherwise
+   */
+  public static SsdpResponse parse(byte[] data, int offset, int length, InetAddress originAddress) {
+    return parse(data, offset, length, originAddress, null, true);
+  }
 
-    byte[] data = packet.getData();
-    // Find position of the last header data
-    int endOfHeaders = findEndOfHeaders(data);
-    if (endOfHeaders == -1) {
-      endOfHeaders = packet.getLength();
+  /**
+   * Parse a raw datagram payload into SsdpResponse, without copying it.
+   * Neither header values nor the body are copied: they are only extracted from data when read,
+   * so data must not be modified, nor reused to receive another datagram, while the response is in use.
+   *
+   * @param data          the datagram payload, owned by the response from now on
+   * @param offset        the offset of the payload in data
+   * @param length        the length of the payload
+   * @param originAddress the address the datagram was received from
+   * @return the parsed SsdpResponse if it worked, null otherwise
+   */
+  public static SsdpResponse parseInPlace(byte[] data, int offset, int length, InetAddress originAddress) {
+    return parse(data, offset, length, originAddress, null, false);
+  }
+
+  /**
+   * Parse a raw datagram payload into SsdpResponse.
+   *
+   * @param data          the datagram payload
+   * @param offset        the offset of the payload in data
+   * @param length        the length of the payload
+   * @param originAddress the address the datagram was received from
+   * @param iface         the interface the datagram was received on, or null if unknown
+   * @param copy          whether the payload must be copied, because data is about to be reused
+   * @return the parsed SsdpResponse if it worked, null otherwise
+   */
+  private static SsdpResponse parse(byte[] data, int offset, int length, InetAddress originAddress, NetworkInterface iface, boolean copy) {
+    int end = offset + length;
+    int lineEnd = indexOfCrlf(data, offset, end);
+    if (lineEnd == -1) {
+      lineEnd = end;
     }
-    // Retrieve all header lines
-    String[] headerLines = new String(Arrays.copyOfRange(data, 0, endOfHeaders)).split("\r\n");
 
     // Determine type of message
-    if (SEARCH_REQUEST_LINE_PATTERN.matcher(headerLines[0]).matches()) {
+    SsdpResponse.Type type = null;
+    if (isStatusLine(data, offset, lineEnd)) {
       type = SsdpResponse.Type.DISCOVERY_RESPONSE;
-    } else if (SERVICE_ANNOUNCEMENT_LINE_PATTERN.matcher(headerLines[0]).matches()) {
+    } else if (regionEquals(data, offset, lineEnd, NOTIFY_LINE)) {
       type = SsdpResponse.Type.PRESENCE_ANNOUNCEMENT;
     }
 
@@ -63,44 +154,104 @@ public class ResponseParser {
       return null;
     }
 
-    // Let's parse our headers.
-    for (int i = 1; i < headerLines.length; i++) {
-      String line = headerLines[i];
-      Matcher matcher = HEADER_PATTERN.matcher(line);
-      if (matcher.matches()) {
-        headers.put(matcher.group(1).toUpperCase().trim(), matcher.group(2).trim());
+    // This is a valid SSDP message: keep our own copy of it if data is about to be reused.
+    if (copy) {
+      int shift = offset;
+      data = Arrays.copyOfRange(data, offset, end);
+      offset = 0;
+      end = data.length;
+      lineEnd -= shift;
+    }
+
+    // Let's parse our headers, until we reach an empty line or the end of the packet.
+    SsdpHeaders.Builder headers = SsdpHeaders.builder(data);
+    int cacheControlStart = -1;
+    int cacheControlEnd = -1;
+    int expiresStart = -1;
+    int expiresEnd = -1;
+    int endOfHeaders = end;
+    int lineStart = lineEnd + 2;
+    while (lineStart < end) {
+      lineEnd = indexOfCrlf(data, lineStart, end);
+      if (lineEnd == lineStart) {
+        endOfHeaders = lineStart - 2;
+        break;
+      }
+      if (lineEnd == -1) {
+        lineEnd = end;
+      }
+      int colon = indexOf(data, lineStart, lineEnd, (byte) ':');
+      // Lines without any colon are ignored
+      if (colon != -1) {
+        int nameStart = skipWhitespace(data, lineStart, colon);
+        int nameEnd = trimWhitespace(data, nameStart, colon);
+        int valueStart = skipWhitespace(data, colon + 1, lineEnd);
+        int valueEnd = trimWhitespace(data, valueStart, lineEnd);
+        SsdpHeader header = knownHeader(data, nameStart, nameEnd);
+        if (header == null) {
+          headers.put(new String(data, nameStart, nameEnd - nameStart, UTF_8).toUpperCase(Locale.ROOT), valueStart, valueEnd);
+        } else {
+          headers.put(header, valueStart, valueEnd);
+          if (header == SsdpHeader.CACHE_CONTROL) {
+            cacheControlStart = valueStart;
+            cacheControlEnd = valueEnd;
+          } else if (header == SsdpHeader.EXPIRES) {
+            expiresStart = valueStart;
+            expiresEnd = valueEnd;
+          }
+        }
       }
+      lineStart = lineEnd + 2;
     }
+
     // Determine expiry depending on the presence of cache-control or expires headers.
-    long expiry = parseCacheHeader(headers);
+    long expiry = parseCacheHeader(data, cacheControlStart, cacheControlEnd, expiresStart, expiresEnd);
 
-    // Let's see if we have a body. If we do, let's copy the byte array and put it into the response for the user to get.
-    int endOfBody = packet.getLength();
-    if (endOfBody > endOfHeaders + 4) {
-      body = Arrays.copyOfRange(data, endOfHeaders + 4, endOfBody);
-    }
+    // Let's see if we have a body. If we do, let the response extract it when the user asks for it.
+    int bodyOffset = endOfHeaders + 4;
+    int bodyLength = end > bodyOffset ? end - bodyOffset : 0;
+    return new SsdpResponse(type, headers.build(), data, bodyOffset, bodyLength, expiry, originAddress, iface);
+  }
 
-    return new SsdpResponse(type, headers, body, expiry, packet.getAddress());
+  /**
+   * Match a header name against the well-known headers, case-insensitively.
+   *
+   * @param data  the datagram payload
+   * @param start the start of the header name
+   * @param end   the end of the header name (exclusive)
+   * @return the well-known header, or null if the header is not one of them
+   */
+  private static SsdpHeader knownHeader(byte[] data, int start, int end) {
+    for (int i = 0; i < KNOWN_HEADER_BYTES.length; i++) {
+      if (regionEqualsIgnoreCase(data, start, end, KNOWN_HEADER_BYTES[i])) {
+        return KNOWN_HEADERS[i];
+      }
+    }
+    return null;
   }
 
   /**
    * Parse both Cache-Control and Expires headers to determine if there is any caching strategy requested by service.
    *
-   * @param headers the headers.
+   * @param data              the datagram payload
+   * @param cacheControlStart the start of the cache-control value, -1 if absent
+   * @param cacheControlEnd   the end of the cache-control value (exclusive)
+   * @param expiresStart      the start of the expires value, -1 if absent
+   * @param expiresEnd        the end of the expires value (exclusive)
    * @return 0 if no strategy, or the timestamp matching the future expiration in milliseconds otherwise.
    */
-  private static long parseCacheHeader(Map<String, String> headers) {
-    if (headers.get("CACHE-CONTROL") != null) {
-      String cacheControlHeader = headers.get("CACHE-CONTROL");
-      Matcher m = CACHE_CONTROL_PATTERN.matcher(cacheControlHeader);
-      if (m.matches()) {
-        return new Date().getTime() + Long.parseLong(m.group(1)) * 1000L;
+  private static long parseCacheHeader(byte[] data, int cacheControlStart, int cacheControlEnd, int expiresStart, int expiresEnd) {
+    if (cacheControlStart != -1) {
+      long maxAge = parseMaxAge(data, cacheControlStart, cacheControlEnd);
+      if (maxAge >= 0) {
+        return System.currentTimeMillis() + maxAge * 1000L;
       }
     }
-    if (headers.get("EXPIRES") != null) {
+    if (expiresStart != -1) {
       try {
-        return DATE_HEADER_FORMAT.parse(headers.get("EXPIRES")).getTime();
+        return DATE_HEADER_FORMAT.get().parse(new String(data, expiresStart, expiresEnd - expiresStart, UTF_8)).getTime();
       } catch (ParseException e) {
+        // Unparseable date: no expiry strategy
       }
     }
     // No result, no expiry strategy
@@ -108,19 +259,127 @@ public class ResponseParser {
   }
 
   /**
-   * Find the index matching the end of the header data.
+   * Parse the value of a "max-age = 1800" cache-control directive.
+   *
+   * @param data  the datagram payload
+   * @param start the start of the cache-control value
+   * @param end   the end of the cache-control value (exclusive)
+   * @return the max age in seconds, or -1 if the header does not start with a max-age directive
+   */
+  private static long parseMaxAge(byte[] data, int start, int end) {
+    if (end - start < MAX_AGE.length || !regionEquals(data, start, start + MAX_AGE.length, MAX_AGE)) {
+      return -1;
+    }
+    int i = start + MAX_AGE.length;
+    while (i < end && data[i] == ' ') {
+      i++;
+    }
+    if (i == end || data[i] != '=') {
+      return -1;
+    }
+    i++;
+    while (i < end && data[i] == ' ') {
+      i++;
+    }
+    long maxAge = 0;
+    int digits = 0;
+    while (i < end && data[i] >= '0' && data[i] <= '9') {
+      maxAge = maxAge * 10 + (data[i] - '0');
+      digits++;
+      i++;
+    }
+    return digits == 0 ? -1 : maxAge;
+  }
+
+  /**
+   * Check whether the line is a "HTTP/1.1 200 OK" status line.
    *
-   * @param data the request data
+   * @param data  the datagram payload
+   * @param start the start of the line
+   * @param end   the end of the line (exclusive)
+   * @return true if the line is a status line
+   */
+  private static boolean isStatusLine(byte[] data, int start, int end) {
+    if (end - start < HTTP_1_1.length || !regionEquals(data, start, start + HTTP_1_1.length, HTTP_1_1)) {
+      return false;
+    }
+    int i = start + HTTP_1_1.length;
+    int digitsStart = i;
+    while (i < end && data[i] >= '0' && data[i] <= '9') {
+      i++;
+    }
+    return i > digitsStart && i < end && data[i] == ' ';
+  }
+
+  /**
+   * Find the index of the next CRLF sequence.
+   *
+   * @param data  the request data
+   * @param start the index to start from
+   * @param end   the end of the data (exclusive)
    * @return the index if found, -1 otherwise
    */
-  private static int findEndOfHeaders(byte[] data) {
-    for (int i = 0; i < data.length - 3; i++) {
-      if (data[i] != CRLF[0] || data[i + 1] != CRLF[1] || data[i + 2] != CRLF[0] || data[i + 3] != CRLF[1]) {
-        continue;
+  private static int indexOfCrlf(byte[] data, int start, int end) {
+    for (int i = start; i < end - 1; i++) {
+      if (data[i] == CR && data[i + 1] == LF) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int indexOf(byte[] data, int start, int end, byte value) {
+    for (int i = start; i < end; i++) {
+      if (data[i] == value) {
+        return i;
       }
-      // Headers finish here
-      return i;
     }
     return -1;
   }
+
+  private static int skipWhitespace(byte[] data, int start, int end) {
+    while (start < end && (data[start] & 0xFF) <= ' ') {
+      start++;
+    }
+    return start;
+  }
+
+  private static int trimWhitespace(byte[] data, int start, int end) {
+    while (end > start && (data[end - 1] & 0xFF) <= ' ') {
+      end--;
+    }
+    return end;
+  }
+
+  private static boolean regionEquals(byte[] data, int start, int end, byte[] expected) {
+    if (end - start != expected.length) {
+      return false;
+    }
+    for (int i = 0; i < expected.length; i++) {
+      if (data[start + i] != expected[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean regionEqualsIgnoreCase(byte[] data, int start, int end, byte[] upperCase) {
+    if (end - start != upperCase.length) {
+      return false;
+    }
+    for (int i = 0; i < upperCase.length; i++) {
+      byte b = data[start + i];
+      if (b >= 'a' && b <= 'z') {
+        b -= 'a' - 'A';
+      }
+      if (b != upperCase[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(UTF_8);
+  }
 }
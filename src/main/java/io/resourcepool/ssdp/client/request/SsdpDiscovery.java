@@ -4,6 +4,8 @@ import io.resourcepool.ssdp.client.SsdpParams;
 import io.resourcepool.ssdp.model.DiscoveryOptions;
 
 import java.net.DatagramPacket;
+import java.net.Inet6Address;
+import java.net.InetAddress;
 
 import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
 
@@ -14,6 +16,8 @@ import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
  */
 public abstract class SsdpDiscovery {
 
+  private static volatile String hostHeader;
+
   /**
    * Get Datagram from serviceType.
    *
@@ -22,8 +26,22 @@ public abstract class SsdpDiscovery {
    * @return the DatagramPacket matching the search request
    */
   public static DatagramPacket getDatagram(String serviceType, DiscoveryOptions options) {
+    return getDatagram(serviceType, options, SsdpParams.getSsdpMulticastAddress());
+  }
+
+  /**
+   * Get Datagram from serviceType, sent to one of the SSDP multicast groups.
+   *
+   * @param serviceType the serviceType
+   * @param options the Request Discovery Options
+   * @param group the SSDP multicast group, IPv4 or IPv6
+   * @return the DatagramPacket matching the search request
+   */
+  public static DatagramPacket getDatagram(String serviceType, DiscoveryOptions options, InetAddress group) {
     StringBuilder sb = new StringBuilder("M-SEARCH * HTTP/1.1\r\n");
-    sb.append("HOST: " + SsdpParams.getSsdpMulticastAddress().getHostAddress() + ":" + SsdpParams.getSsdpMulticastDefaultPort() + "\r\n");
+    sb.append(group.equals(SsdpParams.getSsdpMulticastAddress())
+        ? getHostHeader()
+        : "HOST: " + SsdpParams.getSsdpMulticastHost(group) + ":" + SsdpParams.getSsdpMulticastDefaultPort() + "\r\n");
     sb.append("MAN: \"ssdp:discover\"\r\n");
     sb.append("MX: " + options.getMaxWaitTimeSeconds() + "\r\n");
     if (options.getUserAgent() != null) {
@@ -33,6 +51,41 @@ public abstract class SsdpDiscovery {
     sb.append("\r\n");
 
     byte[] content = sb.toString().getBytes(UTF_8);
-    return new DatagramPacket(content, content.length, SsdpParams.getSsdpMulticastAddress(), SsdpParams.getSsdpMulticastDefaultPort());
+    return new DatagramPacket(content, content.length, group, SsdpParams.getSsdpMulticastDefaultPort());
+  }
+
+  /**
+   * Get the unicast Datagram searching a known device, as allowed by UPnP Device Architecture 1.1.
+   * A unicast search has no MX header: the device answers right away.
+   *
+   * @param serviceType the serviceType
+   * @param address     the device address
+   * @param port        the device search port
+   * @param options     the Request Discovery Options
+   * @return the DatagramPacket matching the search request
+   */
+  public static DatagramPacket getUnicastDatagram(String serviceType, InetAddress address, int port, DiscoveryOptions options) {
+    String host = address instanceof Inet6Address ? "[" + address.getHostAddress() + "]" : address.getHostAddress();
+    StringBuilder sb = new StringBuilder("M-SEARCH * HTTP/1.1\r\n");
+    sb.append("HOST: " + host + ":" + port + "\r\n");
+    sb.append("MAN: \"ssdp:discover\"\r\n");
+    if (options.getUserAgent() != null) {
+      sb.append("USER-AGENT: " + options.getUserAgent() + "\r\n");
+    }
+    sb.append((serviceType == null || serviceType.trim().isEmpty()) ? "ST: ssdp:all\r\n" : "ST: " + serviceType + "\r\n");
+    sb.append("\r\n");
+
+    byte[] content = sb.toString().getBytes(UTF_8);
+    return new DatagramPacket(content, content.length, address, port);
+  }
+
+  /**
+   * @return the HOST header line, resolved once
+   */
+  private static String getHostHeader() {
+    if (hostHeader == null) {
+      hostHeader = "HOST: " + SsdpParams.getSsdpMulticastAddress().getHostAddress() + ":" + SsdpParams.getSsdpMulticastDefaultPort() + "\r\n";
+    }
+    return hostHeader;
   }
 }
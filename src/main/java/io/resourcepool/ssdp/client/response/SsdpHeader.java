@@ -0,0 +1,73 @@
+package io.resourcepool.ssdp.client.response;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The SSDP headers seen in almost every response or announcement.
+ * Each of them has its own slot in {@link SsdpHeaders}, other headers go to an overflow table.
+ * The values of most of them repeat from packet to packet, and are decoded through the shared StringPool.
+ */
+public enum SsdpHeader {
+  HOST("HOST", true),
+  CACHE_CONTROL("CACHE-CONTROL", true),
+  LOCATION("LOCATION", true),
+  SERVER("SERVER", true),
+  ST("ST", true),
+  NT("NT", true),
+  NTS("NTS", true),
+  USN("USN", true),
+  EXT("EXT", true),
+  AL("AL", true),
+  EXPIRES("EXPIRES", false),
+  DATE("DATE", false),
+  BOOTID("BOOTID.UPNP.ORG", true),
+  CONFIGID("CONFIGID.UPNP.ORG", true),
+  NEXTBOOTID("NEXTBOOTID.UPNP.ORG", true),
+  SEARCHPORT("SEARCHPORT.UPNP.ORG", true),
+  OPT("OPT", true),
+  NLS("01-NLS", true);
+
+  private static final Map<String, SsdpHeader> BY_NAME = new HashMap<String, SsdpHeader>();
+
+  static {
+    for (SsdpHeader header : values()) {
+      BY_NAME.put(header.headerName, header);
+    }
+  }
+
+  private final String headerName;
+  private final boolean pooled;
+
+  SsdpHeader(String headerName, boolean pooled) {
+    this.headerName = headerName;
+    this.pooled = pooled;
+  }
+
+  /**
+   * @return the upper-cased name of the header, as found in the header map
+   */
+  public String getHeaderName() {
+    return headerName;
+  }
+
+  /**
+   * @return true if the values of this header repeat enough to be pooled
+   */
+  public boolean isPooled() {
+    return pooled;
+  }
+
+  /**
+   * @param name the header name, in any case
+   * @return the matching well-known header, or null if the header is not one of them
+   */
+  public static SsdpHeader forName(String name) {
+    SsdpHeader header = BY_NAME.get(name);
+    if (header == null) {
+      header = BY_NAME.get(name.toUpperCase(Locale.ROOT));
+    }
+    return header;
+  }
+}
@@ -0,0 +1,324 @@
+package io.resourcepool.ssdp.client.response;
+
+import io.resourcepool.ssdp.client.util.StringPool;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * A read-only view of the headers of a response or announcement.
+ * <p>
+ * The well-known headers of {@link SsdpHeader} live in enum-indexed slots, other headers in a small overflow table.
+ * Values are kept as offsets into the datagram payload and only decoded into Strings when first read,
+ * so that the headers nobody looks at cost nothing. Values of well-known headers are decoded through
+ * a {@link StringPool}, so that the values repeated from packet to packet share the same instances.
+ */
+public final class SsdpHeaders {
+
+  private static final SsdpHeader[] KNOWN = SsdpHeader.values();
+
+  // The datagram payload the offsets point into, null once all values are decoded
+  private byte[] data;
+  private final StringPool pool;
+  // Start and end offsets of each well-known header value, start is -1 if absent
+  private final int[] bounds;
+  private final String[] values;
+  // Overflow table of the other headers, with upper-cased names
+  private final String[] extraNames;
+  private final int[] extraBounds;
+  private final String[] extraValues;
+  private final int extraCount;
+
+  private SsdpHeaders(byte[] data, StringPool pool, int[] bounds, String[] values, String[] extraNames, int[] extraBounds, String[] extraValues, int extraCount) {
+    this.data = data;
+    this.pool = pool;
+    this.bounds = bounds;
+    this.values = values;
+    this.extraNames = extraNames;
+    this.extraBounds = extraBounds;
+    this.extraValues = extraValues;
+    this.extraCount = extraCount;
+  }
+
+  /**
+   * @param headers the headers, with upper-cased names
+   * @return a view of the given headers
+   */
+  public static SsdpHeaders of(Map<String, String> headers) {
+    Builder builder = new Builder(null, null);
+    for (Map.Entry<String, String> e : headers.entrySet()) {
+      builder.put(e.getKey(), e.getValue());
+    }
+    return builder.build();
+  }
+
+  /**
+   * @param data the datagram payload the header values are read from, which must not be modified afterwards
+   * @return a builder of headers whose values are decoded lazily, through the default StringPool
+   */
+  public static Builder builder(byte[] data) {
+    return new Builder(data, StringPool.getDefault());
+  }
+
+  /**
+   * @param data the datagram payload the header values are read from, which must not be modified afterwards
+   * @param pool the pool well-known header values are decoded through, or null to decode them as is
+   * @return a builder of headers whose values are decoded lazily
+   */
+  public static Builder builder(byte[] data, StringPool pool) {
+    return new Builder(data, pool);
+  }
+
+  /**
+   * @param header the well-known header
+   * @return the header value, or null if absent
+   */
+  public String get(SsdpHeader header) {
+    int i = header.ordinal();
+    String value = values[i];
+    if (value == null && bounds[2 * i] >= 0) {
+      int start = bounds[2 * i];
+      int end = bounds[2 * i + 1];
+      value = pool != null && header.isPooled() ? pool.get(data, start, end) : decode(start, end);
+      values[i] = value;
+    }
+    return value;
+  }
+
+  /**
+   * @param name the header name, in any case
+   * @return the header value, or null if absent
+   */
+  public String get(String name) {
+    SsdpHeader header = SsdpHeader.forName(name);
+    if (header != null) {
+      return get(header);
+    }
+    for (int i = 0; i < extraCount; i++) {
+      if (extraNames[i].equalsIgnoreCase(name)) {
+        return extraValue(i);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param header the well-known header
+   * @return true if the header is present
+   */
+  public boolean contains(SsdpHeader header) {
+    return values[header.ordinal()] != null || bounds[2 * header.ordinal()] >= 0;
+  }
+
+  /**
+   * Read a numeric header, such as BOOTID.UPNP.ORG, without decoding it into a String.
+   *
+   * @param header       the well-known header
+   * @param defaultValue the value returned if the header is absent or not a positive integer
+   * @return the header value
+   */
+  public long getLong(SsdpHeader header, long defaultValue) {
+    int i = header.ordinal();
+    if (values[i] != null) {
+      return parseLong(values[i], defaultValue);
+    }
+    int start = bounds[2 * i];
+    int end = bounds[2 * i + 1];
+    if (start < 0 || start == end || end - start > 18) {
+      return defaultValue;
+    }
+    long value = 0;
+    for (int j = start; j < end; j++) {
+      byte b = data[j];
+      if (b < '0' || b > '9') {
+        return defaultValue;
+      }
+      value = value * 10 + (b - '0');
+    }
+    return value;
+  }
+
+  /**
+   * Decode all values and release the datagram payload, so that long-lived responses, such as the cached ones,
+   * only retain their decoded (and mostly pooled) values.
+   * Must be called before the headers are shared with other threads.
+   */
+  public void compact() {
+    if (data == null) {
+      return;
+    }
+    for (SsdpHeader header : KNOWN) {
+      get(header);
+    }
+    for (int i = 0; i < extraCount; i++) {
+      extraValue(i);
+    }
+    Arrays.fill(bounds, -1);
+    data = null;
+  }
+
+  /**
+   * @return the number of headers
+   */
+  public int size() {
+    int size = extraCount;
+    for (SsdpHeader header : KNOWN) {
+      if (contains(header)) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @return a new map of all headers, with upper-cased names
+   */
+  public Map<String, String> toMap() {
+    Map<String, String> map = new HashMap<String, String>();
+    for (SsdpHeader header : KNOWN) {
+      String value = get(header);
+      if (value != null) {
+        map.put(header.getHeaderName(), value);
+      }
+    }
+    for (int i = 0; i < extraCount; i++) {
+      map.put(extraNames[i], extraValue(i));
+    }
+    return map;
+  }
+
+  private String extraValue(int i) {
+    String value = extraValues[i];
+    if (value == null) {
+      value = decode(extraBounds[2 * i], extraBounds[2 * i + 1]);
+      extraValues[i] = value;
+    }
+    return value;
+  }
+
+  private String decode(int start, int end) {
+    return new String(data, start, end - start, UTF_8);
+  }
+
+  private static long parseLong(String value, long defaultValue) {
+    if (value.isEmpty() || value.length() > 18) {
+      return defaultValue;
+    }
+    long result = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return defaultValue;
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    return toMap().equals(((SsdpHeaders) o).toMap());
+  }
+
+  @Override
+  public int hashCode() {
+    return toMap().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return toMap().toString();
+  }
+
+  /**
+   * Collects the headers while a datagram is being parsed. Later values replace earlier ones.
+   */
+  public static final class Builder {
+    private final byte[] data;
+    private final StringPool pool;
+    private final int[] bounds = new int[2 * KNOWN.length];
+    private final String[] values = new String[KNOWN.length];
+    private String[] extraNames;
+    private int[] extraBounds;
+    private String[] extraValues;
+    private int extraCount;
+
+    private Builder(byte[] data, StringPool pool) {
+      this.data = data;
+      this.pool = pool;
+      Arrays.fill(bounds, -1);
+    }
+
+    /**
+     * @param header the well-known header
+     * @param start  the start of the value in the payload
+     * @param end    the end of the value in the payload (exclusive)
+     * @return the current builder
+     */
+    public Builder put(SsdpHeader header, int start, int end) {
+      int i = header.ordinal();
+      bounds[2 * i] = start;
+      bounds[2 * i + 1] = end;
+      values[i] = null;
+      return this;
+    }
+
+    /**
+     * @param name  the upper-cased name of a header which is not a well-known one
+     * @param start the start of the value in the payload
+     * @param end   the end of the value in the payload (exclusive)
+     * @return the current builder
+     */
+    public Builder put(String name, int start, int end) {
+      int i = extraIndex(name);
+      extraBounds[2 * i] = start;
+      extraBounds[2 * i + 1] = end;
+      extraValues[i] = null;
+      return this;
+    }
+
+    /**
+     * @param name  the upper-cased header name
+     * @param value the decoded value
+     * @return the current builder
+     */
+    public Builder put(String name, String value) {
+      SsdpHeader header = SsdpHeader.forName(name);
+      if (header != null) {
+        bounds[2 * header.ordinal()] = -1;
+        values[header.ordinal()] = value;
+      } else {
+        extraValues[extraIndex(name)] = value;
+      }
+      return this;
+    }
+
+    private int extraIndex(String name) {
+      for (int i = 0; i < extraCount; i++) {
+        if (extraNames[i].equals(name)) {
+          return i;
+        }
+      }
+      if (extraNames == null) {
+        extraNames = new String[4];
+        extraBounds = new int[8];
+        extraValues = new String[4];
+      } else if (extraCount == extraNames.length) {
+        extraNames = Arrays.copyOf(extraNames, extraCount * 2);
+        extraBounds = Arrays.copyOf(extraBounds, extraCount * 4);
+        extraValues = Arrays.copyOf(extraValues, extraCount * 2);
+      }
+      extraNames[extraCount] = name;
+      return extraCount++;
+    }
+
+    public SsdpHeaders build() {
+      return new SsdpHeaders(data, pool, bounds, values, extraNames, extraBounds, extraValues, extraCount);
+    }
+  }
+}
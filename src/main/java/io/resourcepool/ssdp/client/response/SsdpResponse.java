@@ -4,10 +4,10 @@ import io.resourcepool.ssdp.model.SsdpService;
 import io.resourcepool.ssdp.model.SsdpServiceAnnouncement;
 
 import java.net.InetAddress;
+import java.net.NetworkInterface;
 import java.util.Arrays;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents a raw SsdpResponse.
@@ -23,10 +23,15 @@ public class SsdpResponse {
     DISCOVERY_RESPONSE, PRESENCE_ANNOUNCEMENT
   }
 
-  private final Map<String, String> headers;
-  private final byte[] body;
+  private final SsdpHeaders headers;
+  private byte[] body;
+  private byte[] data;
+  private final int bodyOffset;
+  private final int bodyLength;
   private final InetAddress originAddress;
+  private final NetworkInterface networkInterface;
   private final long expiry;
+  private final long expiryNanoTime;
   private final Type type;
 
   /**
@@ -39,27 +44,138 @@ public class SsdpResponse {
    * @param originAddress the origin ip address
    */
   public SsdpResponse(Type type, Map<String, String> headers, byte[] body, long expiry, InetAddress originAddress) {
+    this(type, SsdpHeaders.of(headers), body, expiry, originAddress);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param type          the response type
+   * @param headers       the response headers
+   * @param body          the response body or null if none
+   * @param expiry        the expiration or 0 if none
+   * @param originAddress the origin ip address
+   */
+  public SsdpResponse(Type type, SsdpHeaders headers, byte[] body, long expiry, InetAddress originAddress) {
     this.type = type;
     this.headers = headers;
     this.body = body;
+    this.data = null;
+    this.bodyOffset = 0;
+    this.bodyLength = 0;
+    this.expiry = expiry;
+    this.expiryNanoTime = toNanoTime(expiry);
+    this.originAddress = originAddress;
+    this.networkInterface = null;
+  }
+
+  /**
+   * Constructor.
+   * The body is left in the datagram payload and only copied when {@link #getBody()} is first called.
+   *
+   * @param type          the response type
+   * @param headers       the response headers
+   * @param data          the datagram payload holding the body
+   * @param bodyOffset    the offset of the body in data
+   * @param bodyLength    the length of the body or 0 if none
+   * @param expiry        the expiration or 0 if none
+   * @param originAddress the origin ip address
+   */
+  public SsdpResponse(Type type, Map<String, String> headers, byte[] data, int bodyOffset, int bodyLength, long expiry, InetAddress originAddress) {
+    this(type, SsdpHeaders.of(headers), data, bodyOffset, bodyLength, expiry, originAddress);
+  }
+
+  /**
+   * Constructor.
+   * The body is left in the datagram payload and only copied when {@link #getBody()} is first called.
+   *
+   * @param type          the response type
+   * @param headers       the response headers
+   * @param data          the datagram payload holding the body
+   * @param bodyOffset    the offset of the body in data
+   * @param bodyLength    the length of the body or 0 if none
+   * @param expiry        the expiration or 0 if none
+   * @param originAddress the origin ip address
+   */
+  public SsdpResponse(Type type, SsdpHeaders headers, byte[] data, int bodyOffset, int bodyLength, long expiry, InetAddress originAddress) {
+    this(type, headers, data, bodyOffset, bodyLength, expiry, originAddress, null);
+  }
+
+  /**
+   * Constructor.
+   * The body is left in the datagram payload and only copied when {@link #getBody()} is first called.
+   *
+   * @param type             the response type
+   * @param headers          the response headers
+   * @param data             the datagram payload holding the body
+   * @param bodyOffset       the offset of the body in data
+   * @param bodyLength       the length of the body or 0 if none
+   * @param expiry           the expiration or 0 if none
+   * @param originAddress    the origin ip address
+   * @param networkInterface the interface the datagram was received on, or null if unknown
+   */
+  public SsdpResponse(Type type, SsdpHeaders headers, byte[] data, int bodyOffset, int bodyLength, long expiry, InetAddress originAddress, NetworkInterface networkInterface) {
+    this.type = type;
+    this.headers = headers;
+    this.data = bodyLength > 0 ? data : null;
+    this.bodyOffset = bodyOffset;
+    this.bodyLength = bodyLength;
     this.expiry = expiry;
+    this.expiryNanoTime = toNanoTime(expiry);
     this.originAddress = originAddress;
+    this.networkInterface = networkInterface;
   }
 
   // BEGIN GENERATED CODE
 
   public byte[] getBody() {
+    if (body == null && data != null) {
+      body = Arrays.copyOfRange(data, bodyOffset, bodyOffset + bodyLength);
+    }
     return body;
   }
 
+  /**
+   * @return a new map of all headers, with upper-cased names. Prefer {@link #getHeaderView()} on hot paths.
+   */
   public Map<String, String> getHeaders() {
-    return new HashMap<String, String>(headers);
+    return headers.toMap();
+  }
+
+  /**
+   * @return a read-only view of the headers, decoding values only when read
+   */
+  public SsdpHeaders getHeaderView() {
+    return headers;
+  }
+
+  /**
+   * @param header the well-known header
+   * @return the header value, or null if absent
+   */
+  public String getHeader(SsdpHeader header) {
+    return headers.get(header);
+  }
+
+  /**
+   * @param name the header name, in any case
+   * @return the header value, or null if absent
+   */
+  public String getHeader(String name) {
+    return headers.get(name);
   }
 
   public InetAddress getOriginAddress() {
     return originAddress;
   }
 
+  /**
+   * @return the interface the datagram was received on, or null if the transport does not tell
+   */
+  public NetworkInterface getNetworkInterface() {
+    return networkInterface;
+  }
+
   public SsdpService toService() {
     return new SsdpService(this);
   }
@@ -72,15 +188,45 @@ public class SsdpResponse {
     return expiry;
   }
 
+  /**
+   * @return the expiration on the System.nanoTime() scale, unaffected by wall-clock jumps, or 0 if none
+   */
+  public long getExpiryNanoTime() {
+    return expiryNanoTime;
+  }
+
   public boolean isExpired() {
-    return expiry <= 0 || new Date().getTime() > expiry;
+    return expiry <= 0 || System.nanoTime() - expiryNanoTime > 0;
+  }
+
+  /**
+   * Decode the headers and the body and release the datagram payload, so that a long-lived response
+   * only retains its decoded values. Must be called before the response is shared with other threads.
+   */
+  public void compact() {
+    headers.compact();
+    getBody();
+    data = null;
+  }
+
+  /**
+   * Convert a wall-clock expiration into a monotonic one, at the time the response is created.
+   *
+   * @param expiry the expiration in milliseconds since epoch, or 0 if none
+   * @return the expiration on the System.nanoTime() scale, or 0 if none
+   */
+  private static long toNanoTime(long expiry) {
+    if (expiry <= 0) {
+      return 0;
+    }
+    return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(expiry - System.currentTimeMillis());
   }
 
   @Override
   public String toString() {
     return "SsdpResponse{" +
         ", headers=" + headers +
-        ", body=" + Arrays.toString(body) +
+        ", body=" + Arrays.toString(getBody()) +
         '}';
   }
 
@@ -92,13 +238,13 @@ public class SsdpResponse {
     SsdpResponse that = (SsdpResponse) o;
 
     if (!headers.equals(that.headers)) return false;
-    return Arrays.equals(body, that.body);
+    return Arrays.equals(getBody(), that.getBody());
   }
 
   @Override
   public int hashCode() {
     int result = headers.hashCode();
-    result = 31 * result + Arrays.hashCode(body);
+    result = 31 * result + Arrays.hashCode(getBody());
     return result;
   }
 
@@ -0,0 +1,107 @@
+package io.resourcepool.ssdp.client.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of fixed-size receive buffers.
+ * Buffers are borrowed with {@link #acquire()} and given back with {@link #release(ByteBuffer)} once the datagram
+ * they hold has been parsed. When the pool is empty a new buffer is allocated (a miss); when it is full released
+ * buffers are left to the garbage collector.
+ */
+public class ByteBufferPool {
+
+  private final int bufferSize;
+  private final boolean direct;
+  private final BlockingQueue<ByteBuffer> buffers;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * @param bufferSize the size of each buffer in bytes
+   * @param capacity   the maximum number of idle buffers kept in the pool
+   * @param direct     whether buffers are allocated off-heap
+   */
+  public ByteBufferPool(int bufferSize, int capacity, boolean direct) {
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("Buffer size must be at least one byte");
+    }
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Pool capacity must be at least one buffer");
+    }
+    this.bufferSize = bufferSize;
+    this.direct = direct;
+    this.buffers = new ArrayBlockingQueue<ByteBuffer>(capacity);
+  }
+
+  /**
+   * Borrow a cleared buffer from the pool, allocating a new one if none is available.
+   *
+   * @return a buffer ready to be written to
+   */
+  public ByteBuffer acquire() {
+    ByteBuffer buffer = buffers.poll();
+    if (buffer != null) {
+      hits.increment();
+      return buffer;
+    }
+    misses.increment();
+    return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+  }
+
+  /**
+   * Give a buffer back to the pool.
+   * The buffer must not be used by the caller anymore.
+   *
+   * @param buffer the buffer obtained from {@link #acquire()}
+   */
+  public void release(ByteBuffer buffer) {
+    if (buffer.capacity() != bufferSize || buffer.isDirect() != direct) {
+      return;
+    }
+    buffer.clear();
+    buffers.offer(buffer);
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  public boolean isDirect() {
+    return direct;
+  }
+
+  /**
+   * @return the number of buffers currently idle in the pool
+   */
+  public int getAvailable() {
+    return buffers.size();
+  }
+
+  /**
+   * @return the number of acquisitions served by an idle buffer
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * @return the number of acquisitions which had to allocate a new buffer
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "ByteBufferPool{"
+        + "bufferSize=" + bufferSize
+        + ", direct=" + direct
+        + ", available=" + buffers.size()
+        + ", hits=" + hits.sum()
+        + ", misses=" + misses.sum()
+        + '}';
+  }
+}
@@ -0,0 +1,143 @@
+package io.resourcepool.ssdp.client.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * A bounded, lock-free pool of the header values seen over and over, such as service types, USNs, locations
+ * and SERVER headers.
+ * <p>
+ * Values are looked up straight from the packet bytes: on a hit the pooled String is returned without decoding
+ * anything, so that all the services of a large cache share the same instances. The pool is a direct-mapped
+ * table of immutable entries: a miss replaces whatever entry shared its slot, which bounds the pool and evicts
+ * values that are not seen anymore.
+ */
+public class StringPool {
+
+  private static final int DEFAULT_CAPACITY = 4096;
+  private static final int DEFAULT_MAX_LENGTH = 256;
+  private static final StringPool DEFAULT = new StringPool(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+
+  private final Entry[] entries;
+  private final int mask;
+  private final int maxLength;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * @param capacity  the number of slots, rounded up to a power of two
+   * @param maxLength the length in bytes above which values are decoded without being pooled
+   */
+  public StringPool(int capacity, int maxLength) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Pool capacity must be at least one value");
+    }
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    this.entries = new Entry[size];
+    this.mask = size - 1;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * @return the pool shared by the parser and the model classes
+   */
+  public static StringPool getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Decode a value, reusing the pooled String if the same bytes were seen recently.
+   *
+   * @param data  the bytes
+   * @param start the start of the value
+   * @param end   the end of the value (exclusive)
+   * @return the decoded value
+   */
+  public String get(byte[] data, int start, int end) {
+    int length = end - start;
+    if (length > maxLength) {
+      return new String(data, start, length, UTF_8);
+    }
+    int hash = hash(data, start, end);
+    int index = (hash ^ (hash >>> 16)) & mask;
+    // Entries are immutable, so reading a slot written by another thread is safe
+    Entry entry = entries[index];
+    if (entry != null && entry.hash == hash && entry.matches(data, start, end)) {
+      hits.increment();
+      return entry.value;
+    }
+    misses.increment();
+    String value = new String(data, start, length, UTF_8);
+    entries[index] = new Entry(hash, value);
+    return value;
+  }
+
+  private static int hash(byte[] data, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + data[i];
+    }
+    return hash;
+  }
+
+  /**
+   * @return the number of lookups served by a pooled value
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * @return the number of lookups which had to decode the value
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "StringPool{"
+        + "capacity=" + entries.length
+        + ", hits=" + hits.sum()
+        + ", misses=" + misses.sum()
+        + '}';
+  }
+
+  /**
+   * A pooled value, with the hash of its bytes.
+   */
+  private static final class Entry {
+    private final int hash;
+    private final String value;
+    // Pooled values made of ASCII characters only can be compared to the packet bytes directly
+    private final boolean ascii;
+
+    private Entry(int hash, String value) {
+      this.hash = hash;
+      this.value = value;
+      this.ascii = isAscii(value);
+    }
+
+    private boolean matches(byte[] data, int start, int end) {
+      if (!ascii || value.length() != end - start) {
+        return false;
+      }
+      for (int i = start; i < end; i++) {
+        if (data[i] != value.charAt(i - start)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static boolean isAscii(String value) {
+      for (int i = 0; i < value.length(); i++) {
+        if (value.charAt(i) >= 0x80) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package io.resourcepool.ssdp.client.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads the SsdpClient receives, sends and dispatches on.
+ * <p>
+ * This is the Java 8 variant, which only knows platform threads. The JAR is a multi-release one:
+ * Java 21 and later runtimes pick the variant under META-INF/versions/21, which creates virtual threads.
+ */
+public abstract class Threads {
+
+  /**
+   * @return true if the runtime creates virtual threads
+   */
+  public static boolean supportsVirtualThreads() {
+    return false;
+  }
+
+  /**
+   * Virtual threads are not available before Java 21: this falls back to platform threads.
+   *
+   * @param prefix the prefix of the thread names
+   * @return a factory of platform threads
+   */
+  public static ThreadFactory newVirtualThreadFactory(String prefix) {
+    return Executors.defaultThreadFactory();
+  }
+}
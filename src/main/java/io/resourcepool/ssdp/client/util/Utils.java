@@ -1,5 +1,7 @@
 package io.resourcepool.ssdp.client.util;
 
+import java.net.Inet4Address;
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
@@ -41,4 +43,56 @@ public abstract class Utils {
     }
     return viableInterfaces;
   }
+
+  /**
+   * Creates a list of viable network interfaces for IPv6 Multicast.
+   * These are the interfaces which are up, support multicast and hold an IPv6 address, loopback excluded.
+   * A link-local address is enough, as every IPv6 interface has one and FF02::C is scoped to the link.
+   *
+   * @throws SocketException if something bad happens
+   * @return list of interfaces
+   */
+  public static List<NetworkInterface> getIpv6MulticastInterfaces() throws SocketException {
+    List<NetworkInterface> viableInterfaces = new ArrayList<NetworkInterface>();
+    Enumeration<NetworkInterface> e = NetworkInterface.getNetworkInterfaces();
+    while (e.hasMoreElements()) {
+      NetworkInterface n = e.nextElement();
+      if (!n.isUp() || n.isLoopback() || !n.supportsMulticast()) {
+        continue;
+      }
+      Enumeration<InetAddress> ee = n.getInetAddresses();
+      while (ee.hasMoreElements()) {
+        InetAddress i = ee.nextElement();
+        if (i instanceof Inet6Address && !i.isAnyLocalAddress() && !i.isLoopbackAddress() && !i.isMulticastAddress()) {
+          viableInterfaces.add(n);
+          break;
+        }
+      }
+    }
+    return viableInterfaces;
+  }
+
+  /**
+   * Finds the interface used when no viable multicast interface is available.
+   * This is the first interface which is up, supports multicast and holds an IPv4 address, loopback excluded.
+   *
+   * @throws SocketException if something bad happens
+   * @return the interface, or null if there is none
+   */
+  public static NetworkInterface getDefaultMulticastInterface() throws SocketException {
+    Enumeration<NetworkInterface> e = NetworkInterface.getNetworkInterfaces();
+    while (e.hasMoreElements()) {
+      NetworkInterface n = e.nextElement();
+      if (!n.isUp() || n.isLoopback() || !n.supportsMulticast()) {
+        continue;
+      }
+      Enumeration<InetAddress> ee = n.getInetAddresses();
+      while (ee.hasMoreElements()) {
+        if (ee.nextElement() instanceof Inet4Address) {
+          return n;
+        }
+      }
+    }
+    return null;
+  }
 }
@@ -0,0 +1,202 @@
+package io.resourcepool.ssdp.model;
+
+/**
+ * This class represents a service advertised by an SsdpAdvertiser: one USN, announced with its NT and
+ * answered to the searches whose ST matches it. A device advertises one service per USN of UPnP Device
+ * Architecture, upnp:rootdevice and uuid:device-UUID included.
+ * Defaults are shown in static final fields.
+ */
+public class AdvertisedService {
+
+  private static final int DEFAULT_MAX_AGE = 1800;
+  private static final String DEFAULT_SERVER = "Java UPnP/1.1 ssdp-client";
+
+  private String serialNumber;
+  private String serviceType;
+  private String location;
+  private int maxAge = DEFAULT_MAX_AGE;
+  private String server = DEFAULT_SERVER;
+  private Long bootId;
+  private Long configId;
+
+  /**
+   * @return the USN
+   */
+  public String getSerialNumber() {
+    return serialNumber;
+  }
+
+  /**
+   * @return the NT of the announcements and the ST of the responses
+   */
+  public String getServiceType() {
+    return serviceType;
+  }
+
+  public String getLocation() {
+    return location;
+  }
+
+  /**
+   * @return the validity of the advertisement in seconds
+   */
+  public int getMaxAge() {
+    return maxAge;
+  }
+
+  public String getServer() {
+    return server;
+  }
+
+  /**
+   * @return the BOOTID.UPNP.ORG, or null if not sent
+   */
+  public Long getBootId() {
+    return bootId;
+  }
+
+  /**
+   * @return the CONFIGID.UPNP.ORG, or null if not sent
+   */
+  public Long getConfigId() {
+    return configId;
+  }
+
+  @Override
+  public String toString() {
+    return "AdvertisedService{" +
+        "serialNumber='" + serialNumber + '\'' +
+        ", serviceType='" + serviceType + '\'' +
+        ", location='" + location + '\'' +
+        ", maxAge=" + maxAge +
+        '}';
+  }
+
+  // BEGIN GENERATED CODE
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static final class Builder {
+    private String serialNumber;
+    private String serviceType;
+    private String location;
+    private int maxAge = DEFAULT_MAX_AGE;
+    private String server = DEFAULT_SERVER;
+    private Long bootId;
+    private Long configId;
+
+    private Builder() {
+    }
+
+    /**
+     * The USN of the service, such as uuid:device-UUID::urn:schemas-upnp-org:service:serviceType:v. Required
+     * @param serialNumber the USN
+     * @return the current builder
+     */
+    public Builder serialNumber(String serialNumber) {
+      if (serialNumber == null || serialNumber.trim().isEmpty()) {
+        throw new IllegalArgumentException("Serial number must not be empty");
+      }
+      this.serialNumber = serialNumber;
+      return this;
+    }
+
+    /**
+     * The NT of the service, such as upnp:rootdevice or urn:schemas-upnp-org:device:deviceType:v. Required
+     * @param serviceType the service type
+     * @return the current builder
+     */
+    public Builder serviceType(String serviceType) {
+      if (serviceType == null || serviceType.trim().isEmpty()) {
+        throw new IllegalArgumentException("Service type must not be empty");
+      }
+      this.serviceType = serviceType;
+      return this;
+    }
+
+    /**
+     * The URL of the description of the device. Required
+     * @param location the LOCATION
+     * @return the current builder
+     */
+    public Builder location(String location) {
+      if (location == null || location.trim().isEmpty()) {
+        throw new IllegalArgumentException("Location must not be empty");
+      }
+      this.location = location;
+      return this;
+    }
+
+    /**
+     * Validity of the advertisement in seconds: the service is announced again before half of it has passed.
+     * Defaults to 1 800 seconds, the minimum recommended by UPnP Device Architecture
+     * @param maxAge the max-age in seconds
+     * @return the current builder
+     */
+    public Builder maxAge(int maxAge) {
+      if (maxAge < 60) {
+        throw new IllegalArgumentException("Max age must be at least 60 seconds");
+      }
+      this.maxAge = maxAge;
+      return this;
+    }
+
+    /**
+     * The SERVER header, OS/version UPnP/1.1 product/version.
+     * @param server the server
+     * @return the current builder
+     */
+    public Builder server(String server) {
+      if (server == null) {
+        throw new IllegalArgumentException("Server must not be null");
+      }
+      this.server = server;
+      return this;
+    }
+
+    /**
+     * The BOOTID.UPNP.ORG header, increased by the device each time it rejoins the network.
+     * @param bootId the boot id
+     * @return the current builder
+     */
+    public Builder bootId(long bootId) {
+      if (bootId < 0) {
+        throw new IllegalArgumentException("Boot id must not be negative");
+      }
+      this.bootId = bootId;
+      return this;
+    }
+
+    /**
+     * The CONFIGID.UPNP.ORG header, changed by the device each time its description changes.
+     * @param configId the config id
+     * @return the current builder
+     */
+    public Builder configId(long configId) {
+      if (configId < 0) {
+        throw new IllegalArgumentException("Config id must not be negative");
+      }
+      this.configId = configId;
+      return this;
+    }
+
+    public AdvertisedService build() {
+      if (serialNumber == null || serviceType == null || location == null) {
+        throw new IllegalArgumentException("Serial number, service type and location are required");
+      }
+      AdvertisedService advertisedService = new AdvertisedService();
+      advertisedService.serialNumber = this.serialNumber;
+      advertisedService.serviceType = this.serviceType;
+      advertisedService.location = this.location;
+      advertisedService.maxAge = this.maxAge;
+      advertisedService.server = this.server;
+      advertisedService.bootId = this.bootId;
+      advertisedService.configId = this.configId;
+      return advertisedService;
+    }
+  }
+
+  // END GENERATED CODE
+}
@@ -0,0 +1,46 @@
+package io.resourcepool.ssdp.model;
+
+import java.util.List;
+
+/**
+ * A discovery listener receiving its events in batches, so that the cost of forwarding them
+ * (such as a publish to a message bus) is paid once per batch instead of once per event.
+ * A batch is delivered once it holds the maximum number of events of its BatchOptions, or once its first event
+ * has waited for the maximum delay, whichever comes first. Empty lists are never delivered.
+ */
+public interface BatchDiscoveryListener {
+  /**
+   * Called with the services found on the network since the previous batch.
+   *
+   * @param services the services that have been found, in the order they were found
+   */
+  void onServicesDiscovered(List<SsdpService> services);
+
+  /**
+   * Called with the announcements of known services since the previous batch.
+   *
+   * @param announcements the announcements, in the order they were received
+   */
+  void onServiceAnnouncements(List<SsdpServiceAnnouncement> announcements);
+
+  /**
+   * Called with the cached services which expired since the previous batch.
+   *
+   * @param services the services that expired
+   */
+  default void onServicesExpired(List<SsdpService> services) {}
+
+  /**
+   * Called when an exception occurred within the process, right away.
+   *
+   * @param ex the exception raised
+   */
+  void onFailed(Exception ex);
+
+  /**
+   * Called when an exception occurs within the discovery process and has been voluntarily ignored in the discovery options.
+   *
+   * @param ex the exception raised
+   */
+  default void onFailedAndIgnored(Exception ex) {}
+}
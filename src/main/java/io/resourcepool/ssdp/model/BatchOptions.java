@@ -0,0 +1,73 @@
+package io.resourcepool.ssdp.model;
+
+/**
+ * This class represents the options of the batches delivered to a BatchDiscoveryListener.
+ * Defaults are shown in static final fields.
+ */
+public class BatchOptions {
+
+  private static final Integer DEFAULT_MAX_SIZE = 64;
+  private static final Long DEFAULT_MAX_DELAY = 100L;
+
+  private Integer maxSize = DEFAULT_MAX_SIZE;
+  private Long maxDelay = DEFAULT_MAX_DELAY;
+
+  public Integer getMaxSize() {
+    return maxSize;
+  }
+
+  public Long getMaxDelay() {
+    return maxDelay;
+  }
+
+  // BEGIN GENERATED CODE
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static final class Builder {
+    private Integer maxSize = DEFAULT_MAX_SIZE;
+    private Long maxDelay = DEFAULT_MAX_DELAY;
+
+    private Builder() {
+    }
+
+    /**
+     * Number of events, of all kinds, flushing the pending batches.
+     * Defaults to 64
+     * @param maxSize the maximum number of events per flush
+     * @return the current builder
+     */
+    public Builder maxSize(Integer maxSize) {
+      if (maxSize < 1) {
+        throw new IllegalArgumentException("Max batch size must be at least one event");
+      }
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    /**
+     * Time in milliseconds the first event of a batch waits at most before the batch is flushed.
+     * Defaults to 100 ms
+     * @param maxDelay the maximum delay in ms
+     * @return the current builder
+     */
+    public Builder maxDelay(Long maxDelay) {
+      if (maxDelay < 1) {
+        throw new IllegalArgumentException("Max batch delay must be at least one millisecond");
+      }
+      this.maxDelay = maxDelay;
+      return this;
+    }
+
+    public BatchOptions build() {
+      BatchOptions batchOptions = new BatchOptions();
+      batchOptions.maxSize = this.maxSize;
+      batchOptions.maxDelay = this.maxDelay;
+      return batchOptions;
+    }
+  }
+
+  // END GENERATED CODE
+}
@@ -0,0 +1,43 @@
+package io.resourcepool.ssdp.model;
+
+/**
+ * Receives the services of a discovery along with the description of their device, once fetched.
+ */
+public interface DescriptionListener {
+  /**
+   * Called when a new service has been found on the network and the description at its LOCATION has been fetched.
+   *
+   * @param service     the service that has been found
+   * @param description the description of its device
+   */
+  void onServiceDescribed(SsdpService service, DeviceDescription description);
+
+  /**
+   * Called when a new service has been found on the network, but its description could not be fetched.
+   *
+   * @param service the service that has been found
+   * @param ex      the exception raised by the fetch
+   */
+  void onDescriptionFailed(SsdpService service, Exception ex);
+
+  /**
+   * Called when a known service announces itself in some way.
+   *
+   * @param announcement the announcement of the specific service
+   */
+  default void onServiceAnnouncement(SsdpServiceAnnouncement announcement) {}
+
+  /**
+   * Called when a cached service has not refreshed itself before its cache-control max-age elapsed.
+   *
+   * @param service the service that expired
+   */
+  default void onServiceExpired(SsdpService service) {}
+
+  /**
+   * Called when an exception occurred within the discovery process.
+   *
+   * @param ex the exception raised
+   */
+  void onFailed(Exception ex);
+}
@@ -0,0 +1,111 @@
+package io.resourcepool.ssdp.model;
+
+/**
+ * The description of the root device of a service, as fetched from its LOCATION.
+ * Elements missing from the description are null.
+ */
+public class DeviceDescription {
+  private final String location;
+  private final String xml;
+  private final String urlBase;
+  private final String deviceType;
+  private final String friendlyName;
+  private final String manufacturer;
+  private final String modelName;
+  private final String modelNumber;
+  private final String serialNumber;
+  private final String udn;
+  private final String presentationUrl;
+
+  /**
+   * @param location        the URL the description was fetched from
+   * @param xml             the description document
+   * @param urlBase         the URLBase element, deprecated since UPnP 1.1
+   * @param deviceType      the deviceType of the root device
+   * @param friendlyName    the friendlyName of the root device
+   * @param manufacturer    the manufacturer of the root device
+   * @param modelName       the modelName of the root device
+   * @param modelNumber     the modelNumber of the root device
+   * @param serialNumber    the serialNumber of the root device
+   * @param udn             the UDN of the root device
+   * @param presentationUrl the presentationURL of the root device
+   */
+  public DeviceDescription(String location, String xml, String urlBase, String deviceType, String friendlyName,
+                           String manufacturer, String modelName, String modelNumber, String serialNumber, String udn,
+                           String presentationUrl) {
+    this.location = location;
+    this.xml = xml;
+    this.urlBase = urlBase;
+    this.deviceType = deviceType;
+    this.friendlyName = friendlyName;
+    this.manufacturer = manufacturer;
+    this.modelName = modelName;
+    this.modelNumber = modelNumber;
+    this.serialNumber = serialNumber;
+    this.udn = udn;
+    this.presentationUrl = presentationUrl;
+  }
+
+  // BEGIN GENERATED CODE
+
+  public String getLocation() {
+    return location;
+  }
+
+  /**
+   * @return the whole description document, to read the elements not parsed here such as the service list
+   */
+  public String getXml() {
+    return xml;
+  }
+
+  public String getUrlBase() {
+    return urlBase;
+  }
+
+  public String getDeviceType() {
+    return deviceType;
+  }
+
+  public String getFriendlyName() {
+    return friendlyName;
+  }
+
+  public String getManufacturer() {
+    return manufacturer;
+  }
+
+  public String getModelName() {
+    return modelName;
+  }
+
+  public String getModelNumber() {
+    return modelNumber;
+  }
+
+  public String getSerialNumber() {
+    return serialNumber;
+  }
+
+  public String getUdn() {
+    return udn;
+  }
+
+  public String getPresentationUrl() {
+    return presentationUrl;
+  }
+
+  @Override
+  public String toString() {
+    return "DeviceDescription{" +
+        "location='" + location + '\'' +
+        ", deviceType='" + deviceType + '\'' +
+        ", friendlyName='" + friendlyName + '\'' +
+        ", manufacturer='" + manufacturer + '\'' +
+        ", modelName='" + modelName + '\'' +
+        ", udn='" + udn + '\'' +
+        '}';
+  }
+
+  // END GENERATED CODE
+}
@@ -0,0 +1,20 @@
+package io.resourcepool.ssdp.model;
+
+/**
+ * Handle on a discovery started with SsdpClient#discoverServices.
+ * Several discoveries can share the same client, each one with its own listener.
+ */
+public interface DiscoveryHandle {
+
+  /**
+   * Stop this discovery.
+   * Its requests are not sent anymore and its listener is not called anymore.
+   * The client releases its socket when its last discovery is cancelled.
+   */
+  void cancel();
+
+  /**
+   * @return true until the discovery is cancelled or the client is stopped
+   */
+  boolean isActive();
+}
@@ -3,12 +3,22 @@ package io.resourcepool.ssdp.model;
 
 /**
  * This class handles all actions related to the Service Discovery of previously specified DiscoveryRequest.
+ * <p>
+ * Services already in the cache of the client are handed over first, to onServiceDiscovered, by the thread which
+ * starts the discovery: before discoverServices returns, and while it holds the lock of the client. A listener must
+ * not wait there for another thread using the client. All other methods are called from the threads of the client.
+ * By default, datagrams are handled on the receive thread, and expirations on the thread running the timed tasks,
+ * which is the same one with the non-blocking transport. With {@link SsdpClientOptions.Builder#dispatchThreads(int)},
+ * the methods of a single listener are called concurrently from the dispatch threads: only the datagrams of a given
+ * device are handled in order. Listeners shared this way must be thread-safe.
  *
  * @author Loïc Ortola on 05/08/2017
  */
 public interface DiscoveryListener {
   /**
    * Called when new service has been found on the network.
+   * Also called again for a known service whose device rebooted or changed its description
+   * (BOOTID.UPNP.ORG or CONFIGID.UPNP.ORG changed), as whatever was derived from it is stale.
    *
    * @param service the service that has been found
    */
@@ -17,11 +27,20 @@ public interface DiscoveryListener {
   /**
    * Called when a known service announces itself in some way.
    * This can either mean it is alive or that it is going offline (byebye).
+   * The cache is updated first: a service going offline has already been evicted.
    *
    * @param announcement the announcement of the specific service
    */
   void onServiceAnnouncement(SsdpServiceAnnouncement announcement);
 
+  /**
+   * Called when a cached service has not refreshed itself before its cache-control max-age elapsed.
+   * The service has been removed from the cache.
+   *
+   * @param service the service that expired
+   */
+  default void onServiceExpired(SsdpService service) {}
+
   /**
    * Called when an exception occurred within the process.
    *
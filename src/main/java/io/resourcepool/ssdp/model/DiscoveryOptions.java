@@ -9,8 +9,18 @@ public class DiscoveryOptions {
   private static final Long DEFAULT_INTERVAL_BETWEEN_REQUESTS = 10000L;
   private static final Integer DEFAULT_MAX_WAIT_TIME_SECONDS = 3;
   private static final String DEFAULT_USER_AGENT = "Resourcepool SSDP Client";
+  private static final Integer DEFAULT_INITIAL_BURST = 1;
+  private static final Long DEFAULT_BURST_INTERVAL = 1000L;
+  private static final Double DEFAULT_JITTER = 0.0;
+  private static final Integer ADAPTIVE_INITIAL_BURST = 3;
+  private static final Long ADAPTIVE_MAX_INTERVAL_BETWEEN_REQUESTS = 300000L;
+  private static final Double ADAPTIVE_JITTER = 0.1;
 
   private Long intervalBetweenRequests = DEFAULT_INTERVAL_BETWEEN_REQUESTS;
+  private Long maxIntervalBetweenRequests = DEFAULT_INTERVAL_BETWEEN_REQUESTS;
+  private Integer initialBurst = DEFAULT_INITIAL_BURST;
+  private Long burstInterval = DEFAULT_BURST_INTERVAL;
+  private Double jitter = DEFAULT_JITTER;
   private Integer maxWaitTimeSeconds = DEFAULT_MAX_WAIT_TIME_SECONDS;
   private String userAgent = DEFAULT_USER_AGENT;
 
@@ -18,6 +28,22 @@ public class DiscoveryOptions {
     return intervalBetweenRequests;
   }
 
+  public Long getMaxIntervalBetweenRequests() {
+    return maxIntervalBetweenRequests;
+  }
+
+  public Integer getInitialBurst() {
+    return initialBurst;
+  }
+
+  public Long getBurstInterval() {
+    return burstInterval;
+  }
+
+  public Double getJitter() {
+    return jitter;
+  }
+
   public Integer getMaxWaitTimeSeconds() {
     return maxWaitTimeSeconds;
   }
@@ -34,6 +60,10 @@ public class DiscoveryOptions {
 
   public static final class Builder {
     private Long intervalBetweenRequests = DEFAULT_INTERVAL_BETWEEN_REQUESTS;
+    private Long maxIntervalBetweenRequests = DEFAULT_INTERVAL_BETWEEN_REQUESTS;
+    private Integer initialBurst = DEFAULT_INITIAL_BURST;
+    private Long burstInterval = DEFAULT_BURST_INTERVAL;
+    private Double jitter = DEFAULT_JITTER;
     private Integer maxWaitTimeSeconds = DEFAULT_MAX_WAIT_TIME_SECONDS;
     private String userAgent = DEFAULT_USER_AGENT;
 
@@ -54,6 +84,79 @@ public class DiscoveryOptions {
       return this;
     }
 
+    /**
+     * Ceiling of the interval between requests in milliseconds.
+     * While a discovery turns up no new device, the interval doubles after each request, up to this ceiling.
+     * A new device or an expired service brings it back to the interval between requests.
+     * Defaults to 10 000 ms, the default interval between requests: requests are sent at a fixed rate
+     * @param maxIntervalBetweenRequests the ceiling of the interval between requests in ms
+     * @return the current builder
+     */
+    public Builder maxIntervalBetweenRequests(Long maxIntervalBetweenRequests) {
+      if (maxIntervalBetweenRequests < 10) {
+        throw new IllegalArgumentException("Max interval between requests must be at least 10 milliseconds");
+      }
+      this.maxIntervalBetweenRequests = maxIntervalBetweenRequests;
+      return this;
+    }
+
+    /**
+     * Number of requests sent when the discovery starts, burst interval apart, since a single request is easily lost.
+     * UPnP Device Architecture recommends sending each search two or three times.
+     * Defaults to 1
+     * @param initialBurst the number of requests of the initial burst
+     * @return the current builder
+     */
+    public Builder initialBurst(Integer initialBurst) {
+      if (initialBurst < 1) {
+        throw new IllegalArgumentException("Initial burst must be at least one request");
+      }
+      this.initialBurst = initialBurst;
+      return this;
+    }
+
+    /**
+     * Interval between the requests of the initial burst in milliseconds.
+     * Defaults to 1 000 ms
+     * @param burstInterval the interval between the requests of the initial burst in ms
+     * @return the current builder
+     */
+    public Builder burstInterval(Long burstInterval) {
+      if (burstInterval < 10) {
+        throw new IllegalArgumentException("Burst interval must be at least 10 milliseconds");
+      }
+      this.burstInterval = burstInterval;
+      return this;
+    }
+
+    /**
+     * Random spread applied to every delay between requests, as a fraction of the delay,
+     * so that clients started together do not search in lockstep.
+     * 0.1 spreads a 10 000 ms delay between 9 000 and 11 000 ms.
+     * Defaults to 0: no jitter
+     * @param jitter the spread, between 0 (inclusive) and 1 (exclusive)
+     * @return the current builder
+     */
+    public Builder jitter(Double jitter) {
+      if (jitter < 0 || jitter >= 1) {
+        throw new IllegalArgumentException("Jitter must be between 0 (inclusive) and 1 (exclusive)");
+      }
+      this.jitter = jitter;
+      return this;
+    }
+
+    /**
+     * Send an initial burst of 3 requests, then back off up to one request every 5 minutes while
+     * the discovery turns up no change, with 10% jitter.
+     * @return the current builder
+     */
+    public Builder adaptiveSchedule() {
+      this.initialBurst = ADAPTIVE_INITIAL_BURST;
+      this.maxIntervalBetweenRequests = ADAPTIVE_MAX_INTERVAL_BETWEEN_REQUESTS;
+      this.jitter = ADAPTIVE_JITTER;
+      return this;
+    }
+
     /**
      * Max response time in seconds allowed between request and response from device.
      * MUST be greater than or equal to 1, and SHOULD be less than 5
@@ -85,6 +188,10 @@ public class DiscoveryOptions {
       DiscoveryOptions discoveryOptions = new DiscoveryOptions();
       discoveryOptions.maxWaitTimeSeconds = this.maxWaitTimeSeconds;
       discoveryOptions.intervalBetweenRequests = this.intervalBetweenRequests;
+      discoveryOptions.maxIntervalBetweenRequests = this.maxIntervalBetweenRequests;
+      discoveryOptions.initialBurst = this.initialBurst;
+      discoveryOptions.burstInterval = this.burstInterval;
+      discoveryOptions.jitter = this.jitter;
       discoveryOptions.userAgent = this.userAgent;
       return discoveryOptions;
     }
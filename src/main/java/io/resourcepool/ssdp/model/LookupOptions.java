@@ -0,0 +1,124 @@
+package io.resourcepool.ssdp.model;
+
+/**
+ * This class represents the options of a one-shot lookup, started with SsdpClient#lookUpServices.
+ * A lookup completes with the services found so far as soon as one of its conditions is met,
+ * and at the latest once its timeout has passed.
+ * Defaults are shown in static final fields.
+ */
+public class LookupOptions {
+
+  private static final Long DEFAULT_TIMEOUT = 5000L;
+
+  private Long timeout = DEFAULT_TIMEOUT;
+  private Integer maxResults;
+  private Long quietPeriod;
+  private String serialNumber;
+
+  public Long getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * @return the number of services completing the lookup, or null if the lookup does not stop on a count
+   */
+  public Integer getMaxResults() {
+    return maxResults;
+  }
+
+  /**
+   * @return the time without a new service completing the lookup in ms, or null if the lookup does not stop on silence
+   */
+  public Long getQuietPeriod() {
+    return quietPeriod;
+  }
+
+  /**
+   * @return the USN completing the lookup once found, or null if the lookup does not wait for a specific service
+   */
+  public String getSerialNumber() {
+    return serialNumber;
+  }
+
+  // BEGIN GENERATED CODE
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static final class Builder {
+    private Long timeout = DEFAULT_TIMEOUT;
+    private Integer maxResults;
+    private Long quietPeriod;
+    private String serialNumber;
+
+    private Builder() {
+    }
+
+    /**
+     * Hard upper bound of the lookup in milliseconds: the lookup then completes with the services found so far.
+     * Defaults to 5 000 ms, long enough for the devices to answer within the default max wait time of 3 seconds
+     * @param timeout the timeout in ms
+     * @return the current builder
+     */
+    public Builder timeout(Long timeout) {
+      if (timeout < 10) {
+        throw new IllegalArgumentException("Timeout must be at least 10 milliseconds");
+      }
+      this.timeout = timeout;
+      return this;
+    }
+
+    /**
+     * Complete the lookup as soon as this number of services has been found.
+     * @param maxResults the number of services
+     * @return the current builder
+     */
+    public Builder maxResults(Integer maxResults) {
+      if (maxResults < 1) {
+        throw new IllegalArgumentException("Max results must be at least one service");
+      }
+      this.maxResults = maxResults;
+      return this;
+    }
+
+    /**
+     * Complete the lookup once no new service has been found for this period in milliseconds,
+     * counted from the start of the lookup until a first service is found.
+     * Devices answer within the max wait time of the request, so the quiet period should not be much shorter.
+     * @param quietPeriod the quiet period in ms
+     * @return the current builder
+     */
+    public Builder quietPeriod(Long quietPeriod) {
+      if (quietPeriod < 10) {
+        throw new IllegalArgumentException("Quiet period must be at least 10 milliseconds");
+      }
+      this.quietPeriod = quietPeriod;
+      return this;
+    }
+
+    /**
+     * Complete the lookup as soon as the service with this USN has been found.
+     * @param serialNumber the USN of the service
+     * @return the current builder
+     */
+    public Builder serialNumber(String serialNumber) {
+      if (serialNumber == null) {
+        throw new IllegalArgumentException("Serial number must not be null");
+      }
+      this.serialNumber = serialNumber;
+      return this;
+    }
+
+    public LookupOptions build() {
+      LookupOptions lookupOptions = new LookupOptions();
+      lookupOptions.timeout = this.timeout;
+      lookupOptions.maxResults = this.maxResults;
+      lookupOptions.quietPeriod = this.quietPeriod;
+      lookupOptions.serialNumber = this.serialNumber;
+      return lookupOptions;
+    }
+  }
+
+  // END GENERATED CODE
+}
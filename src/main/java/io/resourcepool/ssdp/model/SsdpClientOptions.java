@@ -1,6 +1,12 @@
 package io.resourcepool.ssdp.model;
 
 import io.resourcepool.ssdp.client.SsdpParams;
+import io.resourcepool.ssdp.client.util.ByteBufferPool;
+import io.resourcepool.ssdp.client.util.Threads;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * This class represents the SsdpClient Options.
@@ -8,8 +14,25 @@ import io.resourcepool.ssdp.client.SsdpParams;
  */
 public class SsdpClientOptions {
 
+    private static final int DEFAULT_RECEIVE_BUFFER_SIZE = 8192;
+    private static final int DEFAULT_RECEIVE_BUFFER_POOL_CAPACITY = 32;
+    private static final int DEFAULT_DISPATCH_QUEUE_CAPACITY = 1024;
+    private static final int DEFAULT_AUTO_LOOKUP_LIMIT = 64;
+    private static final long DEFAULT_AUTO_LOOKUP_TTL = 30000;
+    private static final int DEFAULT_PERSISTENT_CACHE_CAPACITY = 1024;
+
     private Boolean ignoreInterfaceDiscoveryErrors = false;
     private Boolean lookupAllIncomingAnnouncements = true;
+    private int autoLookupLimit = DEFAULT_AUTO_LOOKUP_LIMIT;
+    private long autoLookupTtl = DEFAULT_AUTO_LOOKUP_TTL;
+    private long refreshLeadTime;
+
+    /**
+     * File the cached services are persisted to, null to keep them in memory only.
+     */
+    private File persistentCacheFile;
+
+    private int persistentCacheCapacity = DEFAULT_PERSISTENT_CACHE_CAPACITY;
 
     private int bindingPort = SsdpParams.getSsdpMulticastDefaultPort();
 
@@ -18,6 +41,43 @@ public class SsdpClientOptions {
      */
     private Boolean useCache = true;
 
+    /**
+     * Use the non-blocking DatagramChannel transport instead of the MulticastSocket one.
+     */
+    private Boolean useNonBlockingTransport = false;
+
+    /**
+     * Send searches through one channel per multicast interface.
+     */
+    private Boolean usePerInterfaceChannels = false;
+
+    /**
+     * Also join the IPv6 link-local and site-local SSDP groups.
+     */
+    private Boolean useIpv6 = false;
+
+    /**
+     * Factory of the receive, send and dispatch threads.
+     */
+    private ThreadFactory threadFactory;
+
+    /**
+     * Pool the receive buffers are borrowed from.
+     */
+    private ByteBufferPool receiveBufferPool;
+
+    /**
+     * Number of threads parsing and dispatching incoming datagrams, 0 to do it on the receive thread.
+     * Above 0, the methods of a listener are called concurrently.
+     */
+    private int dispatchThreads = 0;
+
+    private int dispatchQueueCapacity = DEFAULT_DISPATCH_QUEUE_CAPACITY;
+
+    /**
+     * Window in ms within which copies of a response or announcement are dropped, 0 to keep them all.
+     */
+    private long duplicateSuppressionWindow = 0;
 
     public Boolean getIgnoreInterfaceDiscoveryErrors() {
         return ignoreInterfaceDiscoveryErrors;
@@ -27,6 +87,32 @@ public class SsdpClientOptions {
         return lookupAllIncomingAnnouncements;
     }
 
+    public int getAutoLookupLimit() {
+        return autoLookupLimit;
+    }
+
+    public long getAutoLookupTtl() {
+        return autoLookupTtl;
+    }
+
+    /**
+     * @return the time before expiry at which cached services are searched by unicast, 0 if disabled
+     */
+    public long getRefreshLeadTime() {
+        return refreshLeadTime;
+    }
+
+    /**
+     * @return the file the cached services are persisted to, or null if they are not persisted
+     */
+    public File getPersistentCacheFile() {
+        return persistentCacheFile;
+    }
+
+    public int getPersistentCacheCapacity() {
+        return persistentCacheCapacity;
+    }
+
     public Boolean getUseCache() {
         return useCache;
     }
@@ -35,6 +121,38 @@ public class SsdpClientOptions {
         return bindingPort;
     }
 
+    public Boolean getUseNonBlockingTransport() {
+        return useNonBlockingTransport;
+    }
+
+    public Boolean getUsePerInterfaceChannels() {
+        return usePerInterfaceChannels;
+    }
+
+    public Boolean getUseIpv6() {
+        return useIpv6;
+    }
+
+    public ThreadFactory getThreadFactory() {
+        return threadFactory;
+    }
+
+    public ByteBufferPool getReceiveBufferPool() {
+        return receiveBufferPool;
+    }
+
+    public int getDispatchThreads() {
+        return dispatchThreads;
+    }
+
+    public int getDispatchQueueCapacity() {
+        return dispatchQueueCapacity;
+    }
+
+    public long getDuplicateSuppressionWindow() {
+        return duplicateSuppressionWindow;
+    }
+
     // BEGIN GENERATED CODE
 
     public static Builder builder() {
@@ -45,7 +163,22 @@ public class SsdpClientOptions {
 
         private Boolean ignoreInterfaceErrors = false;
         private Boolean lookupAllIncomingAnnouncements = true;
+        private int autoLookupLimit = DEFAULT_AUTO_LOOKUP_LIMIT;
+        private long autoLookupTtl = DEFAULT_AUTO_LOOKUP_TTL;
+        private long refreshLeadTime;
+        private File persistentCacheFile;
+        private int persistentCacheCapacity = DEFAULT_PERSISTENT_CACHE_CAPACITY;
         private Boolean useCache = true;
+        private Boolean useNonBlockingTransport = false;
+        private Boolean usePerInterfaceChannels = false;
+        private Boolean useIpv6 = false;
+        private ThreadFactory threadFactory;
+        private int receiveBufferSize = DEFAULT_RECEIVE_BUFFER_SIZE;
+        private Boolean useDirectReceiveBuffers = false;
+        private ByteBufferPool receiveBufferPool;
+        private int dispatchThreads = 0;
+        private int dispatchQueueCapacity = DEFAULT_DISPATCH_QUEUE_CAPACITY;
+        private long duplicateSuppressionWindow = 0;
 
         private int bindingPort = SsdpParams.getSsdpMulticastDefaultPort();
 
@@ -79,6 +212,85 @@ public class SsdpClientOptions {
             return this;
         }
 
+        /**
+         * Maximum number of service types looked up at the same time because of unknown announcements.
+         * Each service type is searched once per interval, however many unknown services announce it.
+         * When the limit is reached, the least recently announced service type is not looked up anymore.
+         * Defaults to 64.
+         * @param autoLookupLimit the maximum number of service types
+         * @return the current builder
+         */
+        public Builder autoLookupLimit(int autoLookupLimit) {
+            if (autoLookupLimit < 1) {
+                throw new IllegalArgumentException("Auto lookup limit must be at least one service type");
+            }
+            this.autoLookupLimit = autoLookupLimit;
+            return this;
+        }
+
+        /**
+         * Time during which a service type is looked up after the last announcement of an unknown service of this type.
+         * Defaults to 30 000 ms.
+         * @param autoLookupTtl the time to live in milliseconds
+         * @return the current builder
+         */
+        public Builder autoLookupTtl(long autoLookupTtl) {
+            if (autoLookupTtl < 1) {
+                throw new IllegalArgumentException("Auto lookup TTL must be at least one millisecond");
+            }
+            this.autoLookupTtl = autoLookupTtl;
+            return this;
+        }
+
+        /**
+         * Refresh each cached service shortly before it expires with a unicast search sent to its address,
+         * and only fall back to a multicast search if it does not answer.
+         * Keeps a large cache fresh without every device of the segment answering multicast searches.
+         * Services whose lifetime is shorter than twice the lead time are refreshed halfway through it.
+         * Disabled by default.
+         * @param leadTime the time before expiry at which services are refreshed, in milliseconds
+         * @return the current builder
+         */
+        public Builder refreshBeforeExpiry(long leadTime) {
+            if (leadTime < 1) {
+                throw new IllegalArgumentException("Refresh lead time must be at least one millisecond");
+            }
+            this.refreshLeadTime = leadTime;
+            return this;
+        }
+
+        /**
+         * Persist the cached services to a memory-mapped file, updated as services are found, refreshed or expire.
+         * When the client starts, the services of the file which have not expired meanwhile are cached again and
+         * reported to the listeners right away, while the live responses confirm them. The file must not be shared
+         * by several clients at the same time.
+         * Disabled by default.
+         * @param file     the snapshot file, created if needed
+         * @param capacity the maximum number of services persisted, 1024 by default
+         * @return the current builder
+         */
+        public Builder persistentCache(File file, int capacity) {
+            if (file == null) {
+                throw new IllegalArgumentException("Persistent cache file must not be null");
+            }
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Persistent cache capacity must be at least one service");
+            }
+            this.persistentCacheFile = file;
+            this.persistentCacheCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Persist up to 1024 cached services to a memory-mapped file.
+         * @param file the snapshot file, created if needed
+         * @return the current builder
+         * @see #persistentCache(File, int)
+         */
+        public Builder persistentCache(File file) {
+            return persistentCache(file, DEFAULT_PERSISTENT_CACHE_CAPACITY);
+        }
+
         /**
          * Overrides Binding Port.
          * Sometimes, one may need to use another source binding port other than 1900.
@@ -100,12 +312,183 @@ public class SsdpClientOptions {
             return this;
         }
 
+        /**
+         * Use the non-blocking transport.
+         * Receives, sends and shutdown are all driven by a single Selector loop on a DatagramChannel,
+         * instead of one thread blocked on a MulticastSocket and another one sending requests.
+         * @return the current builder
+         */
+        public Builder useNonBlockingTransport() {
+            this.useNonBlockingTransport = true;
+            return this;
+        }
+
+        /**
+         * Send searches through one channel per multicast interface, bound to the address of the interface,
+         * instead of reconfiguring the outgoing interface of a single socket before each send.
+         * A send failure on one interface does not prevent sending on the others, and each service
+         * records the interface it was received on. Implies the non-blocking transport.
+         * @return the current builder
+         */
+        public Builder usePerInterfaceChannels() {
+            this.usePerInterfaceChannels = true;
+            this.useNonBlockingTransport = true;
+            return this;
+        }
+
+        /**
+         * Also search and listen on the IPv6 SSDP groups, link-local FF02::C and site-local FF05::C,
+         * on the interfaces holding an IPv6 address. Both families are received and sent on the same loop,
+         * and a device answering on both is cached once, by USN. Implies the non-blocking transport.
+         * @return the current builder
+         */
+        public Builder useIpv6() {
+            this.useIpv6 = true;
+            this.useNonBlockingTransport = true;
+            return this;
+        }
+
+        /**
+         * Factory of the threads the client receives, sends and dispatches incoming datagrams on.
+         * Defaults to the factory of {@link Executors#defaultThreadFactory()}.
+         * @param threadFactory the thread factory
+         * @return the current builder
+         */
+        public Builder threadFactory(ThreadFactory threadFactory) {
+            if (threadFactory == null) {
+                throw new IllegalArgumentException("Thread factory must not be null");
+            }
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        /**
+         * Receive, send and dispatch incoming datagrams on virtual threads, so that many clients do not cost
+         * a platform thread stack each. Listeners are called on virtual threads as well.
+         * Requires Java 21: older runtimes fall back to platform threads.
+         * The MulticastSocket transport parks its virtual threads while waiting for datagrams, whereas the
+         * non-blocking transport holds on to a carrier thread while it waits in its Selector.
+         * @return the current builder
+         */
+        public Builder useVirtualThreads() {
+            this.threadFactory = Threads.newVirtualThreadFactory("ssdp-");
+            return this;
+        }
+
+        /**
+         * Size of the buffers incoming datagrams are received into.
+         * Larger datagrams are truncated. Defaults to 8192 bytes.
+         * @param receiveBufferSize the receive buffer size in bytes
+         * @return the current builder
+         */
+        public Builder receiveBufferSize(int receiveBufferSize) {
+            if (receiveBufferSize < 512) {
+                throw new IllegalArgumentException("Receive buffer size must be at least 512 bytes");
+            }
+            this.receiveBufferSize = receiveBufferSize;
+            return this;
+        }
+
+        /**
+         * Allocate receive buffers off-heap.
+         * Only the non-blocking transport reads into direct buffers, the MulticastSocket one needs heap arrays:
+         * build() rejects direct buffers without useNonBlockingTransport.
+         * @return the current builder
+         */
+        public Builder useDirectReceiveBuffers() {
+            this.useDirectReceiveBuffers = true;
+            return this;
+        }
+
+        /**
+         * Borrow receive buffers from the given pool.
+         * Allows several clients to share a pool, and to monitor its hits and misses.
+         * Overrides receiveBufferSize and useDirectReceiveBuffers. A direct pool requires useNonBlockingTransport.
+         * @param receiveBufferPool the receive buffer pool
+         * @return the current builder
+         */
+        public Builder receiveBufferPool(ByteBufferPool receiveBufferPool) {
+            if (receiveBufferPool == null) {
+                throw new IllegalArgumentException("Receive buffer pool must not be null");
+            }
+            this.receiveBufferPool = receiveBufferPool;
+            return this;
+        }
+
+        /**
+         * Parse and dispatch incoming datagrams on several threads.
+         * The receive thread only reads datagrams and hands them over to the workers, each datagram being routed
+         * by its source address so that the datagrams of a given device are handled in order.
+         * Listener methods are then called concurrently from the worker threads, including several methods of
+         * the same listener for datagrams from different devices: listeners must be thread-safe.
+         * By default, datagrams are handled on the receive thread.
+         * @param dispatchThreads the number of worker threads
+         * @return the current builder
+         */
+        public Builder dispatchThreads(int dispatchThreads) {
+            if (dispatchThreads < 1) {
+                throw new IllegalArgumentException("Dispatch threads must be at least one");
+            }
+            this.dispatchThreads = dispatchThreads;
+            return this;
+        }
+
+        /**
+         * Maximum number of datagrams waiting for each dispatch thread.
+         * Datagrams received while the queue of their worker is full are dropped. Defaults to 1024.
+         * @param dispatchQueueCapacity the queue capacity, rounded up to a power of two
+         * @return the current builder
+         */
+        public Builder dispatchQueueCapacity(int dispatchQueueCapacity) {
+            if (dispatchQueueCapacity < 2) {
+                throw new IllegalArgumentException("Dispatch queue capacity must be at least two datagrams");
+            }
+            this.dispatchQueueCapacity = dispatchQueueCapacity;
+            return this;
+        }
+
+        /**
+         * Drop the copies of a response or announcement received shortly after the first one.
+         * Devices answer each search request several times over its MX delay, and send each announcement two or
+         * three times. Copies are recognized by their USN, NTS, LOCATION and BOOTID.UPNP.ORG headers, and are
+         * dropped before reaching the cache and the listeners if they arrive within the window.
+         * By default, all copies are handled.
+         * @param windowMillis the suppression window in milliseconds, typically a bit more than the MX delay
+         * @return the current builder
+         */
+        public Builder suppressDuplicates(long windowMillis) {
+            if (windowMillis < 1) {
+                throw new IllegalArgumentException("Duplicate suppression window must be at least one millisecond");
+            }
+            this.duplicateSuppressionWindow = windowMillis;
+            return this;
+        }
+
         public SsdpClientOptions build() {
+            boolean directBuffers = this.receiveBufferPool != null ? this.receiveBufferPool.isDirect() : this.useDirectReceiveBuffers;
+            if (directBuffers && !this.useNonBlockingTransport) {
+                throw new IllegalArgumentException("Direct receive buffers require the non-blocking transport");
+            }
             SsdpClientOptions discoveryOptions = new SsdpClientOptions();
             discoveryOptions.ignoreInterfaceDiscoveryErrors = this.ignoreInterfaceErrors;
             discoveryOptions.useCache = this.useCache;
             discoveryOptions.lookupAllIncomingAnnouncements = this.lookupAllIncomingAnnouncements;
+            discoveryOptions.autoLookupLimit = this.autoLookupLimit;
+            discoveryOptions.autoLookupTtl = this.autoLookupTtl;
+            discoveryOptions.refreshLeadTime = this.refreshLeadTime;
+            discoveryOptions.persistentCacheFile = this.persistentCacheFile;
+            discoveryOptions.persistentCacheCapacity = this.persistentCacheCapacity;
             discoveryOptions.bindingPort = this.bindingPort;
+            discoveryOptions.useNonBlockingTransport = this.useNonBlockingTransport;
+            discoveryOptions.usePerInterfaceChannels = this.usePerInterfaceChannels;
+            discoveryOptions.useIpv6 = this.useIpv6;
+            discoveryOptions.threadFactory = this.threadFactory != null ? this.threadFactory : Executors.defaultThreadFactory();
+            discoveryOptions.dispatchThreads = this.dispatchThreads;
+            discoveryOptions.dispatchQueueCapacity = this.dispatchQueueCapacity;
+            discoveryOptions.duplicateSuppressionWindow = this.duplicateSuppressionWindow;
+            discoveryOptions.receiveBufferPool = this.receiveBufferPool != null
+                ? this.receiveBufferPool
+                : new ByteBufferPool(this.receiveBufferSize, DEFAULT_RECEIVE_BUFFER_POOL_CAPACITY, this.useDirectReceiveBuffers);
             return discoveryOptions;
         }
     }
@@ -1,9 +1,10 @@
 package io.resourcepool.ssdp.model;
 
+import io.resourcepool.ssdp.client.response.SsdpHeader;
 import io.resourcepool.ssdp.client.response.SsdpResponse;
 
 import java.net.InetAddress;
-import java.util.Map;
+import java.net.NetworkInterface;
 
 /**
  * This represents a SSDP Service.
@@ -15,23 +16,36 @@ public class SsdpService {
   private String serviceType;
   private String location;
   private final InetAddress remoteIp;
+  private final NetworkInterface networkInterface;
   private final SsdpResponse originalResponse;
 
   /**
    * @param response the raw SsdpResponse
    */
   public SsdpService(SsdpResponse response) {
-    Map<String, String> headers = response.getHeaders();
-    this.serialNumber = headers.get("USN");
-    this.serviceType = headers.get("ST");
-    this.location = headers.get("LOCATION");
+    this.serialNumber = response.getHeader(SsdpHeader.USN);
+    this.serviceType = response.getHeader(SsdpHeader.ST);
+    this.location = response.getHeader(SsdpHeader.LOCATION);
     if (this.location == null) {
-      this.location = headers.get("AL");
+      this.location = response.getHeader(SsdpHeader.AL);
     }
     this.remoteIp = response.getOriginAddress();
+    this.networkInterface = response.getNetworkInterface();
     this.originalResponse = response;
   }
 
+  /**
+   * @param announcement an ssdp:alive of the service, whose NT is the service type
+   */
+  public SsdpService(SsdpServiceAnnouncement announcement) {
+    this.serialNumber = announcement.getSerialNumber();
+    this.serviceType = announcement.getServiceType();
+    this.location = announcement.getLocation();
+    this.remoteIp = announcement.getRemoteIp();
+    this.networkInterface = announcement.getNetworkInterface();
+    this.originalResponse = announcement.getOriginalResponse();
+  }
+
   // BEGIN GENERATED CODE
 
   public String getServiceType() {
@@ -42,6 +56,13 @@ public class SsdpService {
     return remoteIp;
   }
 
+  /**
+   * @return the interface the service was received on, or null if unknown
+   */
+  public NetworkInterface getNetworkInterface() {
+    return networkInterface;
+  }
+
   public String getLocation() {
     return location;
   }
@@ -1,9 +1,10 @@
 package io.resourcepool.ssdp.model;
 
+import io.resourcepool.ssdp.client.response.SsdpHeader;
 import io.resourcepool.ssdp.client.response.SsdpResponse;
 
 import java.net.InetAddress;
-import java.util.Map;
+import java.net.NetworkInterface;
 
 /**
  * This represents a SSDP Service.
@@ -39,6 +40,7 @@ public class SsdpServiceAnnouncement {
   private String location;
   private Status status;
   private final InetAddress remoteIp;
+  private final NetworkInterface networkInterface;
   private final SsdpResponse originalResponse;
 
 
@@ -46,15 +48,15 @@ public class SsdpServiceAnnouncement {
    * @param response the raw Ssdp response
    */
   public SsdpServiceAnnouncement(SsdpResponse response) {
-    Map<String, String> headers = response.getHeaders();
-    this.serialNumber = headers.get("USN");
-    this.serviceType = headers.get("NT");
-    this.status = Status.parse(headers.get("NTS"));
-    this.location = headers.get("LOCATION");
+    this.serialNumber = response.getHeader(SsdpHeader.USN);
+    this.serviceType = response.getHeader(SsdpHeader.NT);
+    this.status = Status.parse(response.getHeader(SsdpHeader.NTS));
+    this.location = response.getHeader(SsdpHeader.LOCATION);
     if (this.location == null) {
-      this.location = headers.get("AL");
+      this.location = response.getHeader(SsdpHeader.AL);
     }
     this.remoteIp = response.getOriginAddress();
+    this.networkInterface = response.getNetworkInterface();
     this.originalResponse = response;
   }
 
@@ -68,6 +70,13 @@ public class SsdpServiceAnnouncement {
     return remoteIp;
   }
 
+  /**
+   * @return the interface the announcement was received on, or null if unknown
+   */
+  public NetworkInterface getNetworkInterface() {
+    return networkInterface;
+  }
+
   public String getLocation() {
     return location;
   }
@@ -0,0 +1,26 @@
+package io.resourcepool.ssdp.client.util;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads the SsdpClient receives, sends and dispatches on.
+ * <p>
+ * This is the Java 21 variant of the multi-release JAR, which creates virtual threads.
+ */
+public abstract class Threads {
+
+  /**
+   * @return true if the runtime creates virtual threads
+   */
+  public static boolean supportsVirtualThreads() {
+    return true;
+  }
+
+  /**
+   * @param prefix the prefix of the thread names
+   * @return a factory of virtual threads, named after the prefix and a counter
+   */
+  public static ThreadFactory newVirtualThreadFactory(String prefix) {
+    return Thread.ofVirtual().name(prefix, 0).factory();
+  }
+}
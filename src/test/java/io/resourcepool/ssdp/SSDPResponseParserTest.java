@@ -2,11 +2,16 @@ package io.resourcepool.ssdp;
 
 import io.resourcepool.ssdp.client.SsdpParams;
 import io.resourcepool.ssdp.client.parser.ResponseParser;
+import io.resourcepool.ssdp.client.response.SsdpHeader;
+import io.resourcepool.ssdp.client.response.SsdpHeaders;
 import io.resourcepool.ssdp.client.response.SsdpResponse;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
 
@@ -49,4 +54,134 @@ public class SSDPResponseParserTest {
     Assert.assertTrue(response.getHeaders().containsValue("'shouldbeinvalue: thistoo'"));
   }
 
+  /**
+   * This checks that search responses are recognized, header names are upper-cased
+   * and the cache-control directive is turned into an expiry.
+   */
+  @Test
+  public void testParserDiscoveryResponse() {
+    StringBuilder sb = new StringBuilder("HTTP/1.1 200 OK\r\n");
+    sb.append("cache-control: max-age = 1800\r\n")
+        .append("Location: http://192.168.1.10:80/description.xml\r\n")
+        .append("St: upnp:rootdevice\r\n")
+        .append("usn: uuid:device-1::upnp:rootdevice\r\n")
+        .append("X-Custom-Header: custom\r\n")
+        .append("\r\n");
+
+    byte[] content = sb.toString().getBytes(UTF_8);
+    DatagramPacket datagramPacket = new DatagramPacket(content, content.length, SsdpParams.getSsdpMulticastAddress(), SsdpParams.getSsdpMulticastDefaultPort());
+
+    SsdpResponse response = ResponseParser.parse(datagramPacket);
+    Assert.assertEquals(SsdpResponse.Type.DISCOVERY_RESPONSE, response.getType());
+    Assert.assertEquals("http://192.168.1.10:80/description.xml", response.getHeaders().get("LOCATION"));
+    Assert.assertEquals("upnp:rootdevice", response.getHeaders().get("ST"));
+    Assert.assertEquals("uuid:device-1::upnp:rootdevice", response.getHeaders().get("USN"));
+    Assert.assertEquals("custom", response.getHeaders().get("X-CUSTOM-HEADER"));
+    Assert.assertTrue(response.getExpiry() > System.currentTimeMillis() + 1700 * 1000L);
+    Assert.assertNull(response.getBody());
+  }
+
+  /**
+   * This checks that the packet offset and length are honoured and that the body is extracted.
+   */
+  @Test
+  public void testParserBodyWithOffset() {
+    String message = "garbageNOTIFY * HTTP/1.1\r\nNT: upnp:rootdevice\r\n\r\nbody";
+    byte[] content = (message + "trailing garbage").getBytes(UTF_8);
+    DatagramPacket datagramPacket = new DatagramPacket(content, 7, message.length() - 7, SsdpParams.getSsdpMulticastAddress(), SsdpParams.getSsdpMulticastDefaultPort());
+
+    SsdpResponse response = ResponseParser.parse(datagramPacket);
+    Assert.assertEquals(SsdpResponse.Type.PRESENCE_ANNOUNCEMENT, response.getType());
+    Assert.assertEquals("upnp:rootdevice", response.getHeaders().get("NT"));
+    Assert.assertArrayEquals("body".getBytes(UTF_8), response.getBody());
+  }
+
+  /**
+   * This checks that anything which is neither a search response nor a notification is rejected.
+   */
+  @Test
+  public void testParserRejectsUnknownMessages() {
+    byte[] content = "M-SEARCH * HTTP/1.1\r\nST: ssdp:all\r\n\r\n".getBytes(UTF_8);
+    DatagramPacket datagramPacket = new DatagramPacket(content, content.length, SsdpParams.getSsdpMulticastAddress(), SsdpParams.getSsdpMulticastDefaultPort());
+
+    Assert.assertNull(ResponseParser.parse(datagramPacket));
+  }
+
+  /**
+   * This checks the header view of a response parsed from a reused buffer.
+   */
+  @Test
+  public void testParserHeaderView() {
+    byte[] content = ("NOTIFY * HTTP/1.1\r\n"
+        + "nt: upnp:rootdevice\r\n"
+        + "NTS: ssdp:alive\r\n"
+        + "BOOTID.UPNP.ORG: 42\r\n"
+        + "X-Custom-Header: first\r\n"
+        + "X-Custom-Header: second\r\n"
+        + "\r\n").getBytes(UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+    buffer.put(content).flip();
+
+    SsdpResponse response = ResponseParser.parse(buffer, InetAddress.getLoopbackAddress());
+    // The receive buffer is reused right away
+    buffer.clear();
+    buffer.put(new byte[content.length]);
+
+    SsdpHeaders headers = response.getHeaderView();
+    Assert.assertEquals("upnp:rootdevice", headers.get(SsdpHeader.NT));
+    Assert.assertEquals("ssdp:alive", response.getHeader("nts"));
+    Assert.assertEquals(42, headers.getLong(SsdpHeader.BOOTID, -1));
+    Assert.assertEquals(-1, headers.getLong(SsdpHeader.CONFIGID, -1));
+    Assert.assertEquals("second", headers.get("x-custom-header"));
+    Assert.assertNull(headers.get(SsdpHeader.USN));
+    Assert.assertEquals(4, headers.size());
+    Assert.assertEquals(4, response.getHeaders().size());
+  }
+
+  /**
+   * This checks that repeated values share the same instance, and survive the release of the packet.
+   */
+  @Test
+  public void testParserPoolsRepeatedValues() {
+    byte[] content = ("HTTP/1.1 200 OK\r\n"
+        + "ST: urn:schemas-upnp-org:device:MediaServer:1\r\n"
+        + "SERVER: Linux/5.10 UPnP/1.0 Pooled/1.0\r\n"
+        + "X-Custom-Header: custom\r\n"
+        + "\r\n").getBytes(UTF_8);
+
+    SsdpResponse first = ResponseParser.parse(content, 0, content.length, InetAddress.getLoopbackAddress());
+    SsdpResponse second = ResponseParser.parse(content.clone(), 0, content.length, InetAddress.getLoopbackAddress());
+    Assert.assertSame(first.getHeader(SsdpHeader.ST), second.getHeader(SsdpHeader.ST));
+    Assert.assertSame(first.getHeader(SsdpHeader.SERVER), second.getHeader(SsdpHeader.SERVER));
+
+    first.compact();
+    Arrays.fill(content, (byte) 0);
+    Assert.assertEquals("custom", first.getHeader("X-CUSTOM-HEADER"));
+    Assert.assertEquals("urn:schemas-upnp-org:device:MediaServer:1", first.toService().getServiceType());
+  }
+
+  /**
+   * This checks that a response survives the reuse of the packet it was parsed from, as in a receive loop.
+   */
+  @Test
+  public void testParserCopiesReusedPacket() {
+    byte[] buffer = new byte[1024];
+    byte[] content = ("HTTP/1.1 200 OK\r\n"
+        + "ST: upnp:rootdevice\r\n"
+        + "USN: uuid:device-1::upnp:rootdevice\r\n"
+        + "\r\nbody").getBytes(UTF_8);
+    System.arraycopy(content, 0, buffer, 0, content.length);
+    DatagramPacket datagramPacket = new DatagramPacket(buffer, content.length, SsdpParams.getSsdpMulticastAddress(), SsdpParams.getSsdpMulticastDefaultPort());
+
+    SsdpResponse response = ResponseParser.parse(datagramPacket);
+    SsdpResponse fromArray = ResponseParser.parse(buffer, 0, content.length, InetAddress.getLoopbackAddress());
+    // The next datagram is received into the same buffer
+    Arrays.fill(buffer, (byte) 'x');
+
+    Assert.assertEquals("upnp:rootdevice", response.getHeader(SsdpHeader.ST));
+    Assert.assertEquals("uuid:device-1::upnp:rootdevice", response.getHeaders().get("USN"));
+    Assert.assertArrayEquals("body".getBytes(UTF_8), response.getBody());
+    Assert.assertEquals("uuid:device-1::upnp:rootdevice", fromArray.getHeader(SsdpHeader.USN));
+  }
+
 }
@@ -1,11 +1,20 @@
 package io.resourcepool.ssdp;
 
 import io.resourcepool.ssdp.client.SsdpClient;
+import io.resourcepool.ssdp.client.metrics.DefaultSsdpMetrics;
+import io.resourcepool.ssdp.client.util.ByteBufferPool;
 import io.resourcepool.ssdp.model.*;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
 
 /**
  * Testing SSDP Socket receive
@@ -80,4 +89,119 @@ public class SSDPSocketTest {
     lock.await(10, TimeUnit.SECONDS);
   }
 
+  /**
+   * This checks that the non-blocking transport receives and dispatches unicast search responses.
+   * @throws Exception
+   */
+  @Test
+  public void testSSDPReceiveNonBlocking() throws Exception {
+    final CountDownLatch lock = new CountDownLatch(1);
+    final AtomicReference<SsdpService> found = new AtomicReference<SsdpService>();
+    int port = 19001;
+    ByteBufferPool pool = new ByteBufferPool(2048, 4, true);
+    DefaultSsdpMetrics metrics = new DefaultSsdpMetrics();
+
+    SsdpClient client = SsdpClient.create(metrics);
+    client.discoverServices(null,
+            SsdpClientOptions.builder().useNonBlockingTransport().receiveBufferPool(pool).overrideBindingPort(port).build(),
+            new DiscoveryListener() {
+      @Override
+      public void onServiceDiscovered(SsdpService service) {
+        found.set(service);
+        lock.countDown();
+      }
+
+      @Override
+      public void onServiceAnnouncement(SsdpServiceAnnouncement announcement) {
+      }
+
+      @Override
+      public void onFailed(Exception ex) {
+        System.err.println("Service failed to announce something: " + ex);
+      }
+    });
+
+    byte[] content = ("HTTP/1.1 200 OK\r\n"
+        + "CACHE-CONTROL: max-age=1800\r\n"
+        + "ST: upnp:rootdevice\r\n"
+        + "USN: uuid:loopback-device::upnp:rootdevice\r\n"
+        + "\r\n").getBytes(UTF_8);
+    DatagramSocket socket = new DatagramSocket();
+    try {
+      socket.send(new DatagramPacket(content, content.length, InetAddress.getLoopbackAddress(), port));
+      Assert.assertTrue(lock.await(5, TimeUnit.SECONDS));
+    } finally {
+      socket.close();
+      client.stopDiscovery();
+    }
+    Assert.assertEquals("uuid:loopback-device::upnp:rootdevice", found.get().getSerialNumber());
+    Assert.assertTrue(pool.getMisses() >= 1);
+    Assert.assertTrue(metrics.getPacketsReceived() >= 1);
+    Assert.assertEquals(1, metrics.getCacheMisses());
+  }
+
+  @Test
+  public void testSSDPConcurrentDiscoveriesShareSocket() throws Exception {
+    final CountDownLatch lock = new CountDownLatch(1);
+    final AtomicReference<SsdpService> printers = new AtomicReference<SsdpService>();
+    final AtomicReference<SsdpService> storage = new AtomicReference<SsdpService>();
+    int port = 19002;
+
+    SsdpClient client = SsdpClient.create();
+    DiscoveryHandle printerDiscovery = client.discoverServices(
+            DiscoveryRequest.builder().serviceType("urn:schemas-upnp-org:device:Printer:1").build(),
+            SsdpClientOptions.builder().useNonBlockingTransport().dispatchThreads(2).overrideBindingPort(port).ignoreInterfaceDiscoveryErrors().build(),
+            new RecordingListener(printers, lock));
+    DiscoveryHandle storageDiscovery = client.discoverServices(
+            DiscoveryRequest.builder().serviceType("urn:schemas-upnp-org:device:Storage:1").build(),
+            new RecordingListener(storage, null));
+
+    byte[] content = ("HTTP/1.1 200 OK\r\n"
+        + "CACHE-CONTROL: max-age=1800\r\n"
+        + "ST: urn:schemas-upnp-org:device:Printer:1\r\n"
+        + "USN: uuid:loopback-printer::urn:schemas-upnp-org:device:Printer:1\r\n"
+        + "\r\n").getBytes(UTF_8);
+    DatagramSocket socket = new DatagramSocket();
+    try {
+      socket.send(new DatagramPacket(content, content.length, InetAddress.getLoopbackAddress(), port));
+      Assert.assertTrue(lock.await(5, TimeUnit.SECONDS));
+      storageDiscovery.cancel();
+      Assert.assertFalse(storageDiscovery.isActive());
+      Assert.assertTrue(printerDiscovery.isActive());
+    } finally {
+      socket.close();
+      client.stopDiscovery();
+    }
+    Assert.assertEquals("uuid:loopback-printer::urn:schemas-upnp-org:device:Printer:1", printers.get().getSerialNumber());
+    Assert.assertNull(storage.get());
+    Assert.assertFalse(printerDiscovery.isActive());
+  }
+
+  private static class RecordingListener implements DiscoveryListener {
+    private final AtomicReference<SsdpService> found;
+    private final CountDownLatch lock;
+
+    private RecordingListener(AtomicReference<SsdpService> found, CountDownLatch lock) {
+      this.found = found;
+      this.lock = lock;
+    }
+
+    @Override
+    public void onServiceDiscovered(SsdpService service) {
+      found.set(service);
+      if (lock != null) {
+        lock.countDown();
+      }
+    }
+
+    @Override
+    public void onServiceAnnouncement(SsdpServiceAnnouncement announcement) {
+    }
+
+    @Override
+    public void onFailed(Exception ex) {
+      System.err.println("Service failed to announce something: " + ex);
+    }
+  }
+
 }
@@ -0,0 +1,58 @@
+package io.resourcepool.ssdp.client;
+
+import io.resourcepool.ssdp.client.parser.ResponseParser;
+import io.resourcepool.ssdp.model.SsdpService;
+
+import java.net.InetAddress;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * The search responses the tests hand to the client, parsed the way the client parses the datagrams of a device
+ */
+public final class TestResponses {
+
+  public static final String LOCATION = "http://192.168.1.10:80/description.xml";
+
+  private TestResponses() {
+  }
+
+  /**
+   * @param usn the USN
+   * @return a upnp:rootdevice response at {@link #LOCATION}, cached for 30 minutes
+   */
+  public static SsdpService service(String usn) {
+    return service(usn, 1800);
+  }
+
+  /**
+   * @param usn          the USN
+   * @param maxAge       the CACHE-CONTROL max-age in seconds
+   * @param extraHeaders more header lines, such as "BOOTID.UPNP.ORG: 1"
+   * @return a upnp:rootdevice response at {@link #LOCATION}
+   */
+  public static SsdpService service(String usn, int maxAge, String... extraHeaders) {
+    return service(InetAddress.getLoopbackAddress(), usn, LOCATION, maxAge, extraHeaders);
+  }
+
+  /**
+   * @param origin       the address the response was received from
+   * @param usn          the USN
+   * @param location     the LOCATION
+   * @param maxAge       the CACHE-CONTROL max-age in seconds
+   * @param extraHeaders more header lines, such as "BOOTID.UPNP.ORG: 1"
+   * @return a upnp:rootdevice response
+   */
+  public static SsdpService service(InetAddress origin, String usn, String location, int maxAge, String... extraHeaders) {
+    StringBuilder message = new StringBuilder("HTTP/1.1 200 OK\r\n")
+        .append("CACHE-CONTROL: max-age=").append(maxAge).append("\r\n")
+        .append("ST: upnp:rootdevice\r\n")
+        .append("USN: ").append(usn).append("\r\n")
+        .append("LOCATION: ").append(location).append("\r\n");
+    for (String header : extraHeaders) {
+      message.append(header).append("\r\n");
+    }
+    byte[] data = message.append("\r\n").toString().getBytes(UTF_8);
+    return ResponseParser.parse(data, 0, data.length, origin).toService();
+  }
+}
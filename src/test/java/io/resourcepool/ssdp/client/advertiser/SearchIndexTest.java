@@ -0,0 +1,101 @@
+package io.resourcepool.ssdp.client.advertiser;
+
+import io.resourcepool.ssdp.client.parser.ResponseParser;
+import io.resourcepool.ssdp.client.response.SsdpResponse;
+import io.resourcepool.ssdp.model.AdvertisedService;
+import io.resourcepool.ssdp.model.SsdpService;
+import io.resourcepool.ssdp.model.SsdpServiceAnnouncement;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.List;
+
+/**
+ * Testing the matching of searches against the advertised services
+ */
+public class SearchIndexTest {
+
+  private static Advertisement advertisement(String usn, String serviceType) {
+    return new Advertisement(AdvertisedService.builder()
+        .serialNumber(usn)
+        .serviceType(serviceType)
+        .location("http://192.168.1.2/" + usn + ".xml")
+        .bootId(3)
+        .build());
+  }
+
+  @Test
+  public void testSearchesMatchByType() {
+    SearchIndex index = new SearchIndex();
+    index.put(advertisement("uuid:a::upnp:rootdevice", "upnp:rootdevice"));
+    index.put(advertisement("uuid:b::upnp:rootdevice", "upnp:rootdevice"));
+    index.put(advertisement("uuid:a::urn:schemas-upnp-org:device:MediaRenderer:1", "urn:schemas-upnp-org:device:MediaRenderer:1"));
+    Assert.assertEquals(2, index.match("upnp:rootdevice").size());
+    Assert.assertEquals(1, index.match("urn:schemas-upnp-org:device:MediaRenderer:1").size());
+    Assert.assertEquals(3, index.match("ssdp:all").size());
+    Assert.assertTrue(index.match("urn:schemas-upnp-org:device:Printer:1").isEmpty());
+  }
+
+  @Test
+  public void testSearchesMatchByDevice() {
+    SearchIndex index = new SearchIndex();
+    index.put(advertisement("uuid:a::urn:schemas-upnp-org:device:MediaRenderer:1", "urn:schemas-upnp-org:device:MediaRenderer:1"));
+    index.put(advertisement("uuid:a::urn:schemas-upnp-org:service:AVTransport:1", "urn:schemas-upnp-org:service:AVTransport:1"));
+    index.put(advertisement("uuid:b::upnp:rootdevice", "upnp:rootdevice"));
+    index.put(advertisement("uuid:b::urn:schemas-upnp-org:device:Printer:1", "urn:schemas-upnp-org:device:Printer:1"));
+    // One answer per device
+    List<Advertisement> device = index.match("uuid:a");
+    Assert.assertEquals(1, device.size());
+    Assert.assertEquals("uuid:a", responseOf(device.get(0), "uuid:a").getSerialNumber());
+    Assert.assertEquals("uuid:a", responseOf(device.get(0), "uuid:a").getServiceType());
+    Assert.assertTrue(index.match("uuid:c").isEmpty());
+    // Devices not advertised as root devices answer for upnp:rootdevice too, once
+    List<Advertisement> rootDevices = index.match("upnp:rootdevice");
+    Assert.assertEquals(2, rootDevices.size());
+    Assert.assertEquals("uuid:b::upnp:rootdevice", responseOf(rootDevices.get(0), "upnp:rootdevice").getSerialNumber());
+    Assert.assertEquals("uuid:a::upnp:rootdevice", responseOf(rootDevices.get(1), "upnp:rootdevice").getSerialNumber());
+    Assert.assertEquals("upnp:rootdevice", responseOf(rootDevices.get(1), "upnp:rootdevice").getServiceType());
+    index.remove("uuid:a::urn:schemas-upnp-org:device:MediaRenderer:1");
+    index.remove("uuid:a::urn:schemas-upnp-org:service:AVTransport:1");
+    Assert.assertTrue(index.match("uuid:a").isEmpty());
+    Assert.assertEquals(1, index.match("upnp:rootdevice").size());
+  }
+
+  private static SsdpService responseOf(Advertisement advertisement, String searchTarget) {
+    byte[] response = advertisement.getResponse(searchTarget);
+    return ResponseParser.parse(response, 0, response.length, InetAddress.getLoopbackAddress()).toService();
+  }
+
+  @Test
+  public void testReplaceAndRemove() {
+    SearchIndex index = new SearchIndex();
+    Advertisement first = advertisement("uuid:a", "uuid:a");
+    Advertisement second = advertisement("uuid:a", "uuid:a");
+    index.put(first);
+    Assert.assertSame(first, index.put(second));
+    List<Advertisement> matching = index.match("uuid:a");
+    Assert.assertEquals(1, matching.size());
+    Assert.assertSame(second, matching.get(0));
+    Assert.assertSame(second, index.remove("uuid:a"));
+    Assert.assertTrue(index.match("uuid:a").isEmpty());
+    Assert.assertEquals(0, index.size());
+  }
+
+  @Test
+  public void testDatagramsAreReadByTheClient() throws Exception {
+    Advertisement advertisement = advertisement("uuid:a::upnp:rootdevice", "upnp:rootdevice");
+    InetAddress origin = InetAddress.getByName("192.168.1.2");
+    byte[] response = advertisement.getResponse();
+    SsdpService service = ResponseParser.parse(response, 0, response.length, origin).toService();
+    Assert.assertEquals("uuid:a::upnp:rootdevice", service.getSerialNumber());
+    Assert.assertEquals("upnp:rootdevice", service.getServiceType());
+    Assert.assertEquals("http://192.168.1.2/uuid:a::upnp:rootdevice.xml", service.getLocation());
+    Assert.assertTrue(service.getOriginalResponse().getExpiry() > 0);
+    byte[] byebye = advertisement.getByebye();
+    SsdpResponse parsed = ResponseParser.parse(byebye, 0, byebye.length, origin);
+    SsdpServiceAnnouncement announcement = parsed.toServiceAnnouncement();
+    Assert.assertEquals(SsdpServiceAnnouncement.Status.BYEBYE, announcement.getStatus());
+    Assert.assertEquals("uuid:a::upnp:rootdevice", announcement.getSerialNumber());
+  }
+}
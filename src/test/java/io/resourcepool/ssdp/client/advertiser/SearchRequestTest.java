@@ -0,0 +1,59 @@
+package io.resourcepool.ssdp.client.advertiser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * Testing the parsing of the searches received by the advertiser
+ */
+public class SearchRequestTest {
+
+  private static SearchRequest parse(String message) {
+    byte[] data = message.getBytes(UTF_8);
+    return SearchRequest.parse(data, 0, data.length);
+  }
+
+  @Test
+  public void testMulticastSearch() {
+    SearchRequest search = parse("M-SEARCH * HTTP/1.1\r\n"
+        + "HOST: 239.255.255.250:1900\r\n"
+        + "MAN: \"ssdp:discover\"\r\n"
+        + "MX: 120\r\n"
+        + "st: upnp:rootdevice\r\n"
+        + "\r\n");
+    Assert.assertNotNull(search);
+    Assert.assertEquals("upnp:rootdevice", search.getSearchTarget());
+    // Capped
+    Assert.assertEquals(5, search.getMaxWaitSeconds());
+  }
+
+  @Test
+  public void testUnicastSearchIsAnsweredAtOnce() {
+    SearchRequest search = parse("M-SEARCH * HTTP/1.1\r\n"
+        + "HOST: 192.168.1.2:1900\r\n"
+        + "MAN: \"ssdp:discover\"\r\n"
+        + "ST: ssdp:all\r\n"
+        + "\r\n");
+    Assert.assertNotNull(search);
+    Assert.assertEquals(0, search.getMaxWaitSeconds());
+  }
+
+  @Test
+  public void testOtherDatagramsAreIgnored() {
+    Assert.assertNull(parse("NOTIFY * HTTP/1.1\r\nNT: upnp:rootdevice\r\nNTS: ssdp:alive\r\n\r\n"));
+    Assert.assertNull(parse("M-SEARCH * HTTP/1.1\r\nMAN: \"ssdp:discover\"\r\nMX: soon\r\nST: ssdp:all\r\n\r\n"));
+    Assert.assertNull(parse("M-SEARCH * HTTP/1.1\r\nMX: 1\r\nST: ssdp:all\r\n\r\n"));
+  }
+
+  @Test
+  public void testMulticastSearchWithoutMaxWaitIsIgnored() {
+    // Answering at once would have all devices of the segment answer together
+    Assert.assertNull(parse("M-SEARCH * HTTP/1.1\r\n"
+        + "HOST: 239.255.255.250:1900\r\n"
+        + "MAN: \"ssdp:discover\"\r\n"
+        + "ST: ssdp:all\r\n"
+        + "\r\n"));
+  }
+}
@@ -0,0 +1,40 @@
+package io.resourcepool.ssdp.client.advertiser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Testing the pacing of the advertiser datagrams
+ */
+public class SendPacerTest {
+
+  @Test
+  public void testBurstThenEvenSpacing() {
+    // 100 datagrams per second: bursts of 10, then one every 10 ms
+    SendPacer pacer = new SendPacer(100);
+    long now = 1000;
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(0, pacer.tryAcquire(now));
+    }
+    long wait = pacer.tryAcquire(now);
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(10), wait);
+    Assert.assertEquals(0, pacer.tryAcquire(now + wait));
+    Assert.assertTrue(pacer.tryAcquire(now + wait) > 0);
+  }
+
+  @Test
+  public void testIdleTimeRefillsBurstOnly() {
+    SendPacer pacer = new SendPacer(100);
+    long now = 1000;
+    pacer.tryAcquire(now);
+    // A long silence does not allow more than a burst
+    now += TimeUnit.SECONDS.toNanos(60);
+    int sent = 0;
+    while (pacer.tryAcquire(now) == 0) {
+      sent++;
+    }
+    Assert.assertEquals(10, sent);
+  }
+}
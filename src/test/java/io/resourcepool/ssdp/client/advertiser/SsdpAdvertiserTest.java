@@ -0,0 +1,55 @@
+package io.resourcepool.ssdp.client.advertiser;
+
+import io.resourcepool.ssdp.client.parser.ResponseParser;
+import io.resourcepool.ssdp.model.AdvertisedService;
+import io.resourcepool.ssdp.model.SsdpService;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * Testing the searches received and answered by a running advertiser
+ */
+public class SsdpAdvertiserTest {
+
+  @Test
+  public void testSearchIsAnswered() throws Exception {
+    InetAddress loopback = InetAddress.getByName("127.0.0.1");
+    DatagramSocket control = new DatagramSocket(new InetSocketAddress(loopback, 0));
+    // A port free for the advertiser, which binds the wildcard address
+    DatagramSocket probe = new DatagramSocket(0);
+    int port = probe.getLocalPort();
+    probe.close();
+    SsdpAdvertiser advertiser = SsdpAdvertiser.builder().bindingPort(port).build();
+    advertiser.advertise(AdvertisedService.builder()
+        .serialNumber("uuid:a::upnp:rootdevice")
+        .serviceType("upnp:rootdevice")
+        .location("http://127.0.0.1/description.xml")
+        .build());
+    try {
+      advertiser.start();
+      byte[] search = ("M-SEARCH * HTTP/1.1\r\n"
+          + "HOST: 127.0.0.1:" + port + "\r\n"
+          + "MAN: \"ssdp:discover\"\r\n"
+          + "MX: 1\r\n"
+          + "ST: upnp:rootdevice\r\n"
+          + "\r\n").getBytes(UTF_8);
+      control.send(new DatagramPacket(search, search.length, loopback, port));
+      control.setSoTimeout(3000);
+      DatagramPacket received = new DatagramPacket(new byte[1024], 1024);
+      control.receive(received);
+      SsdpService service = ResponseParser.parse(received.getData(), 0, received.getLength(), loopback).toService();
+      Assert.assertEquals("uuid:a::upnp:rootdevice", service.getSerialNumber());
+      Assert.assertEquals(1, advertiser.getSearchesReceived());
+    } finally {
+      control.close();
+      advertiser.close();
+    }
+  }
+}
@@ -0,0 +1,168 @@
+package io.resourcepool.ssdp.client.description;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.resourcepool.ssdp.client.TestResponses;
+import io.resourcepool.ssdp.model.DeviceDescription;
+import io.resourcepool.ssdp.model.SsdpService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * Testing the fetch of device descriptions against an embedded HTTP server
+ */
+public class DescriptionFetcherTest {
+
+  private static final String DESCRIPTION = "<?xml version=\"1.0\"?>"
+      + "<root xmlns=\"urn:schemas-upnp-org:device-1-0\">"
+      + "<specVersion><major>1</major><minor>0</minor></specVersion>"
+      + "<device>"
+      + "<deviceType>urn:schemas-upnp-org:device:MediaRenderer:1</deviceType>"
+      + "<friendlyName>Living room</friendlyName>"
+      + "<manufacturer>ACME</manufacturer>"
+      + "<UDN>uuid:1234</UDN>"
+      + "<deviceList><device><friendlyName>Embedded</friendlyName></device></deviceList>"
+      + "</device>"
+      + "</root>";
+
+  private HttpServer server;
+  private final AtomicInteger requests = new AtomicInteger();
+  // Holds the responses until released
+  private final CountDownLatch release = new CountDownLatch(1);
+  private DescriptionFetcher fetcher;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        byte[] body = exchange.getRequestURI().getPath().equals("/description.xml") ? DESCRIPTION.getBytes(UTF_8) : new byte[0];
+        exchange.sendResponseHeaders(body.length > 0 ? 200 : 404, body.length > 0 ? body.length : -1);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+      }
+    });
+    server.start();
+    fetcher = DescriptionFetcher.builder().build();
+  }
+
+  @After
+  public void tearDown() {
+    fetcher.close();
+    server.stop(0);
+  }
+
+  private SsdpService service(String usn, String path, int bootId) {
+    return serviceAt(usn, "http://127.0.0.1:" + server.getAddress().getPort() + path, bootId);
+  }
+
+  private static SsdpService serviceAt(String usn, String location, int bootId) {
+    return TestResponses.service(InetAddress.getLoopbackAddress(), usn, location, 1800, "BOOTID.UPNP.ORG: " + bootId);
+  }
+
+  @Test
+  public void testConcurrentRequestsShareOneFetch() throws Exception {
+    CompletableFuture<DeviceDescription> first = fetcher.fetch(service("uuid:1234::upnp:rootdevice", "/description.xml", 1));
+    CompletableFuture<DeviceDescription> second = fetcher.fetch(service("uuid:1234::urn:schemas-upnp-org:device:MediaRenderer:1", "/description.xml", 1));
+    release.countDown();
+    DeviceDescription description = first.get(5, TimeUnit.SECONDS);
+    Assert.assertSame(description, second.get(5, TimeUnit.SECONDS));
+    Assert.assertEquals("Living room", description.getFriendlyName());
+    Assert.assertEquals("ACME", description.getManufacturer());
+    Assert.assertEquals("uuid:1234", description.getUdn());
+    // Served by the cache
+    fetcher.fetch(service("uuid:1234::upnp:rootdevice", "/description.xml", 1)).get(5, TimeUnit.SECONDS);
+    Assert.assertEquals(1, requests.get());
+    Assert.assertEquals(2, fetcher.getCacheHits());
+  }
+
+  @Test
+  public void testRebootedDeviceIsDescribedAgain() throws Exception {
+    release.countDown();
+    fetcher.fetch(service("uuid:1234::upnp:rootdevice", "/description.xml", 1)).get(5, TimeUnit.SECONDS);
+    fetcher.fetch(service("uuid:1234::upnp:rootdevice", "/description.xml", 2)).get(5, TimeUnit.SECONDS);
+    Assert.assertEquals(2, requests.get());
+  }
+
+  @Test
+  public void testFailuresAreNotCached() throws Exception {
+    release.countDown();
+    for (int i = 0; i < 2; i++) {
+      try {
+        fetcher.fetch(service("uuid:1234::upnp:rootdevice", "/missing.xml", 1)).get(5, TimeUnit.SECONDS);
+        Assert.fail("Missing description fetched");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof IOException);
+      }
+    }
+    Assert.assertEquals(2, requests.get());
+  }
+
+  @Test
+  public void testUnexpectedFailuresCompleteTheFuture() throws Exception {
+    // Accepted as a URL, but HttpURLConnection fails with an unchecked exception when connecting
+    SsdpService service = serviceAt("uuid:1234::upnp:rootdevice", "http://127.0.0.1:99999/description.xml", 1);
+    for (int i = 0; i < 2; i++) {
+      try {
+        fetcher.fetch(service).get(5, TimeUnit.SECONDS);
+        Assert.fail("Description fetched from an invalid port");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof RuntimeException);
+      }
+    }
+    try {
+      fetcher.fetch(serviceAt("uuid:1234::upnp:rootdevice", "http://device with spaces/description.xml", 1)).get(5, TimeUnit.SECONDS);
+      Assert.fail("Invalid LOCATION fetched");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  @Test
+  public void testCloseCompletesTheQueuedFetches() throws Exception {
+    DescriptionFetcher single = DescriptionFetcher.builder().maxConcurrentFetches(1).build();
+    int port = server.getAddress().getPort();
+    // One fetch per device: the first one holds the only fetch thread, the others wait for it
+    CompletableFuture<DeviceDescription> running = single.fetch(serviceAt("uuid:1::upnp:rootdevice", "http://127.0.0.1:" + port + "/description.xml", 1));
+    CompletableFuture<DeviceDescription> queued = single.fetch(serviceAt("uuid:2::upnp:rootdevice", "http://127.0.0.2:" + port + "/description.xml", 1));
+    CompletableFuture<DeviceDescription> alsoQueued = single.fetch(serviceAt("uuid:3::upnp:rootdevice", "http://127.0.0.3:" + port + "/description.xml", 1));
+    for (int i = 0; i < 100 && requests.get() == 0; i++) {
+      Thread.sleep(10);
+    }
+    single.close();
+    Assert.assertTrue(queued.isCompletedExceptionally());
+    Assert.assertTrue(alsoQueued.isCompletedExceptionally());
+    try {
+      queued.get();
+      Assert.fail("Queued fetch run after close");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+    // The fetch in progress still completes
+    release.countDown();
+    Assert.assertEquals("Living room", running.get(5, TimeUnit.SECONDS).getFriendlyName());
+  }
+}
@@ -0,0 +1,52 @@
+package io.resourcepool.ssdp.client.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+/**
+ * Testing the bounded lookup of the service types of unknown announcers
+ */
+public class AutoLookupTest {
+
+  private static final long TTL = 1000;
+
+  @Test
+  public void testServiceTypeIsLookedUpOnce() {
+    AutoLookup lookup = new AutoLookup(4, TTL);
+    Assert.assertNotNull(lookup.register("urn:schemas-upnp-org:device:MediaRenderer:1", 0));
+    Assert.assertNull(lookup.register("urn:schemas-upnp-org:device:MediaRenderer:1", 10));
+    Assert.assertNull(lookup.register("urn:schemas-upnp-org:device:MediaRenderer:1", 20));
+    Assert.assertEquals(1, lookup.size());
+    Assert.assertEquals(1, lookup.active(30).size());
+  }
+
+  @Test
+  public void testLeastRecentlyAnnouncedServiceTypeIsEvicted() {
+    AutoLookup lookup = new AutoLookup(2, TTL);
+    lookup.register("a", 0);
+    lookup.register("b", 10);
+    // "a" is announced again, "b" becomes the least recently announced
+    lookup.register("a", 20);
+    lookup.register("c", 30);
+    Assert.assertEquals(new LinkedHashSet<String>(Arrays.asList("a", "c")), lookup.getServiceTypes());
+  }
+
+  @Test
+  public void testServiceTypeExpiresWithoutAnnouncements() {
+    AutoLookup lookup = new AutoLookup(4, TTL);
+    lookup.register("a", 0);
+    lookup.register("b", 0);
+    // Announcing "b" extends its lookup
+    lookup.register("b", 900);
+    Assert.assertEquals(1, lookup.active(1000).size());
+    Assert.assertEquals(1, lookup.size());
+    Assert.assertTrue(lookup.getServiceTypes().contains("b"));
+    Assert.assertTrue(lookup.active(1900).isEmpty());
+    Assert.assertEquals(0, lookup.size());
+    // Once expired, a service type is looked up again on its next announcement
+    Assert.assertNotNull(lookup.register("a", 2000));
+  }
+}
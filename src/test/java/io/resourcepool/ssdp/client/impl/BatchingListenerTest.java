@@ -0,0 +1,205 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.client.SsdpParams;
+import io.resourcepool.ssdp.model.BatchDiscoveryListener;
+import io.resourcepool.ssdp.model.BatchOptions;
+import io.resourcepool.ssdp.model.DiscoveryHandle;
+import io.resourcepool.ssdp.model.SsdpClientOptions;
+import io.resourcepool.ssdp.model.SsdpService;
+import io.resourcepool.ssdp.model.SsdpServiceAnnouncement;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.resourcepool.ssdp.client.TestResponses.service;
+
+/**
+ * Testing the coalescing of discovery events into batches
+ */
+public class BatchingListenerTest {
+
+  private static final class RecordingListener implements BatchDiscoveryListener {
+    private final List<List<SsdpService>> discovered = new ArrayList<List<SsdpService>>();
+    private final List<List<SsdpService>> expired = new ArrayList<List<SsdpService>>();
+    private Object clientLock;
+    private boolean deliveredUnderClientLock;
+
+    @Override
+    public void onServicesDiscovered(List<SsdpService> services) {
+      if (clientLock != null && Thread.holdsLock(clientLock)) {
+        deliveredUnderClientLock = true;
+      }
+      discovered.add(services);
+    }
+
+    @Override
+    public void onServiceAnnouncements(List<SsdpServiceAnnouncement> announcements) {
+    }
+
+    @Override
+    public void onServicesExpired(List<SsdpService> services) {
+      expired.add(services);
+    }
+
+    @Override
+    public void onFailed(Exception ex) {
+    }
+  }
+
+  // Runs the scheduled tasks on demand
+  private static final class ManualTransport implements SsdpTransport {
+    private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+    @Override
+    public void open(SsdpClientOptions options) {
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void schedule(Runnable task, long delay) {
+      tasks.add(task);
+    }
+
+    @Override
+    public void send(DatagramPacket packet) {
+    }
+
+    @Override
+    public void sendTo(DatagramPacket packet) {
+    }
+
+    @Override
+    public List<InetAddress> getGroups() {
+      return SsdpParams.getSsdpMulticastAddresses(false);
+    }
+
+    @Override
+    public boolean isClosed() {
+      return false;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void runTasks() {
+      List<Runnable> due = new ArrayList<Runnable>(tasks);
+      tasks.clear();
+      for (Runnable task : due) {
+        task.run();
+      }
+    }
+  }
+
+  private static final class FakeHandle implements DiscoveryHandle {
+    private boolean active = true;
+
+    @Override
+    public void cancel() {
+      active = false;
+    }
+
+    @Override
+    public boolean isActive() {
+      return active;
+    }
+  }
+
+  @Test
+  public void testFlushesOnceFull() {
+    RecordingListener listener = new RecordingListener();
+    BatchingListener batching = new BatchingListener(listener, BatchOptions.builder().maxSize(3).build());
+    batching.start(new FakeHandle(), new ManualTransport());
+    batching.onServiceDiscovered(service("uuid:a"));
+    batching.onServiceDiscovered(service("uuid:b"));
+    Assert.assertTrue(listener.discovered.isEmpty());
+    // Events of all kinds count towards the size
+    batching.onServiceExpired(service("uuid:c"));
+    Assert.assertEquals(1, listener.discovered.size());
+    Assert.assertEquals(2, listener.discovered.get(0).size());
+    Assert.assertEquals("uuid:c", listener.expired.get(0).get(0).getSerialNumber());
+  }
+
+  @Test
+  public void testFlushesAfterDelay() {
+    RecordingListener listener = new RecordingListener();
+    ManualTransport transport = new ManualTransport();
+    BatchingListener batching = new BatchingListener(listener, BatchOptions.builder().build());
+    // Replayed from the cache before the discovery is started
+    batching.onServiceDiscovered(service("uuid:a"));
+    batching.start(new FakeHandle(), transport);
+    batching.onServiceDiscovered(service("uuid:b"));
+    Assert.assertEquals(1, transport.tasks.size());
+    transport.runTasks();
+    Assert.assertEquals(1, listener.discovered.size());
+    Assert.assertEquals(2, listener.discovered.get(0).size());
+    // Nothing pending, nothing planned
+    Assert.assertTrue(transport.tasks.isEmpty());
+  }
+
+  @Test
+  public void testCancelledDiscoveryIsNotFlushed() {
+    RecordingListener listener = new RecordingListener();
+    ManualTransport transport = new ManualTransport();
+    FakeHandle handle = new FakeHandle();
+    BatchingListener batching = new BatchingListener(listener, BatchOptions.builder().build());
+    batching.start(handle, transport);
+    batching.onServiceDiscovered(service("uuid:a"));
+    handle.cancel();
+    transport.runTasks();
+    Assert.assertTrue(listener.discovered.isEmpty());
+  }
+
+  @Test
+  public void testStoppedDiscoveryDeliversPendingEvents() {
+    RecordingListener listener = new RecordingListener();
+    SsdpClientImpl client = new SsdpClientImpl();
+    listener.clientLock = client;
+    BatchingListener batching = new BatchingListener(listener, BatchOptions.builder().build());
+    Subscription subscription = new Subscription(client, null, SsdpClientOptions.builder().build(), batching);
+    client.subscribe(subscription);
+    batching.start(subscription, new ManualTransport());
+    batching.onServiceDiscovered(service("uuid:a"));
+    batching.onServiceExpired(service("uuid:b"));
+    subscription.cancel();
+    Assert.assertEquals(1, listener.discovered.size());
+    Assert.assertEquals(1, listener.expired.size());
+    // Delivered once the client released its lock, so that the listener may wait for other client threads
+    Assert.assertFalse(listener.deliveredUnderClientLock);
+    // Stopped once
+    subscription.cancel();
+    Assert.assertEquals(1, listener.discovered.size());
+  }
+
+  @Test
+  public void testStopDiscoveryDeliversOutOfTheClientLock() {
+    RecordingListener listener = new RecordingListener();
+    SsdpClientImpl client = new SsdpClientImpl();
+    listener.clientLock = client;
+    BatchingListener batching = new BatchingListener(listener, BatchOptions.builder().build());
+    Subscription subscription = new Subscription(client, null, SsdpClientOptions.builder().build(), batching);
+    client.subscribe(subscription);
+    batching.start(subscription, new ManualTransport());
+    batching.onServiceDiscovered(service("uuid:a"));
+    client.stopDiscovery();
+    Assert.assertFalse(subscription.isActive());
+    Assert.assertEquals(1, listener.discovered.size());
+    Assert.assertFalse(listener.deliveredUnderClientLock);
+  }
+
+  @Test
+  public void testReplayIsDeliveredWithoutTransport() {
+    RecordingListener listener = new RecordingListener();
+    BatchingListener batching = new BatchingListener(listener, BatchOptions.builder().build());
+    batching.onServiceDiscovered(service("uuid:a"));
+    batching.start(new FakeHandle(), null);
+    Assert.assertEquals(1, listener.discovered.size());
+  }
+}
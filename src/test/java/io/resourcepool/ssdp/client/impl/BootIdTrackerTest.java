@@ -0,0 +1,59 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.SsdpService;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static io.resourcepool.ssdp.client.TestResponses.service;
+import static io.resourcepool.ssdp.client.impl.BootIdTracker.Change;
+import static io.resourcepool.ssdp.client.impl.BootIdTracker.NONE;
+
+/**
+ * Testing the detection of reboots and new configurations
+ */
+public class BootIdTrackerTest {
+
+  @Test
+  public void testRebootAndNewConfiguration() {
+    BootIdTracker tracker = new BootIdTracker();
+    Assert.assertEquals(Change.NEW, tracker.onAlive(service("uuid:a"), 1, 7));
+    Assert.assertEquals(Change.UNCHANGED, tracker.onAlive(service("uuid:a"), 1, 7));
+    Assert.assertEquals(Change.RECONFIGURED, tracker.onAlive(service("uuid:a"), 1, 8));
+    Assert.assertEquals(Change.REBOOTED, tracker.onAlive(service("uuid:a"), 2, 8));
+    Assert.assertEquals(Change.UNCHANGED, tracker.onAlive(service("uuid:a"), 2, 8));
+  }
+
+  @Test
+  public void testUpdateRollsBootIdForward() {
+    BootIdTracker tracker = new BootIdTracker();
+    tracker.onAlive(service("uuid:a"), 1, 7);
+    Assert.assertEquals(Change.UNCHANGED, tracker.onUpdate("uuid:a", 2, 7));
+    // The announced next BOOTID is not a reboot
+    Assert.assertEquals(Change.UNCHANGED, tracker.onAlive(service("uuid:a"), 2, 7));
+  }
+
+  @Test
+  public void testDevicesWithoutIdsAreNeverRenewed() {
+    BootIdTracker tracker = new BootIdTracker();
+    SsdpService service = service("uuid:a");
+    Assert.assertEquals(Change.NEW, tracker.onAlive(service, NONE, NONE));
+    Assert.assertEquals(Change.UNCHANGED, tracker.onAlive(service, 3, NONE));
+    Assert.assertEquals(Change.UNCHANGED, tracker.onAlive(service, NONE, NONE));
+    tracker.remove(service);
+    Assert.assertEquals(0, tracker.size());
+  }
+
+  /**
+   * This checks that removing a stale instance keeps the ids reported by the newer one.
+   */
+  @Test
+  public void testRemovingStaleInstanceKeepsNewerOne() {
+    BootIdTracker tracker = new BootIdTracker();
+    SsdpService stale = service("uuid:a");
+    tracker.onAlive(stale, 1, 7);
+    tracker.onAlive(service("uuid:a"), 1, 7);
+    tracker.remove(stale);
+    Assert.assertEquals(1, tracker.size());
+    Assert.assertEquals(Change.REBOOTED, tracker.onAlive(service("uuid:a"), 2, 7));
+  }
+}
@@ -0,0 +1,154 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.client.TestResponses;
+import io.resourcepool.ssdp.model.SsdpService;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+
+/**
+ * Testing the persistence of cached services across restarts
+ */
+public class CacheSnapshotTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static final InetAddress DEVICE = address("192.168.1.10");
+  // A header the snapshot keeps along with the others
+  private static final String SEARCH_PORT = "SEARCHPORT.UPNP.ORG: 1901";
+
+  private static InetAddress address(String host) {
+    try {
+      return InetAddress.getByName(host);
+    } catch (UnknownHostException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static SsdpService service(String usn, String location, int maxAge) {
+    return TestResponses.service(DEVICE, usn, location, maxAge, SEARCH_PORT);
+  }
+
+  @Test
+  public void testServicesSurviveRestart() throws Exception {
+    File file = folder.newFile("cache.bin");
+    CacheSnapshot snapshot = CacheSnapshot.open(file, 8);
+    Assert.assertTrue(snapshot.load(System.currentTimeMillis()).isEmpty());
+    snapshot.put(service("uuid:a", "http://192.168.1.10/a.xml", 1800));
+    snapshot.put(service("uuid:b", "http://192.168.1.10/b.xml", 1800));
+    // A new location rewrites the slot of the service
+    snapshot.put(service("uuid:a", "http://192.168.1.10/a2.xml", 1800));
+    snapshot.close();
+
+    snapshot = CacheSnapshot.open(file, 8);
+    List<SsdpService> services = snapshot.load(System.currentTimeMillis());
+    Assert.assertEquals(2, services.size());
+    SsdpService a = services.get(0);
+    Assert.assertEquals("uuid:a", a.getSerialNumber());
+    Assert.assertEquals("http://192.168.1.10/a2.xml", a.getLocation());
+    Assert.assertEquals(InetAddress.getByName("192.168.1.10"), a.getRemoteIp());
+    Assert.assertEquals("1901", a.getOriginalResponse().getHeader("SEARCHPORT.UPNP.ORG"));
+    Assert.assertFalse(a.isExpired());
+    snapshot.close();
+  }
+
+  @Test
+  public void testExpiredAndRemovedServicesAreNotRestored() throws Exception {
+    File file = folder.newFile("cache.bin");
+    CacheSnapshot snapshot = CacheSnapshot.open(file, 8);
+    snapshot.put(service("uuid:a", "http://192.168.1.10/a.xml", 10));
+    SsdpService staleB = service("uuid:b", "http://192.168.1.10/b.xml", 1800);
+    snapshot.put(staleB);
+    snapshot.put(service("uuid:b", "http://192.168.1.10/b.xml", 1800));
+    SsdpService c = service("uuid:c", "http://192.168.1.10/c.xml", 1800);
+    snapshot.put(c);
+    snapshot.remove(c);
+    // Removing the replaced instance of b keeps the current one
+    snapshot.remove(staleB);
+    snapshot.close();
+
+    snapshot = CacheSnapshot.open(file, 8);
+    List<SsdpService> services = snapshot.load(System.currentTimeMillis() + 60000);
+    Assert.assertEquals(1, services.size());
+    Assert.assertEquals("uuid:b", services.get(0).getSerialNumber());
+    Assert.assertEquals(1, snapshot.size());
+    snapshot.close();
+  }
+
+  @Test
+  public void testFullSnapshotAndOtherCapacity() throws Exception {
+    File file = folder.newFile("cache.bin");
+    CacheSnapshot snapshot = CacheSnapshot.open(file, 1);
+    snapshot.put(service("uuid:a", "http://192.168.1.10/a.xml", 1800));
+    snapshot.put(service("uuid:b", "http://192.168.1.10/b.xml", 1800));
+    Assert.assertEquals(1, snapshot.size());
+    snapshot.close();
+
+    // A snapshot of another capacity starts empty
+    snapshot = CacheSnapshot.open(file, 4);
+    Assert.assertTrue(snapshot.load(System.currentTimeMillis()).isEmpty());
+    snapshot.close();
+  }
+
+  @Test
+  public void testNewBootIdRewritesSlot() throws Exception {
+    File file = folder.newFile("cache.bin");
+    CacheSnapshot snapshot = CacheSnapshot.open(file, 8);
+    snapshot.put(TestResponses.service(DEVICE, "uuid:a", "http://192.168.1.10/a.xml", 1800, SEARCH_PORT, "BOOTID.UPNP.ORG: 1"));
+    // Same location, but the device rebooted
+    snapshot.put(TestResponses.service(DEVICE, "uuid:a", "http://192.168.1.10/a.xml", 1800, SEARCH_PORT, "BOOTID.UPNP.ORG: 2"));
+    snapshot.close();
+
+    snapshot = CacheSnapshot.open(file, 8);
+    List<SsdpService> services = snapshot.load(System.currentTimeMillis());
+    Assert.assertEquals("2", services.get(0).getOriginalResponse().getHeader("BOOTID.UPNP.ORG"));
+    snapshot.close();
+  }
+
+  @Test
+  public void testCorruptedSlotIsNotRestored() throws Exception {
+    File file = folder.newFile("cache.bin");
+    CacheSnapshot snapshot = CacheSnapshot.open(file, 8);
+    snapshot.put(service("uuid:a", "http://192.168.1.10/a.xml", 1800));
+    snapshot.put(service("uuid:b", "http://192.168.1.10/b.xml", 1800));
+    snapshot.close();
+
+    // Flip a byte in the payload of the first slot, which follows the file header slot
+    RandomAccessFile raw = new RandomAccessFile(file, "rw");
+    long position = CacheSnapshot.SLOT_SIZE + 32;
+    raw.seek(position);
+    int value = raw.read();
+    raw.seek(position);
+    raw.write(value ^ 0xFF);
+    raw.close();
+
+    snapshot = CacheSnapshot.open(file, 8);
+    List<SsdpService> services = snapshot.load(System.currentTimeMillis());
+    Assert.assertEquals(1, services.size());
+    Assert.assertEquals("uuid:b", services.get(0).getSerialNumber());
+    snapshot.close();
+  }
+
+  @Test
+  public void testFileIsLockedWhileMapped() throws Exception {
+    File file = folder.newFile("cache.bin");
+    CacheSnapshot snapshot = CacheSnapshot.open(file, 8);
+    try {
+      CacheSnapshot.open(file, 8);
+      Assert.fail("The snapshot file should be locked");
+    } catch (IOException e) {
+      // Expected
+    }
+    snapshot.close();
+    CacheSnapshot.open(file, 8).close();
+  }
+}
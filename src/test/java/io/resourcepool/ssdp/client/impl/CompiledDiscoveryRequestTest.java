@@ -0,0 +1,95 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.client.SsdpParams;
+import io.resourcepool.ssdp.client.request.SsdpDiscovery;
+import io.resourcepool.ssdp.model.DiscoveryOptions;
+import io.resourcepool.ssdp.model.DiscoveryRequest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Testing the M-SEARCH datagrams encoded once per discovery request
+ */
+public class CompiledDiscoveryRequestTest {
+
+  private static final List<String> SERVICE_TYPES = Arrays.asList(
+      "urn:schemas-upnp-org:device:MediaRenderer:1", "urn:schemas-upnp-org:service:AVTransport:1");
+
+  private static void assertSameDatagram(DatagramPacket expected, DatagramPacket actual) {
+    Assert.assertArrayEquals(Arrays.copyOfRange(expected.getData(), expected.getOffset(), expected.getOffset() + expected.getLength()),
+        Arrays.copyOfRange(actual.getData(), actual.getOffset(), actual.getOffset() + actual.getLength()));
+    Assert.assertEquals(expected.getAddress(), actual.getAddress());
+    Assert.assertEquals(expected.getPort(), actual.getPort());
+  }
+
+  @Test
+  public void testDatagramsMatchTheEncoder() {
+    DiscoveryOptions options = DiscoveryOptions.builder().maxWaitTimeSeconds(2).userAgent("Test/1.0 UPnP/1.1 Test/1.0").build();
+    DiscoveryRequest.Builder builder = DiscoveryRequest.builder().discoveryOptions(options);
+    for (String serviceType : SERVICE_TYPES) {
+      builder.serviceType(serviceType);
+    }
+    DiscoveryRequest request = builder.build();
+    CompiledDiscoveryRequest compiled = new CompiledDiscoveryRequest(request);
+
+    DatagramPacket[] datagrams = compiled.getDatagrams();
+    Assert.assertEquals(2, datagrams.length);
+    for (int i = 0; i < datagrams.length; i++) {
+      assertSameDatagram(SsdpDiscovery.getDatagram(request.getServiceTypes().get(i), options), datagrams[i]);
+    }
+    // Encoded once
+    Assert.assertSame(datagrams, compiled.getDatagrams());
+
+    DatagramPacket[] all = new CompiledDiscoveryRequest(DiscoveryRequest.builder().build()).getDatagrams();
+    Assert.assertEquals(1, all.length);
+    assertSameDatagram(SsdpDiscovery.getDatagram(null, new DiscoveryOptions()), all[0]);
+  }
+
+  @Test
+  public void testDatagramsAreRebuiltForOtherOptions() {
+    final DiscoveryOptions[] current = {DiscoveryOptions.builder().maxWaitTimeSeconds(1).build()};
+    DiscoveryRequest request = new DiscoveryRequest() {
+      @Override
+      public List<String> getServiceTypes() {
+        return SERVICE_TYPES;
+      }
+
+      @Override
+      public DiscoveryOptions getDiscoveryOptions() {
+        return current[0];
+      }
+    };
+    CompiledDiscoveryRequest compiled = new CompiledDiscoveryRequest(request);
+    DatagramPacket[] first = compiled.getDatagrams();
+
+    current[0] = DiscoveryOptions.builder().maxWaitTimeSeconds(4).build();
+    DatagramPacket[] second = compiled.getDatagrams();
+    Assert.assertNotSame(first, second);
+    for (int i = 0; i < second.length; i++) {
+      assertSameDatagram(SsdpDiscovery.getDatagram(SERVICE_TYPES.get(i), current[0]), second[i]);
+    }
+    Assert.assertSame(second, compiled.getDatagrams());
+  }
+
+  @Test
+  public void testDatagramsAreRebuiltForOtherGroups() {
+    DiscoveryRequest request = DiscoveryRequest.builder().serviceType(SERVICE_TYPES.get(0)).build();
+    CompiledDiscoveryRequest compiled = new CompiledDiscoveryRequest(request);
+    DatagramPacket[] ipv4 = compiled.getDatagrams(SsdpParams.getSsdpMulticastAddresses(false));
+
+    DatagramPacket[] dualStack = compiled.getDatagrams(SsdpParams.getSsdpMulticastAddresses(true));
+    Assert.assertEquals(3, dualStack.length);
+    for (int i = 0; i < dualStack.length; i++) {
+      assertSameDatagram(SsdpDiscovery.getDatagram(SERVICE_TYPES.get(0), request.getDiscoveryOptions(),
+          SsdpParams.getSsdpMulticastAddresses(true).get(i)), dualStack[i]);
+    }
+
+    DatagramPacket[] back = compiled.getDatagrams(SsdpParams.getSsdpMulticastAddresses(false));
+    Assert.assertNotSame(ipv4, back);
+    assertSameDatagram(ipv4[0], back[0]);
+  }
+}
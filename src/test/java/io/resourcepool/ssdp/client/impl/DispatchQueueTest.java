@@ -0,0 +1,77 @@
+package io.resourcepool.ssdp.client.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Testing the bounded queue feeding dispatch threads
+ */
+public class DispatchQueueTest {
+
+  @Test
+  public void testQueueIsBoundedAndOrdered() {
+    DispatchQueue<Integer> queue = new DispatchQueue<Integer>(3);
+    Assert.assertEquals(4, queue.capacity());
+    for (int i = 0; i < 4; i++) {
+      Assert.assertTrue(queue.offer(i));
+    }
+    Assert.assertFalse(queue.offer(4));
+    Assert.assertEquals(4, queue.size());
+    Assert.assertEquals(Integer.valueOf(0), queue.poll());
+    Assert.assertTrue(queue.offer(4));
+    for (int i = 1; i <= 4; i++) {
+      Assert.assertEquals(Integer.valueOf(i), queue.poll());
+    }
+    Assert.assertNull(queue.poll());
+    Assert.assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void testConcurrentProducersKeepTheirOwnOrder() throws InterruptedException {
+    final DispatchQueue<int[]> queue = new DispatchQueue<int[]>(64);
+    final int producers = 4;
+    final int perProducer = 10000;
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int p = 0; p < producers; p++) {
+      final int producer = p;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < perProducer; i++) {
+            while (!queue.offer(new int[]{producer, i})) {
+              Thread.yield();
+            }
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    int[] next = new int[producers];
+    int received = 0;
+    while (received < producers * perProducer) {
+      int[] element = queue.poll();
+      if (element == null) {
+        Thread.yield();
+        continue;
+      }
+      Assert.assertEquals(next[element[0]]++, element[1]);
+      received++;
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Assert.assertTrue(queue.isEmpty());
+  }
+}
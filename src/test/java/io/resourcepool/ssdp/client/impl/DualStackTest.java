@@ -0,0 +1,121 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.client.SsdpParams;
+import io.resourcepool.ssdp.client.metrics.DefaultSsdpMetrics;
+import io.resourcepool.ssdp.model.DiscoveryListener;
+import io.resourcepool.ssdp.model.DiscoveryRequest;
+import io.resourcepool.ssdp.model.SsdpClientOptions;
+import io.resourcepool.ssdp.model.SsdpService;
+import io.resourcepool.ssdp.model.SsdpServiceAnnouncement;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * Testing the searches on the IPv6 groups, the split of the IPv4 datagrams between the channels
+ * and the merge of both families in the cache
+ */
+public class DualStackTest {
+
+  @Test
+  public void testSearchesAreCompiledPerGroup() {
+    CompiledDiscoveryRequest request = new CompiledDiscoveryRequest(DiscoveryRequest.builder().build());
+    List<InetAddress> groups = SsdpParams.getSsdpMulticastAddresses(true);
+    DatagramPacket[] datagrams = request.getDatagrams(groups);
+    Assert.assertEquals(3, datagrams.length);
+    Assert.assertEquals(SsdpParams.getSsdpMulticastAddress(), datagrams[0].getAddress());
+    Assert.assertTrue(contentOf(datagrams[0]).contains("HOST: 239.255.255.250:1900\r\n"));
+    Assert.assertEquals(SsdpParams.getSsdpMulticastIpv6LinkLocalAddress(), datagrams[1].getAddress());
+    Assert.assertTrue(contentOf(datagrams[1]).contains("HOST: [FF02::C]:1900\r\n"));
+    Assert.assertEquals(SsdpParams.getSsdpMulticastIpv6SiteLocalAddress(), datagrams[2].getAddress());
+    Assert.assertTrue(contentOf(datagrams[2]).contains("HOST: [FF05::C]:1900\r\n"));
+    // Encoded once per set of groups
+    Assert.assertSame(datagrams, request.getDatagrams(groups));
+    Assert.assertEquals(1, request.getDatagrams(SsdpParams.getSsdpMulticastAddresses(false)).length);
+  }
+
+  @Test
+  public void testDeviceOnBothFamiliesIsDiscoveredOnce() throws Exception {
+    final List<SsdpService> discovered = new ArrayList<SsdpService>();
+    SsdpClientOptions options = SsdpClientOptions.builder().build();
+    SsdpClientImpl client = new SsdpClientImpl();
+    client.subscribe(new Subscription(client, null, options, new DiscoveryListener() {
+      @Override
+      public void onServiceDiscovered(SsdpService service) {
+        discovered.add(service);
+      }
+
+      @Override
+      public void onServiceAnnouncement(SsdpServiceAnnouncement announcement) {
+      }
+
+      @Override
+      public void onFailed(Exception ex) {
+        Assert.fail(ex.toString());
+      }
+    }));
+    receive(client, options, "192.168.1.10", "http://192.168.1.10/description.xml");
+    receive(client, options, "fe80::10", "http://[fe80::10]/description.xml");
+    Assert.assertEquals(1, discovered.size());
+    Assert.assertEquals("uuid:a::upnp:rootdevice", discovered.get(0).getSerialNumber());
+  }
+
+  @Test
+  public void testIpv4DatagramsAreHandledOnce() throws Exception {
+    DefaultSsdpMetrics metrics = new DefaultSsdpMetrics();
+    SsdpClientImpl client = new SsdpClientImpl(metrics);
+    DatagramSocket probe = new DatagramSocket(0);
+    int port = probe.getLocalPort();
+    probe.close();
+    SsdpClientOptions options = SsdpClientOptions.builder()
+        .overrideBindingPort(port)
+        .useIpv6()
+        .ignoreInterfaceDiscoveryErrors()
+        .build();
+    DatagramChannelTransport transport = new DatagramChannelTransport(client);
+    DatagramSocket peer = new DatagramSocket();
+    try {
+      // Without IPv6 interfaces, only the IPv4 channel is open and the test checks nothing more than it
+      transport.open(options);
+      transport.start();
+      byte[] data = ("HTTP/1.1 200 OK\r\n"
+          + "CACHE-CONTROL: max-age=1800\r\n"
+          + "ST: upnp:rootdevice\r\n"
+          + "USN: uuid:a::upnp:rootdevice\r\n"
+          + "LOCATION: http://127.0.0.1/description.xml\r\n"
+          + "\r\n").getBytes(UTF_8);
+      // Whichever channels the platform delivers them to, a unicast response and a datagram to the group count once
+      peer.send(new DatagramPacket(data, data.length, InetAddress.getByName("127.0.0.1"), port));
+      peer.send(new DatagramPacket(data, data.length, SsdpParams.getSsdpMulticastAddress(), port));
+      for (int i = 0; i < 200 && metrics.getPacketsReceived() < 2; i++) {
+        Thread.sleep(10);
+      }
+      Thread.sleep(200);
+      Assert.assertEquals(2, metrics.getPacketsReceived());
+    } finally {
+      peer.close();
+      transport.close();
+    }
+  }
+
+  private static void receive(SsdpClientImpl client, SsdpClientOptions options, String origin, String location) throws Exception {
+    byte[] data = ("HTTP/1.1 200 OK\r\n"
+        + "CACHE-CONTROL: max-age=1800\r\n"
+        + "ST: upnp:rootdevice\r\n"
+        + "USN: uuid:a::upnp:rootdevice\r\n"
+        + "LOCATION: " + location + "\r\n"
+        + "\r\n").getBytes(UTF_8);
+    client.handleIncomingPacket(new DatagramPacket(data, data.length, InetAddress.getByName(origin), 1900), options);
+  }
+
+  private static String contentOf(DatagramPacket datagram) {
+    return new String(datagram.getData(), datagram.getOffset(), datagram.getLength(), UTF_8);
+  }
+}
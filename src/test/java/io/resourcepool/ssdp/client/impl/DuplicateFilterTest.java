@@ -0,0 +1,54 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.client.parser.ResponseParser;
+import io.resourcepool.ssdp.client.response.SsdpResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * Testing the suppression of copies of responses and announcements
+ */
+public class DuplicateFilterTest {
+
+  private static final long WINDOW = 1000;
+
+  private static SsdpResponse notify(String usn, String nts) {
+    byte[] data = ("NOTIFY * HTTP/1.1\r\n"
+        + "HOST: 239.255.255.250:1900\r\n"
+        + "NT: upnp:rootdevice\r\n"
+        + "NTS: " + nts + "\r\n"
+        + "USN: " + usn + "\r\n"
+        + "LOCATION: http://192.168.1.10:80/description.xml\r\n"
+        + "\r\n").getBytes(UTF_8);
+    return ResponseParser.parse(data, 0, data.length, InetAddress.getLoopbackAddress());
+  }
+
+  @Test
+  public void testCopiesAreSuppressedWithinWindow() {
+    DuplicateFilter filter = new DuplicateFilter(WINDOW, 0);
+    Assert.assertFalse(filter.isDuplicate(notify("uuid:a", "ssdp:alive"), 0));
+    Assert.assertTrue(filter.isDuplicate(notify("uuid:a", "ssdp:alive"), 100));
+    Assert.assertTrue(filter.isDuplicate(notify("uuid:a", "ssdp:alive"), 1500));
+    // A byebye is not a copy of an alive, nor is another device
+    Assert.assertFalse(filter.isDuplicate(notify("uuid:a", "ssdp:byebye"), 1600));
+    Assert.assertFalse(filter.isDuplicate(notify("uuid:b", "ssdp:alive"), 1600));
+    // Remembered for at most two windows
+    Assert.assertFalse(filter.isDuplicate(notify("uuid:a", "ssdp:alive"), 3000));
+  }
+
+  @Test
+  public void testTableGrows() {
+    DuplicateFilter filter = new DuplicateFilter(WINDOW, 0);
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertFalse(filter.isDuplicate(notify("uuid:" + i, "ssdp:alive"), 0));
+    }
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertTrue(filter.isDuplicate(notify("uuid:" + i, "ssdp:alive"), 1));
+    }
+    Assert.assertEquals(1000, filter.size());
+  }
+}
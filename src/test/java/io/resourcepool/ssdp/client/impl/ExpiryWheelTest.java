@@ -0,0 +1,72 @@
+package io.resourcepool.ssdp.client.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This checks the expiry wheel scheduling and eviction.
+ */
+public class ExpiryWheelTest {
+
+  private static final long TICK = 100;
+
+  /**
+   * This checks that entries are handed out once their deadline is reached, including after several revolutions.
+   */
+  @Test
+  public void testExpiry() {
+    ExpiryWheel<String, String> wheel = new ExpiryWheel<String, String>(TICK, 4, 100, 0);
+    wheel.schedule("a", "a", 250);
+    wheel.schedule("b", "b", 1050);
+
+    Assert.assertEquals(Collections.emptyList(), wheel.advance(200));
+    Assert.assertEquals(Collections.singletonList("a"), wheel.advance(300));
+    Assert.assertEquals(Collections.emptyList(), wheel.advance(1000));
+    Assert.assertEquals(Collections.singletonList("b"), wheel.advance(1100));
+    Assert.assertEquals(0, wheel.size());
+  }
+
+  /**
+   * This checks that rescheduling moves the deadline and that cancelled entries never expire.
+   */
+  @Test
+  public void testRescheduleAndCancel() {
+    ExpiryWheel<String, String> wheel = new ExpiryWheel<String, String>(TICK, 8, 100, 0);
+    wheel.schedule("a", "a1", 200);
+    wheel.schedule("b", "b", 200);
+    wheel.schedule("a", "a2", 500);
+    wheel.cancel("b");
+    // a1 was replaced by a2, which is not cancelled along with it
+    wheel.cancel("a", "a1");
+
+    Assert.assertEquals(Collections.emptyList(), wheel.advance(400));
+    Assert.assertEquals(Collections.singletonList("a2"), wheel.advance(500));
+    Assert.assertEquals(0, wheel.size());
+  }
+
+  /**
+   * This checks that a mass expiration is spread over the following ticks.
+   */
+  @Test
+  public void testMassExpirationIsSpread() {
+    ExpiryWheel<Integer, Integer> wheel = new ExpiryWheel<Integer, Integer>(TICK, 8, 2, 0);
+    for (int i = 0; i < 5; i++) {
+      wheel.schedule(i, i, 100);
+    }
+    Assert.assertEquals(Collections.emptyList(), wheel.advance(50));
+
+    Assert.assertEquals(Arrays.asList(0, 1), wheel.advance(100));
+    Assert.assertEquals(3, wheel.overdue());
+    List<Integer> next = wheel.advance(200);
+    Assert.assertEquals(Arrays.asList(2, 3), next);
+    // Refreshing an overdue entry saves it
+    wheel.schedule(4, 4, 1000);
+    Assert.assertEquals(0, wheel.overdue());
+    Assert.assertEquals(Collections.emptyList(), wheel.advance(300));
+    Assert.assertEquals(1, wheel.size());
+  }
+}
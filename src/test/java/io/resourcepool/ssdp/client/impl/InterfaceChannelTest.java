@@ -0,0 +1,120 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.DiscoveryListener;
+import io.resourcepool.ssdp.model.SsdpClientOptions;
+import io.resourcepool.ssdp.model.SsdpService;
+import io.resourcepool.ssdp.model.SsdpServiceAnnouncement;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * Testing the choice of the per-interface channel by the address of a datagram,
+ * and the datagrams going through the send buffer and the pooled receive buffers
+ */
+public class InterfaceChannelTest {
+
+  @Test
+  public void testChannelIsPickedByInterface() throws Exception {
+    InetAddress loopback = InetAddress.getByName("127.0.0.1");
+    NetworkInterface iface = NetworkInterface.getByInetAddress(loopback);
+    DatagramChannelTransport transport = new DatagramChannelTransport(new SsdpClientImpl());
+    DatagramSocket peer = new DatagramSocket(new InetSocketAddress(loopback, 0));
+    try {
+      DatagramChannel interfaceChannel = transport.openInterfaceChannel(iface, loopback);
+      Assert.assertEquals(iface, transport.interfaceOf(InetAddress.getByName("127.0.0.2")));
+      Assert.assertNull(transport.interfaceOf(InetAddress.getByName("192.0.2.1")));
+
+      byte[] data = "HTTP/1.1 200 OK\r\n\r\n".getBytes(UTF_8);
+      transport.sendTo(new DatagramPacket(data, data.length, loopback, peer.getLocalPort()));
+      peer.setSoTimeout(2000);
+      DatagramPacket received = new DatagramPacket(new byte[64], 64);
+      peer.receive(received);
+      // Sent from the channel of the interface, so that the response comes back to it
+      Assert.assertEquals(((InetSocketAddress) interfaceChannel.getLocalAddress()).getPort(), received.getPort());
+    } finally {
+      peer.close();
+      transport.close();
+    }
+  }
+
+  @Test
+  public void testSendIsRepeatedOnEachInterfaceChannel() throws Exception {
+    InetAddress loopback = InetAddress.getByName("127.0.0.1");
+    NetworkInterface iface = NetworkInterface.getByInetAddress(loopback);
+    DatagramChannelTransport transport = new DatagramChannelTransport(new SsdpClientImpl());
+    DatagramSocket peer = new DatagramSocket(new InetSocketAddress(loopback, 0));
+    try {
+      transport.openInterfaceChannel(iface, loopback);
+      transport.openInterfaceChannel(iface, loopback);
+      byte[] data = "M-SEARCH * HTTP/1.1\r\n\r\n".getBytes(UTF_8);
+      transport.send(new DatagramPacket(data, data.length, loopback, peer.getLocalPort()));
+      peer.setSoTimeout(2000);
+      // The send buffer is rewound between channels, so that each one sends the whole datagram
+      for (int i = 0; i < 2; i++) {
+        DatagramPacket received = new DatagramPacket(new byte[64], 64);
+        peer.receive(received);
+        Assert.assertEquals("M-SEARCH * HTTP/1.1\r\n\r\n", new String(received.getData(), 0, received.getLength(), UTF_8));
+      }
+    } finally {
+      peer.close();
+      transport.close();
+    }
+  }
+
+  @Test
+  public void testResponseIsReceivedOnInterfaceChannel() throws Exception {
+    InetAddress loopback = InetAddress.getByName("127.0.0.1");
+    NetworkInterface iface = NetworkInterface.getByInetAddress(loopback);
+    SsdpClientOptions options = SsdpClientOptions.builder().overrideBindingPort(0).useNonBlockingTransport().build();
+    final CountDownLatch discovered = new CountDownLatch(1);
+    final SsdpService[] service = new SsdpService[1];
+    SsdpClientImpl client = new SsdpClientImpl();
+    client.subscribe(new Subscription(client, null, options, new DiscoveryListener() {
+      @Override
+      public void onServiceDiscovered(SsdpService discoveredService) {
+        service[0] = discoveredService;
+        discovered.countDown();
+      }
+
+      @Override
+      public void onServiceAnnouncement(SsdpServiceAnnouncement announcement) {
+      }
+
+      @Override
+      public void onFailed(Exception ex) {
+      }
+    }));
+    DatagramChannelTransport transport = new DatagramChannelTransport(client);
+    DatagramSocket peer = new DatagramSocket(new InetSocketAddress(loopback, 0));
+    try {
+      transport.open(options);
+      DatagramChannel interfaceChannel = transport.openInterfaceChannel(iface, loopback);
+      transport.start();
+      byte[] data = ("HTTP/1.1 200 OK\r\n"
+          + "CACHE-CONTROL: max-age=1800\r\n"
+          + "ST: upnp:rootdevice\r\n"
+          + "USN: uuid:a::upnp:rootdevice\r\n"
+          + "LOCATION: http://127.0.0.1/description.xml\r\n"
+          + "\r\n").getBytes(UTF_8);
+      peer.send(new DatagramPacket(data, data.length, interfaceChannel.getLocalAddress()));
+      // The pooled buffer is flipped before parsing, so that the response is read from its start
+      Assert.assertTrue(discovered.await(2, TimeUnit.SECONDS));
+      Assert.assertEquals("uuid:a::upnp:rootdevice", service[0].getSerialNumber());
+      Assert.assertEquals("http://127.0.0.1/description.xml", service[0].getLocation());
+    } finally {
+      peer.close();
+      transport.close();
+    }
+  }
+}
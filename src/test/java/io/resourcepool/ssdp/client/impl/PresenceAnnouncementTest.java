@@ -0,0 +1,109 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.DiscoveryListener;
+import io.resourcepool.ssdp.model.SsdpClientOptions;
+import io.resourcepool.ssdp.model.SsdpService;
+import io.resourcepool.ssdp.model.SsdpServiceAnnouncement;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.resourcepool.ssdp.client.SsdpParams.UTF_8;
+
+/**
+ * Testing the updates of the cache by the announcements of cached services
+ */
+public class PresenceAnnouncementTest {
+
+  private static final String USN = "uuid:a::urn:schemas-upnp-org:device:MediaRenderer:1";
+  private static final String ST = "urn:schemas-upnp-org:device:MediaRenderer:1";
+
+  private final SsdpClientOptions options = SsdpClientOptions.builder().build();
+  private final List<SsdpService> discovered = new ArrayList<SsdpService>();
+  private final List<SsdpServiceAnnouncement> announcements = new ArrayList<SsdpServiceAnnouncement>();
+  private SsdpClientImpl client;
+
+  @Before
+  public void setUp() throws Exception {
+    client = new SsdpClientImpl();
+    client.subscribe(new Subscription(client, null, options, new DiscoveryListener() {
+      @Override
+      public void onServiceDiscovered(SsdpService service) {
+        discovered.add(service);
+      }
+
+      @Override
+      public void onServiceAnnouncement(SsdpServiceAnnouncement announcement) {
+        announcements.add(announcement);
+      }
+
+      @Override
+      public void onFailed(Exception ex) {
+        Assert.fail(ex.toString());
+      }
+    }));
+    receive("HTTP/1.1 200 OK\r\n"
+        + "CACHE-CONTROL: max-age=1800\r\n"
+        + "ST: " + ST + "\r\n"
+        + "USN: " + USN + "\r\n"
+        + "LOCATION: http://192.168.1.10/description.xml\r\n"
+        + "BOOTID.UPNP.ORG: 1\r\n"
+        + "CONFIGID.UPNP.ORG: 7\r\n");
+    Assert.assertEquals(1, discovered.size());
+  }
+
+  private void receive(String message) throws Exception {
+    byte[] data = (message + "\r\n").getBytes(UTF_8);
+    client.handleIncomingPacket(new DatagramPacket(data, data.length, InetAddress.getByName("192.168.1.10"), 1900), options);
+  }
+
+  private void notify(String nts, String extraHeaders) throws Exception {
+    receive("NOTIFY * HTTP/1.1\r\n"
+        + "HOST: 239.255.255.250:1900\r\n"
+        + "CACHE-CONTROL: max-age=1800\r\n"
+        + "LOCATION: http://192.168.1.10/description.xml\r\n"
+        + "NT: " + ST + "\r\n"
+        + "NTS: " + nts + "\r\n"
+        + "USN: " + USN + "\r\n"
+        + extraHeaders);
+  }
+
+  @Test
+  public void testByeByeEvictsService() throws Exception {
+    notify("ssdp:byebye", "BOOTID.UPNP.ORG: 1\r\n");
+    Assert.assertEquals(1, announcements.size());
+    // Not cached anymore: discovered again on the next response
+    receive("HTTP/1.1 200 OK\r\n"
+        + "CACHE-CONTROL: max-age=1800\r\n"
+        + "ST: " + ST + "\r\n"
+        + "USN: " + USN + "\r\n"
+        + "LOCATION: http://192.168.1.10/description.xml\r\n");
+    Assert.assertEquals(2, discovered.size());
+  }
+
+  @Test
+  public void testRebootIsDiscoveredAgain() throws Exception {
+    notify("ssdp:alive", "BOOTID.UPNP.ORG: 1\r\nCONFIGID.UPNP.ORG: 7\r\n");
+    Assert.assertEquals(1, discovered.size());
+    notify("ssdp:alive", "BOOTID.UPNP.ORG: 2\r\nCONFIGID.UPNP.ORG: 7\r\n");
+    Assert.assertEquals(2, discovered.size());
+    Assert.assertEquals(ST, discovered.get(1).getServiceType());
+    Assert.assertEquals(USN, discovered.get(1).getSerialNumber());
+    Assert.assertEquals(2, announcements.size());
+  }
+
+  @Test
+  public void testUpdateIsNotReboot() throws Exception {
+    notify("ssdp:update", "BOOTID.UPNP.ORG: 1\r\nNEXTBOOTID.UPNP.ORG: 2\r\nCONFIGID.UPNP.ORG: 7\r\n");
+    notify("ssdp:alive", "BOOTID.UPNP.ORG: 2\r\nCONFIGID.UPNP.ORG: 7\r\n");
+    Assert.assertEquals(1, discovered.size());
+    // A new configuration is discovered again
+    notify("ssdp:alive", "BOOTID.UPNP.ORG: 2\r\nCONFIGID.UPNP.ORG: 8\r\n");
+    Assert.assertEquals(2, discovered.size());
+  }
+}
@@ -0,0 +1,63 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.SsdpService;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static io.resourcepool.ssdp.client.TestResponses.service;
+
+/**
+ * Testing the planning of unicast refreshes before cached services expire
+ */
+public class RefreshSchedulerTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  public void testProbeBeforeExpiryThenFallback() {
+    long now = System.nanoTime();
+    RefreshScheduler scheduler = new RefreshScheduler(10 * SECOND, SECOND, 512, 64, now);
+    SsdpService service = service("uuid:a", 100);
+    long expiry = service.getOriginalResponse().getExpiryNanoTime();
+    scheduler.schedule(service, expiry, now);
+
+    Assert.assertEquals(Collections.emptyList(), scheduler.dueProbes(expiry - 12 * SECOND));
+    Assert.assertEquals(Collections.singletonList(service), scheduler.dueProbes(expiry - 9 * SECOND));
+    // Falls back halfway between the probe and the expiry
+    Assert.assertEquals(Collections.emptyList(), scheduler.dueFallbacks(expiry - 6 * SECOND));
+    Assert.assertEquals(Collections.singletonList(service), scheduler.dueFallbacks(expiry - 3 * SECOND));
+    Assert.assertEquals(0, scheduler.size());
+  }
+
+  @Test
+  public void testRefreshedServiceIsPlannedAgain() {
+    long now = System.nanoTime();
+    RefreshScheduler scheduler = new RefreshScheduler(10 * SECOND, SECOND, 512, 64, now);
+    SsdpService first = service("uuid:a", 100);
+    scheduler.schedule(first, first.getOriginalResponse().getExpiryNanoTime(), now);
+    scheduler.dueProbes(first.getOriginalResponse().getExpiryNanoTime() - 9 * SECOND);
+
+    // The probe was answered: no fallback, and the next probe follows the new expiry
+    SsdpService second = service("uuid:a", 200);
+    long expiry = second.getOriginalResponse().getExpiryNanoTime();
+    scheduler.schedule(second, expiry, now);
+    Assert.assertEquals(Collections.emptyList(), scheduler.dueFallbacks(expiry - 100 * SECOND));
+    Assert.assertEquals(Collections.singletonList(second), scheduler.dueProbes(expiry - 9 * SECOND));
+  }
+
+  @Test
+  public void testShortLivedServiceIsProbedHalfwayThrough() {
+    long now = System.nanoTime();
+    RefreshScheduler scheduler = new RefreshScheduler(60 * SECOND, SECOND, 512, 64, now);
+    SsdpService service = service("uuid:a", 20);
+    scheduler.schedule(service, service.getOriginalResponse().getExpiryNanoTime(), now);
+
+    Assert.assertEquals(Collections.emptyList(), scheduler.dueProbes(now + 8 * SECOND));
+    Assert.assertEquals(Collections.singletonList(service), scheduler.dueProbes(now + 12 * SECOND));
+    scheduler.cancel("uuid:a");
+    Assert.assertEquals(0, scheduler.size());
+  }
+}
@@ -0,0 +1,70 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.DiscoveryOptions;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Testing the schedule of the search requests of a discovery
+ */
+public class SearchScheduleTest {
+
+  private static long ms(long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  @Test
+  public void testDefaultScheduleIsFixedRate() {
+    SearchSchedule schedule = new SearchSchedule(DiscoveryOptions.builder().build());
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals(10000, schedule.next(ms(i * 10000)));
+    }
+    Assert.assertEquals(-1, schedule.onChange(ms(50000)));
+  }
+
+  @Test
+  public void testBurstThenBackoffUpToCeiling() {
+    SearchSchedule schedule = new SearchSchedule(DiscoveryOptions.builder()
+        .initialBurst(3)
+        .burstInterval(1000L)
+        .intervalBetweenRequests(10000L)
+        .maxIntervalBetweenRequests(35000L)
+        .build());
+    Assert.assertEquals(1000, schedule.next(0));
+    Assert.assertEquals(1000, schedule.next(ms(1000)));
+    Assert.assertEquals(10000, schedule.next(ms(2000)));
+    Assert.assertEquals(20000, schedule.next(ms(12000)));
+    Assert.assertEquals(35000, schedule.next(ms(32000)));
+    Assert.assertEquals(35000, schedule.next(ms(67000)));
+  }
+
+  @Test
+  public void testChangeBringsNextRequestForward() {
+    SearchSchedule schedule = new SearchSchedule(DiscoveryOptions.builder()
+        .maxIntervalBetweenRequests(80000L)
+        .build());
+    schedule.next(0);
+    schedule.next(ms(10000));
+    Assert.assertEquals(40000, schedule.next(ms(30000)));
+    int generation = schedule.getGeneration();
+    // The next request was due in 40 seconds, it is brought forward to 10 seconds
+    Assert.assertEquals(10000, schedule.onChange(ms(31000)));
+    Assert.assertNotEquals(generation, schedule.getGeneration());
+    // Already fast
+    Assert.assertEquals(-1, schedule.onChange(ms(32000)));
+    // Back off again from the floor, the request having seen a change
+    Assert.assertEquals(10000, schedule.next(ms(41000)));
+    Assert.assertEquals(20000, schedule.next(ms(51000)));
+  }
+
+  @Test
+  public void testJitterStaysWithinSpread() {
+    SearchSchedule schedule = new SearchSchedule(DiscoveryOptions.builder().jitter(0.1).build());
+    for (int i = 0; i < 100; i++) {
+      long delay = schedule.next(0);
+      Assert.assertTrue(delay >= 9000 && delay <= 11000);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package io.resourcepool.ssdp.client.impl;
+
+import io.resourcepool.ssdp.model.LookupOptions;
+import io.resourcepool.ssdp.model.SsdpClientOptions;
+import io.resourcepool.ssdp.model.SsdpService;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.resourcepool.ssdp.client.TestResponses.service;
+
+/**
+ * Testing the early completion of one-shot lookups
+ */
+public class ServiceLookupTest {
+
+  private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void testCompletesOnMaxResults() throws Exception {
+    ServiceLookup lookup = new ServiceLookup(LookupOptions.builder().maxResults(2).build(), 0);
+    lookup.onServiceDiscovered(service("uuid:a"), 10 * MILLI);
+    // Same USN again, still one service
+    lookup.onServiceDiscovered(service("uuid:a"), 20 * MILLI);
+    Assert.assertFalse(lookup.getFuture().isDone());
+    lookup.onServiceDiscovered(service("uuid:b"), 30 * MILLI);
+    List<SsdpService> services = lookup.getFuture().get();
+    Assert.assertEquals(2, services.size());
+    Assert.assertEquals("uuid:a", services.get(0).getSerialNumber());
+  }
+
+  @Test
+  public void testCompletesOnSerialNumber() throws Exception {
+    ServiceLookup lookup = new ServiceLookup(LookupOptions.builder().serialNumber("uuid:b").build(), 0);
+    lookup.onServiceDiscovered(service("uuid:a"), 10 * MILLI);
+    Assert.assertFalse(lookup.getFuture().isDone());
+    lookup.onServiceDiscovered(service("uuid:b"), 20 * MILLI);
+    Assert.assertEquals(2, lookup.getFuture().get().size());
+  }
+
+  @Test
+  public void testCompletesOnQuietPeriod() throws Exception {
+    ServiceLookup lookup = new ServiceLookup(LookupOptions.builder().quietPeriod(300L).build(), 0);
+    Assert.assertEquals(300 * MILLI, lookup.check(0));
+    lookup.onServiceDiscovered(service("uuid:a"), 200 * MILLI);
+    // A new USN restarts the quiet period, a known one does not
+    lookup.onServiceDiscovered(service("uuid:a"), 400 * MILLI);
+    Assert.assertEquals(100 * MILLI, lookup.check(400 * MILLI));
+    Assert.assertEquals(-1, lookup.check(500 * MILLI));
+    Assert.assertEquals(1, lookup.getFuture().get().size());
+  }
+
+  @Test
+  public void testCompletesOnTimeout() throws Exception {
+    ServiceLookup lookup = new ServiceLookup(LookupOptions.builder().timeout(1000L).quietPeriod(300L).build(), 0);
+    for (int i = 0; i < 5; i++) {
+      lookup.onServiceDiscovered(service("uuid:" + i), i * 250 * MILLI);
+    }
+    Assert.assertEquals(-1, lookup.check(1000 * MILLI));
+    Assert.assertEquals(5, lookup.getFuture().get().size());
+    // Services found once complete are ignored
+    lookup.onServiceDiscovered(service("uuid:late"), 1100 * MILLI);
+    Assert.assertEquals(5, lookup.getFuture().get().size());
+  }
+
+  @Test
+  public void testStoppedLookupCompletesOutOfTheClientLock() throws Exception {
+    final SsdpClientImpl client = new SsdpClientImpl();
+    ServiceLookup lookup = new ServiceLookup(LookupOptions.builder().build(), 0);
+    Subscription subscription = new Subscription(client, null, SsdpClientOptions.builder().build(), lookup);
+    client.subscribe(subscription);
+    lookup.start(subscription, null);
+    lookup.onServiceDiscovered(service("uuid:a"), 10 * MILLI);
+    final AtomicBoolean completedUnderClientLock = new AtomicBoolean();
+    // Dependent stages run on the completing thread
+    lookup.getFuture().thenRun(new Runnable() {
+      @Override
+      public void run() {
+        completedUnderClientLock.set(Thread.holdsLock(client));
+      }
+    });
+    client.stopDiscovery();
+    Assert.assertEquals(1, lookup.getFuture().get().size());
+    Assert.assertFalse(completedUnderClientLock.get());
+  }
+}
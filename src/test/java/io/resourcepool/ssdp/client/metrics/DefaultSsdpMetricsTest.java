@@ -0,0 +1,68 @@
+package io.resourcepool.ssdp.client.metrics;
+
+import io.resourcepool.ssdp.client.SsdpClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import javax.management.ObjectName;
+
+/**
+ * Testing the default metrics
+ */
+public class DefaultSsdpMetricsTest {
+
+  @Test
+  public void testHistogramPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Assert.assertEquals(0, histogram.getPercentile(99));
+    for (int i = 0; i < 99; i++) {
+      histogram.record(1000);
+    }
+    histogram.record(1000000);
+    Assert.assertEquals(100, histogram.getCount());
+    // 1000 falls in the [512, 1023] bucket
+    Assert.assertEquals(1023, histogram.getPercentile(50));
+    Assert.assertEquals(1023, histogram.getPercentile(99));
+    Assert.assertEquals(1000000, histogram.getPercentile(100));
+    Assert.assertEquals(1000000, histogram.getMax());
+    Assert.assertEquals((99 * 1000 + 1000000) / 100, histogram.getMean());
+  }
+
+  @Test
+  public void testMBeanRegistration() throws Exception {
+    DefaultSsdpMetrics metrics = new DefaultSsdpMetrics();
+    metrics.onCacheMiss();
+    metrics.onCacheHit();
+    metrics.onCacheHit();
+    metrics.onCacheHit();
+    metrics.registerGauge("cacheSize", new SsdpMetrics.Gauge() {
+      @Override
+      public long getValue() {
+        return 42;
+      }
+    });
+    ObjectName name = metrics.registerMBean("test");
+    try {
+      Assert.assertEquals(3L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "CacheHits"));
+      Assert.assertEquals(0.75, (Double) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "CacheHitRatio"), 0.0001);
+      Assert.assertEquals(Long.valueOf(42), metrics.getGauges().get("cacheSize"));
+    } finally {
+      metrics.unregisterMBean();
+    }
+    Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+  }
+
+  @Test
+  public void testMetricsAreNotSharedBetweenClients() {
+    DefaultSsdpMetrics metrics = new DefaultSsdpMetrics();
+    SsdpClient.create(metrics);
+    Assert.assertTrue(metrics.getGauges().containsKey("cacheSize"));
+    try {
+      SsdpClient.create(metrics);
+      Assert.fail("Gauges of the first client replaced");
+    } catch (IllegalStateException e) {
+      // The gauges of the first client stay
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package io.resourcepool.ssdp.client.util;
+
+import io.resourcepool.ssdp.model.SsdpClientOptions;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Testing the pool of receive buffers
+ */
+public class ByteBufferPoolTest {
+
+  @Test
+  public void testReleasedBuffersAreReused() {
+    ByteBufferPool pool = new ByteBufferPool(1024, 2, false);
+    ByteBuffer first = pool.acquire();
+    Assert.assertEquals(1, pool.getMisses());
+    Assert.assertEquals(1024, first.capacity());
+    Assert.assertFalse(first.isDirect());
+    first.put((byte) 1).flip();
+    pool.release(first);
+    Assert.assertEquals(1, pool.getAvailable());
+
+    ByteBuffer second = pool.acquire();
+    Assert.assertSame(first, second);
+    Assert.assertEquals(1, pool.getHits());
+    // Cleared on release
+    Assert.assertEquals(0, second.position());
+    Assert.assertEquals(1024, second.limit());
+  }
+
+  @Test
+  public void testPoolIsBounded() {
+    ByteBufferPool pool = new ByteBufferPool(512, 2, true);
+    ByteBuffer a = pool.acquire();
+    ByteBuffer b = pool.acquire();
+    ByteBuffer c = pool.acquire();
+    Assert.assertTrue(a.isDirect());
+    Assert.assertEquals(3, pool.getMisses());
+    pool.release(a);
+    pool.release(b);
+    pool.release(c);
+    Assert.assertEquals(2, pool.getAvailable());
+    // Buffers of another size or kind are left to the garbage collector
+    pool.release(ByteBuffer.allocate(512));
+    pool.acquire();
+    pool.acquire();
+    pool.release(ByteBuffer.allocateDirect(1024));
+    Assert.assertEquals(0, pool.getAvailable());
+  }
+
+  @Test
+  public void testDirectPoolRequiresNonBlockingTransport() {
+    ByteBufferPool direct = new ByteBufferPool(2048, 4, true);
+    try {
+      SsdpClientOptions.builder().receiveBufferPool(direct).build();
+      Assert.fail("The MulticastSocket transport cannot receive into direct buffers");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+    try {
+      SsdpClientOptions.builder().useDirectReceiveBuffers().build();
+      Assert.fail("The MulticastSocket transport cannot receive into direct buffers");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+    SsdpClientOptions options = SsdpClientOptions.builder().receiveBufferPool(direct).useNonBlockingTransport().build();
+    Assert.assertSame(direct, options.getReceiveBufferPool());
+  }
+}
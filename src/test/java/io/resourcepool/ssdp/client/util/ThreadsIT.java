@@ -0,0 +1,27 @@
+package io.resourcepool.ssdp.client.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Testing that the Java 21 variant of the multi-release JAR is picked, and creates virtual threads.
+ * Run by the java21 profile against the packaged JAR.
+ */
+public class ThreadsIT {
+
+  @Test
+  public void testVirtualThreadsOnJava21() throws Exception {
+    Assert.assertTrue(Threads.supportsVirtualThreads());
+    ThreadFactory factory = Threads.newVirtualThreadFactory("ssdp-test-");
+    Thread thread = factory.newThread(new Runnable() {
+      @Override
+      public void run() {
+      }
+    });
+    // Thread.isVirtual() does not exist in the Java 8 API this test is compiled against
+    Assert.assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual").invoke(thread));
+    Assert.assertEquals("ssdp-test-0", thread.getName());
+  }
+}